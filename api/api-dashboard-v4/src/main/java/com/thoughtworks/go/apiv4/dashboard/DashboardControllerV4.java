@@ -17,11 +17,14 @@ package com.thoughtworks.go.apiv4.dashboard;
 
 import com.thoughtworks.go.api.ApiController;
 import com.thoughtworks.go.api.ApiVersion;
+import com.thoughtworks.go.api.base.JsonOutputWriter;
 import com.thoughtworks.go.api.spring.ApiAuthenticationHelper;
 import com.thoughtworks.go.api.util.MessageJson;
 import com.thoughtworks.go.apiv4.dashboard.representers.DashboardFor;
 import com.thoughtworks.go.apiv4.dashboard.representers.DashboardRepresenter;
+import com.thoughtworks.go.apiv4.dashboard.representers.PipelineRepresenter;
 import com.thoughtworks.go.server.dashboard.GoDashboardEnvironment;
+import com.thoughtworks.go.server.dashboard.GoDashboardPipeline;
 import com.thoughtworks.go.server.dashboard.GoDashboardPipelineGroup;
 import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.server.domain.user.DashboardFilter;
@@ -30,6 +33,7 @@ import com.thoughtworks.go.server.service.GoDashboardService;
 import com.thoughtworks.go.server.service.PipelineSelectionsService;
 import com.thoughtworks.go.server.service.support.toggle.Toggles;
 import com.thoughtworks.go.spark.GlobalExceptionMapper;
+import com.thoughtworks.go.spark.RequestContext;
 import com.thoughtworks.go.spark.Routes;
 import com.thoughtworks.go.spark.spring.SparkSpringController;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -39,6 +43,7 @@ import spark.Request;
 import spark.Response;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -56,6 +61,7 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
     private static final String COOKIE_NAME = "selected_pipelines";
     private static final String SEP_CHAR = "/";
     private static final String VIEW_NAME = "viewName";
+    private static final String CHANGED_SINCE = "since";
 
     private final PipelineSelectionsService pipelineSelectionsService;
     private final GoDashboardService goDashboardService;
@@ -96,6 +102,9 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
         final Username userName = currentUsername();
         final PipelineSelections personalization = pipelineSelectionsService.load(personalizationCookie, userId);
         final DashboardFilter filter = personalization.namedFilter(getViewName(request));
+        final long changedSince = getCursor(request, CHANGED_SINCE);
+        // read before the groups are built, so that anything changing in the meantime is sent again on the next poll
+        final long lastUpdatedTimeStamp = goDashboardService.lastUpdatedTimeStamp();
 
         final boolean allowEmpty = Toggles.isToggleOn(Toggles.ALLOW_EMPTY_PIPELINE_GROUPS_DASHBOARD) &&
             "true".equalsIgnoreCase(request.queryParams("allowEmpty"));
@@ -103,7 +112,7 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
         List<GoDashboardPipelineGroup> pipelineGroups = goDashboardService.allPipelineGroupsForDashboard(filter, userName, allowEmpty);
         List<GoDashboardEnvironment> environments = goDashboardService.allEnvironmentsForDashboard(filter, userName);
 
-        String etag = calcEtag(userName, pipelineGroups, environments);
+        String etag = calcEtag(userName, pipelineGroups, environments, changedSince);
 
         if (fresh(request, etag)) {
             return notModified(response);
@@ -111,20 +120,38 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
 
         setEtagHeader(response, etag);
 
+        final RequestContext requestContext = RequestContext.requestContext(request);
+        final String baseUrl = requestContext.urlFor("");
+
         return writerForTopLevelObject(request, response, outputWriter ->
             DashboardRepresenter.toJSON(
                 outputWriter,
-                new DashboardFor(pipelineGroups, environments, userName, personalization.etag())
+                new DashboardFor(pipelineGroups, environments, userName, personalization.etag(), lastUpdatedTimeStamp, changedSince),
+                pipeline -> pipelineJson(pipeline, userName, requestContext, baseUrl)
             )
         );
     }
 
-    private String calcEtag(Username username, List<GoDashboardPipelineGroup> pipelineGroups, List<GoDashboardEnvironment> environments) {
+    /**
+     * Pipelines are serialized once per distinct set of permissions (and server URL, as links are absolute) and reused
+     * across users and polls until the pipeline changes.
+     */
+    private String pipelineJson(GoDashboardPipeline pipeline, Username userName, RequestContext requestContext, String baseUrl) {
+        String variant = joinWith(SEP_CHAR, baseUrl, PipelineRepresenter.permissionsVariant(pipeline, userName));
+        return pipeline.jsonFragment(variant, () -> {
+            StringWriter writer = new StringWriter(2048);
+            new JsonOutputWriter(writer, requestContext).forTopLevelObject(outputWriter -> PipelineRepresenter.toJSON(outputWriter, pipeline, userName));
+            return writer.toString();
+        });
+    }
+
+    private String calcEtag(Username username, List<GoDashboardPipelineGroup> pipelineGroups, List<GoDashboardEnvironment> environments, long changedSince) {
         final String pipelineSegment = pipelineGroups.stream()
             .map(GoDashboardPipelineGroup::etag).collect(Collectors.joining(SEP_CHAR));
         final String environmentSegment = environments.stream()
             .map(GoDashboardEnvironment::etag).collect(Collectors.joining(SEP_CHAR));
-        return DigestUtils.md5Hex(joinWith(SEP_CHAR, username.getUsername(), pipelineSegment, environmentSegment));
+        final String etag = joinWith(SEP_CHAR, username.getUsername(), pipelineSegment, environmentSegment);
+        return DigestUtils.md5Hex(changedSince > 0 ? joinWith(SEP_CHAR, etag, changedSince) : etag);
     }
 
     private String getViewName(Request request) {
@@ -27,12 +27,26 @@ public class DashboardFor {
     private final Username username;
     private List<? extends DashboardGroup> environments;
     private String personalizationEtag;
+    private final long lastUpdatedTimeStamp;
+    private final long changedSince;
 
     public DashboardFor(List<? extends DashboardGroup> pipelineGroups, List<? extends DashboardGroup> environments, Username username, String personalizationEtag) {
+        this(pipelineGroups, environments, username, personalizationEtag, 0L, 0L);
+    }
+
+    /**
+     * @param lastUpdatedTimeStamp the change counter of the dashboard, to be passed back as {@code changedSince} on the
+     *                             next poll
+     * @param changedSince         only pipelines updated after this counter are listed; groups and environments are
+     *                             always listed in full so that clients can drop pipelines which are gone
+     */
+    public DashboardFor(List<? extends DashboardGroup> pipelineGroups, List<? extends DashboardGroup> environments, Username username, String personalizationEtag, long lastUpdatedTimeStamp, long changedSince) {
         this.pipelineGroups = pipelineGroups;
         this.environments = environments;
         this.username = username;
         this.personalizationEtag = personalizationEtag;
+        this.lastUpdatedTimeStamp = lastUpdatedTimeStamp;
+        this.changedSince = changedSince;
     }
 
     public List<? extends DashboardGroup> getPipelineGroups() {
@@ -44,7 +58,10 @@ public class DashboardFor {
     }
 
     public List<GoDashboardPipeline> getPipelines() {
-        return pipelineGroups.stream().flatMap(group -> group.allPipelines().stream()).collect(Collectors.toList());
+        return pipelineGroups.stream()
+            .flatMap(group -> group.allPipelines().stream())
+            .filter(pipeline -> pipeline.getLastUpdatedTimeStamp() > changedSince)
+            .collect(Collectors.toList());
     }
 
     public Username getUsername() {
@@ -54,4 +71,12 @@ public class DashboardFor {
     public String getPersonalizationEtag() {
         return personalizationEtag;
     }
+
+    public long getLastUpdatedTimeStamp() {
+        return lastUpdatedTimeStamp;
+    }
+
+    public long getChangedSince() {
+        return changedSince;
+    }
 }
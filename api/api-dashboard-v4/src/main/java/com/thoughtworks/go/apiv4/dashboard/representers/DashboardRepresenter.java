@@ -16,22 +16,39 @@
 package com.thoughtworks.go.apiv4.dashboard.representers;
 
 import com.thoughtworks.go.api.base.OutputWriter;
+import com.thoughtworks.go.server.dashboard.GoDashboardPipeline;
 import com.thoughtworks.go.spark.Routes;
 
+import java.util.function.Function;
+
 public class DashboardRepresenter {
 
     public static void toJSON(OutputWriter jsonOutputWriter, DashboardFor dashboardFor) {
+        toJSON(jsonOutputWriter, dashboardFor, null);
+    }
+
+    /**
+     * @param pipelineFragments if not null, provides the already serialized JSON of each pipeline instead of running it
+     *                          through the {@link PipelineRepresenter}
+     */
+    public static void toJSON(OutputWriter jsonOutputWriter, DashboardFor dashboardFor, Function<GoDashboardPipeline, String> pipelineFragments) {
         jsonOutputWriter
                 .addLinks(linksWriter -> linksWriter.addLink("self", Routes.Dashboard.SELF)
                         .addAbsoluteLink("doc", Routes.Dashboard.DOC))
                 .add("_personalization", dashboardFor.getPersonalizationEtag())
+                .add("last_updated_timestamp", dashboardFor.getLastUpdatedTimeStamp())
                 .addChild("_embedded", childWriter -> childWriter
 
                         .addChildList("pipeline_groups", listWriter -> dashboardFor.getPipelineGroups().forEach(group -> listWriter.addChild(childItemWriter -> DashboardGroupRepresenter.toJSON(childItemWriter, group, dashboardFor.getUsername()))))
 
                         .addChildList("environments", listWriter -> dashboardFor.getEnvironments().forEach(group -> listWriter.addChild(childItemWriter -> DashboardGroupRepresenter.toJSON(childItemWriter, group, dashboardFor.getUsername()))))
 
-                        .addChildList("pipelines", listWriter -> dashboardFor.getPipelines()
-                                    .forEach(pipeline -> listWriter.addChild(childItemWriter -> PipelineRepresenter.toJSON(childItemWriter, pipeline, dashboardFor.getUsername())))));
+                        .addChildList("pipelines", listWriter -> dashboardFor.getPipelines().forEach(pipeline -> {
+                            if (pipelineFragments == null) {
+                                listWriter.addChild(childItemWriter -> PipelineRepresenter.toJSON(childItemWriter, pipeline, dashboardFor.getUsername()));
+                            } else {
+                                listWriter.addRaw(pipelineFragments.apply(pipeline));
+                            }
+                        })));
     }
 }
@@ -22,6 +22,7 @@ import com.thoughtworks.go.config.TrackingTool;
 import com.thoughtworks.go.config.remote.RepoConfigOrigin;
 import com.thoughtworks.go.domain.PipelinePauseInfo;
 import com.thoughtworks.go.presentation.pipelinehistory.EmptyPipelineInstanceModel;
+import com.thoughtworks.go.presentation.pipelinehistory.StageInstanceModel;
 import com.thoughtworks.go.server.dashboard.GoDashboardPipeline;
 import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.spark.Routes;
@@ -67,6 +68,31 @@ public class PipelineRepresenter {
         jsonOutputWriter.addChild("_embedded", childWriter -> childWriter.addChildList("instances", writeInstances(model, username)));
     }
 
+    /**
+     * The JSON of a pipeline only differs between users by what they are allowed to do with the pipeline and its
+     * stages, so users ending up with the same variant can share its serialized form.
+     */
+    public static String permissionsVariant(GoDashboardPipeline model, Username username) {
+        String usernameString = username.getUsername().toString();
+        StringBuilder variant = new StringBuilder()
+                .append(flag(model.isPipelineOperator(usernameString)))
+                .append(flag(model.canBeAdministeredBy(usernameString)))
+                .append(flag(model.canBeOperatedBy(usernameString)));
+
+        model.model().getActivePipelineInstances().forEach(instanceModel -> {
+            for (StageInstanceModel stage : instanceModel.getStageHistory()) {
+                for (StageInstanceModel current = stage; current != null; current = current.getPreviousStage()) {
+                    variant.append(flag(model.isStageOperator(current.getName(), usernameString)));
+                }
+            }
+        });
+        return variant.toString();
+    }
+
+    private static char flag(boolean allowed) {
+        return allowed ? '1' : '0';
+    }
+
     private static Consumer<OutputListWriter> writeInstances(GoDashboardPipeline model, Username username) {
         return listWriter -> model.model().getActivePipelineInstances().stream()
                 .filter(instanceModel -> !(instanceModel instanceof EmptyPipelineInstanceModel))
@@ -110,6 +110,29 @@ class DashboardControllerV4Test implements SecurityServiceTrait, ControllerTrait
           .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([group], [env], currentUsername(), PipelineSelections.ALL.etag()))
       }
 
+      @Test
+      void 'should only render pipelines changed since the given counter'() {
+        loginAsUser()
+
+        def unchanged = GoDashboardPipelineMother.dashboardPipeline('pipeline1', 'group1', permissions(), 1000L)
+        def changed = GoDashboardPipelineMother.dashboardPipeline('pipeline2', 'group1', permissions(), 2000L)
+        def group = new GoDashboardPipelineGroup('group1', permissions(), true)
+        group.addPipeline(unchanged)
+        group.addPipeline(changed)
+
+        when(pipelineSelectionsService.load((String) isNull(), any(Long.class))).thenReturn(PipelineSelections.ALL)
+        when(goDashboardService.hasEverLoadedCurrentState()).thenReturn(true)
+        when(goDashboardService.lastUpdatedTimeStamp()).thenReturn(3000L)
+        when(goDashboardService.allPipelineGroupsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()), anyBoolean())).thenReturn([group])
+        when(goDashboardService.allEnvironmentsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()))).thenReturn([])
+
+        getWithApiHeader(controller.controllerPath([since: String.valueOf(unchanged.getLastUpdatedTimeStamp())]))
+
+        assertThatResponse()
+          .isOk()
+          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([group], [], currentUsername(), PipelineSelections.ALL.etag(), 3000L, unchanged.getLastUpdatedTimeStamp()))
+      }
+
       @Test
       void 'should render 304 if content matches'() {
         loginAsUser()
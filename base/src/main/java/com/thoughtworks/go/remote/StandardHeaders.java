@@ -18,6 +18,7 @@ package com.thoughtworks.go.remote;
 
 public interface StandardHeaders {
     String REQUEST_ARTIFACT_PAYLOAD_SIZE = "X-Go-Artifact-Size";
+    String REQUEST_CONSOLE_ENCODING = "X-Go-Console-Encoding";
     String REQUEST_CONFIRM_MODIFICATION_DEPRECATED = "Confirm";
     String REQUEST_CONFIRM_MODIFICATION = "X-GoCD-Confirm";
 
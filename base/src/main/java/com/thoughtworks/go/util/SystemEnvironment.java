@@ -123,11 +123,15 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static final GoSystemProperty<Integer> RESPONSE_BUFFER_SIZE = new GoIntSystemProperty("response.buffer.size", 32 * 1024);
     public static final GoSystemProperty<Integer> API_REQUEST_IDLE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("api.request.idle.timeout.seconds", (int) MINUTES.toSeconds(5));
     public static final GoSystemProperty<Integer> AGENT_REQUEST_IDLE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("agent.request.idle.timeout.seconds", 30);
+    public static final GoSystemProperty<Long> AGENT_GET_WORK_MAX_WAIT_IN_MILLIS = new GoLongSystemProperty("go.agent.get.work.max.wait.millis", 0L);
     public static final GoSystemProperty<Integer> GO_SERVER_SESSION_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("go.server.session.timeout.seconds", (int) DAYS.toSeconds(14));
     public static final GoSystemProperty<Integer> GO_SERVER_SESSION_COOKIE_MAX_AGE_IN_SECONDS = new GoIntSystemProperty("go.sessioncookie.maxage.seconds", (int) DAYS.toSeconds(14));
     public static final GoSystemProperty<Boolean> GO_SERVER_SESSION_COOKIE_SECURE = new GoBooleanSystemProperty("go.sessioncookie.secure", false);
     public static final GoSystemProperty<String> AGENT_EXTRA_PROPERTIES = new GoStringSystemProperty("gocd.agent.extra.properties", "");
     public static final GoSystemProperty<Long> JMS_LISTENER_BACKOFF_TIME_IN_MILLIS = new GoLongSystemProperty("go.jms.listener.backoff.time.in.milliseconds", SECONDS.toMillis(5));
+    public static final GoSystemProperty<Boolean> GO_IN_MEMORY_MESSAGING = new GoBooleanSystemProperty("go.messaging.in-memory", false);
+    public static final GoSystemProperty<Integer> GO_IN_MEMORY_MESSAGING_QUEUE_CAPACITY = new GoIntSystemProperty("go.messaging.in-memory.queue.capacity", 10_000);
+    public static final GoSystemProperty<Boolean> GO_IN_MEMORY_MESSAGING_VIRTUAL_THREADS = new GoBooleanSystemProperty("go.messaging.in-memory.virtual.threads", true);
 
     public static final GoSystemProperty<Integer> GO_SERVER_AUTHORIZATION_EXTENSION_CALLS_CACHE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("go.server.authorization.extension.calls.cache.timeout.in.secs", 60);
 
@@ -139,6 +143,16 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
 
     public static final GoSystemProperty<Boolean> FETCH_ARTIFACT_AUTO_SUGGEST = new GoBooleanSystemProperty("go.fetch-artifact.auto-suggest", true);
     public static final GoSystemProperty<Boolean> GO_FETCH_ARTIFACT_TEMPLATE_AUTO_SUGGEST = new GoBooleanSystemProperty("go.fetch-artifact.template.auto-suggest", true);
+    public static final GoSystemProperty<Integer> GO_ARTIFACT_ZIP_CACHE_THREADS = new GoIntSystemProperty("go.artifacts.zip.cache.threads", 2);
+    public static final GoSystemProperty<Long> GO_ARTIFACT_ZIP_CACHE_MAX_SIZE_MB = new GoLongSystemProperty("go.artifacts.zip.cache.max.size.mb", 10_240L);
+    public static final GoSystemProperty<Boolean> GO_ARTIFACT_ZIP_STREAM_UNCACHED = new GoBooleanSystemProperty("go.artifacts.zip.stream.uncached", false);
+    public static final GoSystemProperty<Integer> GO_ARTIFACTS_PURGE_THREADS = new GoIntSystemProperty("go.artifacts.purge.threads", 4);
+    public static final GoSystemProperty<Integer> GO_FETCH_ARTIFACT_PARALLEL_DOWNLOADS = new GoIntSystemProperty("go.fetch-artifact.parallel.downloads", 0);
+    public static final GoSystemProperty<Integer> GO_SECRETS_CACHE_TTL_SECONDS = new GoIntSystemProperty("go.secrets.cache.ttl.seconds", 0);
+    public static final GoSystemProperty<Long> GO_SECRETS_CACHE_MAX_SIZE = new GoLongSystemProperty("go.secrets.cache.max.size", 10_000L);
+    public static final GoSystemProperty<Boolean> GO_GIT_IN_PROCESS_POLLING = new GoBooleanSystemProperty("go.git.in-process.polling", false);
+    public static final GoSystemProperty<Boolean> GO_MATERIAL_POLL_ADAPTIVE = new GoBooleanSystemProperty("go.material.poll.adaptive", false);
+    public static final GoSystemProperty<Integer> GO_MATERIAL_POLL_ADAPTIVE_MAX_INTERVAL_MINUTES = new GoIntSystemProperty("go.material.poll.adaptive.max.interval.minutes", 15);
 
     public static final GoSystemProperty<Boolean> GO_CONFIG_REPO_GC_AGGRESSIVE = new GoBooleanSystemProperty("go.config.repo.gc.aggressive", true);
     public static final GoSystemProperty<Long> GO_CONFIG_REPO_GC_EXPIRE_IN_HOURS = new GoLongSystemProperty("go.config.repo.gc.expire", 24L);
@@ -156,12 +170,15 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
 
     public static final GoSystemProperty<Integer> MAX_PENDING_AGENTS_ALLOWED = new GoIntSystemProperty("max.pending.agents.allowed", 100);
     public static final GoSystemProperty<Boolean> CHECK_AND_REMOVE_DUPLICATE_MODIFICATIONS = new GoBooleanSystemProperty("go.modifications.removeDuplicates", true);
+    public static final GoSystemProperty<Integer> REVISION_SEARCH_INDEX_MAX_MODIFICATIONS = new GoIntSystemProperty("go.modifications.search.index.max", 1_000_000);
     public static final GoSystemProperty<Boolean> GO_DIAGNOSTICS_MODE = new GoBooleanSystemProperty("go.diagnostics.mode", false);
 
     public static final GoSystemProperty<Integer> DEPENDENCY_MATERIAL_UPDATE_LISTENERS = new GoIntSystemProperty("dependency.material.check.threads", 3);
 
     public static final GoSystemProperty<Integer> CONFIG_MATERIAL_POST_UPDATE_LISTENERS = new GoIntSystemProperty("config.material.post.update.threads", 2);
 
+    public static final GoSystemProperty<Integer> WORK_FINDER_LISTENERS = new GoIntSystemProperty("work.finder.threads", 4);
+
     public static final GoSystemProperty<String> GO_SERVER_MODE = new GoStringSystemProperty("go.server.mode", "production");
     public static final GoSystemProperty<Boolean> REAUTHENTICATION_ENABLED = new GoBooleanSystemProperty("go.security.reauthentication.enabled", true);
     public static final GoSystemProperty<Long> REAUTHENTICATION_TIME_INTERVAL_IN_MILLIS = new GoLongSystemProperty("go.security.reauthentication.interval", MINUTES.toMillis(30));
@@ -29,6 +29,7 @@ public class ZipBuilder {
     private final OutputStream destinationStream;
     private final boolean excludeRootDir;
     private final Map<String, File> toAdd = new HashMap<>();
+    private ZipUtil.ChecksumHandler checksumHandler;
 
     public ZipBuilder(ZipUtil zipUtil, int level, OutputStream destinationStream, boolean excludeRootDir) {
         this.zipUtil = zipUtil;
@@ -42,13 +43,18 @@ public class ZipBuilder {
         return this;
     }
 
+    public ZipBuilder withChecksumHandler(ZipUtil.ChecksumHandler checksumHandler) {
+        this.checksumHandler = checksumHandler;
+        return this;
+    }
+
     public void done() throws IOException {
         try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(destinationStream))) {
             zip.setLevel(level);
             for (Map.Entry<String, File> zipDirToSourceFileEntry : toAdd.entrySet()) {
                 File sourceFileToZip = zipDirToSourceFileEntry.getValue();
                 String destinationFolder = zipDirToSourceFileEntry.getKey();
-                zipUtil.addToZip(new ZipPath(destinationFolder), sourceFileToZip, zip, excludeRootDir);
+                zipUtil.addToZip(new ZipPath(destinationFolder), sourceFileToZip, zip, excludeRootDir, checksumHandler);
             }
             zip.flush();
         }
@@ -19,6 +19,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -54,45 +58,70 @@ public class ZipUtil {
         zipContents(file, output, level, false);
     }
 
+    /**
+     * Zips {@code file} straight into {@code output}, handing the MD5 checksum of every file to {@code checksumHandler}
+     * as it is added so that the files need not be read a second time to compute their checksums. {@code output} is
+     * closed once done.
+     */
+    public void zip(File file, OutputStream output, int level, ChecksumHandler checksumHandler) throws IOException {
+        new ZipBuilder(this, level, output, false).withChecksumHandler(checksumHandler).add("", file).done();
+    }
+
     private void zipContents(File file, OutputStream output, int level, boolean excludeRootDir) throws IOException {
         new ZipBuilder(this, level, output, excludeRootDir).add("", file).done();
     }
 
-    private void addFolderToZip(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir) throws IOException {
+    private void addFolderToZip(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir, ChecksumHandler checksumHandler) throws IOException {
         ZipPath newPath = path.with(source);
         if (source.isFile()) {
-            addToZip(newPath, source, zip, false);
+            addToZip(newPath, source, zip, false, checksumHandler);
         } else {
-            addDirectory(path, source, zip, excludeRootDir);
+            addDirectory(path, source, zip, excludeRootDir, checksumHandler);
         }
     }
 
-    private void addDirectory(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir) throws IOException {
+    private void addDirectory(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir, ChecksumHandler checksumHandler) throws IOException {
         if (excludeRootDir) {
-            addDirContents(path, source, zip);
+            addDirContents(path, source, zip, checksumHandler);
             return;
         }
         ZipPath newPath = path.with(source);
         zip.putNextEntry(newPath.asZipEntryDirectory());
-        addDirContents(newPath, source, zip);
+        addDirContents(newPath, source, zip, checksumHandler);
     }
 
-    private void addDirContents(ZipPath path, File source, ZipOutputStream zip) throws IOException {
+    private void addDirContents(ZipPath path, File source, ZipOutputStream zip, ChecksumHandler checksumHandler) throws IOException {
         for (File file : source.listFiles()) {
-            addToZip(path, file, zip, false);
+            addToZip(path, file, zip, false, checksumHandler);
         }
     }
 
-    void addToZip(ZipPath path, File srcFile, ZipOutputStream zip, boolean excludeRootDir) throws IOException {
+    void addToZip(ZipPath path, File srcFile, ZipOutputStream zip, boolean excludeRootDir, ChecksumHandler checksumHandler) throws IOException {
         if (srcFile.isDirectory()) {
-            addFolderToZip(path, srcFile, zip, excludeRootDir);
-        } else {
-            try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(srcFile))) {
-                ZipEntry zipEntry = path.with(srcFile).asZipEntry();
-                zipEntry.setTime(srcFile.lastModified());
-                zip.putNextEntry(zipEntry);
-                inputStream.transferTo(zip);
-            }
+            addFolderToZip(path, srcFile, zip, excludeRootDir, checksumHandler);
+            return;
+        }
+        MessageDigest digest = checksumHandler == null ? null : md5();
+        try (InputStream inputStream = digesting(new BufferedInputStream(new FileInputStream(srcFile)), digest)) {
+            ZipEntry zipEntry = path.with(srcFile).asZipEntry();
+            zipEntry.setTime(srcFile.lastModified());
+            zip.putNextEntry(zipEntry);
+            inputStream.transferTo(zip);
+        }
+        if (checksumHandler != null) {
+            checksumHandler.handleChecksum(srcFile, HexFormat.of().formatHex(digest.digest()));
+        }
+    }
+
+    private static InputStream digesting(InputStream inputStream, MessageDigest digest) {
+        return digest == null ? inputStream : new DigestInputStream(inputStream, digest);
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -169,4 +198,8 @@ public class ZipUtil {
         void handleEntry(ZipEntry entry, InputStream stream) throws IOException;
     }
 
+    public interface ChecksumHandler {
+        void handleChecksum(File file, String md5) throws IOException;
+    }
+
 }
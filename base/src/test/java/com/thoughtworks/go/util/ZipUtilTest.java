@@ -25,8 +25,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -113,6 +118,21 @@ public class ZipUtilTest {
         assertThat(fileContent(actual2)).isEqualTo(fileContent(file2));
     }
 
+    @Test
+    void shouldHandOverChecksumsOfZippedFiles() throws Exception {
+        Map<String, String> checksums = new HashMap<>();
+        zipUtil.zip(srcDir, OutputStream.nullOutputStream(), Deflater.BEST_SPEED, (file, md5) -> checksums.put(file.getName(), md5));
+
+        assertThat(checksums)
+            .containsEntry("_file1", md5Hex("_file1"))
+            .containsEntry("_file2", md5Hex("_file2"))
+            .hasSize(2);
+    }
+
+    private static String md5Hex(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content.getBytes(UTF_8)));
+    }
+
     @Test
     void shouldZipFileContentsOnly() throws IOException {
         zipFile = zipUtil.zipFolderContents(srcDir, createFileInTempDir(), Deflater.NO_COMPRESSION);
@@ -22,24 +22,33 @@ package com.thoughtworks.go.util.command;
 
 import com.thoughtworks.go.util.Clock;
 import com.thoughtworks.go.util.SystemTimeClock;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Reads a stream (typically the output of a process) line by line and hands every line to a {@link StreamConsumer}.
+ * Pumpers started through {@link #pump(InputStream, StreamConsumer, String, Charset)} run on virtual threads, so that
+ * the two pumpers needed for every command line execution do not each cost a platform thread.
+ */
 public class StreamPumper implements Runnable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final Executor PUMPS = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stream-pumper-", 0).factory());
 
     private final Reader in;
     private final StreamConsumer streamConsumer;
     private final String prefix;
     private final Clock clock;
+    private final CountDownLatch completion = new CountDownLatch(1);
 
-    private long lastHeard;
-    private boolean completed;
+    private volatile long lastHeard;
+    private volatile boolean completed;
 
     private StreamPumper(InputStream in, StreamConsumer streamConsumer, String prefix, Charset encoding) {
         this(in, streamConsumer, prefix, encoding, new SystemTimeClock());
@@ -53,15 +62,44 @@ public class StreamPumper implements Runnable {
         this.in = new InputStreamReader(in, encoding);
     }
 
+    /**
+     * Reads the stream in bulk and splits it into lines the same way {@link java.io.BufferedReader#readLine()} does,
+     * i.e. on any of {@code \n}, {@code \r} or {@code \r\n}.
+     */
     @Override
     public void run() {
-        try (LineIterator lineIterator = IOUtils.lineIterator(in)) {
-            while (lineIterator.hasNext()) {
-                consumeLine(lineIterator.next());
+        try (Reader reader = in) {
+            char[] buffer = new char[BUFFER_SIZE];
+            StringBuilder line = new StringBuilder();
+            boolean skipLineFeed = false;
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    if (skipLineFeed && c == '\n') {
+                        skipLineFeed = false;
+                        lineStart = i + 1;
+                        continue;
+                    }
+                    skipLineFeed = false;
+                    if (c == '\n' || c == '\r') {
+                        line.append(buffer, lineStart, i - lineStart);
+                        consumeLine(line.toString());
+                        line.setLength(0);
+                        skipLineFeed = c == '\r';
+                        lineStart = i + 1;
+                    }
+                }
+                line.append(buffer, lineStart, read - lineStart);
+            }
+            if (!line.isEmpty()) {
+                consumeLine(line.toString());
             }
         } catch (Exception ignore) {
         } finally {
             completed = true;
+            completion.countDown();
         }
     }
 
@@ -77,18 +115,23 @@ public class StreamPumper implements Runnable {
     }
 
     public void readToEnd() {
-        while (!completed) {
+        boolean interrupted = false;
+        while (true) {
             try {
-                clock.sleepForMillis(100);
+                completion.await();
+                break;
             } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
+                interrupted = true;
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public static StreamPumper pump(InputStream stream, StreamConsumer streamConsumer, String prefix, Charset encoding) {
         StreamPumper pumper = new StreamPumper(stream, streamConsumer, prefix, encoding);
-        new Thread(pumper).start();
+        PUMPS.execute(pumper);
         return pumper;
     }
 
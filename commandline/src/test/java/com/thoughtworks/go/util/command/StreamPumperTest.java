@@ -85,6 +85,57 @@ public class StreamPumperTest {
         assertThat(pumper.didTimeout(1L, TimeUnit.SECONDS)).isFalse();
     }
 
+    @Test
+    public void shouldSplitLinesOnAnyLineTerminatorEvenAcrossReads() {
+        String longLine = "x".repeat(10_000);
+        String input = "line1\r\nline2\rline3\n\n" + longLine + "\r\nlast";
+        List<String> lines = new ArrayList<>();
+
+        StreamPumper pumper = StreamPumper.pump(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), lines::add, "", StandardCharsets.UTF_8);
+        pumper.readToEnd();
+
+        assertThat(lines).containsExactly("line1", "line2", "line3", "", longLine, "last");
+    }
+
+    @Test
+    public void shouldPrefixLinesAndCompleteAsSoonAsTheStreamEnds() {
+        List<String> lines = new ArrayList<>();
+
+        StreamPumper pumper = StreamPumper.pump(new ByteArrayInputStream("oops\n".getBytes(StandardCharsets.UTF_8)), lines::add, "STDERR: ", StandardCharsets.UTF_8);
+        pumper.readToEnd();
+
+        assertThat(lines).containsExactly("STDERR: oops");
+        assertThat(pumper.didTimeout(0L, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    public void shouldKeepWaitingForTheStreamToBeDrainedWhenInterrupted() throws Exception {
+        PipedOutputStream output = new PipedOutputStream();
+        InputStream inputStream = new PipedInputStream(output);
+        List<String> lines = new ArrayList<>();
+        StreamPumper pumper = StreamPumper.pump(inputStream, lines::add, "", StandardCharsets.UTF_8);
+
+        Thread writer = new Thread(() -> {
+            sleepQuietly(100);
+            try (output) {
+                output.write("late\n".getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+
+        Thread.currentThread().interrupt();
+        try {
+            pumper.readToEnd();
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+            writer.join();
+        }
+        assertThat(lines).containsExactly("late");
+    }
+
     /**
      * Used by the test to track whether a line actually got consumed or not.
      */
@@ -18,16 +18,22 @@ package com.thoughtworks.go.agent;
 import com.thoughtworks.go.agent.common.ssl.GoAgentServerHttpClient;
 import com.thoughtworks.go.config.AgentRegistry;
 import com.thoughtworks.go.domain.FetchHandler;
+import com.thoughtworks.go.domain.ResumableFetchHandler;
 import com.thoughtworks.go.util.GoConstants;
 import com.thoughtworks.go.util.PerfTimer;
+import org.apache.commons.io.function.IOConsumer;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.ByteArrayBody;
-import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.AbstractContentBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +42,7 @@ import org.springframework.stereotype.Component;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.util.Properties;
+import java.util.function.Supplier;
 
 import static com.thoughtworks.go.remote.StandardHeaders.*;
 
@@ -56,44 +63,57 @@ public class HttpService {
         this.agentRegistry = agentRegistry;
     }
 
-    public int upload(String url, long size, File artifactFile, Properties artifactChecksums) throws IOException {
-        String absolutePath = artifactFile.getAbsolutePath();
-        if (!artifactFile.exists()) {
-            String message = "Failed to find file [" + absolutePath + "]";
-            LOGGER.error(message);
-            throw new FileNotFoundException(message);
-        }
-        LOGGER.info("Uploading file [{}] to url [{}]", absolutePath, url);
+    /**
+     * Uploads an artifact that is written to the request body as it is sent, e.g. zipped on the fly, rather than read
+     * from a file. The checksums are only asked for once the artifact has been written, so they can be computed while
+     * writing it.
+     */
+    public int upload(String url, long size, String artifactName, IOConsumer<OutputStream> artifactWriter, Supplier<Properties> artifactChecksums) throws IOException {
+        LOGGER.info("Streaming artifact [{}] to url [{}]", artifactName, url);
 
-        try (CloseableHttpResponse response = execute(createHttpPostForUpload(url, size, artifactFile, artifactChecksums))) {
+        HttpPost filePost = httpClientFactory.createPost(url);
+        setSizeHeader(filePost, size);
+        filePost.setHeader(REQUEST_CONFIRM_MODIFICATION, "true");
+        filePost.setEntity(httpClientFactory.createStreamingMultipartRequestEntity(artifactName, artifactWriter, artifactChecksums));
+        try (CloseableHttpResponse response = execute(filePost)) {
             return response.getStatusLine().getStatusCode();
         } catch (IOException e) {
-            LOGGER.error("Error while uploading file [{}]", artifactFile.getAbsolutePath(), e);
+            LOGGER.error("Error while streaming artifact [{}]", artifactName, e);
             throw e;
         }
     }
 
-    private HttpPost createHttpPostForUpload(String url, long size, File artifactFile, Properties artifactChecksums) throws IOException {
-        HttpPost filePost = httpClientFactory.createPost(url);
-        setSizeHeader(filePost, size);
-        filePost.setHeader(REQUEST_CONFIRM_MODIFICATION, "true");
-        filePost.setEntity(httpClientFactory.createMultipartRequestEntity(artifactFile, artifactChecksums));
-        return filePost;
-    }
-
     public int download(String url, FetchHandler handler) throws IOException {
+        long resumeFrom = handler instanceof ResumableFetchHandler resumable ? resumable.resumeFrom() : 0;
         try {
             PerfTimer timer = PerfTimer.start(LOGGER, String.format("Downloading from url [%s]", url));
-            try (CloseableHttpResponse response = execute(httpClientFactory.createGet(url))) {
+            HttpGet get = httpClientFactory.createGet(url);
+            if (resumeFrom > 0) {
+                get.setHeader(HttpHeaders.RANGE, "bytes=" + resumeFrom + "-");
+                String lastModified = ((ResumableFetchHandler) handler).lastModified();
+                if (lastModified != null) {
+                    get.setHeader(HttpHeaders.IF_RANGE, lastModified);
+                }
+            }
+            try (CloseableHttpResponse response = execute(get)) {
                 timer.stop();
                 int statusCode = response.getStatusLine().getStatusCode();
 
                 if (statusCode == HttpURLConnection.HTTP_OK) {
+                    if (handler instanceof ResumableFetchHandler resumable) {
+                        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+                        resumable.useLastModified(lastModified == null ? null : lastModified.getValue());
+                    }
                     if (response.getEntity() != null) {
                         try (InputStream is = response.getEntity().getContent()) {
                             handler.handle(is);
                         }
                     }
+                } else if (statusCode == HttpURLConnection.HTTP_PARTIAL && resumeFrom > 0) {
+                    verifyContentRangeStartsAt(response, resumeFrom, url);
+                    try (InputStream is = response.getEntity().getContent()) {
+                        ((ResumableFetchHandler) handler).handle(is, resumeFrom);
+                    }
                 }
                 return statusCode;
             }
@@ -103,6 +123,13 @@ public class HttpService {
         }
     }
 
+    private static void verifyContentRangeStartsAt(CloseableHttpResponse response, long offset, String url) throws IOException {
+        Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (contentRange == null || !contentRange.getValue().startsWith("bytes " + offset + "-") || response.getEntity() == null) {
+            throw new IOException(String.format("Server did not resume the download of [%s] from byte %s", url, offset));
+        }
+    }
+
     public CloseableHttpResponse execute(HttpRequestBase httpMethod) throws IOException {
         @SuppressWarnings("resource") // Believe this is intentional to re-use the client
         GoAgentServerHttpClient client = httpClientFactory.httpClient();
@@ -141,15 +168,45 @@ public class HttpService {
             return new HttpGet(url);
         }
 
-        public HttpEntity createMultipartRequestEntity(File artifact, Properties artifactChecksums) throws IOException {
+        public HttpEntity createStreamingMultipartRequestEntity(String artifactName, IOConsumer<OutputStream> artifactWriter, Supplier<Properties> artifactChecksums) {
             MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
-            entityBuilder.addPart(GoConstants.ZIP_MULTIPART_FILENAME, new FileBody(artifact));
-            if (artifactChecksums != null) {
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                artifactChecksums.store(outputStream, "");
-                entityBuilder.addPart(GoConstants.CHECKSUM_MULTIPART_FILENAME, new ByteArrayBody(outputStream.toByteArray(), "checksum_file"));
-            }
+            entityBuilder.addPart(GoConstants.ZIP_MULTIPART_FILENAME, new StreamedBody(artifactName, artifactWriter));
+            entityBuilder.addPart(GoConstants.CHECKSUM_MULTIPART_FILENAME, new StreamedBody("checksum_file", out -> artifactChecksums.get().store(out, "")));
             return entityBuilder.build();
         }
     }
+
+    /**
+     * A multipart body of unknown length, which makes the request chunked instead of requiring the content upfront.
+     */
+    private static class StreamedBody extends AbstractContentBody {
+        private final String filename;
+        private final IOConsumer<OutputStream> writer;
+
+        StreamedBody(String filename, IOConsumer<OutputStream> writer) {
+            super(ContentType.DEFAULT_BINARY);
+            this.filename = filename;
+            this.writer = writer;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            writer.accept(CloseShieldOutputStream.wrap(out));
+        }
+
+        @Override
+        public String getTransferEncoding() {
+            return MIME.ENC_BINARY;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+    }
 }
@@ -18,6 +18,7 @@ package com.thoughtworks.go.domain;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.*;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 
@@ -55,4 +56,16 @@ public class ArtifactMd5Checksums implements Serializable {
     public String md5For(String artifactPath) {
         return checksumProperties.getProperty(artifactPath);
     }
+
+    /**
+     * @return the paths of all the artifact files with a checksum that live (at any depth) in the given directory,
+     * which makes the checksum file usable as a manifest of the directory
+     */
+    public List<String> pathsUnder(String directory) {
+        String prefix = directory.endsWith("/") ? directory : directory + "/";
+        return checksumProperties.stringPropertyNames().stream()
+            .filter(path -> path.startsWith(prefix))
+            .sorted()
+            .toList();
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams raw byte ranges of a console log file, keeping track of the byte offset rather than the line number. Unlike
+ * {@link ConsoleStreamer}, the content is never decoded; chunks are read straight from a {@link FileChannel} into a
+ * single reusable buffer and always end on a line boundary, so that a line (or a multibyte character) is never split
+ * across two chunks unless it is longer than the buffer itself.
+ */
+public class ConsoleByteStreamer implements AutoCloseable {
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * @param offset the byte offset of the chunk within the console log
+         * @param chunk  the bytes read; only valid for the duration of the call as the underlying buffer is reused
+         */
+        void accept(long offset, ByteBuffer chunk) throws IOException;
+    }
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private FileChannel channel;
+    private long offset;
+
+    public ConsoleByteStreamer(Path path, long startOffset, int chunkSize) {
+        this.path = path;
+        this.offset = Math.max(startOffset, 0L);
+        this.buffer = ByteBuffer.allocate(chunkSize);
+    }
+
+    /**
+     * Hands every complete line appended since the last invocation to {@code action}, one chunk at a time.
+     *
+     * @param action              receives each chunk
+     * @param includePartialLine  whether to also send trailing content that is not terminated by a newline yet; this
+     *                            should only be set once the log is known not to grow any further
+     * @return the number of bytes streamed by this invocation
+     * @throws IOException if the file does not exist or is otherwise not readable
+     */
+    public long stream(ChunkConsumer action, boolean includePartialLine) throws IOException {
+        long streamed = 0L;
+        long length;
+        while ((length = streamChunk(action, includePartialLine)) > 0) {
+            streamed += length;
+        }
+        return streamed;
+    }
+
+    /**
+     * Same as {@link #stream(ChunkConsumer, boolean)}, but hands at most one chunk to {@code action}.
+     *
+     * @return the number of bytes streamed by this invocation, 0 if there was nothing (complete) to read
+     */
+    public int streamChunk(ChunkConsumer action, boolean includePartialLine) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        buffer.clear();
+        int read = channel.read(buffer, offset);
+        if (read <= 0) {
+            return 0;
+        }
+
+        int length = lengthUpToLastNewline(buffer, read);
+        if (length == 0) {
+            boolean bufferFull = read == buffer.capacity();
+            if (!bufferFull && !includePartialLine) {
+                return 0;
+            }
+            length = read;
+        }
+
+        action.accept(offset, buffer.flip().limit(length));
+        offset += length;
+        return length;
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Moves the position from which the next chunk is read, e.g. when chunks were served from elsewhere in the meantime.
+     */
+    public void seek(long offset) {
+        this.offset = Math.max(offset, 0L);
+    }
+
+    private static int lengthUpToLastNewline(ByteBuffer buffer, int read) {
+        byte[] bytes = buffer.array();
+        for (int i = read - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        channel = null;
+    }
+}
@@ -81,6 +81,14 @@ public class DirHandler implements FetchHandler {
         this.artifactMd5Checksums = artifactMd5Checksums;
     }
 
+    String srcFile() {
+        return srcFile;
+    }
+
+    File destOnAgent() {
+        return destOnAgent;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,160 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import com.thoughtworks.go.work.GoPublisher;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.thoughtworks.go.util.ExceptionUtils.bomb;
+import static java.lang.String.format;
+
+/**
+ * Fetches a directory artifact file by file instead of as a single zip, using the checksum file of the job as the
+ * manifest of the directory. Several files are downloaded at a time, each one is verified against its checksum as it
+ * is written, interrupted downloads are resumed rather than restarted, and files that are already in place with the
+ * right checksum (e.g. from an earlier attempt) are not downloaded again.
+ */
+public class ParallelDirDownload {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDirDownload.class);
+
+    private final DirHandler dirHandler;
+    private final Executor downloaders;
+
+    /**
+     * @param downloaders the threads to download on, which bound how many files are downloaded at a time and may be
+     *                    shared with other fetches
+     */
+    public ParallelDirDownload(DirHandler dirHandler, Executor downloaders) {
+        this.dirHandler = dirHandler;
+        this.downloaders = downloaders;
+    }
+
+    /**
+     * @return false, without fetching anything, if the checksum file does not list the contents of the directory; the
+     * directory should then be fetched as a zip
+     */
+    public boolean perform(DownloadAction downloadAction, String baseRemoteUrl, JobIdentifier jobIdentifier,
+                           ArtifactMd5Checksums artifactMd5Checksums, GoPublisher goPublisher) throws InterruptedException {
+        String srcDir = Strings.CS.removeStart(FilenameUtils.separatorsToUnix(new File(dirHandler.srcFile()).getPath()), "/");
+        if (artifactMd5Checksums == null || srcDir.isEmpty() || srcDir.equals(".")) {
+            return false;
+        }
+        List<String> paths = artifactMd5Checksums.pathsUnder(srcDir);
+        if (paths.isEmpty()) {
+            return false;
+        }
+
+        String parent = new File(srcDir).getParent();
+        int relativePathStart = parent == null ? 0 : FilenameUtils.separatorsToUnix(parent).length() + 1;
+        Path destination = dirHandler.destOnAgent().toPath().toAbsolutePath().normalize();
+
+        LOG.info("[Agent Fetch Artifact] Downloading {} files from '{}' to '{}'", paths.size(), srcDir, destination);
+        long before = System.currentTimeMillis();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<Future<?>> downloads = new ArrayList<>();
+        try {
+            for (String path : paths) {
+                File artifact = destinationOf(destination, path.substring(relativePathStart));
+                if (alreadyFetched(artifact, artifactMd5Checksums.md5For(path))) {
+                    continue;
+                }
+                ResumableFileHandler handler = new ResumableFileHandler(path, artifact);
+                handler.useArtifactMd5Checksums(artifactMd5Checksums);
+                String url = handler.url(baseRemoteUrl, jobIdentifier.artifactLocator(path));
+                FutureTask<Void> download = new FutureTask<>(() -> {
+                    if (!abandoned.get()) {
+                        downloadAction.perform(url, handler);
+                    }
+                    return null;
+                });
+                downloads.add(download);
+                downloaders.execute(download);
+            }
+            for (Future<?> download : downloads) {
+                download.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // downloads which have not started yet are skipped, and since reading from the server does not respond to
+            // interrupts, those already under way are waited for rather than left writing to the destination after
+            // the fetch is over
+            abandoned.set(true);
+            awaitAll(downloads);
+        }
+        LOG.info("[Agent Fetch Artifact] Downloading a directory from '{}' to '{}'. Took: {} ms", srcDir, destination, System.currentTimeMillis() - before);
+        goPublisher.taggedConsumeLineWithPrefix(GoPublisher.OUT, format("Saved artifact to [%s] after verifying the integrity of its contents.", dirHandler.destOnAgent()));
+        return true;
+    }
+
+    private static void awaitAll(List<Future<?>> downloads) {
+        boolean interrupted = false;
+        for (Future<?> download : downloads) {
+            while (true) {
+                try {
+                    download.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static File destinationOf(Path destination, String relativePath) {
+        Path file = destination.resolve(relativePath).normalize();
+        if (!file.startsWith(destination)) {
+            throw bomb(format("Artifact [%s] would be saved outside of [%s]", relativePath, destination));
+        }
+        return file.toFile();
+    }
+
+    private static boolean alreadyFetched(File artifact, String md5) {
+        if (!artifact.isFile()) {
+            return false;
+        }
+        try (InputStream is = Files.newInputStream(artifact.toPath())) {
+            return DigestUtils.md5Hex(is).equals(md5);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
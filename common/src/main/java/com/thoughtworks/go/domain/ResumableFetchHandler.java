@@ -0,0 +1,46 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link FetchHandler} that keeps what it received of an earlier, interrupted download, so that only the rest of the
+ * file has to be requested (as a byte range) when the download is retried.
+ */
+public interface ResumableFetchHandler extends FetchHandler {
+    /**
+     * @return the number of bytes already received, from which the download should be resumed; 0 to fetch it all
+     */
+    long resumeFrom();
+
+    /**
+     * @return the {@code Last-Modified} date the server sent along with the bytes already received, which is sent as
+     * {@code If-Range} so that the server sends the whole file instead if it changed since; null if not known
+     */
+    String lastModified();
+
+    /**
+     * Remembers the {@code Last-Modified} date the server sent along with the whole file, which may be null.
+     */
+    void useLastModified(String lastModified);
+
+    /**
+     * Handles the remainder of the file, when the server honoured the request to resume from {@code offset}.
+     */
+    void handle(InputStream stream, long offset) throws IOException;
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import com.thoughtworks.go.work.GoPublisher;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Objects;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Downloads a single file of a directory artifact to a {@code .part} file next to its destination, computing its MD5
+ * as it is written. The file is only moved to its destination once its MD5 matches the one in the checksum file; a
+ * download that was cut off is resumed from the end of the {@code .part} file.
+ */
+public class ResumableFileHandler implements ResumableFetchHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(ResumableFileHandler.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String srcFile;
+    private final File artifact;
+    private final File partial;
+    private ArtifactMd5Checksums artifactMd5Checksums;
+    private String downloadedMd5;
+    private String lastModified;
+
+    public ResumableFileHandler(String srcFile, File artifact) {
+        this.srcFile = srcFile;
+        this.artifact = artifact;
+        this.partial = new File(artifact.getPath() + ".part");
+    }
+
+    @Override
+    public String url(String remoteHost, String workingUrl) {
+        return format("%s/remoting/files/%s", remoteHost, workingUrl);
+    }
+
+    @Override
+    public long resumeFrom() {
+        return partial.isFile() ? partial.length() : 0;
+    }
+
+    @Override
+    public String lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public void useLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public void handle(InputStream stream) throws IOException {
+        handle(stream, 0);
+    }
+
+    @Override
+    public void handle(InputStream stream, long offset) throws IOException {
+        downloadedMd5 = null;
+        Files.createDirectories(partial.getAbsoluteFile().getParentFile().toPath());
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(partial.toPath(), CREATE, READ, WRITE)) {
+            if (offset > 0) {
+                LOG.info("[Agent Fetch Artifact] Resuming download of '{}' to '{}' from byte {}", srcFile, artifact.getAbsolutePath(), offset);
+                digestExisting(channel, offset, digest, buffer);
+            }
+            channel.truncate(offset);
+            channel.position(offset);
+
+            int read;
+            while ((read = stream.read(buffer.array())) != -1) {
+                digest.update(buffer.array(), 0, read);
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        downloadedMd5 = Hex.encodeHexString(digest.digest());
+    }
+
+    private void digestExisting(FileChannel channel, long length, MessageDigest digest, ByteBuffer buffer) throws IOException {
+        long position = 0;
+        while (position < length) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException(format("Partially downloaded file '%s' is shorter than expected", partial));
+            }
+            digest.update(buffer.array(), 0, read);
+            position += read;
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public boolean handleResult(int httpCode, GoPublisher goPublisher) {
+        if (httpCode == HttpURLConnection.HTTP_OK || httpCode == HttpURLConnection.HTTP_PARTIAL) {
+            verifyAndMoveToDestination(goPublisher);
+            return true;
+        }
+        if (httpCode == 416) { // Range Not Satisfiable: what was kept is not a prefix of the file on the server
+            deletePartial();
+        }
+        return false;
+    }
+
+    private void verifyAndMoveToDestination(GoPublisher goPublisher) {
+        String expectedMd5 = artifactMd5Checksums == null ? null : artifactMd5Checksums.md5For(srcFile);
+        if (expectedMd5 == null || !expectedMd5.equals(downloadedMd5)) {
+            deletePartial();
+            goPublisher.taggedConsumeLineWithPrefix(GoPublisher.ERR,
+                format("[ERROR] Verification of the integrity of the artifact [%s] failed. The artifact file on the server may have changed since its original upload.", srcFile));
+            throw new RuntimeException(format("Artifact download failed for [%s]", srcFile));
+        }
+        try {
+            Files.move(partial.toPath(), artifact.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(format("Could not move downloaded artifact [%s] to [%s]", srcFile, artifact), e);
+        }
+    }
+
+    private void deletePartial() {
+        try {
+            Files.deleteIfExists(partial.toPath());
+        } catch (IOException e) {
+            LOG.warn("[Agent Fetch Artifact] Could not delete partially downloaded file '{}'", partial, e);
+        }
+    }
+
+    @Override
+    public void useArtifactMd5Checksums(ArtifactMd5Checksums artifactMd5Checksums) {
+        this.artifactMd5Checksums = artifactMd5Checksums;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof ResumableFileHandler that &&
+            Objects.equals(artifact, that.artifact) &&
+            Objects.equals(srcFile, that.srcFile);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(srcFile, artifact);
+    }
+}
@@ -22,8 +22,10 @@ import com.thoughtworks.go.plugin.access.pluggabletask.TaskExtension;
 import com.thoughtworks.go.plugin.infra.PluginRequestProcessorRegistry;
 import com.thoughtworks.go.util.command.EnvironmentVariableContext;
 import com.thoughtworks.go.work.DefaultGoPublisher;
+import com.thoughtworks.go.work.GoPublisher;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
 
 public class FetchArtifactBuilder extends Builder {
     private final JobIdentifier jobIdentifier;
@@ -48,8 +50,18 @@ public class FetchArtifactBuilder extends Builder {
         publisher.fetch(this);
     }
 
-    public void fetch(DownloadAction downloadAction, URLService urlService) throws Exception {
+    /**
+     * Fetches the artifact after its checksum file. A directory is fetched file by file on {@code downloaders} when
+     * the checksum file lists its contents, and as a single zip otherwise or if there are no {@code downloaders}.
+     */
+    public void fetch(DownloadAction downloadAction, URLService urlService, GoPublisher goPublisher, Executor downloaders) throws Exception {
         downloadChecksumFile(downloadAction, urlService.baseRemoteURL());
+        if (downloaders != null && handler instanceof DirHandler dirHandler) {
+            ArtifactMd5Checksums artifactMd5Checksums = checksumFileHandler.getArtifactMd5Checksums();
+            if (new ParallelDirDownload(dirHandler, downloaders).perform(downloadAction, urlService.baseRemoteURL(), jobIdentifier, artifactMd5Checksums, goPublisher)) {
+                return;
+            }
+        }
         downloadArtifact(downloadAction, urlService.baseRemoteURL());
     }
 
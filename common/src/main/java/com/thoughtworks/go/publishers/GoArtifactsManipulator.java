@@ -24,11 +24,10 @@ import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.ConsoleOutputTransmitter;
 import com.thoughtworks.go.remote.work.RemoteConsoleAppender;
 import com.thoughtworks.go.util.ArtifactUtil;
-import com.thoughtworks.go.util.FileUtil;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.SystemTimeClock;
 import com.thoughtworks.go.util.ZipUtil;
 import com.thoughtworks.go.work.DefaultGoPublisher;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.Strings;
@@ -38,12 +37,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.nio.charset.Charset;
-import java.util.Collection;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.Deflater;
 
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
@@ -59,6 +58,7 @@ public class GoArtifactsManipulator {
     private final HttpService httpService;
     private final URLService urlService;
     private final ZipUtil zipUtil;
+    private ExecutorService fetchArtifactDownloaders; // guarded by this, created on first use
 
     @Autowired
     public GoArtifactsManipulator(HttpService httpService, URLService urlService, ZipUtil zipUtil) {
@@ -77,14 +77,9 @@ public class GoArtifactsManipulator {
         int publishingAttempts = 0;
         Throwable lastException = null;
         while (publishingAttempts < PUBLISH_MAX_RETRIES) {
-            File tmpDir = null;
             try {
                 publishingAttempts++;
 
-                tmpDir = FileUtil.createTempFolder();
-                File dataToUpload = new File(tmpDir, source.getName() + ".zip");
-                zipUtil.zip(source, dataToUpload, Deflater.BEST_SPEED);
-
                 long size;
                 if (source.isDirectory()) {
                     size = FileUtils.sizeOfDirectory(source);
@@ -97,7 +92,11 @@ public class GoArtifactsManipulator {
                 String normalizedDestPath = FilenameUtils.separatorsToUnix(destPath);
                 String url = urlService.getUploadUrlOfAgent(jobIdentifier, normalizedDestPath, publishingAttempts);
 
-                int statusCode = httpService.upload(url, size, dataToUpload, artifactChecksums(source, normalizedDestPath));
+                // zip straight into the request body, computing the checksums of the files as they are zipped
+                Properties checksums = new Properties();
+                int statusCode = httpService.upload(url, size, source.getName() + ".zip",
+                        out -> zipUtil.zip(source, out, Deflater.BEST_SPEED, (file, md5) -> checksums.setProperty(checksumKey(source, file, normalizedDestPath), md5)),
+                        () -> checksums);
 
                 if (statusCode == HttpURLConnection.HTTP_ENTITY_TOO_LARGE) {
                     String message = String.format("Artifact upload for file %s (Size: %s) was denied by the server. This usually happens when server runs out of disk space.",
@@ -116,42 +115,14 @@ public class GoArtifactsManipulator {
                 LOGGER.error(message, e);
                 goPublisher.taggedConsumeLineWithPrefix(PUBLISH_ERR, message);
                 lastException = e;
-            } finally {
-                FileUtils.deleteQuietly(tmpDir);
             }
         }
         throw new RuntimeException(lastException);
     }
 
-    private Properties artifactChecksums(File source, String destPath) throws IOException {
-        if (source.isDirectory()) {
-            return computeChecksumForContentsOfDirectory(source, destPath);
-        }
-
-        Properties properties;
-        try (FileInputStream inputStream = new FileInputStream(source)) {
-            properties = computeChecksumForFile(source.getName(), DigestUtils.md5Hex(inputStream), destPath);
-        }
-        return properties;
-    }
-
-    private Properties computeChecksumForContentsOfDirectory(File directory, String destPath) throws IOException {
-        Collection<File> fileStructure = FileUtils.listFiles(directory, null, true);
-        Properties checksumProperties = new Properties();
-        for (File file : fileStructure) {
-            String filePath = Strings.CS.removeStart(file.getAbsolutePath(), directory.getParentFile().getAbsolutePath());
-            try (FileInputStream inputStream = new FileInputStream(file)) {
-                checksumProperties.setProperty(getEffectiveFileName(destPath, FilenameUtils.separatorsToUnix(filePath)), DigestUtils.md5Hex(inputStream));
-            }
-        }
-        return checksumProperties;
-    }
-
-    private Properties computeChecksumForFile(String sourceName, String md5, String destPath) {
-        String effectiveFileName = getEffectiveFileName(destPath, sourceName);
-        Properties properties = new Properties();
-        properties.setProperty(effectiveFileName, md5);
-        return properties;
+    private String checksumKey(File source, File file, String destPath) {
+        String filePath = Strings.CS.removeStart(file.getAbsolutePath(), source.getAbsoluteFile().getParentFile().getAbsolutePath());
+        return getEffectiveFileName(destPath, FilenameUtils.separatorsToUnix(filePath));
     }
 
     private String getEffectiveFileName(String computedDestPath, String filePath) {
@@ -169,7 +140,8 @@ public class GoArtifactsManipulator {
             String fetchMsg = String.format("Fetching artifact [%s] from [%s]", fetchArtifactBuilder.getSrc(),
                     fetchArtifactBuilder.jobLocatorForDisplay());
             goPublisher.taggedConsumeLineWithPrefix(DefaultGoPublisher.OUT, fetchMsg);
-            fetchArtifactBuilder.fetch(new DownloadAction(httpService, goPublisher, new SystemTimeClock()), urlService);
+            fetchArtifactBuilder.fetch(new DownloadAction(httpService, goPublisher, new SystemTimeClock()), urlService, goPublisher,
+                    fetchArtifactDownloaders());
         } catch (Exception e) {
             String fetchMsg = String.format("Failed to save artifact [%s] to [%s]",
                     fetchArtifactBuilder.getSrc(), fetchArtifactBuilder.getDest());
@@ -179,6 +151,21 @@ public class GoArtifactsManipulator {
         }
     }
 
+    /**
+     * @return the threads that the files of folders are fetched on, shared by all fetches so that no more than the
+     * configured number of files are downloaded at a time; null if folders should be fetched as a zip instead
+     */
+    private synchronized Executor fetchArtifactDownloaders() {
+        int parallelDownloads = new SystemEnvironment().get(SystemEnvironment.GO_FETCH_ARTIFACT_PARALLEL_DOWNLOADS);
+        if (parallelDownloads <= 0) {
+            return null;
+        }
+        if (fetchArtifactDownloaders == null) {
+            fetchArtifactDownloaders = Executors.newFixedThreadPool(parallelDownloads, Thread.ofPlatform().name("fetch-artifact-", 0).daemon().factory());
+        }
+        return fetchArtifactDownloaders;
+    }
+
     private String getDestPath(String file) {
         if (isEmpty(file)) {
             return "[defaultRoot]";
@@ -16,7 +16,21 @@
 package com.thoughtworks.go.remote.work;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public interface ConsoleAppender {
     void append(String content) throws IOException;
+
+    /**
+     * Appends console output that has already been encoded using {@link #charset()}.
+     */
+    default void append(byte[] content, int offset, int length) throws IOException {
+        append(new String(content, offset, length, charset()));
+    }
+
+    default Charset charset() {
+        return UTF_8;
+    }
 }
@@ -17,36 +17,57 @@ package com.thoughtworks.go.remote.work;
 
 import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.command.TaggedStreamConsumer;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-
-import static java.lang.String.format;
 
+/**
+ * Buffers console output as encoded bytes and periodically appends it to the server in one batch. Lines are encoded
+ * once, as they are consumed, into a pending buffer which is swapped with a spare one on every flush, so that
+ * producers never wait for an upload to complete. When the server cannot keep up and the pending buffer is full,
+ * producers are blocked for a while rather than output being discarded silently; only if that does not help are lines
+ * dropped, and the number of dropped lines is reported in the console log itself.
+ */
 public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ConsoleOutputTransmitter.class);
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+    private static final long MAX_BLOCK_MILLIS = 30_000;
+    private static final int MAX_RETAINED_BUFFER_BYTES = 1024 * 1024;
 
-    private final CircularFifoQueue<String> buffer = new CircularFifoQueue<>(10 * 1024); // maximum 10k lines
     private final ConsoleAppender consoleAppender;
+    private final Charset charset;
     private final ScheduledThreadPoolExecutor executor;
+    private final int maxPendingBytes;
+    private final long maxBlockMillis;
+
+    private final Object flushLock = new Object();
+    private PendingBytes pending = new PendingBytes(); // guarded by this
+    private PendingBytes spare = new PendingBytes(); // guarded by this
+    private long droppedLines; // guarded by this
 
     public ConsoleOutputTransmitter(ConsoleAppender consoleAppender) {
         this(consoleAppender, new SystemEnvironment().getConsolePublishIntervalSeconds(), TimeUnit.SECONDS, new ScheduledThreadPoolExecutor(1));
     }
 
     ConsoleOutputTransmitter(ConsoleAppender consoleAppender, long consolePublishInterval, TimeUnit consumePublishIntervalUnit, ScheduledThreadPoolExecutor scheduledThreadPoolExecutor) {
+        this(consoleAppender, consolePublishInterval, consumePublishIntervalUnit, scheduledThreadPoolExecutor, MAX_PENDING_BYTES, MAX_BLOCK_MILLIS);
+    }
+
+    ConsoleOutputTransmitter(ConsoleAppender consoleAppender, long consolePublishInterval, TimeUnit consumePublishIntervalUnit, ScheduledThreadPoolExecutor scheduledThreadPoolExecutor,
+                             int maxPendingBytes, long maxBlockMillis) {
         this.consoleAppender = consoleAppender;
+        this.charset = consoleAppender.charset();
         this.executor = scheduledThreadPoolExecutor;
+        this.maxPendingBytes = maxPendingBytes;
+        this.maxBlockMillis = maxBlockMillis;
         executor.scheduleAtFixedRate(this, 0L, consolePublishInterval, consumePublishIntervalUnit);
     }
 
@@ -57,14 +78,50 @@ public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Run
 
     @Override
     public void taggedConsumeLine(String tag, String line) {
-        if (tag == null) {
-            tag = "  ";
+        byte[] bytes = encode(tag == null ? "  " : tag, line);
+        synchronized (this) {
+            if (!awaitCapacity(bytes.length)) {
+                droppedLines++;
+                return;
+            }
+            pending.write(bytes, 0, bytes.length);
         }
-        String taggedDate = format("%s|%s", tag, FORMATTER.format(LocalTime.now()));
-        String logLine = format("%s %s", taggedDate, line).replace("\n", "\n" + taggedDate + " ");
-        synchronized (buffer) {
-            buffer.add(logLine);
+    }
+
+    private boolean awaitCapacity(int length) {
+        if (droppedLines > 0) {
+            // already dropping since the last flush, waiting again would only slow the build down further
+            return pending.size() + length <= maxPendingBytes;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+        long remaining;
+        while (pending.size() > 0 && pending.size() + length > maxPendingBytes) {
+            if ((remaining = deadline - System.nanoTime()) <= 0) {
+                return false;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
         }
+        return true;
+    }
+
+    private byte[] encode(String tag, String line) {
+        StringBuilder prefix = new StringBuilder(tag.length() + 14).append(tag).append('|');
+        FORMATTER.formatTo(LocalTime.now(), prefix);
+        prefix.append(' ');
+
+        StringBuilder logLine = new StringBuilder(prefix.length() + line.length() + 1).append(prefix);
+        int from = 0;
+        int newline;
+        while ((newline = line.indexOf('\n', from)) >= 0) {
+            logLine.append(line, from, newline + 1).append(prefix);
+            from = newline + 1;
+        }
+        return logLine.append(line, from, line.length()).append('\n').toString().getBytes(charset);
     }
 
     @Override
@@ -77,23 +134,40 @@ public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Run
     }
 
     public void flushToServer() {
-        if (buffer.isEmpty()) {
-            return;
-        }
+        synchronized (flushLock) {
+            PendingBytes toFlush;
+            synchronized (this) {
+                if (pending.size() == 0 && droppedLines == 0) {
+                    return;
+                }
+                if (droppedLines > 0) {
+                    byte[] notice = encode(NOTICE, droppedLines + " line(s) of console output were dropped as they could not be sent to the server in time");
+                    pending.write(notice, 0, notice.length);
+                    droppedLines = 0;
+                }
+                toFlush = pending;
+                pending = spare;
+                spare = null;
+                notifyAll();
+            }
 
-        List<String> toFlush;
-        synchronized (buffer) {
-            toFlush = new ArrayList<>(buffer);
-            buffer.clear();
-        }
-        try {
-            consoleAppender.append(toFlush.stream().collect(Collectors.joining("\n", "", "\n")));
-        } catch (IOException e) {
-            LOGGER.warn("Could not send console output to server", e);
-            synchronized (buffer) {
-                toFlush.addAll(buffer);
-                buffer.clear();
-                buffer.addAll(toFlush);
+            try {
+                consoleAppender.append(toFlush.bytes(), 0, toFlush.size());
+                toFlush.reset();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not send console output to server", e);
+                synchronized (this) {
+                    // keep the unsent output ahead of anything consumed in the meantime
+                    toFlush.write(pending.bytes(), 0, pending.size());
+                    pending.reset();
+                    PendingBytes consumedMeanwhile = pending;
+                    pending = toFlush;
+                    toFlush = consumedMeanwhile;
+                }
+            } finally {
+                synchronized (this) {
+                    spare = toFlush.size() == 0 && toFlush.bytes().length > MAX_RETAINED_BUFFER_BYTES ? new PendingBytes() : toFlush;
+                }
             }
         }
     }
@@ -103,4 +177,14 @@ public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Run
         flushToServer();
         executor.shutdown();
     }
+
+    private static class PendingBytes extends ByteArrayOutputStream {
+        PendingBytes() {
+            super(8 * 1024);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
 }
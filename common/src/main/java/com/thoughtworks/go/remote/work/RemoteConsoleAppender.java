@@ -16,18 +16,24 @@
 package com.thoughtworks.go.remote.work;
 
 import com.thoughtworks.go.agent.HttpService;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+import static com.thoughtworks.go.remote.StandardHeaders.REQUEST_CONSOLE_ENCODING;
 
 public class RemoteConsoleAppender implements ConsoleAppender {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RemoteConsoleAppender.class);
+    static final int MIN_GZIP_SIZE = 1024;
 
     private final String consoleUri;
     private final HttpService httpService;
@@ -41,9 +47,26 @@ public class RemoteConsoleAppender implements ConsoleAppender {
 
     @Override
     public void append(String content) throws IOException {
+        byte[] bytes = content.getBytes(charset);
+        append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Larger batches are gzipped; the server inflates them before appending to the console log. A dedicated header is
+     * used instead of {@code Content-Encoding} so that nothing between the agent and the artifacts controller inflates
+     * the request on its behalf.
+     */
+    @Override
+    public void append(byte[] content, int offset, int length) throws IOException {
         LOGGER.debug("Appending console to URL -> {}", consoleUri);
         HttpPut putMethod = new HttpPut(consoleUri);
-        StringEntity entity = new StringEntity(content, charset);
+        HttpEntity entity;
+        if (length >= MIN_GZIP_SIZE) {
+            entity = new ByteArrayEntity(gzip(content, offset, length));
+            putMethod.setHeader(REQUEST_CONSOLE_ENCODING, "gzip");
+        } else {
+            entity = new ByteArrayEntity(content, offset, length);
+        }
         putMethod.setEntity(entity);
         HttpService.setSizeHeader(putMethod, entity.getContentLength());
         try (CloseableHttpResponse response = httpService.execute(putMethod)) {
@@ -52,4 +75,17 @@ public class RemoteConsoleAppender implements ConsoleAppender {
             }
         }
     }
+
+    @Override
+    public Charset charset() {
+        return charset;
+    }
+
+    private static byte[] gzip(byte[] content, int offset, int length) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(length / 4, 512));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+            gzip.write(content, offset, length);
+        }
+        return compressed.toByteArray();
+    }
 }
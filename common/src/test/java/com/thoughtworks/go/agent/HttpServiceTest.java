@@ -18,31 +18,35 @@ package com.thoughtworks.go.agent;
 import com.thoughtworks.go.agent.common.ssl.GoAgentServerHttpClient;
 import com.thoughtworks.go.config.AgentRegistry;
 import com.thoughtworks.go.domain.FetchHandler;
+import com.thoughtworks.go.domain.ResumableFetchHandler;
+import com.thoughtworks.go.domain.ResumableFileHandler;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicStatusLine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.Properties;
 
-import static com.thoughtworks.go.remote.StandardHeaders.*;
-import static org.junit.jupiter.api.Assertions.fail;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 public class HttpServiceTest {
-    @TempDir
-    public File folderToSaveDownloadFiles;
-
     private HttpService service;
     private HttpService.HttpClientFactory httpClientFactory;
     private GoAgentServerHttpClient httpClient;
@@ -60,35 +64,32 @@ public class HttpServiceTest {
     }
 
     @Test
-    public void shouldPostArtifactsAlongWithMD5() throws IOException, URISyntaxException {
-        File uploadingFile = mock(File.class);
-        java.util.Properties checksums = new java.util.Properties();
-
-        String uploadUrl = "http://url";
+    public void shouldDownloadArtifact() throws IOException, URISyntaxException {
+        String url = "http://blah";
+        FetchHandler fetchHandler = mock(FetchHandler.class);
 
-        HttpPost mockPostMethod = mock(HttpPost.class);
+        HttpGet mockGetMethod = mock(HttpGet.class);
         CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        BasicHttpEntity basicHttpEntity = new BasicHttpEntity();
+        ByteArrayInputStream instream = new ByteArrayInputStream(new byte[]{});
+        basicHttpEntity.setContent(instream);
+        when(response.getEntity()).thenReturn(basicHttpEntity);
         when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
-        when(httpClient.execute(mockPostMethod)).thenReturn(response);
-
-        when(uploadingFile.exists()).thenReturn(true);
-        when(httpClientFactory.createPost(uploadUrl)).thenReturn(mockPostMethod);
-        when(mockPostMethod.getURI()).thenReturn(new URI(uploadUrl));
+        when(httpClient.execute(mockGetMethod)).thenReturn(response);
+        when(httpClientFactory.createGet(url)).thenReturn(mockGetMethod);
 
-        service.upload(uploadUrl, 100L, uploadingFile, checksums);
+        when(mockGetMethod.getURI()).thenReturn(new URI(url));
 
-        verify(mockPostMethod).setHeader(REQUEST_ARTIFACT_PAYLOAD_SIZE, "100");
-        verify(mockPostMethod).setHeader(REQUEST_CONFIRM_MODIFICATION, "true");
-        verify(mockPostMethod).setHeader(REQUEST_UUID, "some-guid");
-        verify(mockPostMethod).setHeader(REQUEST_AUTH, "some-token");
-        verify(httpClientFactory).createMultipartRequestEntity(uploadingFile, checksums);
-        verify(httpClient).execute(mockPostMethod);
+        service.download(url, fetchHandler);
+        verify(httpClient).execute(mockGetMethod);
+        verify(fetchHandler).handle(instream);
     }
 
     @Test
-    public void shouldDownloadArtifact() throws IOException, URISyntaxException {
+    public void shouldResumeDownloadFromWhereTheHandlerLeftOff() throws IOException, URISyntaxException {
         String url = "http://blah";
-        FetchHandler fetchHandler = mock(FetchHandler.class);
+        ResumableFetchHandler fetchHandler = mock(ResumableFetchHandler.class);
+        when(fetchHandler.resumeFrom()).thenReturn(5L);
 
         HttpGet mockGetMethod = mock(HttpGet.class);
         CloseableHttpResponse response = mock(CloseableHttpResponse.class);
@@ -96,43 +97,75 @@ public class HttpServiceTest {
         ByteArrayInputStream instream = new ByteArrayInputStream(new byte[]{});
         basicHttpEntity.setContent(instream);
         when(response.getEntity()).thenReturn(basicHttpEntity);
-        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 206, "Partial Content"));
+        when(response.getFirstHeader("Content-Range")).thenReturn(new BasicHeader("Content-Range", "bytes 5-10/11"));
         when(httpClient.execute(mockGetMethod)).thenReturn(response);
         when(httpClientFactory.createGet(url)).thenReturn(mockGetMethod);
 
         when(mockGetMethod.getURI()).thenReturn(new URI(url));
 
-        service.download(url, fetchHandler);
-        verify(httpClient).execute(mockGetMethod);
-        verify(fetchHandler).handle(instream);
+        assertThat(service.download(url, fetchHandler)).isEqualTo(206);
+        verify(mockGetMethod).setHeader("Range", "bytes=5-");
+        verify(mockGetMethod, never()).setHeader(eq("If-Range"), anyString());
+        verify(fetchHandler).handle(instream, 5L);
+        verify(fetchHandler, never()).handle(instream);
     }
 
     @Test
-    public void shouldNotFailIfChecksumFileIsNotPresent() throws IOException {
-        HttpService.HttpClientFactory factory = new HttpService.HttpClientFactory(null);
-        File artifact = new File(folderToSaveDownloadFiles, "artifact");
-        artifact.createNewFile();
-        try {
-            factory.createMultipartRequestEntity(artifact, null);
-        } catch (FileNotFoundException e) {
-            fail("Nulitpart should be created even in the absence of checksum file");
-        }
+    public void shouldOnlyResumeADownloadIfTheFileHasNotChangedSinceItWasFirstSent(@TempDir Path tempDir) throws IOException {
+        String url = "http://blah";
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        ResumableFileHandler handler = new ResumableFileHandler("foo.txt", tempDir.resolve("foo.txt").toFile());
+
+        HttpGet firstGet = mock(HttpGet.class);
+        CloseableHttpResponse cutOff = mock(CloseableHttpResponse.class);
+        BasicHttpEntity firstPart = new BasicHttpEntity();
+        firstPart.setContent(new SequenceInputStream(new ByteArrayInputStream("hello".getBytes(UTF_8)), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        }));
+        when(cutOff.getEntity()).thenReturn(firstPart);
+        when(cutOff.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        when(cutOff.getFirstHeader("Last-Modified")).thenReturn(new BasicHeader("Last-Modified", lastModified));
+
+        HttpGet resumedGet = mock(HttpGet.class);
+        CloseableHttpResponse resumed = mock(CloseableHttpResponse.class);
+        BasicHttpEntity rest = new BasicHttpEntity();
+        rest.setContent(new ByteArrayInputStream(" world".getBytes(UTF_8)));
+        when(resumed.getEntity()).thenReturn(rest);
+        when(resumed.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 206, "Partial Content"));
+        when(resumed.getFirstHeader("Content-Range")).thenReturn(new BasicHeader("Content-Range", "bytes 5-10/11"));
+
+        when(httpClientFactory.createGet(url)).thenReturn(firstGet, resumedGet);
+        when(httpClient.execute(firstGet)).thenReturn(cutOff);
+        when(httpClient.execute(resumedGet)).thenReturn(resumed);
+
+        assertThatThrownBy(() -> service.download(url, handler)).isInstanceOf(IOException.class);
+        assertThat(service.download(url, handler)).isEqualTo(206);
+
+        verify(firstGet, never()).setHeader(eq("If-Range"), anyString());
+        verify(resumedGet).setHeader("Range", "bytes=5-");
+        verify(resumedGet).setHeader("If-Range", lastModified);
+        assertThat(tempDir.resolve("foo.txt.part")).hasContent("hello world");
     }
 
     @Test
-    public void shouldCreateMultipleRequestWithChecksumValues() throws IOException {
+    public void shouldStreamArtifactAndChecksumsWrittenAfterIt() throws IOException {
         HttpService.HttpClientFactory factory = new HttpService.HttpClientFactory(null);
-        File artifact = new File(folderToSaveDownloadFiles, "artifact");
-        artifact.createNewFile();
-        try {
-            java.util.Properties artifactChecksums = new java.util.Properties();
-            artifactChecksums.setProperty("foo.txt", "323233333");
+        Properties artifactChecksums = new Properties();
 
-            factory.createMultipartRequestEntity(artifact, artifactChecksums);
+        HttpEntity entity = factory.createStreamingMultipartRequestEntity("artifact.zip", out -> {
+            out.write("zipped-content".getBytes(UTF_8));
+            out.close();
+            artifactChecksums.setProperty("foo.txt", "323233333");
+        }, () -> artifactChecksums);
 
-        } catch (FileNotFoundException e) {
-            fail("Nulitpart should be created even in the absence of checksum file");
-        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        entity.writeTo(body);
 
+        assertThat(entity.isChunked()).isTrue();
+        assertThat(body.toString(UTF_8)).containsSubsequence("filename=\"artifact.zip\"", "zipped-content", "filename=\"checksum_file\"", "foo.txt=323233333");
     }
 }
@@ -56,6 +56,19 @@ public class ArtifactMd5ChecksumsTest {
         assertThat(artifactMd5Checksums.md5For("foo")).isNull();
     }
 
+    @Test
+    public void shouldListThePathsInADirectory() {
+        Properties properties = new Properties();
+        properties.setProperty("dist/b.txt", "md5");
+        properties.setProperty("dist/lib/a.jar", "md5");
+        properties.setProperty("distribution/c.txt", "md5");
+        properties.setProperty("other/dist/d.txt", "md5");
+        ArtifactMd5Checksums artifactMd5Checksums = new ArtifactMd5Checksums(properties);
+        assertThat(artifactMd5Checksums.pathsUnder("dist")).containsExactly("dist/b.txt", "dist/lib/a.jar");
+        assertThat(artifactMd5Checksums.pathsUnder("dist/lib/")).containsExactly("dist/lib/a.jar");
+        assertThat(artifactMd5Checksums.pathsUnder("missing")).isEmpty();
+    }
+
     @Test
     public void shouldLoadThePropertiesFromTheGivenFile() throws IOException {
         Files.writeString(file.toPath(), "first/path:md5=", UTF_8);
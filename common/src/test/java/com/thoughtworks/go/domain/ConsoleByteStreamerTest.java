@@ -0,0 +1,92 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsoleByteStreamerTest {
+    @Test
+    public void streamSendsOnlyCompleteLinesUntilToldOtherwise() throws Exception {
+        File console = makeConsoleFile("first\nsecond\nthi");
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+
+        try (ConsoleByteStreamer streamer = new ConsoleByteStreamer(console.toPath(), 0L, 1024)) {
+            assertEquals(13L, streamer.stream((offset, chunk) -> actual.write(chunk.array(), chunk.position(), chunk.remaining()), false));
+            assertEquals("first\nsecond\n", actual.toString(UTF_8));
+
+            Files.writeString(console.toPath(), "rd\n", StandardOpenOption.APPEND);
+            streamer.stream((offset, chunk) -> actual.write(chunk.array(), chunk.position(), chunk.remaining()), false);
+            assertEquals("first\nsecond\nthird\n", actual.toString(UTF_8));
+            assertEquals(19L, streamer.offset());
+        }
+    }
+
+    @Test
+    public void streamSendsTrailingPartialLineWhenAsked() throws Exception {
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+
+        try (ConsoleByteStreamer streamer = new ConsoleByteStreamer(makeConsoleFile("first\nlast").toPath(), 0L, 1024)) {
+            streamer.stream((offset, chunk) -> actual.write(chunk.array(), chunk.position(), chunk.remaining()), true);
+            assertEquals("first\nlast", actual.toString(UTF_8));
+        }
+    }
+
+    @Test
+    public void streamStartsAtTheGivenByteOffsetAndSplitsChunksOnLineBoundaries() throws Exception {
+        final List<Long> offsets = new ArrayList<>();
+        final List<String> chunks = new ArrayList<>();
+
+        try (ConsoleByteStreamer streamer = new ConsoleByteStreamer(makeConsoleFile("first\nsecond\nthird\n").toPath(), 6L, 10)) {
+            streamer.stream((offset, chunk) -> {
+                offsets.add(offset);
+                chunks.add(new String(chunk.array(), chunk.position(), chunk.remaining(), UTF_8));
+            }, false);
+        }
+
+        assertEquals(List.of(6L, 13L), offsets);
+        assertEquals(List.of("second\n", "third\n"), chunks);
+    }
+
+    @Test
+    public void streamSplitsLinesLongerThanTheBuffer() throws Exception {
+        final List<String> chunks = new ArrayList<>();
+
+        try (ConsoleByteStreamer streamer = new ConsoleByteStreamer(makeConsoleFile("abcdefghij\n").toPath(), 0L, 4)) {
+            streamer.stream((offset, chunk) -> chunks.add(new String(chunk.array(), chunk.position(), chunk.remaining(), UTF_8)), true);
+        }
+
+        assertEquals(List.of("abcd", "efgh", "ij\n"), chunks);
+    }
+
+    private File makeConsoleFile(String content) throws IOException {
+        File console = File.createTempFile("console", ".log");
+        console.deleteOnExit();
+
+        Files.writeString(console.toPath(), content);
+        return console;
+    }
+}
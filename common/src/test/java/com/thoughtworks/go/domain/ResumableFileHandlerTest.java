@@ -0,0 +1,119 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResumableFileHandlerTest {
+    @TempDir
+    File tempDir;
+
+    private File artifact;
+    private File partial;
+    private ResumableFileHandler handler;
+    private StubGoPublisher goPublisher;
+
+    @BeforeEach
+    public void setUp() {
+        artifact = new File(tempDir, "dist/lib/a.txt");
+        partial = new File(tempDir, "dist/lib/a.txt.part");
+        handler = new ResumableFileHandler("dist/lib/a.txt", artifact);
+        goPublisher = new StubGoPublisher();
+        Properties checksums = new Properties();
+        checksums.setProperty("dist/lib/a.txt", DigestUtils.md5Hex("Hello world"));
+        handler.useArtifactMd5Checksums(new ArtifactMd5Checksums(checksums));
+    }
+
+    @Test
+    public void shouldMoveTheFileToItsDestinationOnceVerified() throws IOException {
+        handler.handle(stream("Hello world"));
+
+        assertThat(handler.handleResult(200, goPublisher)).isTrue();
+        assertThat(Files.readString(artifact.toPath(), UTF_8)).isEqualTo("Hello world");
+        assertThat(partial).doesNotExist();
+    }
+
+    @Test
+    public void shouldResumeFromWhatWasReceivedBeforeTheDownloadWasCutOff() throws IOException {
+        InputStream cutOff = new ByteArrayInputStream("Hello".getBytes(UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int read = super.read(b, off, len);
+                if (read == -1) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return read;
+            }
+        };
+        assertThatThrownBy(() -> handler.handle(cutOff)).isInstanceOf(IllegalStateException.class);
+        assertThat(handler.resumeFrom()).isEqualTo(5);
+
+        handler.handle(stream(" world"), 5);
+
+        assertThat(handler.handleResult(206, goPublisher)).isTrue();
+        assertThat(Files.readString(artifact.toPath(), UTF_8)).isEqualTo("Hello world");
+        assertThat(handler.resumeFrom()).isZero();
+    }
+
+    @Test
+    public void shouldStartOverWhenTheServerSendsTheWholeFile() throws IOException {
+        Files.createDirectories(partial.getParentFile().toPath());
+        Files.writeString(partial.toPath(), "Stale content", UTF_8);
+
+        handler.handle(stream("Hello world"));
+
+        assertThat(handler.handleResult(200, goPublisher)).isTrue();
+        assertThat(Files.readString(artifact.toPath(), UTF_8)).isEqualTo("Hello world");
+    }
+
+    @Test
+    public void shouldDiscardTheDownloadWhenItsChecksumDoesNotMatch() throws IOException {
+        handler.handle(stream("Hello there"));
+
+        assertThatThrownBy(() -> handler.handleResult(200, goPublisher))
+            .hasMessage("Artifact download failed for [dist/lib/a.txt]");
+        assertThat(goPublisher.getMessage()).contains("[ERROR] Verification of the integrity of the artifact [dist/lib/a.txt] failed.");
+        assertThat(artifact).doesNotExist();
+        assertThat(partial).doesNotExist();
+    }
+
+    @Test
+    public void shouldDiscardWhatWasReceivedWhenTheServerCannotResumeFromIt() throws IOException {
+        Files.createDirectories(partial.getParentFile().toPath());
+        Files.writeString(partial.toPath(), "Hello world, and more", UTF_8);
+
+        assertThat(handler.handleResult(416, goPublisher)).isFalse();
+        assertThat(handler.resumeFrom()).isZero();
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+}
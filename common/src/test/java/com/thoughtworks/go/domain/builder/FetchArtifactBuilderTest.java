@@ -21,23 +21,34 @@ import com.thoughtworks.go.domain.*;
 import com.thoughtworks.go.util.TempDirUtils;
 import com.thoughtworks.go.util.TestingClock;
 import com.thoughtworks.go.util.ZipUtil;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.Deflater;
 
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 public class FetchArtifactBuilderTest {
@@ -50,6 +61,7 @@ public class FetchArtifactBuilderTest {
     private ChecksumFileHandler checksumFileHandler;
     private URLService urlService;
     private DownloadAction downloadAction;
+    private final ExecutorService downloaders = Executors.newFixedThreadPool(2);
 
     @BeforeEach
     public void setUp(@TempDir Path tempDir) throws Exception {
@@ -77,6 +89,7 @@ public class FetchArtifactBuilderTest {
 
     @AfterEach
     public void tearDown() {
+        downloaders.shutdownNow();
         for (File fileToClean : toClean) {
             FileUtils.deleteQuietly(fileToClean);
         }
@@ -90,7 +103,7 @@ public class FetchArtifactBuilderTest {
         File destOnAgent = new File("pipelines/cruise/", dest.getPath());
         FetchArtifactBuilder builder = getBuilder(new JobIdentifier("cruise", -10, "1", "dev", "1", "windows", 1L), "log", dest.getPath(), new DirHandler("log",destOnAgent), checksumFileHandler);
 
-        builder.fetch(new DownloadAction(new StubFetchZipHttpService(), publisher, clock), new StubURLService());
+        builder.fetch(new DownloadAction(new StubFetchZipHttpService(), publisher, clock), new StubURLService(), publisher, null);
 
         assertDownloaded(destOnAgent);
     }
@@ -105,7 +118,7 @@ public class FetchArtifactBuilderTest {
 
         FetchArtifactBuilder builder = getBuilder(new JobIdentifier("cruise", -1, "1", "dev", "1", "windows", 1L), "log", "some where do download", new FileHandler(artifactOnAgent, getSrc()), checksumFileHandler);
 
-        builder.fetch(new DownloadAction(new StubFetchZipHttpService(), publisher, clock), new StubURLService());
+        builder.fetch(new DownloadAction(new StubFetchZipHttpService(), publisher, clock), new StubURLService(), publisher, null);
 
         assertThat(artifactOnAgent.isFile()).isTrue();
     }
@@ -132,7 +145,7 @@ public class FetchArtifactBuilderTest {
         java.util.Properties properties = new java.util.Properties();
         when(checksumFileHandler.getArtifactMd5Checksums()).thenReturn(new ArtifactMd5Checksums(properties));
 
-        builder.fetch(downloadAction, urlService);
+        builder.fetch(downloadAction, urlService, publisher, null);
 
         verify(downloadAction).perform(eq("http://foo.bar:8153/go/files/foo/label-1/dev/1/linux/cruise-output/md5.checksum"), isA(FetchHandler.class));
         verify(downloadAction).perform(eq("http://foo.bar:8153/go/remoting/files/foo/label-1/dev/1/linux/cruise-output/console.log"), isA(FileHandler.class));
@@ -159,7 +172,7 @@ public class FetchArtifactBuilderTest {
         java.util.Properties properties = new java.util.Properties();
         when(checksumFileHandler.getArtifactMd5Checksums()).thenReturn(new ArtifactMd5Checksums(properties));
 
-        builder.fetch(downloadAction, urlService);
+        builder.fetch(downloadAction, urlService, publisher, null);
 
         verify(downloadAction).perform(eq("http://foo.bar:8153/go/files/foo/label-1/dev/1/linux/cruise-output/md5.checksum"), any());
         verify(downloadAction).perform(eq("http://foo.bar:8153/go/remoting/files/foo/label-1/dev/1/linux/cruise-output/console.log?sha1=2jmj7l5rSw0yVb%2FvlWAYkK%2FYBwk%3D"), any());
@@ -182,7 +195,103 @@ public class FetchArtifactBuilderTest {
         java.util.Properties properties = new java.util.Properties();
         when(checksumFileHandler.getArtifactMd5Checksums()).thenReturn(new ArtifactMd5Checksums(properties));
 
-        builder.fetch(downloadAction, urlService);
+        builder.fetch(downloadAction, urlService, publisher, null);
+
+        verify(downloadAction).perform(eq("http://foo.bar:8153/go/files/foo/label-1/dev/1/linux/cruise-output/md5.checksum"), isA(FetchHandler.class));
+        verify(downloadAction).perform(eq("http://foo.bar:8153/go/remoting/files/foo/label-1/dev/1/linux/cruise-output.zip"), isA(DirHandler.class));
+        verifyNoMoreInteractions(downloadAction);
+    }
+
+    @Test
+    public void shouldFetchTheFilesOfAFolderInParallelWhenTheChecksumFileListsThem(@TempDir Path tempDir) throws Exception {
+        String src = "cruise-output";
+        File destOnAgent = tempDir.resolve("dest").toFile();
+
+        FetchArtifactBuilder builder = getBuilder(new JobIdentifier("foo", -1, "label-1", "dev", "1", "linux", 1L),
+                src, "lib/a.jar",
+                new DirHandler(src, destOnAgent), checksumFileHandler);
+
+        when(urlService.baseRemoteURL()).thenReturn("http://foo.bar:8153/go");
+
+        when(checksumFileHandler.url("http://foo.bar:8153/go", "foo/label-1/dev/1/linux")).thenReturn("http://foo.bar:8153/go/files/foo/label-1/dev/1/linux/cruise-output/md5.checksum");
+
+        java.util.Properties properties = new java.util.Properties();
+        properties.setProperty("cruise-output/console.log", DigestUtils.md5Hex("console"));
+        properties.setProperty("cruise-output/nested/a.txt", DigestUtils.md5Hex("nested"));
+        when(checksumFileHandler.getArtifactMd5Checksums()).thenReturn(new ArtifactMd5Checksums(properties));
+
+        String filesUrl = "http://foo.bar:8153/go/remoting/files/foo/label-1/dev/1/linux/";
+        Map<String, String> contents = Map.of(filesUrl + "cruise-output/console.log", "console", filesUrl + "cruise-output/nested/a.txt", "nested");
+        doAnswer(invocation -> {
+            FetchHandler handler = invocation.getArgument(1);
+            handler.handle(new ByteArrayInputStream(contents.get(invocation.<String>getArgument(0)).getBytes(UTF_8)));
+            return handler.handleResult(HTTP_OK, publisher);
+        }).when(downloadAction).perform(startsWith(filesUrl), isA(ResumableFileHandler.class));
+
+        builder.fetch(downloadAction, urlService, publisher, downloaders);
+
+        assertThat(Files.readString(new File(destOnAgent, "cruise-output/console.log").toPath(), UTF_8)).isEqualTo("console");
+        assertThat(Files.readString(new File(destOnAgent, "cruise-output/nested/a.txt").toPath(), UTF_8)).isEqualTo("nested");
+        assertThat(publisher.getMessage()).contains(String.format("Saved artifact to [%s] after verifying the integrity of its contents.", destOnAgent));
+        verify(downloadAction, never()).perform(endsWith(".zip"), any());
+    }
+
+    @Test
+    public void shouldWaitForTheOtherDownloadsOfAFolderToStopBeforeFailing(@TempDir Path tempDir) throws Exception {
+        String src = "cruise-output";
+        File destOnAgent = tempDir.resolve("dest").toFile();
+
+        FetchArtifactBuilder builder = getBuilder(new JobIdentifier("foo", -1, "label-1", "dev", "1", "linux", 1L),
+                src, "lib/a.jar",
+                new DirHandler(src, destOnAgent), checksumFileHandler);
+
+        when(urlService.baseRemoteURL()).thenReturn("http://foo.bar:8153/go");
+
+        java.util.Properties properties = new java.util.Properties();
+        properties.setProperty("cruise-output/broken.log", DigestUtils.md5Hex("broken"));
+        properties.setProperty("cruise-output/slow.log", DigestUtils.md5Hex("slow"));
+        when(checksumFileHandler.getArtifactMd5Checksums()).thenReturn(new ArtifactMd5Checksums(properties));
+
+        CountDownLatch slowDownloadStarted = new CountDownLatch(1);
+        AtomicBoolean slowDownloadFinished = new AtomicBoolean();
+        doAnswer(invocation -> {
+            slowDownloadStarted.countDown();
+            // like reading from a socket, this does not stop when interrupted
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            slowDownloadFinished.set(true);
+            return null;
+        }).when(downloadAction).perform(endsWith("slow.log"), isA(ResumableFileHandler.class));
+        doAnswer(invocation -> {
+            slowDownloadStarted.await();
+            throw new RuntimeException("Giving up fetching resource");
+        }).when(downloadAction).perform(endsWith("broken.log"), isA(ResumableFileHandler.class));
+
+        assertThatThrownBy(() -> builder.fetch(downloadAction, urlService, publisher, downloaders))
+                .hasMessage("Giving up fetching resource");
+        assertThat(slowDownloadFinished).isTrue();
+    }
+
+    @Test
+    public void shouldFetchAFolderAsZipWhenTheChecksumFileDoesNotListItsFiles() throws Exception {
+        String src = "cruise-output";
+        File destOnAgent = new File("pipelines/cruise/", dest.getPath());
+
+        FetchArtifactBuilder builder = getBuilder(new JobIdentifier("foo", -1, "label-1", "dev", "1", "linux", 1L),
+                src, "lib/a.jar",
+                new DirHandler(src, destOnAgent), checksumFileHandler);
+
+        when(urlService.baseRemoteURL()).thenReturn("http://foo.bar:8153/go");
+
+        when(checksumFileHandler.url("http://foo.bar:8153/go", "foo/label-1/dev/1/linux")).thenReturn("http://foo.bar:8153/go/files/foo/label-1/dev/1/linux/cruise-output/md5.checksum");
+
+        java.util.Properties properties = new java.util.Properties();
+        properties.setProperty("another-folder/console.log", DigestUtils.md5Hex("console"));
+        when(checksumFileHandler.getArtifactMd5Checksums()).thenReturn(new ArtifactMd5Checksums(properties));
+
+        builder.fetch(downloadAction, urlService, publisher, downloaders);
 
         verify(downloadAction).perform(eq("http://foo.bar:8153/go/files/foo/label-1/dev/1/linux/cruise-output/md5.checksum"), isA(FetchHandler.class));
         verify(downloadAction).perform(eq("http://foo.bar:8153/go/remoting/files/foo/label-1/dev/1/linux/cruise-output.zip"), isA(DirHandler.class));
@@ -196,7 +305,7 @@ public class FetchArtifactBuilderTest {
         when(checksumFileHandler.url("http://10.10.1.1/go/files", "cruise/10/dev/1/windows")).thenReturn("http://10.10.1.1/go/files/cruise/10/dev/1/windows/cruise-output/md5.checksum");
 
         FetchArtifactBuilder builder = getBuilder(new JobIdentifier("cruise", 10, "1", "dev", "1", "windows", 1L), "log", dest.getPath(), mock(FetchHandler.class), checksumFileHandler);
-        builder.fetch(downloadAction, urlService);
+        builder.fetch(downloadAction, urlService, publisher, null);
 
         verify(downloadAction).perform("http://10.10.1.1/go/files/cruise/10/dev/1/windows/cruise-output/md5.checksum", checksumFileHandler);
     }
@@ -211,7 +320,7 @@ public class FetchArtifactBuilderTest {
 
         FetchHandler fetchHandler = mock(FetchHandler.class);
         FetchArtifactBuilder builder = getBuilder(new JobIdentifier("cruise", 10, "1", "dev", "1", "windows", 1L), "log", dest.getPath(), fetchHandler, checksumFileHandler);
-        builder.fetch(downloadAction, urlService);
+        builder.fetch(downloadAction, urlService, publisher, null);
 
         verify(fetchHandler).useArtifactMd5Checksums(artifactMd5Checksums);
     }
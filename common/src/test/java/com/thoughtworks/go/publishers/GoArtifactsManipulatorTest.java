@@ -26,18 +26,24 @@ import com.thoughtworks.go.util.ReflectionUtil;
 import com.thoughtworks.go.util.TempDirUtils;
 import com.thoughtworks.go.work.DefaultGoPublisher;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.function.IOConsumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Properties;
+import java.util.function.Supplier;
+import java.util.zip.ZipInputStream;
 
 import static com.thoughtworks.go.util.SystemUtil.currentWorkingDirectory;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -68,17 +74,19 @@ public class GoArtifactsManipulatorTest {
 
     @Test
     public void shouldBombWithErrorWhenStatusCodeReturnedIsRequestEntityTooLarge() throws IOException {
-        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), any())).thenReturn(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
+        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), any(), any())).thenReturn(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
 
-        CircularFifoQueue<?> buffer = ReflectionUtil.getField(ReflectionUtil.getField(goPublisher, "consoleOutputTransmitter"), "buffer");
-        synchronized (buffer) {
+        Object transmitter = ReflectionUtil.getField(goPublisher, "consoleOutputTransmitter");
+        Object flushLock = ReflectionUtil.getField(transmitter, "flushLock");
+        synchronized (flushLock) {
             try {
                 goArtifactsManipulatorStub.publish(goPublisher, "some_dest", tempFile.toFile(), jobIdentifier);
                 fail("should have thrown request entity too large error");
             } catch (RuntimeException e) {
                 String expectedMessage = "Artifact upload for file " + tempFile.toAbsolutePath() + " (Size: "+ tempFile.toFile().length() +") was denied by the server. This usually happens when server runs out of disk space.";
                 assertThat(e.getMessage()).isEqualTo("java.lang.RuntimeException: " + expectedMessage + ".  HTTP return code is 413");
-                assertThat(buffer.toString().contains(expectedMessage)).isTrue();
+                ByteArrayOutputStream pending = ReflectionUtil.getField(transmitter, "pending");
+                assertThat(pending.toString(UTF_8).contains(expectedMessage)).isTrue();
             }
         }
     }
@@ -86,12 +94,12 @@ public class GoArtifactsManipulatorTest {
     @Test
     public void uploadShouldBeGivenFileSize() throws IOException {
 
-        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), any())).thenReturn(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
+        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), any(), any())).thenReturn(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
         try {
             goArtifactsManipulatorStub.publish(goPublisher, "dest", tempFile.toFile(), jobIdentifier);
             fail("should have thrown request entity too large error");
         } catch (RuntimeException e) {
-            verify(httpService).upload(any(), eq(tempFile.toFile().length()), any(), any());
+            verify(httpService).upload(any(), eq(tempFile.toFile().length()), any(), any(), any());
         }
     }
 
@@ -103,7 +111,7 @@ public class GoArtifactsManipulatorTest {
         Properties properties = new Properties();
         properties.setProperty("dest/path/file.txt", md5);
 
-        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), eq(properties))).thenReturn(HttpURLConnection.HTTP_OK);
+        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), any(), any())).thenAnswer(uploadExpectingChecksums(properties));
 
         goArtifactsManipulatorStub.publish(goPublisher, "/dest/path", tempFile.toFile(), jobIdentifier);
     }
@@ -116,7 +124,7 @@ public class GoArtifactsManipulatorTest {
         Properties properties = new Properties();
         properties.setProperty("file.txt", md5);
 
-        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), eq(properties))).thenReturn(HttpURLConnection.HTTP_OK);
+        when(httpService.upload(any(), eq(tempFile.toFile().length()), any(), any(), any())).thenAnswer(uploadExpectingChecksums(properties));
 
         goArtifactsManipulatorStub.publish(goPublisher, "", tempFile.toFile(), jobIdentifier);
     }
@@ -132,11 +140,38 @@ public class GoArtifactsManipulatorTest {
         Files.createDirectories(anotherFile.getParent());
         Files.writeString(anotherFile, secondData, UTF_8);
 
-        when(httpService.upload(any(), eq(FileUtils.sizeOfDirectory(artifactFolder.toFile())), any(), eq(expectedProperties(data, secondData)))).thenReturn(HttpURLConnection.HTTP_OK);
+        when(httpService.upload(any(), eq(FileUtils.sizeOfDirectory(artifactFolder.toFile())), any(), any(), any())).thenAnswer(uploadExpectingChecksums(expectedProperties(data, secondData)));
 
         goArtifactsManipulatorStub.publish(goPublisher, "dest", artifactFolder.toFile(), jobIdentifier);
     }
 
+    @Test
+    public void shouldStreamZippedArtifactIntoTheUpload() throws IOException {
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        when(httpService.upload(any(), anyLong(), eq("artifact_folder.zip"), any(), any())).thenAnswer(invocation -> {
+            IOConsumer<OutputStream> artifactWriter = invocation.getArgument(3);
+            artifactWriter.accept(uploaded);
+            return HttpURLConnection.HTTP_OK;
+        });
+
+        goArtifactsManipulatorStub.publish(goPublisher, "dest", artifactFolder.toFile(), jobIdentifier);
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(uploaded.toByteArray()))) {
+            assertThat(zip.getNextEntry().getName()).isEqualTo("artifact_folder/");
+            assertThat(zip.getNextEntry().getName()).isEqualTo("artifact_folder/file.txt");
+            assertThat(new String(zip.readAllBytes(), UTF_8)).isEqualTo("some-random-data");
+        }
+    }
+
+    private static Answer<Integer> uploadExpectingChecksums(Properties expected) {
+        return invocation -> {
+            IOConsumer<OutputStream> artifactWriter = invocation.getArgument(3);
+            artifactWriter.accept(OutputStream.nullOutputStream());
+            Supplier<Properties> checksums = invocation.getArgument(4);
+            return expected.equals(checksums.get()) ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_BAD_REQUEST;
+        };
+    }
+
     private Properties expectedProperties(String data, String secondData) {
         Properties properties = new Properties();
         properties.setProperty("dest/artifact_folder/file.txt", DigestUtils.md5Hex(data));
@@ -19,10 +19,12 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -31,7 +33,7 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class ConsoleOutputTransmitterTest {
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private ConsoleAppender consoleAppender;
     private ConsoleOutputTransmitter transmitter;
 
@@ -67,4 +69,36 @@ public class ConsoleOutputTransmitterTest {
 
         verify(consoleAppender, never()).append(any());
     }
+
+    @Test
+    public void shouldSendUnsentOutputAheadOfNewOutputWhenFlushingFails() throws Exception {
+        ArgumentCaptor<String> requestArgumentCaptor = ArgumentCaptor.forClass(String.class);
+        doThrow(new IOException("server unavailable")).doNothing().when(consoleAppender).append(requestArgumentCaptor.capture());
+
+        transmitter.consumeLine("first line");
+        transmitter.flushToServer();
+        transmitter.consumeLine("second line");
+        transmitter.flushToServer();
+
+        assertThat(requestArgumentCaptor.getAllValues()).hasSize(2);
+        assertThat(requestArgumentCaptor.getValue()).containsSubsequence("first line\n", "second line\n");
+    }
+
+    @Test
+    public void shouldReportDroppedLinesWhenServerCannotKeepUp() throws Exception {
+        ArgumentCaptor<String> requestArgumentCaptor = ArgumentCaptor.forClass(String.class);
+        doNothing().when(consoleAppender).append(requestArgumentCaptor.capture());
+
+        try (ConsoleOutputTransmitter bounded = new ConsoleOutputTransmitter(consoleAppender, 0, TimeUnit.SECONDS, mock(ScheduledThreadPoolExecutor.class), 40, 10)) {
+            bounded.consumeLine("first line");
+            bounded.consumeLine("second line");
+            bounded.consumeLine("third line");
+            bounded.flushToServer();
+        }
+
+        assertThat(requestArgumentCaptor.getValue())
+            .contains("first line\n")
+            .doesNotContain("second line", "third line")
+            .contains("##|", "2 line(s) of console output were dropped");
+    }
 }
@@ -24,7 +24,7 @@ import com.thoughtworks.go.util.DFSCycleDetector;
 import com.thoughtworks.go.util.Node;
 import com.thoughtworks.go.util.PipelineDependencyState;
 
-import java.util.List;
+import java.util.*;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -86,8 +86,9 @@ public class PipelineConfigTreeValidator {
         if (validationContext.isPipelineBeingCreated()) {
             return;
         }
+        Set<CaseInsensitiveString> downstreams = downstreamsOf(pipelineConfig.name(), validationContext);
         for (CaseInsensitiveString selected : validationContext.getPipelinesWithDependencyMaterials()) {
-            if (selected.equals(pipelineConfig.name())) {
+            if (selected.equals(pipelineConfig.name()) || !downstreams.contains(selected)) {
                 continue;
             }
             PipelineConfig selectedPipeline = validationContext.getPipelineConfigByName(selected);
@@ -96,6 +97,31 @@ public class PipelineConfigTreeValidator {
         }
     }
 
+    /**
+     * Only pipelines which (transitively) depend on the pipeline being saved can have a dependency material or a fetch
+     * task referring to it, as the path to an ancestor has to follow dependency materials. Working these out from the
+     * dependency graph is much cheaper than going through the tasks of every pipeline in the config.
+     */
+    private static Set<CaseInsensitiveString> downstreamsOf(CaseInsensitiveString upstream, PipelineConfigSaveValidationContext validationContext) {
+        Map<CaseInsensitiveString, List<CaseInsensitiveString>> directDownstreams = new HashMap<>();
+        for (CaseInsensitiveString pipeline : validationContext.getPipelinesWithDependencyMaterials()) {
+            for (Node.DependencyNode dependencyNode : validationContext.getDependencyMaterialsFor(pipeline).getDependencies()) {
+                directDownstreams.computeIfAbsent(dependencyNode.getPipelineName(), name -> new ArrayList<>()).add(pipeline);
+            }
+        }
+
+        Set<CaseInsensitiveString> downstreams = new HashSet<>();
+        Deque<CaseInsensitiveString> toVisit = new ArrayDeque<>(List.of(upstream));
+        while (!toVisit.isEmpty()) {
+            for (CaseInsensitiveString downstream : directDownstreams.getOrDefault(toVisit.pop(), List.of())) {
+                if (downstreams.add(downstream)) {
+                    toVisit.push(downstream);
+                }
+            }
+        }
+        return downstreams;
+    }
+
     private void validateDependencyMaterialsForDownstreams(PipelineConfigSaveValidationContext validationContext, CaseInsensitiveString selected, PipelineConfig downstreamPipeline) {
         Node dependenciesOfSelectedPipeline = validationContext.getDependencyMaterialsFor(selected);
         for (Node.DependencyNode dependencyNode : dependenciesOfSelectedPipeline.getDependencies()) {
@@ -0,0 +1,106 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.config;
+
+import com.thoughtworks.go.config.materials.MaterialConfigs;
+import com.thoughtworks.go.config.materials.dependency.DependencyMaterialConfig;
+import com.thoughtworks.go.helper.GoConfigMother;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PipelineConfigTreeValidatorTest {
+    private BasicCruiseConfig cruiseConfig;
+    private PipelineConfig p1;
+    private PipelineConfig p2;
+    private PipelineConfig p3;
+    private PipelineConfig unrelated;
+    private String group;
+
+    @BeforeEach
+    void setUp() {
+        // p1 <- p2 <- p3, and unrelated <- other, which has nothing to do with p1
+        cruiseConfig = GoConfigMother.configWithPipelines("p1", "p2", "p3", "other", "unrelated");
+        p1 = pipeline("p1");
+        p2 = pipeline("p2");
+        p3 = pipeline("p3");
+        unrelated = pipeline("unrelated");
+        p2.addMaterialConfig(new DependencyMaterialConfig(p1.name(), p1.getFirst().name()));
+        p3.addMaterialConfig(new DependencyMaterialConfig(p2.name(), p2.getFirst().name()));
+        unrelated.addMaterialConfig(new DependencyMaterialConfig(new CaseInsensitiveString("other"), new CaseInsensitiveString("stage")));
+        group = cruiseConfig.getGroups().getFirst().getGroup();
+    }
+
+    @Test
+    void shouldReportErrorsInDependencyMaterialsOfTransitiveDownstreams() {
+        p3.addMaterialConfig(new DependencyMaterialConfig(p1.name(), p1.getFirst().name()));
+        PipelineConfig p1WithRenamedStage = replaceWithNewStage(p1, "renamed-stage", "job");
+
+        new PipelineConfigTreeValidator(p1WithRenamedStage).validateDependencies(PipelineConfigSaveValidationContext.forChain(false, group, cruiseConfig, p1WithRenamedStage));
+
+        assertThat(p1WithRenamedStage.errors().getAllOn("base")).containsExactlyInAnyOrder(
+            "Stage with name 'stage' does not exist on pipeline 'p1', it is being referred to from pipeline 'p2' (cruise-config.xml)",
+            "Stage with name 'stage' does not exist on pipeline 'p1', it is being referred to from pipeline 'p3' (cruise-config.xml)");
+    }
+
+    @Test
+    void shouldReportErrorsInFetchTasksOfTransitiveDownstreams() {
+        p3.getFirst().getJobs().getFirst().addTask(new FetchTask(new CaseInsensitiveString("p1/p2"), p1.getFirst().name(), p1.getFirst().getJobs().getFirst().name(), "src", "dest"));
+        PipelineConfig p1WithRenamedJob = replaceWithNewStage(p1, "stage", "renamed-job");
+
+        new PipelineConfigTreeValidator(p1WithRenamedJob).validateDependencies(PipelineConfigSaveValidationContext.forChain(false, group, cruiseConfig, p1WithRenamedJob));
+
+        assertThat(p1WithRenamedJob.errors().getAllOn("base")).containsExactly("\"p3 :: stage :: job\" tries to fetch artifact from job \"p1 :: stage :: job\" which does not exist.");
+    }
+
+    @Test
+    void shouldNotRevisitPipelinesWhichDoNotDependOnThePipelineBeingSaved() {
+        // not a valid fetch task to begin with, as p1 is no ancestor of this pipeline; saving p1 should not look at it
+        unrelated.getFirst().getJobs().getFirst().addTask(new FetchTask(new CaseInsensitiveString("p1/other"), p1.getFirst().name(), new CaseInsensitiveString("missing-job"), "src", "dest"));
+        PipelineConfig p1WithRenamedJob = replaceWithNewStage(p1, "stage", "renamed-job");
+        PipelineConfigSaveValidationContext validationContext = spy(PipelineConfigSaveValidationContext.forChain(false, group, cruiseConfig, p1WithRenamedJob));
+
+        new PipelineConfigTreeValidator(p1WithRenamedJob).validateDependencies(validationContext);
+
+        assertThat(p1WithRenamedJob.errors().getAllOn("base")).isEmpty();
+        verify(validationContext).getPipelineConfigByName(p2.name());
+        verify(validationContext).getPipelineConfigByName(p3.name());
+        verify(validationContext, never()).getPipelineConfigByName(unrelated.name());
+        verify(validationContext, never()).getPipelineConfigByName(new CaseInsensitiveString("other"));
+    }
+
+    @Test
+    void shouldNotValidateDownstreamsOfAPipelineBeingCreated() {
+        PipelineConfigSaveValidationContext validationContext = spy(PipelineConfigSaveValidationContext.forChain(true, group, cruiseConfig, p1));
+
+        new PipelineConfigTreeValidator(p1).validateDependencies(validationContext);
+
+        verify(validationContext, never()).getPipelinesWithDependencyMaterials();
+    }
+
+    private PipelineConfig pipeline(String name) {
+        return cruiseConfig.getPipelineConfigByName(new CaseInsensitiveString(name));
+    }
+
+    private PipelineConfig replaceWithNewStage(PipelineConfig pipeline, String stageName, String jobName) {
+        StageConfig stageConfig = new StageConfig(new CaseInsensitiveString(stageName), new JobConfigs(new JobConfig(new CaseInsensitiveString(jobName))));
+        PipelineConfig updated = new PipelineConfig(pipeline.name(), new MaterialConfigs(), stageConfig);
+        cruiseConfig.update(group, updated.name().toString(), updated);
+        return updated;
+    }
+}
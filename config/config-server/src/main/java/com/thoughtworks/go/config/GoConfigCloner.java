@@ -16,8 +16,13 @@
 package com.thoughtworks.go.config;
 
 import com.rits.cloning.Cloner;
+import com.rits.cloning.CloningException;
+import com.thoughtworks.go.config.remote.PartialConfig;
 import com.thoughtworks.go.util.ClonerFactory;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 // Cloner to handle nullification of specific classes in config objects.
 // A specific field can be ignored from being cloned by setting `cloner.setNullTransient(true)` and marking the field as 'transient',
 // but if the object being cloned has other fields which have transient fields internally,
@@ -30,6 +35,25 @@ import com.thoughtworks.go.util.ClonerFactory;
 public class GoConfigCloner extends Cloner {
     public GoConfigCloner() {
         nullInsteadOfClone(BasicCruiseConfig.DO_NOT_CLONE_CLASSES);
+        // names are referenced all over the config and can never change, so clones can safely share them
+        registerImmutable(CaseInsensitiveString.class);
         ClonerFactory.applyFixes(this);
     }
+
+    /**
+     * Deep clones the main configuration while sharing its partials with the clone rather than cloning them too. This is
+     * meant for building the merged config for editing: merging shares the contents of the very same partials with the
+     * merged config anyway, so cloning them (usually the bulk of a config with many config repositories) is wasted.
+     */
+    public <T extends CruiseConfig> T deepCloneSharingPartials(T config) {
+        Map<Object, Object> clones = new IdentityHashMap<>();
+        for (PartialConfig partial : config.getPartials()) {
+            clones.put(partial, partial);
+        }
+        try {
+            return cloneInternal(config, clones);
+        } catch (IllegalAccessException e) {
+            throw new CloningException("error during cloning of " + config, e);
+        }
+    }
 }
@@ -15,7 +15,9 @@
  */
 package com.thoughtworks.go.config;
 
+import com.thoughtworks.go.config.remote.PartialConfig;
 import com.thoughtworks.go.helper.GoConfigMother;
+import com.thoughtworks.go.helper.PartialConfigMother;
 import com.thoughtworks.go.helper.PipelineConfigMother;
 import com.thoughtworks.go.helper.PipelineTemplateConfigMother;
 import com.thoughtworks.go.util.ReflectionUtil;
@@ -125,4 +127,29 @@ public class GoConfigClonerTest {
         assertThat(cloned.getGroups().size()).isEqualTo(1);
         assertThat(cloned.getGroups().getFirst().getPipelines().size()).isEqualTo(2);
     }
+
+    @Test
+    public void shouldShareNamesBetweenOriginalAndClone() {
+        BasicCruiseConfig config = GoConfigMother.configWithPipelines("p1");
+        BasicCruiseConfig cloned = new GoConfigCloner().deepClone(config);
+
+        PipelineConfig original = config.getAllPipelineConfigs().getFirst();
+        PipelineConfig clonedPipeline = cloned.getAllPipelineConfigs().getFirst();
+        assertThat(clonedPipeline).isNotSameAs(original);
+        assertThat(clonedPipeline.name()).isSameAs(original.name());
+    }
+
+    @Test
+    public void shouldShareOnlyPartialsWhenCloningSharingPartials() {
+        BasicCruiseConfig config = GoConfigMother.configWithPipelines("p1");
+        PartialConfig partial = PartialConfigMother.withPipeline("remote");
+        config.setPartials(List.of(partial));
+
+        BasicCruiseConfig cloned = new GoConfigCloner().deepCloneSharingPartials(config);
+
+        assertThat(cloned.getPartials()).hasSize(1);
+        assertThat(cloned.getPartials().getFirst()).isSameAs(partial);
+        assertThat(cloned.getGroups().getFirst()).isNotSameAs(config.getGroups().getFirst());
+        assertThat(cloned.getAllPipelineConfigs().getFirst()).isNotSameAs(config.getAllPipelineConfigs().getFirst());
+    }
 }
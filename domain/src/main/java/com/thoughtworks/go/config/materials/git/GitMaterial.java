@@ -136,6 +136,30 @@ public class GitMaterial extends ScmMaterial implements PasswordAwareMaterial {
         }
     }
 
+    /**
+     * Brings the clone in {@code baseDir} up to date with the remote without reading its history, for pollers which
+     * read the repository themselves rather than through {@link #latestModification} and {@link #modificationsSince}.
+     *
+     * @param fullHistory whether to unshallow the clone (unless shallow clones are enabled), as needed to find the
+     *                    modifications since a given revision
+     * @return the command for the clone; modifications are to be read from its {@link GitCommand#remoteBranch()}
+     */
+    public GitCommand fetchForPolling(File baseDir, final SubprocessExecutionContext execCtx, boolean fullHistory) {
+        GitCommand gitCommand = getGit(baseDir, execCtx);
+        if (fullHistory && !execCtx.isGitShallowClone()) {
+            fullyUnshallow(gitCommand, inMemoryConsumer());
+        }
+        if (!isSubmoduleFolder()) {
+            InMemoryStreamConsumer output = inMemoryConsumer();
+            try {
+                gitCommand.fetch(output);
+            } catch (Exception e) {
+                throw new RuntimeException(format("Working directory: %s\n%s", baseDir, output.getStdError()), e);
+            }
+        }
+        return gitCommand;
+    }
+
     @Override
     public MaterialInstance createMaterialInstance() {
         return new GitMaterialInstance(url.originalArgument(), userName, refSpecOrBranch, submoduleFolder, UUID.randomUUID().toString());
@@ -131,7 +131,7 @@ public abstract class FullConfigSaveFlow {
         }
 
         LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Starting.");
-        CruiseConfig mergedCruiseConfigForEdit = cloner.deepClone(validatedConfigHolder.configForEdit);
+        CruiseConfig mergedCruiseConfigForEdit = cloner.deepCloneSharingPartials(validatedConfigHolder.configForEdit);
         mergedCruiseConfigForEdit.merge(partials, true);
         validatedConfigHolder.mergedConfigForEdit = mergedCruiseConfigForEdit;
         LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Done.");
@@ -502,7 +502,7 @@ public class GoFileConfigDataSource {
                 CruiseConfig mergedCruiseConfigForEdit = modifiedConfig;
                 if (!partials.isEmpty()) {
                     LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Starting.");
-                    mergedCruiseConfigForEdit = cloner.deepClone(modifiedConfig);
+                    mergedCruiseConfigForEdit = cloner.deepCloneSharingPartials(modifiedConfig);
                     mergedCruiseConfigForEdit.merge(partials, true);
                     LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Done.");
                 }
@@ -547,7 +547,7 @@ public class GoFileConfigDataSource {
         if (partialConfigs.isEmpty()) {
             return;
         }
-        CruiseConfig mergedCruiseConfigForEdit = cloner.deepClone(validatedConfigHolder.configForEdit);
+        CruiseConfig mergedCruiseConfigForEdit = cloner.deepCloneSharingPartials(validatedConfigHolder.configForEdit);
         mergedCruiseConfigForEdit.merge(partialConfigs, true);
         validatedConfigHolder.mergedConfigForEdit = mergedCruiseConfigForEdit;
     }
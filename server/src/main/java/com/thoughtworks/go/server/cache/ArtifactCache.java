@@ -16,25 +16,27 @@
 package com.thoughtworks.go.server.cache;
 
 import com.thoughtworks.go.server.service.ArtifactsDirHolder;
+import org.apache.commons.io.function.IORunnable;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.io.InterruptedIOException;
+import java.util.concurrent.*;
 
 /**
- * Understands serving prepared artifacts and preparing artifact offline
+ * Understands serving prepared artifacts and preparing artifact offline. Artifacts are prepared by a fixed number of
+ * worker threads, and concurrent requests for the same artifact share a single preparation.
  */
 public abstract class ArtifactCache<T extends Comparable<T>> {
     protected final ArtifactsDirHolder artifactsDirHolder;
     protected ConcurrentSkipListSet<T> pendingCacheFiles = new ConcurrentSkipListSet<>();
     protected ConcurrentMap<T, Exception> pendingExceptions = new ConcurrentHashMap<>();
+    private final ExecutorService cacheCreators;
     public static final String CACHE_ARTIFACTS_FOLDER = "cache/artifacts/";
 
-    public ArtifactCache(ArtifactsDirHolder artifactsDirHolder) {
+    public ArtifactCache(ArtifactsDirHolder artifactsDirHolder, int cacheCreatorThreads) {
         this.artifactsDirHolder = artifactsDirHolder;
+        this.cacheCreators = Executors.newFixedThreadPool(Math.max(cacheCreatorThreads, 1), Thread.ofPlatform().name("cache-creator-thread-", 0).daemon(true).factory());
     }
 
     public boolean cacheCreated(T artifactLocation) throws IOException {
@@ -60,7 +62,12 @@ public abstract class ArtifactCache<T extends Comparable<T>> {
     }
 
     private boolean cacheAlreadyCreated(T artifactLocation) {
-        return cachedFile(artifactLocation).exists();
+        File cachedFile = cachedFile(artifactLocation);
+        if (cachedFile.exists()) {
+            cacheAccessed(cachedFile);
+            return true;
+        }
+        return false;
     }
 
     private boolean currentlyCreatingCache(T artifactLocation) {
@@ -70,23 +77,49 @@ public abstract class ArtifactCache<T extends Comparable<T>> {
     protected void startCacheCreationThread(final T artifactLocation) {
         boolean inserted = pendingCacheFiles.add(artifactLocation);
         if (inserted) {
-            Thread cacheCreatorThread = new Thread("cache-creator-thread-" + UUID.randomUUID()) {
-                @Override
-                public void run() {
-                    try {
-                        createCachedFile(artifactLocation);
-                    } catch (Exception e) {
-                        pendingExceptions.putIfAbsent(artifactLocation, e);
-                    } finally {
-                        pendingCacheFiles.remove(artifactLocation);
-                    }
+            cacheCreators.execute(() -> {
+                try {
+                    createCachedFile(artifactLocation);
+                } catch (Exception e) {
+                    pendingExceptions.putIfAbsent(artifactLocation, e);
+                } finally {
+                    pendingCacheFiles.remove(artifactLocation);
                 }
-            };
-            cacheCreatorThread.start();
+            });
+        }
+    }
+
+    /**
+     * Runs {@code creation} on one of the worker threads and waits for it to finish, so that artifacts prepared while a
+     * request waits for them are limited by the same number of threads as those prepared offline.
+     */
+    protected void createWhileWaiting(IORunnable creation) throws IOException {
+        Future<?> future = cacheCreators.submit(() -> {
+            creation.run();
+            return null;
+        });
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the artifact to be prepared");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException ioe -> throw ioe;
+                case RuntimeException re -> throw re;
+                default -> throw new RuntimeException(e.getCause()); // unexpected
+            }
         }
     }
 
     public abstract File cachedFile(T artifactLocation);
 
     abstract void createCachedFile(T artifactLocation) throws IOException;
+
+    /**
+     * Called whenever an already created cache file is about to be served.
+     */
+    void cacheAccessed(File cachedFile) {
+    }
 }
@@ -18,18 +18,16 @@ package com.thoughtworks.go.server.cache;
 import com.thoughtworks.go.config.CaseInsensitiveString;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static java.util.stream.Stream.of;
-
+/**
+ * Generates cache keys namespaced by the owning class. Keys are plain (non-interned) strings; code that needs to
+ * synchronize on a key should lock on {@link CacheKeyLocks#lockFor(String)} instead of the key itself.
+ */
 public class CacheKeyGenerator {
-    private static final String DELIMITER = ".$";
-    private final Class<?> clazz;
+    static final String DELIMITER = ".$";
+    private final String prefix;
 
     public CacheKeyGenerator(Class<?> clazz) {
-        this.clazz = clazz;
+        this.prefix = clazz.getName() + DELIMITER;
     }
 
     public @NotNull String generate(@NotNull String identifier, long arg) {
@@ -37,19 +35,23 @@ public class CacheKeyGenerator {
     }
 
     public @NotNull String generate(@NotNull String identifier, String arg) {
-        return String.join(DELIMITER, clazz.getName(), identifier, toStringSafe(arg)).intern();
+        return prefix + identifier + DELIMITER + toStringSafe(arg);
     }
 
-    public @NotNull String generate(@NotNull String identifier, String... arg) {
-        return generateFor(identifier, Arrays.stream(arg).map(CacheKeyGenerator::toStringSafe));
+    public @NotNull String generate(@NotNull String identifier, String... args) {
+        StringBuilder key = new StringBuilder(prefix.length() + identifier.length() + 16 * args.length).append(prefix).append(identifier);
+        for (String arg : args) {
+            key.append(DELIMITER).append(toStringSafe(arg));
+        }
+        return key.toString();
     }
 
     public @NotNull String generate(@NotNull String identifier, Object... args) {
-        return generateFor(identifier, Arrays.stream(args).map(CacheKeyGenerator::validateArg).map(CacheKeyGenerator::toStringSafe));
-    }
-
-    private @NotNull String generateFor(@NotNull String identifier, Stream<String> args) {
-        return Stream.concat(of(clazz.getName(), identifier), args).collect(Collectors.joining(DELIMITER)).intern();
+        StringBuilder key = new StringBuilder(prefix.length() + identifier.length() + 16 * args.length).append(prefix).append(identifier);
+        for (Object arg : args) {
+            key.append(DELIMITER).append(toStringSafe(validateArg(arg)));
+        }
+        return key.toString();
     }
 
     private static String toStringSafe(String arg) {
@@ -0,0 +1,42 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Hands out one monitor per cache key, for code that needs to serialize the population or invalidation of a cache
+ * entry. This replaces synchronizing on {@link String#intern() interned} keys: interning every generated key costs a
+ * lookup in the JVM-wide string table on each call and makes the monitor visible to any unrelated code that happens to
+ * synchronize on an equal string literal.
+ * <p>
+ * Monitors are only weakly held, so a key's monitor lives exactly as long as some thread is holding or waiting on it
+ * (the {@code synchronized} statement keeps a strong reference for its whole duration); equal keys always map to the
+ * same monitor while it is in use. Monitors are distinct per key rather than striped, since callers nest locks on
+ * different keys (e.g. a DAO key and then a {@link GoCache} parent key) and sharing stripes could deadlock.
+ */
+public final class CacheKeyLocks {
+    private static final Cache<String, Object> MONITORS = Caffeine.newBuilder().weakValues().build();
+
+    private CacheKeyLocks() {
+    }
+
+    public static @NotNull Object lockFor(@NotNull String key) {
+        return MONITORS.get(key, k -> new Object());
+    }
+}
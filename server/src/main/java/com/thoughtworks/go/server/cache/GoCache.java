@@ -15,13 +15,13 @@
  */
 package com.thoughtworks.go.server.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.thoughtworks.go.domain.NullUser;
 import com.thoughtworks.go.domain.PersistentObject;
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
-import net.sf.ehcache.Ehcache;
-import net.sf.ehcache.Element;
-import net.sf.ehcache.config.CacheConfiguration;
-import net.sf.ehcache.event.CacheEventListener;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
@@ -29,47 +29,167 @@ import org.slf4j.LoggerFactory;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
 import javax.annotation.PreDestroy;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
-import static org.apache.commons.lang3.StringUtils.splitByWholeSeparator;
 
 /**
- * Understands storing and retrieving objects from an underlying LRU cache
+ * Understands storing and retrieving objects from an underlying in-memory cache.
+ * <p>
+ * Entries are partitioned into regions by the class that owns their key (see {@link #regionOf(String)}). The weight
+ * limit of the cache is shared between its regions (see {@link #rebalance()}), and every region evicts its own entries
+ * once it reaches its share, so that a DAO caching large collections cannot evict the entries of another. Values stored
+ * under a sub key live inside their parent entry, which means removing or evicting the parent drops all of its sub keys
+ * along with it.
  */
 public class GoCache {
-    @VisibleForTesting public static final String SUB_KEY_DELIMITER = "!_#$#_!";
+    @VisibleForTesting static final String DEFAULT_REGION = "Default";
     private static final Logger LOGGER = LoggerFactory.getLogger(GoCache.class);
+    private static final int PUTS_BETWEEN_REBALANCES = 1024;
     private final ThreadLocal<Boolean> doNotServeForTransaction = new ThreadLocal<>();
 
-    private final Ehcache ehCache;
+    private final ConcurrentMap<String, Cache<String, Object>> regions;
+    private final long weightLimit;
+    private final AtomicLong puts;
+    private final Executor maintenanceExecutor;
     private final TransactionSynchronizationManager transactionSynchronizationManager;
+    private final List<Listener> listeners;
 
-    @VisibleForTesting static class KeyList extends HashSet<String> { }
+    /**
+     * Receives notifications of entries being written to or removed from the cache.
+     */
+    public interface Listener {
+        default void entryPut(String key) {
+        }
+
+        default void entryRemoved(String key) {
+        }
+    }
+
+    public record RegionStatistics(String region, long entries, long weight, long weightLimit, CacheStats stats) {
+    }
+
+    /**
+     * The values stored under the sub keys of a parent key. A family is bounded by half the share of its region:
+     * once it outgrows that, its least recently used sub keys are evicted, rather than the whole family being evicted
+     * from the region as one entry, and without crowding every other entry out of the region.
+     * <p>
+     * Sub keys are read concurrently, but only written while the region computes the parent entry, which makes the
+     * region re-weigh the parent on every change.
+     */
+    @VisibleForTesting
+    static final class SubKeys {
+        private final ConcurrentMap<String, SubKeyValue> values = new ConcurrentHashMap<>();
+        private final LongSupplier weightLimit;
+        private long weight = 1;
+
+        private SubKeys(LongSupplier weightLimit) {
+            this.weightLimit = weightLimit;
+        }
+
+        Object get(String subKey) {
+            SubKeyValue value = values.get(subKey);
+            if (value == null) {
+                return null;
+            }
+            value.lastAccessed = System.nanoTime();
+            return value.value;
+        }
+
+        Set<String> keys() {
+            return values.keySet();
+        }
+
+        private void put(String subKey, Object value) {
+            SubKeyValue added = new SubKeyValue(value);
+            SubKeyValue replaced = values.put(subKey, added);
+            weight += added.weight - (replaced == null ? 0 : replaced.weight);
+            if (weight > weightLimit.getAsLong()) {
+                evictLeastRecentlyUsed();
+            }
+        }
+
+        private void remove(String subKey) {
+            SubKeyValue removed = values.remove(subKey);
+            if (removed != null) {
+                weight -= removed.weight;
+            }
+        }
+
+        /**
+         * Evicts down to three quarters of the limit, so that a family which keeps growing is only sorted once every so
+         * many puts.
+         */
+        private void evictLeastRecentlyUsed() {
+            record Candidate(String subKey, SubKeyValue value, long lastAccessed) {
+            }
+            List<Candidate> candidates = new ArrayList<>(values.size());
+            values.forEach((subKey, value) -> candidates.add(new Candidate(subKey, value, value.lastAccessed)));
+            candidates.sort(Comparator.comparingLong(Candidate::lastAccessed));
+
+            long targetWeight = weightLimit.getAsLong() * 3 / 4;
+            for (Candidate candidate : candidates) {
+                if (weight <= targetWeight) {
+                    break;
+                }
+                if (values.remove(candidate.subKey(), candidate.value())) {
+                    weight -= candidate.value().weight;
+                }
+            }
+        }
+    }
+
+    private static final class SubKeyValue {
+        private final Object value;
+        private final int weight;
+        private volatile long lastAccessed = System.nanoTime();
+
+        private SubKeyValue(Object value) {
+            this.value = value;
+            this.weight = weigh(value);
+        }
+    }
 
     @TestOnly
     public GoCache(GoCache goCache) {
-        this(goCache.ehCache, goCache.transactionSynchronizationManager);
+        this.regions = goCache.regions;
+        this.weightLimit = goCache.weightLimit;
+        this.puts = goCache.puts;
+        this.maintenanceExecutor = goCache.maintenanceExecutor;
+        this.transactionSynchronizationManager = goCache.transactionSynchronizationManager;
+        this.listeners = goCache.listeners;
+    }
+
+    public GoCache(long weightLimit, TransactionSynchronizationManager transactionSynchronizationManager) {
+        this(weightLimit, ForkJoinPool.commonPool(), transactionSynchronizationManager);
     }
 
-    public GoCache(Ehcache cache, TransactionSynchronizationManager transactionSynchronizationManager) {
-        this.ehCache = cache;
+    @VisibleForTesting
+    GoCache(long weightLimit, Executor maintenanceExecutor, TransactionSynchronizationManager transactionSynchronizationManager) {
+        this.regions = new ConcurrentHashMap<>();
+        this.weightLimit = weightLimit;
+        this.puts = new AtomicLong();
+        this.maintenanceExecutor = maintenanceExecutor;
         this.transactionSynchronizationManager = transactionSynchronizationManager;
-        ehCache.getCacheEventNotificationService().registerListener(new CacheEvictionListener(this));
+        this.listeners = new CopyOnWriteArrayList<>();
     }
 
     @PreDestroy
     public void destroy() {
         clear();
-        Optional.ofNullable(ehCache.getCacheManager())
-            .ifPresent(cm -> cm.removeCache(ehCache.getName()));
+        regions.clear();
     }
 
     @TestOnly
-    public void addListener(CacheEventListener listener) {
-        ehCache.getCacheEventNotificationService().registerListener(listener);
+    public void addListener(Listener listener) {
+        listeners.add(listener);
     }
 
     public void stopServingForTransaction() {
@@ -86,18 +206,30 @@ public class GoCache {
 
     public void put(String key, Object value) {
         logUnsavedPersistentObjectInteraction(value, "PersistentObject {} added to cache without an id.");
-        if (transactionSynchronizationManager.isActualTransactionActive()) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("transaction active during cache put for {} = {}", key, value, new IllegalStateException());
-            }
+        if (isTransactionActiveDuringPut(key, value)) {
             return;
         }
-        ehCache.put(new Element(key, value));
+        regionFor(key).put(key, value);
+        putDone();
+        notifyPut(key);
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getKeys() {
-        return ehCache.getKeys();
+        List<String> keys = new ArrayList<>();
+        for (Cache<String, Object> region : regions.values()) {
+            keys.addAll(region.asMap().keySet());
+        }
+        return keys;
+    }
+
+    private boolean isTransactionActiveDuringPut(String key, Object value) {
+        if (transactionSynchronizationManager.isActualTransactionActive()) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("transaction active during cache put for {} = {}", key, value, new IllegalStateException());
+            }
+            return true;
+        }
+        return false;
     }
 
     private void logUnsavedPersistentObjectInteraction(Object value, String message) {
@@ -121,17 +253,13 @@ public class GoCache {
         if (doNotServeForTransaction()) {
             return null;
         }
-        return getWithoutTransactionCheck(key);
+        return served(regionFor(key).getIfPresent(key));
     }
 
-    private <T> T getWithoutTransactionCheck(String key) {
-        Element element = ehCache.get(key);
-        if (element == null) {
-            return null;
-        }
-        @SuppressWarnings("unchecked") T value = (T) element.getObjectValue();
+    private <T> T served(Object value) {
         logUnsavedPersistentObjectInteraction(value, "PersistentObject {} without an id served out of cache.");
-        return value;
+        @SuppressWarnings("unchecked") T result = (T) value;
+        return result;
     }
 
     private boolean doNotServeForTransaction() {
@@ -139,36 +267,52 @@ public class GoCache {
     }
 
     public void clear() {
-        ehCache.removeAll();
+        for (Cache<String, Object> region : regions.values()) {
+            region.invalidateAll();
+        }
     }
 
     public boolean remove(String key) {
-        synchronized (key.intern()) {
-            Object value = getWithoutTransactionCheck(key);
-            if (value instanceof KeyList keyList) {
-                for (String subKey : keyList) {
-                    ehCache.remove(compositeKey(key, subKey));
-                }
-            }
-            return ehCache.remove(key);
+        if (regionFor(key).asMap().remove(key) == null) {
+            return false;
         }
+        notifyRemoved(key);
+        return true;
     }
 
     public Object get(String key, String subKey) {
-        return get(compositeKey(key, subKey));
+        if (doNotServeForTransaction()) {
+            return null;
+        }
+        if (regionFor(key).getIfPresent(key) instanceof SubKeys subKeys) {
+            return served(subKeys.get(subKey));
+        }
+        return null;
+    }
+
+    /**
+     * @return the sub keys currently stored under {@code key}
+     */
+    public Set<String> getSubKeys(String key) {
+        if (regionFor(key).getIfPresent(key) instanceof SubKeys subKeys) {
+            return Set.copyOf(subKeys.keys());
+        }
+        return Set.of();
     }
 
     public void put(String key, String subKey, Object value) {
-        KeyList subKeys;
-        synchronized (key.intern()) {
-            subKeys = subKeyFamily(key);
-            if (subKeys == null) {
-                subKeys = new KeyList();
-                put(key, subKeys);
-            }
-            subKeys.add(subKey);
+        logUnsavedPersistentObjectInteraction(value, "PersistentObject {} added to cache without an id.");
+        if (isTransactionActiveDuringPut(key, value)) {
+            return;
         }
-        put(compositeKey(key, subKey), value);
+        Cache<String, Object> region = regionFor(key);
+        region.asMap().compute(key, (k, existing) -> {
+            SubKeys subKeys = existing instanceof SubKeys family ? family : new SubKeys(() -> Math.max(1, maximumWeightOf(region) / 2));
+            subKeys.put(subKey, value);
+            return subKeys;
+        });
+        putDone();
+        notifyPut(key);
     }
 
     public void removeAll(List<String> keys) {
@@ -177,56 +321,153 @@ public class GoCache {
         }
     }
 
-    public void removeAssociations(String key, Element element) {
-        if (element.getObjectValue() instanceof KeyList keyList) {
-            synchronized (key.intern()) {
-                for (String subkey : keyList) {
-                    remove(compositeKey(key, subkey));
-                }
-            }
-        } else if (key.contains(SUB_KEY_DELIMITER)) {
-            String[] parts = splitByWholeSeparator(key, SUB_KEY_DELIMITER);
-            String parentKey = parts[0];
-            String childKey = parts[1];
-            synchronized (parentKey.intern()) {
-                Element parent = ehCache.get(parentKey);
-                if (parent == null) {
-                    return;
-                }
-                KeyList subKeys = (KeyList) parent.getObjectValue();
-                subKeys.remove(childKey);
+    public boolean isKeyInCache(String key) {
+        return regionFor(key).asMap().containsKey(key);
+    }
+
+    public void remove(String key, String subKey) {
+        regionFor(key).asMap().computeIfPresent(key, (k, existing) -> {
+            if (existing instanceof SubKeys subKeys) {
+                subKeys.remove(subKey);
             }
-        }
+            return existing;
+        });
     }
 
-    public boolean isKeyInCache(Object key) {
-        return ehCache.isKeyInCache(key);
+    public List<RegionStatistics> regionStatistics() {
+        List<RegionStatistics> statistics = new ArrayList<>();
+        regions.forEach((name, region) -> {
+            long weight = region.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+            statistics.add(new RegionStatistics(name, region.estimatedSize(), weight, maximumWeightOf(region), region.stats()));
+        });
+        statistics.sort(Comparator.comparing(RegionStatistics::region));
+        return statistics;
     }
 
-    private KeyList subKeyFamily(String parentKey) {
-        return get(parentKey);
+    @VisibleForTesting
+    void cleanUp() {
+        regions.values().forEach(Cache::cleanUp);
     }
 
-    private String compositeKey(String key, String subKey) {
-        String concat = key + subKey;
-        if (concat.contains(SUB_KEY_DELIMITER)) {
-            bomb(String.format("Base and sub key concatenation(key = %s, subkey = %s) must not have pattern %s", key, subKey, SUB_KEY_DELIMITER));
+    private Cache<String, Object> regionFor(String key) {
+        String region = regionOf(key);
+        Cache<String, Object> cache = regions.get(region);
+        if (cache != null) {
+            return cache;
         }
-        return key + SUB_KEY_DELIMITER + subKey;
+        cache = regions.computeIfAbsent(region, this::newRegion);
+        rebalance();
+        return cache;
     }
 
-    public void remove(String key, String subKey) {
-        synchronized (key.intern()) {
-            KeyList subKeys = subKeyFamily(key);
-            if (subKeys == null) {
+    private Cache<String, Object> newRegion(String region) {
+        return Caffeine.newBuilder()
+            .maximumWeight(weightLimit)
+            .weigher((String key, Object value) -> weigh(value))
+            .executor(maintenanceExecutor)
+            .recordStats()
+            .build();
+    }
+
+    private void putDone() {
+        if (puts.incrementAndGet() % PUTS_BETWEEN_REBALANCES == 0) {
+            rebalance();
+        }
+    }
+
+    /**
+     * Shares the weight limit of the cache between its regions. A region which is not close to its share yet gets room
+     * to double (or a quarter of an equal share, if that is more), but never more than an equal share of what is left.
+     * Whatever those regions leave unused goes to the regions close to their share, or is spread over all regions if
+     * there are none. Shares are rebalanced whenever a region is added and every {@link #PUTS_BETWEEN_REBALANCES} puts.
+     */
+    @VisibleForTesting
+    void rebalance() {
+        record Region(Policy.Eviction<String, Object> eviction, long demand) {
+        }
+        synchronized (regions) {
+            List<Region> byDemand = new ArrayList<>();
+            for (Cache<String, Object> region : regions.values()) {
+                region.policy().eviction().ifPresent(eviction -> {
+                    long weight = eviction.weightedSize().orElse(0L);
+                    boolean full = weight >= eviction.getMaximum() * 3 / 4;
+                    byDemand.add(new Region(eviction, full ? Long.MAX_VALUE : 2 * weight));
+                });
+            }
+            if (byDemand.isEmpty()) {
                 return;
             }
-            subKeys.remove(subKey);
-            remove(compositeKey(key, subKey));
+            byDemand.sort(Comparator.comparingLong(Region::demand));
+
+            long[] shares = new long[byDemand.size()];
+            long remaining = weightLimit;
+            for (int i = 0; i < shares.length; i++) {
+                long equalShare = remaining / (shares.length - i);
+                shares[i] = Math.min(equalShare, Math.max(byDemand.get(i).demand(), equalShare / 4));
+                remaining -= shares[i];
+            }
+            for (int i = 0; i < shares.length; i++) {
+                long unused = remaining / shares.length + (i == 0 ? remaining % shares.length : 0);
+                byDemand.get(i).eviction().setMaximum(Math.max(1, shares[i] + unused));
+            }
         }
     }
 
-    public CacheConfiguration configuration() {
-        return ehCache.getCacheConfiguration();
+    private static long maximumWeightOf(Cache<String, Object> region) {
+        return region.policy().eviction().map(Policy.Eviction::getMaximum).orElse(Long.MAX_VALUE);
+    }
+
+    /**
+     * Keys are conventionally prefixed with the fully qualified name of the class that owns them, either through
+     * {@link CacheKeyGenerator} or by hand (e.g. {@code com.example.FooDao_someKey_1}). The region of a key is the
+     * simple name of that class, and {@link #DEFAULT_REGION} for keys that do not follow the convention.
+     */
+    @VisibleForTesting
+    static String regionOf(String key) {
+        int end = classNameEnd(key);
+        int lastDot = key.lastIndexOf('.', end - 1);
+        if (lastDot <= 0 || lastDot == end - 1) {
+            return DEFAULT_REGION;
+        }
+        return key.substring(lastDot + 1, end);
+    }
+
+    private static int classNameEnd(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            boolean delimiter = c == '_' || key.startsWith(CacheKeyGenerator.DELIMITER, i);
+            if (delimiter || !(c == '.' || Character.isJavaIdentifierPart(c))) {
+                return i;
+            }
+        }
+        return key.length();
+    }
+
+    /**
+     * Approximates how much of the cache an entry uses: collections, maps and arrays weigh one unit per element and any
+     * other value weighs one unit, which is enough to keep a region from being filled up by a few large entries.
+     */
+    @VisibleForTesting
+    static int weigh(Object value) {
+        long weight = switch (value) {
+            case SubKeys subKeys -> subKeys.weight;
+            case Collection<?> collection -> 1L + collection.size();
+            case Map<?, ?> map -> 1L + map.size();
+            case Object[] array -> 1L + array.length;
+            case null, default -> 1L;
+        };
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private void notifyPut(String key) {
+        for (Listener listener : listeners) {
+            listener.entryPut(key);
+        }
+    }
+
+    private void notifyRemoved(String key) {
+        for (Listener listener : listeners) {
+            listener.entryRemoved(key);
+        }
     }
 }
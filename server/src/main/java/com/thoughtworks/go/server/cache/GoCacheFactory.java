@@ -16,12 +16,6 @@
 package com.thoughtworks.go.server.cache;
 
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.config.CacheConfiguration;
-import net.sf.ehcache.config.Configuration;
-import net.sf.ehcache.config.PersistenceConfiguration;
-import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
@@ -29,25 +23,22 @@ import org.springframework.stereotype.Component;
 @Component
 public class GoCacheFactory {
 
-    private final CacheConfiguration cacheConfiguration;
+    private final long weightLimit;
     private final TransactionSynchronizationManager transactionSynchronizationManager;
 
+    /**
+     * @param weightLimit the weight all regions of the cache share, where every cached object weighs one and
+     *                    collections weigh one per element
+     */
     public GoCacheFactory(TransactionSynchronizationManager transactionSynchronizationManager,
-                          @Value("${cruise.cache.elements.limit}") int maxElementsInMemory,
-                          @Value("${cruise.cache.is.eternal}") boolean eternal) {
+                          @Value("${cruise.cache.elements.limit}") long weightLimit) {
         this.transactionSynchronizationManager = transactionSynchronizationManager;
-        cacheConfiguration = new CacheConfiguration("goCache", maxElementsInMemory)
-                .persistence(new PersistenceConfiguration().strategy(PersistenceConfiguration.Strategy.NONE))
-                .eternal(eternal)
-                .memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU);
+        this.weightLimit = weightLimit;
     }
 
     @Bean(name = "goCache")
     public GoCache createCache() {
-        CacheManager cacheManager = CacheManager.newInstance(new Configuration().name(getClass().getName()));
-        Cache cache = new Cache(cacheConfiguration);
-        cacheManager.addCache(cache);
-        return new GoCache(cache, transactionSynchronizationManager);
+        return new GoCache(weightLimit, transactionSynchronizationManager);
     }
 
 }
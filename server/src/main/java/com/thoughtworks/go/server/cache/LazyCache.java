@@ -41,7 +41,7 @@ public class LazyCache {
             return (T) element.getObjectValue();
         }
 
-        synchronized (key.intern()) {
+        synchronized (CacheKeyLocks.lockFor(key)) {
             element = ehCache.get(key);
             if (element != null) {
                 return (T) element.getObjectValue();
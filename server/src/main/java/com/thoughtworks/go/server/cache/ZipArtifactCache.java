@@ -17,24 +17,43 @@ package com.thoughtworks.go.server.cache;
 
 import com.thoughtworks.go.server.service.ArtifactsDirHolder;
 import com.thoughtworks.go.server.web.ArtifactFolder;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.ZipUtil;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
 import java.util.zip.Deflater;
 
+/**
+ * Caches zips of artifact folders under {@link #CACHE_ARTIFACTS_FOLDER}. Serving a cached zip marks it as recently
+ * used; once the cache grows beyond {@link SystemEnvironment#GO_ARTIFACT_ZIP_CACHE_MAX_SIZE_MB}, the least recently
+ * used zips are removed whenever a new one is created.
+ */
 @Component
 public class ZipArtifactCache extends ArtifactCache<ArtifactFolder> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipArtifactCache.class);
+
     private final ZipUtil zipUtil;
+    private final long maxCacheSizeInBytes;
+    private final boolean streamUncachedZips;
 
     @Autowired
-    public ZipArtifactCache(ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil) {
-        super(artifactsDirHolder);
+    public ZipArtifactCache(ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, SystemEnvironment systemEnvironment) {
+        super(artifactsDirHolder, systemEnvironment.get(SystemEnvironment.GO_ARTIFACT_ZIP_CACHE_THREADS));
         this.zipUtil = zipUtil;
+        this.maxCacheSizeInBytes = FileUtils.ONE_MB * systemEnvironment.get(SystemEnvironment.GO_ARTIFACT_ZIP_CACHE_MAX_SIZE_MB);
+        this.streamUncachedZips = systemEnvironment.get(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED);
     }
 
     private static String removeTrailingSlash(String s) {
@@ -56,7 +75,93 @@ public class ZipArtifactCache extends ArtifactCache<ArtifactFolder> {
             cachedTempZip.delete();
             throw e;
         }
+        publish(cachedTempZip, cachedZip);
+    }
+
+    /**
+     * @return whether a zip that is neither cached nor being created yet should be streamed to the requester as it is
+     * built (see {@link #streamTo(ArtifactFolder, OutputStream)}), rather than the requester polling until it is cached
+     */
+    public boolean shouldStream(ArtifactFolder artifactFolder) {
+        return streamUncachedZips && !pendingCacheFiles.contains(artifactFolder) && !cachedFile(artifactFolder).exists();
+    }
+
+    /**
+     * Zips the artifact folder straight into {@code output}, caching the zip along the way. The zip is built on one of
+     * the cache creator threads, so streamed zips count against the same limit as cached ones. If the zip started being
+     * created for another request in the meantime, it is streamed without being cached a second time. {@code output} is
+     * closed once done.
+     */
+    public void streamTo(ArtifactFolder artifactFolder, OutputStream output) throws IOException {
+        if (!pendingCacheFiles.add(artifactFolder)) {
+            createWhileWaiting(() -> zipUtil.zip(artifactFolder.getRootFolder(), output, Deflater.DEFAULT_COMPRESSION));
+            return;
+        }
+        try {
+            createWhileWaiting(() -> {
+                File cachedZip = cachedFile(artifactFolder);
+                File cachedTempZip = zipToTempFile(cachedZip);
+                cachedTempZip.getParentFile().mkdirs();
+                try (OutputStream cacheOutput = new FileOutputStream(cachedTempZip)) {
+                    zipUtil.zip(artifactFolder.getRootFolder(), new TeeOutputStream(output, cacheOutput), Deflater.DEFAULT_COMPRESSION);
+                } catch (IOException e) {
+                    cachedTempZip.delete();
+                    throw e;
+                }
+                publish(cachedTempZip, cachedZip);
+            });
+        } finally {
+            pendingCacheFiles.remove(artifactFolder);
+        }
+    }
+
+    private void publish(File cachedTempZip, File cachedZip) throws IOException {
+        if (cachedZip.exists()) {
+            cachedTempZip.delete();
+            return;
+        }
         FileUtils.moveFile(cachedTempZip, cachedZip);
+        evictLeastRecentlyUsed(cachedZip.toPath());
+    }
+
+    @Override
+    void cacheAccessed(File cachedFile) {
+        cachedFile.setLastModified(System.currentTimeMillis());
+    }
+
+    private synchronized void evictLeastRecentlyUsed(Path justCreated) {
+        if (maxCacheSizeInBytes <= 0) {
+            return;
+        }
+
+        List<CachedZip> cachedZips;
+        try (Stream<Path> zips = Files.find(cacheRoot(), Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile() && path.toString().endsWith(".zip"))) {
+            cachedZips = zips.map(CachedZip::of).sorted(Comparator.comparingLong(CachedZip::lastAccessed)).toList();
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Unable to determine the size of the artifact zip cache. Skipping eviction.", e);
+            return;
+        }
+
+        long cacheSize = cachedZips.stream().mapToLong(CachedZip::size).sum();
+        for (CachedZip cachedZip : cachedZips) {
+            if (cacheSize <= maxCacheSizeInBytes) {
+                break;
+            }
+            if (cachedZip.path().equals(justCreated)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(cachedZip.path());
+                cacheSize -= cachedZip.size();
+                LOGGER.debug("Evicted {} from the artifact zip cache.", cachedZip.path());
+            } catch (IOException e) {
+                LOGGER.warn("Unable to evict {} from the artifact zip cache.", cachedZip.path(), e);
+            }
+        }
+    }
+
+    private Path cacheRoot() {
+        return new File(artifactsDirHolder.getArtifactsDir(), CACHE_ARTIFACTS_FOLDER).toPath();
     }
 
     private File zipToTempFile(File cachedZip) {
@@ -70,4 +175,11 @@ public class ZipArtifactCache extends ArtifactCache<ArtifactFolder> {
         String relativize = FilenameUtils.separatorsToUnix(artifactFolder.getRootFolder().getPath()).replaceFirst(FilenameUtils.separatorsToUnix(root.getPath()), CACHE_ARTIFACTS_FOLDER);
         return new File(root, removeTrailingSlash(relativize) + ".zip");
     }
+
+    private record CachedZip(Path path, long size, long lastAccessed) {
+        static CachedZip of(Path path) {
+            File file = path.toFile();
+            return new CachedZip(path, file.length(), file.lastModified());
+        }
+    }
 }
@@ -51,6 +51,7 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static com.thoughtworks.go.util.ArtifactUtil.*;
 import static com.thoughtworks.go.util.GoConstants.*;
@@ -224,7 +225,7 @@ public class ArtifactsController {
         }
 
         if (isConsoleOutput(filePath)) {
-            return putConsoleOutput(jobIdentifier, request.getInputStream());
+            return putConsoleOutput(jobIdentifier, consoleInputStream(request));
         } else {
             return putArtifact(jobIdentifier, filePath, request.getInputStream());
         }
@@ -310,11 +311,19 @@ public class ArtifactsController {
         return request.getFile(CHECKSUM_MULTIPART_FILENAME);
     }
 
+    private static InputStream consoleInputStream(HttpServletRequest request) throws IOException {
+        if ("gzip".equalsIgnoreCase(request.getHeader(StandardHeaders.REQUEST_CONSOLE_ENCODING))) {
+            return new GZIPInputStream(request.getInputStream(), 8192);
+        }
+        return request.getInputStream();
+    }
+
     private ModelAndView putConsoleOutput(final JobIdentifier jobIdentifier, final InputStream inputStream) throws IllegalArtifactLocationException {
         File consoleLogFile = consoleService.consoleLogFile(jobIdentifier);
         boolean updated = consoleService.appendToConsoleLogIoSafe(consoleLogFile, inputStream);
         if (updated) {
             consoleActivityMonitor.consoleUpdatedFor(jobIdentifier);
+            consoleService.notifyConsoleUpdated(jobIdentifier);
             return FileModelAndView.fileAppended(consoleLogFile.getPath());
         } else {
             return FileModelAndView.errorSavingFile(consoleLogFile.getPath());
@@ -51,6 +51,7 @@ import org.springframework.transaction.support.TransactionSynchronizationAdapter
 import javax.annotation.PreDestroy;
 import java.util.*;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
 import static com.thoughtworks.go.util.IBatisUtil.arguments;
 
 @Component
@@ -109,7 +110,7 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
     @Override
     public JobInstance buildByIdWithTransitions(long buildInstanceId) {
         String cacheKey = cacheKeyForJobInstanceWithTransitions(buildInstanceId);
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             JobInstance instance = goCache.get(cacheKey);
             if (instance == null) {
                 instance = job(buildInstanceId, "buildByIdWithTransitions");
@@ -222,7 +223,7 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
 
         JobIdentifier jobIdentifier = goCache.get(key);
         if (jobIdentifier == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 jobIdentifier = goCache.get(key);
                 if (jobIdentifier == null) {
                     Map<String, Object> params =
@@ -298,14 +299,14 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
                 @Override
                 public void afterCommit() {
                     // Methods not extracted in order to make synchronization visible.
-                    synchronized (cacheKeyForJobPlan(jobInstance.getId())) {
+                    synchronized (lockFor(cacheKeyForJobPlan(jobInstance.getId()))) {
                         removeCachedJobPlan(jobInstance);
                     }
-                    synchronized (cacheKeyForActiveJobIds()) {
+                    synchronized (lockFor(cacheKeyForActiveJobIds())) {
                         goCache.remove(cacheKeyForActiveJobIds());
                     }
                     String activeJobKey = cacheKeyForActiveJob(jobInstance.getId());
-                    synchronized (activeJobKey) {
+                    synchronized (lockFor(activeJobKey)) {
                         goCache.remove(activeJobKey);
                     }
                     removeCachedJobInstance(jobInstance);
@@ -321,7 +322,7 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
 
     private void removeCachedJobInstance(JobInstance jobInstance) {
         String cacheKeyOfJob = cacheKeyForJobInstanceWithTransitions(jobInstance.getId());
-        synchronized (cacheKeyOfJob) {
+        synchronized (lockFor(cacheKeyOfJob)) {
             goCache.remove(cacheKeyOfJob);
         }
     }
@@ -408,7 +409,7 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
         List<JobPlan> plans = new ArrayList<>();
         for (Long jobId : jobIds) {
             String cacheKey = cacheKeyForJobPlan(jobId);
-            synchronized (cacheKey) {
+            synchronized (lockFor(cacheKey)) {
                 JobPlan jobPlan = goCache.get(cacheKey);
                 if (jobPlan == null) {
                     jobPlan = _loadJobPlan(jobId);
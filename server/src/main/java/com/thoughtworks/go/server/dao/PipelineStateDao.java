@@ -43,6 +43,8 @@ import org.springframework.transaction.support.TransactionSynchronizationAdapter
 
 import java.util.List;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
+
 @Component
 public class PipelineStateDao extends SqlMapClientDaoSupport implements StageStatusListener {
     private TransactionTemplate transactionTemplate;
@@ -71,7 +73,7 @@ public class PipelineStateDao extends SqlMapClientDaoSupport implements StageSta
     }
 
     public void lockPipeline(final Pipeline pipeline, AfterCompletionCallback... callbacks) {
-        synchronized (pipelineLockStateCacheKey(pipeline.getName())) {
+        synchronized (lockFor(pipelineLockStateCacheKey(pipeline.getName()))) {
             transactionTemplate.execute(new TransactionCallbackWithoutResult() {
                 @Override
                 protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -112,7 +114,7 @@ public class PipelineStateDao extends SqlMapClientDaoSupport implements StageSta
     }
 
     public void unlockPipeline(final String pipelineName, AfterCompletionCallback... afterCompletionCallbacks) {
-        synchronized (pipelineLockStateCacheKey(pipelineName)) {
+        synchronized (lockFor(pipelineLockStateCacheKey(pipelineName))) {
             transactionTemplate.execute(new TransactionCallbackWithoutResult() {
                 @Override
                 protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -151,7 +153,7 @@ public class PipelineStateDao extends SqlMapClientDaoSupport implements StageSta
         if (pipelineState != null) {
             return pipelineState.equals(PipelineState.NOT_LOCKED) ? null : pipelineState;
         }
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             pipelineState = goCache.get(cacheKey);
             if (pipelineState != null) {
                 return pipelineState.equals(PipelineState.NOT_LOCKED) ? null : pipelineState;
@@ -33,6 +33,8 @@ import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
 import java.util.List;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
+
 @Component
 public class PluginSqlMapDao extends HibernateDaoSupport implements PluginDao {
     private final CacheKeyGenerator cacheKeyGenerator;
@@ -52,7 +54,7 @@ public class PluginSqlMapDao extends HibernateDaoSupport implements PluginDao {
     @Override
     public void saveOrUpdate(final Plugin plugin) {
         String cacheKey = cacheKeyForPluginSettings(plugin.getPluginId());
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             transactionTemplate.execute(new TransactionCallbackWithoutResult() {
                 @Override
                 protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -70,7 +72,7 @@ public class PluginSqlMapDao extends HibernateDaoSupport implements PluginDao {
         if (plugin != null) {
             return plugin;
         }
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             plugin = goCache.get(cacheKey);
             if (plugin != null) {
                 return plugin;
@@ -125,7 +127,7 @@ public class PluginSqlMapDao extends HibernateDaoSupport implements PluginDao {
             return;
         }
 
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             Plugin found = this.findPlugin(pluginId);
             if (found instanceof NullPlugin) {
                 return;
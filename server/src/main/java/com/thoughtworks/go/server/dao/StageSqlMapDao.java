@@ -56,6 +56,7 @@ import java.time.Duration;
 import java.util.*;
 import java.util.function.Supplier;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
 import static com.thoughtworks.go.util.IBatisUtil.arguments;
 import static java.lang.String.format;
 
@@ -193,7 +194,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
     public Stage findStageWithIdentifier(StageIdentifier identifier) {
         String cacheKey = cacheKeyForStageIdentifier(identifier);
         String cacheKeyForIdentifiers = cacheKeyForListOfStageIdentifiers(identifier);
-        synchronized (cacheKeyForIdentifiers) {
+        synchronized (lockFor(cacheKeyForIdentifiers)) {
             Stage stage = (Stage) goCache.get(cacheKeyForIdentifiers, cacheKey);
             if (stage == null) {
                 IBatisUtil.IBatisArgument argument = IBatisUtil.arguments("pipelineName", identifier.getPipelineName())
@@ -368,7 +369,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
     @Override
     public Stages getAllRunsOfStageForPipelineInstance(String pipelineName, int pipelineCounter, String stageName) {
         String cacheKeyForAllStages = cacheKeyForAllStageOfPipeline(pipelineName, pipelineCounter, stageName);
-        synchronized (cacheKeyForAllStages) {
+        synchronized (lockFor(cacheKeyForAllStages)) {
             List<Stage> stages = goCache.get(cacheKeyForAllStages);
             if (stages == null) {
                 Map<String, Object> toGet = arguments("pipelineName", pipelineName).and("pipelineCounter", pipelineCounter).and("stageName", stageName).asMap();
@@ -400,7 +401,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         String key = cacheKeyForStageCountForGraph(pipelineName, stageName);
         Integer total = goCache.get(key);
         if (total == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 Map<String, Object> toGet = arguments("pipelineName", pipelineName).and("stageName", stageName).asMap();
                 total = getSqlMapClientTemplate().queryForObject("getTotalStageCountForChart", toGet);
                 goCache.put(key, total);
@@ -414,7 +415,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         String key = cacheKeyForLatestStageInstances();
         List<StageIdentity> stageIdentities = goCache.get(key);
         if (stageIdentities == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 stageIdentities = goCache.get(key);
                 if (stageIdentities == null) {
                     stageIdentities = getSqlMapClientTemplate().queryForList("latestStageInstances");
@@ -516,7 +517,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
 
     @VisibleForTesting
     String mutexForStageHistory(String pipelineName, String stageName) {
-        return format("%s_stageHistoryMutex_%s_<>_%s", getClass().getName(), pipelineName, stageName).intern();
+        return format("%s_stageHistoryMutex_%s_<>_%s", getClass().getName(), pipelineName, stageName);
     }
 
     @VisibleForTesting
@@ -558,7 +559,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
 
     @VisibleForTesting
     String cacheKeyForStageOffset(Stage stage) {
-        return cacheKeyGenerator.generate("stageOffsetMap", stage.getIdentifier().getPipelineName(), stage.getIdentifier().getStageName()).intern();
+        return cacheKeyGenerator.generate("stageOffsetMap", stage.getIdentifier().getPipelineName(), stage.getIdentifier().getStageName());
     }
 
     @Override
@@ -602,7 +603,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         if (id != null) {
             return id;
         }
-        synchronized (key) {
+        synchronized (lockFor(key)) {
             id = goCache.get(key);
             if (id != null) {
                 return id;
@@ -631,7 +632,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         Stage stage = goCache.get(key);
 
         if (stage == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 stage = goCache.get(key);
                 if (stage == null) {
                     stage = getSqlMapClientTemplate().queryForObject("getStageById", id);
@@ -653,7 +654,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
     @Override
     public boolean isStageActive(String pipelineName, String stageName) {
         String cacheKey = cacheKeyForPipelineAndStage(pipelineName, stageName);
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             Boolean isActive = goCache.get(cacheKey);
             if (isActive == null) {
                 final Map<String, Object> toGet = arguments("pipelineName", pipelineName).and("stageName", stageName).asMap();
@@ -693,7 +694,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         String key = cacheKeyForPipelineAndCounter(pipelineName, counter);
         List<Stage> stages = goCache.get(key);
         if (stages == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 stages = goCache.get(key);
                 if (stages == null) {
                     Map<String, Object> params = arguments("pipelineName", pipelineName).and("pipelineCounter", counter).asMap();
@@ -741,9 +742,8 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         return cacheKeyGenerator.generate("totalStageCountForChart", pipelineName, stageName);
     }
 
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter") // keys here have always been internred by CacheKeyGenerator
     private void removeFromCache(String key) {
-        synchronized (key) {
+        synchronized (lockFor(key)) {
             goCache.remove(key);
         }
     }
@@ -23,11 +23,16 @@ import com.thoughtworks.go.config.remote.ConfigOrigin;
 import com.thoughtworks.go.config.security.Permissions;
 import com.thoughtworks.go.presentation.pipelinehistory.PipelineModel;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /* Represents a pipeline on the dashboard. Cacheable, since the permissions are not specific to a user. */
 public class GoDashboardPipeline {
+    private static final int MAX_JSON_FRAGMENTS = 32;
+
     private final PipelineModel pipelineModel;
     private final Permissions permissions;
     private final String groupName;
@@ -36,6 +41,7 @@ public class GoDashboardPipeline {
     private final ConfigOrigin origin;
     private final int displayOrderWeight;
     private final PipelineConfig pipelineConfig;
+    private final Map<String, String> jsonFragments = new ConcurrentHashMap<>();
 
     public GoDashboardPipeline(PipelineModel pipelineModel, Permissions permissions, String groupName, Counter timeStampBasedCounter, PipelineConfig pipelineConfig) {
         this.pipelineModel = pipelineModel;
@@ -127,6 +133,22 @@ public class GoDashboardPipeline {
         return result;
     }
 
+    /**
+     * Serializes this pipeline once per {@code variant} (whatever makes the serialized form differ between viewers, such
+     * as their permissions) and hands out the same fragment afterwards. Any change to a pipeline results in a new
+     * instance being put into the {@link GoDashboardCache} by the change handlers, so fragments never go stale.
+     */
+    public String jsonFragment(String variant, Supplier<String> serializer) {
+        String fragment = jsonFragments.get(variant);
+        if (fragment == null) {
+            fragment = serializer.get();
+            if (jsonFragments.size() < MAX_JSON_FRAGMENTS) {
+                jsonFragments.putIfAbsent(variant, fragment);
+            }
+        }
+        return fragment;
+    }
+
     String cacheSegment() {
         return name().toString() + ":" + getLastUpdatedTimeStamp();
     }
@@ -26,12 +26,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Understands a sorted collection of PipelineMaterialModification
+ * <p>
+ * The timeline of every pipeline is kept as an immutable snapshot which is replaced as a whole when instances are
+ * added, so readers never wait for an update; updates are serialized, only replace the snapshots of the pipelines
+ * which actually got new instances, and are only published once their transaction commits.
  */
 @Component
 public class PipelineTimeline {
@@ -39,10 +44,9 @@ public class PipelineTimeline {
     private final TransactionTemplate transactionTemplate;
     private final TransactionSynchronizationManager transactionSynchronizationManager;
 
-    private final Map<CaseInsensitiveString, NavigableSet<PipelineTimelineEntry>> naturalOrderPmm = new HashMap<>();
-    private final Map<CaseInsensitiveString, List<PipelineTimelineEntry>> scheduleOrderPmm = new HashMap<>();
-    private final ReadWriteLock naturalOrderLock = new ReentrantReadWriteLock();
-    private final ReadWriteLock scheduleOrderLock = new ReentrantReadWriteLock();
+    private final ConcurrentMap<CaseInsensitiveString, Entries> timelines = new ConcurrentHashMap<>();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private Map<CaseInsensitiveString, Changes> pendingChanges; // guarded by updateLock, only set while changes are being made
 
     private final AtomicLong maximumId = new AtomicLong(-1);
 
@@ -55,12 +59,8 @@ public class PipelineTimeline {
 
     @TestOnly
     public Collection<PipelineTimelineEntry> getEntriesFor(String pipelineName) {
-        naturalOrderLock.readLock().lock();
-        try {
-            return Collections.unmodifiableCollection(naturalOrderPmm.getOrDefault(new CaseInsensitiveString(pipelineName), Collections.emptyNavigableSet()));
-        } finally {
-            naturalOrderLock.readLock().unlock();
-        }
+        Entries entries = timelines.get(new CaseInsensitiveString(pipelineName));
+        return entries == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(entries.naturalOrder));
     }
 
     public long maximumId() {
@@ -69,98 +69,93 @@ public class PipelineTimeline {
 
     public void add(PipelineTimelineEntry pipelineTimelineEntry) {
         CaseInsensitiveString pipelineName = new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName());
-        initializedNaturalOrderCollection(pipelineName).add(pipelineTimelineEntry);
-        initializedScheduleOrderCollection(pipelineName).add(pipelineTimelineEntry);
-        pipelineTimelineEntry.setInsertedBefore(naturalOrderAfter(pipelineTimelineEntry));
-        pipelineTimelineEntry.setInsertedAfter(naturalOrderBefore(pipelineTimelineEntry));
-        pipelineTimelineEntry.updateNaturalOrder();
-        updateMaximumId(pipelineTimelineEntry.getId());
+        applyChanges(() -> changesFor(pipelineName).add(pipelineTimelineEntry));
     }
 
+    /**
+     * Loads the instances added since the last update. They are only published once the transaction commits, so
+     * readers never see instances which are rolled back, and the changes are simply dropped if it does not commit.
+     */
     public void update() {
-        acquireAllWriteLocks();
+        updateLock.lock();
         try {
-            final long maximumIdBeforeUpdate = maximumId.get();
             transactionTemplate.execute(transactionStatus -> {
-                final List<PipelineTimelineEntry> newlyAddedEntries = new ArrayList<>();
+                Map<CaseInsensitiveString, Changes> changes = collectChanges(() -> pipelineRepository.updatePipelineTimeline(this, new ArrayList<>()));
                 transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
                     @Override
-                    public void afterCompletion(int status) {
-                        if (STATUS_ROLLED_BACK == status) {
-                            rollbackTempEntries();
-                        }
-                    }
-
-                    private void rollbackTempEntries() {
-                        for (PipelineTimelineEntry entry : newlyAddedEntries) {
-                            rollbackNewEntryFor(entry);
+                    public void afterCommit() {
+                        updateLock.lock();
+                        try {
+                            publish(changes);
+                        } finally {
+                            updateLock.unlock();
                         }
-                        maximumId.set(maximumIdBeforeUpdate);
-                    }
-
-                    private void rollbackNewEntryFor(PipelineTimelineEntry entry) {
-                        CaseInsensitiveString pipelineName = new CaseInsensitiveString(entry.getPipelineName());
-                        initializedNaturalOrderCollection(pipelineName).remove(entry);
-                        initializedScheduleOrderCollection(pipelineName).remove(entry);
                     }
-
-
                 });
-                pipelineRepository.updatePipelineTimeline(PipelineTimeline.this, newlyAddedEntries);
                 return null;
             });
         } finally {
-            releaseAllWriteLocks();
+            updateLock.unlock();
         }
     }
 
-
-    // --------------------------------------------------------
-    // These methods should acquire and release lock in corresponding order.
-    private void acquireAllWriteLocks() {
-        naturalOrderLock.writeLock().lock();
-        scheduleOrderLock.writeLock().lock();
-    }
-
-    //Release in the reverse of the acquired order.
-    private void releaseAllWriteLocks() {
-        scheduleOrderLock.writeLock().unlock();
-        naturalOrderLock.writeLock().unlock();
-    }
-
     /**
      * This is called on system init and is called by Spring. Hence, this is not done in a transaction. At any other time, the method update should be used
      */
     public void updateTimelineOnInit() {
-        acquireAllWriteLocks();
+        applyChanges(() -> pipelineRepository.updatePipelineTimeline(this, new ArrayList<>()));
+    }
+
+    /**
+     * Runs {@code action} with the update lock held, and publishes the timelines of all pipelines it changed once
+     * done. Nested invocations are published along with the outermost one.
+     */
+    private void applyChanges(Runnable action) {
+        updateLock.lock();
+        try {
+            if (pendingChanges != null) {
+                action.run();
+                return;
+            }
+            publish(collectChanges(action));
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private Map<CaseInsensitiveString, Changes> collectChanges(Runnable action) {
+        Map<CaseInsensitiveString, Changes> changes = new HashMap<>();
+        pendingChanges = changes;
         try {
-            pipelineRepository.updatePipelineTimeline(this, new ArrayList<>());
+            action.run();
+            return changes;
         } finally {
-            releaseAllWriteLocks();
+            pendingChanges = null;
         }
     }
 
+    private void publish(Map<CaseInsensitiveString, Changes> changes) {
+        changes.forEach((pipelineName, pipelineChanges) -> {
+            timelines.compute(pipelineName, (name, current) -> pipelineChanges.applyTo(current == null ? Entries.EMPTY : current));
+            pipelineChanges.added.forEach(entry -> updateMaximumId(entry.getId()));
+        });
+    }
+
+    private Changes changesFor(CaseInsensitiveString pipelineName) {
+        return pendingChanges.computeIfAbsent(pipelineName, name -> new Changes(timelines.getOrDefault(name, Entries.EMPTY)));
+    }
+
     /**
      * @param id           for the pipeline
      * @param pipelineName name for the pipeline
      * @return PMM which was before the pipeline with this id at the time of insertion of the PTE with the id or null if there was nothing before this pipeline during insertion
      */
     public PipelineTimelineEntry runBefore(long id, final CaseInsensitiveString pipelineName) {
-        naturalOrderLock.readLock().lock();
-        try {
-            Set<PipelineTimelineEntry> treeForPipeline = naturalOrderPmm.get(pipelineName);
-            if (treeForPipeline == null) {
-                return null;
-            }
-            for (PipelineTimelineEntry pipelineTimelineEntry : treeForPipeline) {
-                if (id == pipelineTimelineEntry.getId()) {
-                    return pipelineTimelineEntry.insertedAfter();
-                }
-            }
-            throw new RuntimeException("Cannot find pipeline with id: " + id);
-        } finally {
-            naturalOrderLock.readLock().unlock();
+        Entries entries = timelines.get(pipelineName);
+        if (entries == null) {
+            return null;
         }
+        return entries.findById(id).insertedAfter();
     }
 
     /**
@@ -169,51 +164,20 @@ public class PipelineTimeline {
      * @return PMM which was after the pipeline with this id at the time of insertion of the PTE with the id or null if there was nothing after this pipeline during insertion
      */
     public PipelineTimelineEntry runAfter(long id, final CaseInsensitiveString pipelineName) {
-        naturalOrderLock.readLock().lock();
-        try {
-            Set<PipelineTimelineEntry> treeForPipeline = naturalOrderPmm.get(pipelineName);
-            if (treeForPipeline == null) {
-                return null;
-            }
-            for (PipelineTimelineEntry pipelineTimelineEntry : treeForPipeline) {
-                if (id == pipelineTimelineEntry.getId()) {
-                    return pipelineTimelineEntry.insertedBefore();
-                }
-            }
-            throw new RuntimeException("Cannot find pipeline with id: " + id);
-        } finally {
-            naturalOrderLock.readLock().unlock();
+        Entries entries = timelines.get(pipelineName);
+        if (entries == null) {
+            return null;
         }
+        return entries.findById(id).insertedBefore();
     }
 
     private void updateMaximumId(long id) {
         maximumId.accumulateAndGet(id, Math::max);
     }
 
-    private NavigableSet<PipelineTimelineEntry> initializedNaturalOrderCollection(final CaseInsensitiveString pipelineName) {
-        return naturalOrderPmm.computeIfAbsent(pipelineName, k -> new TreeSet<>());
-    }
-
-    private List<PipelineTimelineEntry> initializedScheduleOrderCollection(final CaseInsensitiveString pipelineName) {
-        return scheduleOrderPmm.computeIfAbsent(pipelineName, k -> new ArrayList<>());
-    }
-
-    private PipelineTimelineEntry naturalOrderAfter(PipelineTimelineEntry pipelineTimelineEntry) {
-        naturalOrderLock.readLock().lock();
-        try {
-            return naturalOrderPmm.get(new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName())).higher(pipelineTimelineEntry);
-        } finally {
-            naturalOrderLock.readLock().unlock();
-        }
-    }
-
     PipelineTimelineEntry naturalOrderBefore(PipelineTimelineEntry pipelineTimelineEntry) {
-        naturalOrderLock.readLock().lock();
-        try {
-            return naturalOrderPmm.get(new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName())).lower(pipelineTimelineEntry);
-        } finally {
-            naturalOrderLock.readLock().unlock();
-        }
+        Entries entries = timelines.get(new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName()));
+        return entries.naturalOrderBefore(pipelineTimelineEntry);
     }
 
     /**
@@ -221,50 +185,139 @@ public class PipelineTimeline {
      */
     @TestOnly
     public void clearWhichIsEvilAndShouldNotBeUsedInRealWorld() {
-        acquireAllWriteLocks();
-        try {
-            naturalOrderPmm.clear();
-            scheduleOrderPmm.clear();
-        } finally {
-            releaseAllWriteLocks();
-        }
+        applyChanges(timelines::clear);
     }
 
     public int instanceCount(CaseInsensitiveString pipelineName) {
-        scheduleOrderLock.readLock().lock();
-        try {
-            List<PipelineTimelineEntry> instances = scheduleOrderPmm.get(pipelineName);
-            return instances == null ? 0 : instances.size();
-        } finally {
-            scheduleOrderLock.readLock().unlock();
-        }
+        Entries entries = timelines.get(pipelineName);
+        return entries == null ? 0 : entries.scheduleOrder.length;
     }
 
     public PipelineTimelineEntry instanceFor(CaseInsensitiveString pipelineName, int index) {
-        scheduleOrderLock.readLock().lock();
-        try {
-            List<PipelineTimelineEntry> instances = scheduleOrderPmm.get(pipelineName);
-            return instances == null ? null : instances.get(index);
-        } finally {
-            scheduleOrderLock.readLock().unlock();
-        }
+        Entries entries = timelines.get(pipelineName);
+        return entries == null ? null : entries.scheduleOrder[index];
     }
 
-
     public PipelineTimelineEntry getEntryFor(CaseInsensitiveString pipelineName, int pipelineCounter) {
-        scheduleOrderLock.readLock().lock();
-        try {
-            List<PipelineTimelineEntry> instances = scheduleOrderPmm.get(pipelineName);
-            for (int i = instances.size() - 1; i >= 0; i--) {
-                PipelineTimelineEntry instance = instances.get(i);
-                if (instance.getCounter() == pipelineCounter) {
-                    return instance;
+        Entries entries = timelines.get(pipelineName);
+        return entries == null ? null : entries.findByCounter(pipelineCounter);
+    }
+
+    /**
+     * Immutable snapshot of the instances of one pipeline, in natural order and in the order they were scheduled in.
+     * Ids and counters are kept in primitive arrays alongside so that lookups do not have to touch every entry.
+     */
+    private static final class Entries {
+        static final Entries EMPTY = new Entries(List.of(), List.of());
+
+        private final PipelineTimelineEntry[] naturalOrder;
+        private final long[] naturalOrderIds;
+        private final PipelineTimelineEntry[] scheduleOrder;
+        private final int[] scheduleOrderCounters;
+
+        Entries(List<PipelineTimelineEntry> naturalOrder, List<PipelineTimelineEntry> scheduleOrder) {
+            this.naturalOrder = naturalOrder.toArray(new PipelineTimelineEntry[0]);
+            this.naturalOrderIds = new long[this.naturalOrder.length];
+            for (int i = 0; i < this.naturalOrder.length; i++) {
+                naturalOrderIds[i] = this.naturalOrder[i].getId();
+            }
+            this.scheduleOrder = scheduleOrder.toArray(new PipelineTimelineEntry[0]);
+            this.scheduleOrderCounters = new int[this.scheduleOrder.length];
+            for (int i = 0; i < this.scheduleOrder.length; i++) {
+                scheduleOrderCounters[i] = this.scheduleOrder[i].getCounter();
+            }
+        }
+
+        PipelineTimelineEntry findById(long id) {
+            for (int i = 0; i < naturalOrderIds.length; i++) {
+                if (naturalOrderIds[i] == id) {
+                    return naturalOrder[i];
+                }
+            }
+            throw new RuntimeException("Cannot find pipeline with id: " + id);
+        }
+
+        boolean contains(long id) {
+            for (long naturalOrderId : naturalOrderIds) {
+                if (naturalOrderId == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        PipelineTimelineEntry findByCounter(int counter) {
+            for (int i = scheduleOrderCounters.length - 1; i >= 0; i--) {
+                if (scheduleOrderCounters[i] == counter) {
+                    return scheduleOrder[i];
                 }
             }
             return null;
-        } finally {
-            scheduleOrderLock.readLock().unlock();
+        }
+
+        PipelineTimelineEntry naturalOrderBefore(PipelineTimelineEntry entry) {
+            int index = Arrays.binarySearch(naturalOrder, entry);
+            int lower = index >= 0 ? index - 1 : -index - 2;
+            return lower >= 0 ? naturalOrder[lower] : null;
         }
     }
 
+    /**
+     * Mutable copy of the instances of one pipeline, used while an update is adding to its timeline.
+     */
+    private static final class Changes {
+        private final Entries base;
+        private final List<PipelineTimelineEntry> naturalOrder;
+        private final List<PipelineTimelineEntry> scheduleOrder;
+        private final List<PipelineTimelineEntry> added = new ArrayList<>();
+
+        Changes(Entries entries) {
+            this.base = entries;
+            this.naturalOrder = new ArrayList<>(Arrays.asList(entries.naturalOrder));
+            this.scheduleOrder = new ArrayList<>(Arrays.asList(entries.scheduleOrder));
+        }
+
+        void add(PipelineTimelineEntry entry) {
+            insert(entry);
+            entry.updateNaturalOrder();
+            added.add(entry);
+        }
+
+        private void insert(PipelineTimelineEntry entry) {
+            // instances mostly arrive in natural order, so this is usually an append
+            int index = Collections.binarySearch(naturalOrder, entry);
+            int lower;
+            int higher;
+            if (index >= 0) {
+                lower = index - 1;
+                higher = index + 1;
+            } else {
+                int insertionPoint = -index - 1;
+                naturalOrder.add(insertionPoint, entry);
+                lower = insertionPoint - 1;
+                higher = insertionPoint + 1;
+            }
+            scheduleOrder.add(entry);
+
+            entry.setInsertedBefore(higher < naturalOrder.size() ? naturalOrder.get(higher) : null);
+            entry.setInsertedAfter(lower >= 0 ? naturalOrder.get(lower) : null);
+        }
+
+        /**
+         * @return the timeline with these changes applied to {@code current}, which is only different from the
+         * timeline the changes were made to if another update was published while this one was waiting to commit
+         */
+        Entries applyTo(Entries current) {
+            if (current == base) {
+                return new Entries(naturalOrder, scheduleOrder);
+            }
+            Changes merged = new Changes(current);
+            for (PipelineTimelineEntry entry : added) {
+                if (!current.contains(entry.getId())) {
+                    merged.insert(entry);
+                }
+            }
+            return new Entries(merged.naturalOrder, merged.scheduleOrder);
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.materials;
+
+import com.thoughtworks.go.domain.MaterialInstance;
+import com.thoughtworks.go.domain.materials.Material;
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.Modifications;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
+import com.thoughtworks.go.server.util.Pagination;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.thoughtworks.go.util.SystemEnvironment.GO_MATERIAL_POLL_ADAPTIVE;
+import static com.thoughtworks.go.util.SystemEnvironment.GO_MATERIAL_POLL_ADAPTIVE_MAX_INTERVAL_MINUTES;
+
+/**
+ * Understands how often an SCM material needs to be polled. Unless {@link SystemEnvironment#GO_MATERIAL_POLL_ADAPTIVE}
+ * is set, every material is polled on the material update idle interval. Otherwise the interval follows how often the
+ * material has been changing: the gap between changes is learnt from its latest modifications in the database and
+ * from the changes seen by later updates, and the material is polled about {@value #POLLS_PER_CHANGE} times per
+ * expected gap, between the idle interval and the maximum interval. Materials which have recently been notified
+ * through a webhook are only polled on the maximum interval, as a safety net.
+ */
+@Component
+public class MaterialPollScheduler {
+    static final int POLLS_PER_CHANGE = 10;
+    private static final int HISTORY_SIZE = 10;
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    private final MaterialRepository materialRepository;
+    private final TimeProvider timeProvider;
+    private final boolean adaptive;
+    private final long minInterval;
+    private final long maxInterval;
+    private final ConcurrentMap<Material, ChangeHistory> histories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MaterialPollScheduler(MaterialRepository materialRepository, SystemEnvironment systemEnvironment, TimeProvider timeProvider) {
+        this.materialRepository = materialRepository;
+        this.timeProvider = timeProvider;
+        this.adaptive = systemEnvironment.get(GO_MATERIAL_POLL_ADAPTIVE);
+        this.minInterval = systemEnvironment.getMaterialUpdateIdleInterval();
+        this.maxInterval = Math.max(minInterval, TimeUnit.MINUTES.toMillis(systemEnvironment.get(GO_MATERIAL_POLL_ADAPTIVE_MAX_INTERVAL_MINUTES)));
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public long pollIntervalFor(Material material) {
+        if (!adaptive) {
+            return minInterval;
+        }
+        return historyOf(material).pollInterval(timeProvider.currentTimeMillis());
+    }
+
+    public void materialUpdated(Material material) {
+        if (!adaptive) {
+            return;
+        }
+        ChangeHistory history = histories.get(material);
+        if (history == null) {
+            historyOf(material);
+            return;
+        }
+        Modification latest = latestModification(material);
+        if (latest != null) {
+            history.observe(latest.getRevision(), timeProvider.currentTimeMillis());
+        }
+    }
+
+    public void materialNotified(Material material) {
+        if (adaptive) {
+            historyOf(material).notified(timeProvider.currentTimeMillis());
+        }
+    }
+
+    public void retainOnly(Set<Material> materials) {
+        histories.keySet().retainAll(materials);
+    }
+
+    private ChangeHistory historyOf(Material material) {
+        ChangeHistory history = histories.get(material);
+        if (history == null) {
+            ChangeHistory loaded = loadHistory(material);
+            history = histories.putIfAbsent(material, loaded);
+            return history == null ? loaded : history;
+        }
+        return history;
+    }
+
+    private ChangeHistory loadHistory(Material material) {
+        ChangeHistory history = new ChangeHistory();
+        Modifications modifications = modifications(material, HISTORY_SIZE);
+        if (modifications != null && !modifications.isEmpty()) {
+            history.seed(modifications);
+        }
+        return history;
+    }
+
+    private Modification latestModification(Material material) {
+        Modifications modifications = modifications(material, 1);
+        return modifications == null || modifications.isEmpty() ? null : modifications.getFirst();
+    }
+
+    private Modifications modifications(Material material, int count) {
+        MaterialInstance materialInstance = materialRepository.findMaterialInstance(material);
+        if (materialInstance == null) {
+            return null;
+        }
+        return materialRepository.getModificationsFor(materialInstance, Pagination.pageByOffsetUnknownTotal(0, count));
+    }
+
+    private class ChangeHistory {
+        private String lastRevision;
+        private long lastChangedAt;
+        private long meanChangeInterval;
+        private long notifiedAt;
+
+        synchronized void seed(Modifications latestFirst) {
+            Modification latest = latestFirst.getFirst();
+            Modification oldest = latestFirst.getLast();
+            lastRevision = latest.getRevision();
+            if (latest.getModifiedTime() != null) {
+                lastChangedAt = latest.getModifiedTime().getTime();
+                if (latestFirst.size() > 1 && oldest.getModifiedTime() != null) {
+                    meanChangeInterval = Math.max(0, lastChangedAt - oldest.getModifiedTime().getTime()) / (latestFirst.size() - 1);
+                }
+            }
+        }
+
+        synchronized void observe(String revision, long now) {
+            if (revision == null || revision.equals(lastRevision)) {
+                return;
+            }
+            if (lastChangedAt > 0) {
+                long interval = Math.max(0, now - lastChangedAt);
+                meanChangeInterval = meanChangeInterval == 0 ? interval : (long) ((1 - SMOOTHING_FACTOR) * meanChangeInterval + SMOOTHING_FACTOR * interval);
+            }
+            lastRevision = revision;
+            lastChangedAt = now;
+        }
+
+        synchronized void notified(long now) {
+            notifiedAt = now;
+        }
+
+        synchronized long pollInterval(long now) {
+            if (notifiedAt > 0 && now - notifiedAt < maxInterval) {
+                return maxInterval;
+            }
+            if (lastChangedAt == 0) {
+                return minInterval;
+            }
+            long expectedChangeInterval = Math.max(meanChangeInterval, now - lastChangedAt);
+            return Math.clamp(expectedChangeInterval / POLLS_PER_CHANGE, minInterval, maxInterval);
+        }
+    }
+}
@@ -18,7 +18,18 @@ package com.thoughtworks.go.server.materials;
 import com.thoughtworks.go.domain.materials.Material;
 
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 public interface MaterialSource {
     Set<Material> materialsForUpdate();
+
+    /**
+     * Called when an update of materials has been requested from outside, e.g. by a webhook or a post-commit hook.
+     *
+     * @param notified picks the materials which the notification is about out of the materials given to it
+     * @return the materials of this source which the notification is about, and which are to be updated right away
+     */
+    default Set<Material> materialsNotified(UnaryOperator<Set<Material>> notified) {
+        return Set.of();
+    }
 }
@@ -55,6 +55,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import static com.thoughtworks.go.serverhealth.HealthStateType.general;
@@ -152,11 +153,14 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
             }
             final PostCommitHookImplementer materialTypeImplementer = materialType.getImplementer();
             final CruiseConfig cruiseConfig = goConfigService.currentCruiseConfig();
-            Set<Material> allUniquePostCommitSchedulableMaterials = materialConfigConverter.toMaterials(cruiseConfig.getAllUniquePostCommitSchedulableMaterials());
-            resolveSecretForSvnMaterials(allUniquePostCommitSchedulableMaterials);
-            final Set<Material> prunedMaterialList = materialTypeImplementer.prune(allUniquePostCommitSchedulableMaterials, attributes);
-
-            if (prunedMaterialList.isEmpty()) {
+            final UnaryOperator<Set<Material>> notified = materials -> {
+                resolveSecretForSvnMaterials(materials);
+                return materialTypeImplementer.prune(materials, attributes);
+            };
+            final Set<Material> prunedMaterialList = notified.apply(materialConfigConverter.toMaterials(cruiseConfig.getAllUniquePostCommitSchedulableMaterials()));
+            final Set<Material> notifiedPolledMaterials = notifyMaterialSources(notified);
+
+            if (prunedMaterialList.isEmpty() && notifiedPolledMaterials.isEmpty()) {
                 result.notFound("Unable to find material. Materials must be configured not to poll for new changes before they can be used with the notification mechanism.", HealthStateType.general(HealthStateScope.GLOBAL));
                 return;
             }
@@ -164,6 +168,9 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
             for (Material material : prunedMaterialList) {
                 updateMaterial(material);
             }
+            for (Material material : notifiedPolledMaterials) {
+                updateMaterial(material);
+            }
 
             result.accepted("The material is now scheduled for an update. Please check relevant pipeline(s) for status.");
         } else {
@@ -177,10 +184,12 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
 
         Predicate<Material> predicate = scmNames.isEmpty() ? new MaterialPredicate(branchName, possibleUrls) : new PluggableScmPredicate(scmNames);
         Set<Material> allGitMaterials = allUniquePostCommitSchedulableMaterials.stream().filter(predicate).collect(Collectors.toSet());
+        Set<Material> notifiedPolledMaterials = notifyMaterialSources(materials -> materials.stream().filter(predicate).collect(Collectors.toSet()));
 
         allGitMaterials.forEach(MaterialUpdateService.this::updateMaterial);
+        notifiedPolledMaterials.forEach(MaterialUpdateService.this::updateMaterial);
 
-        return !allGitMaterials.isEmpty();
+        return !allGitMaterials.isEmpty() || !notifiedPolledMaterials.isEmpty();
     }
 
     public boolean updateMaterial(@NotNull MaterialConfig config) {
@@ -222,6 +231,17 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
                 .forEach(secretParamResolver::resolve);
     }
 
+    /**
+     * @return the materials polled by the material sources which the notification is about
+     */
+    private Set<Material> notifyMaterialSources(UnaryOperator<Set<Material>> notified) {
+        Set<Material> notifiedMaterials = new HashSet<>();
+        for (MaterialSource materialSource : materialSources) {
+            notifiedMaterials.addAll(materialSource.materialsNotified(notified));
+        }
+        return notifiedMaterials;
+    }
+
     public void registerMaterialSources(MaterialSource materialSource) {
         this.materialSources.add(materialSource);
     }
@@ -27,19 +27,17 @@ import com.thoughtworks.go.listener.ConfigChangedListener;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.server.service.GoConfigService;
 import com.thoughtworks.go.server.service.MaterialConfigConverter;
-import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.TimeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Provides a list of unique SCMMaterials to be updated which will be consumed by MaterialUpdateService
@@ -53,17 +51,17 @@ public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoCon
     private final ConcurrentMap<Material, Long> materialLastUpdateTimeMap = new ConcurrentHashMap<>();
     private final MaterialConfigConverter materialConfigConverter;
     private final MaterialUpdateService materialUpdateService;
-    private final long materialUpdateInterval;
+    private final MaterialPollScheduler pollScheduler;
     private final TimeProvider timeProvider;
     private final AtomicReference<Set<Material>> schedulableMaterials = new AtomicReference<>();
 
     @Autowired
-    public SCMMaterialSource(GoConfigService goConfigService, SystemEnvironment systemEnvironment,
-                             MaterialConfigConverter materialConfigConverter, MaterialUpdateService materialUpdateService, TimeProvider timeProvider) {
+    public SCMMaterialSource(GoConfigService goConfigService, MaterialConfigConverter materialConfigConverter,
+                             MaterialUpdateService materialUpdateService, MaterialPollScheduler pollScheduler, TimeProvider timeProvider) {
         this.goConfigService = goConfigService;
         this.materialConfigConverter = materialConfigConverter;
         this.materialUpdateService = materialUpdateService;
-        this.materialUpdateInterval = systemEnvironment.getMaterialUpdateIdleInterval();
+        this.pollScheduler = pollScheduler;
         this.timeProvider = timeProvider;
     }
 
@@ -86,10 +84,28 @@ public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoCon
         return materialsWithUpdateIntervalElapsed();
     }
 
+    /**
+     * Only the materials polled by this source are looked at; the ones which are not polled are updated through
+     * notifications anyway. While polling is adaptive, the materials notified are polled less often from then on, so
+     * they are updated right away instead.
+     */
+    @Override
+    public Set<Material> materialsNotified(UnaryOperator<Set<Material>> notified) {
+        if (!pollScheduler.isAdaptive()) {
+            return Set.of();
+        }
+        updateSchedulableMaterials(false);
+
+        Set<Material> notifiedMaterials = notified.apply(new HashSet<>(schedulableMaterials.get()));
+        notifiedMaterials.forEach(pollScheduler::materialNotified);
+        return notifiedMaterials;
+    }
+
     @Override
     public void onMaterialUpdate(Material material) {
         if (!(material instanceof DependencyMaterial)) {
             updateLastUpdateTimeForScmMaterial(material);
+            pollScheduler.materialUpdated(material);
         }
     }
 
@@ -113,25 +129,37 @@ public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoCon
         };
     }
 
+    /**
+     * @return the materials due for an update, the most overdue first (materials never updated before coming first of
+     * all), so that they are queued ahead of materials which only just became due
+     */
     private Set<Material> materialsWithUpdateIntervalElapsed() {
-        Set<Material> materialsForUpdate = new HashSet<>();
+        Map<Material, Double> overdueRatios = new HashMap<>();
+        long now = timeProvider.currentTimeMillis();
         for (Material material : schedulableMaterials.get()) {
-            if (hasUpdateIntervalElapsedForScmMaterial(material)) {
-                materialsForUpdate.add(material);
+            long updateInterval = pollScheduler.pollIntervalFor(material);
+            double overdueRatio = overdueRatio(material, updateInterval, now);
+            if (overdueRatio >= 1) {
+                overdueRatios.put(material, overdueRatio);
             } else if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("[Material Update] Skipping update of material {} which has been last updated less than {} ms ago", material, materialUpdateInterval);
+                LOGGER.debug("[Material Update] Skipping update of material {} which has been last updated less than {} ms ago", material, updateInterval);
             }
         }
 
+        Set<Material> materialsForUpdate = new LinkedHashSet<>();
+        overdueRatios.entrySet().stream()
+                .sorted(Map.Entry.<Material, Double>comparingByValue().reversed())
+                .forEach(entry -> materialsForUpdate.add(entry.getKey()));
         return materialsForUpdate;
     }
 
-    private boolean hasUpdateIntervalElapsedForScmMaterial(Material material) {
+    private double overdueRatio(Material material, long updateInterval, long now) {
         Long lastMaterialUpdateTime = materialLastUpdateTimeMap.get(material);
-        if (lastMaterialUpdateTime != null) {
-            return (timeProvider.currentTimeMillis() - lastMaterialUpdateTime) >= materialUpdateInterval;
+        if (lastMaterialUpdateTime == null) {
+            return Double.POSITIVE_INFINITY;
         }
-        return true;
+        long elapsed = now - lastMaterialUpdateTime;
+        return updateInterval <= 0 ? Double.POSITIVE_INFINITY : (double) elapsed / updateInterval;
     }
 
     private void updateLastUpdateTimeForScmMaterial(Material material) {
@@ -141,7 +169,10 @@ public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoCon
     private void updateSchedulableMaterials(boolean forceLoad) {
         Set<Material> materials = schedulableMaterials.get();
         if (materials == null || forceLoad) {
-            schedulableMaterials.compareAndSet(materials, materialConfigConverter.toMaterials(goConfigService.getSchedulableSCMMaterials()));
+            Set<Material> loaded = materialConfigConverter.toMaterials(goConfigService.getSchedulableSCMMaterials());
+            if (schedulableMaterials.compareAndSet(materials, loaded)) {
+                pollScheduler.retainOnly(loaded);
+            }
         }
     }
 
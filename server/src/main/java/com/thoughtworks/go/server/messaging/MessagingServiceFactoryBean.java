@@ -0,0 +1,72 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging;
+
+import com.thoughtworks.go.server.messaging.activemq.ActiveMqMessagingService;
+import com.thoughtworks.go.server.messaging.inmemory.InMemoryMessagingService;
+import com.thoughtworks.go.server.service.support.DaemonThreadStatsCollector;
+import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides the {@link MessagingService} used by the server: the embedded ActiveMQ broker, or the broker-less
+ * {@link InMemoryMessagingService} when {@link SystemEnvironment#GO_IN_MEMORY_MESSAGING} is turned on.
+ */
+@Component
+public class MessagingServiceFactoryBean implements FactoryBean<MessagingService<GoMessage>>, DisposableBean {
+    private final DaemonThreadStatsCollector daemonThreadStatsCollector;
+    private final SystemEnvironment systemEnvironment;
+    private final ServerHealthService serverHealthService;
+    private MessagingService<GoMessage> messagingService;
+
+    @Autowired
+    public MessagingServiceFactoryBean(DaemonThreadStatsCollector daemonThreadStatsCollector, SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) {
+        this.daemonThreadStatsCollector = daemonThreadStatsCollector;
+        this.systemEnvironment = systemEnvironment;
+        this.serverHealthService = serverHealthService;
+    }
+
+    @Override
+    public synchronized MessagingService<GoMessage> getObject() throws Exception {
+        if (messagingService == null) {
+            messagingService = systemEnvironment.get(SystemEnvironment.GO_IN_MEMORY_MESSAGING)
+                ? new InMemoryMessagingService(daemonThreadStatsCollector, systemEnvironment)
+                : new ActiveMqMessagingService(daemonThreadStatsCollector, systemEnvironment, serverHealthService);
+        }
+        return messagingService;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return MessagingService.class;
+    }
+
+    @Override
+    public boolean isSingleton() {
+        return true;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (messagingService != null) {
+            messagingService.stop();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.*;
+import com.thoughtworks.go.server.service.support.DaemonThreadStatsCollector;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MessagingService} which hands messages from producers to listeners within the JVM through bounded in-memory
+ * queues, without a broker in between and without serializing the messages. Messages are passed by reference, so they
+ * must not be modified once posted.
+ * <p>
+ * Queues have competing listeners: each message is handled by exactly one of the listeners of the queue. Every
+ * listener of a topic gets its own queue, to which messages posted to the topic are copied for as long as the
+ * listener is registered. Each listener runs as a long-lived task on the given {@link Executor}, and so occupies one of its
+ * threads for as long as it is registered; by default each listener gets its own virtual thread, so that idle
+ * listeners cost next to nothing.
+ * <p>
+ * The CPU time spent handling each message is only captured for the {@link DaemonThreadStatsCollector} when the listener
+ * runs on a platform thread: the JVM does not measure CPU time per virtual thread, and virtual threads do not show up in
+ * thread dumps either. Set {@code go.messaging.in-memory.virtual.threads} to false to have these stats.
+ */
+public class InMemoryMessagingService implements MessagingService<GoMessage> {
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryMessagingService.class);
+
+    private final DaemonThreadStatsCollector daemonThreadStatsCollector;
+    private final int queueCapacity;
+    private final Executor executor;
+    private final ConcurrentMap<String, InMemoryQueue> queues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<InMemoryQueue>> subscriptions = new ConcurrentHashMap<>();
+    private final Collection<Listener> listeners = ConcurrentHashMap.newKeySet();
+    private final AtomicLong listenerCount = new AtomicLong();
+
+    public InMemoryMessagingService(DaemonThreadStatsCollector daemonThreadStatsCollector, SystemEnvironment systemEnvironment) {
+        this(daemonThreadStatsCollector, systemEnvironment.get(SystemEnvironment.GO_IN_MEMORY_MESSAGING_QUEUE_CAPACITY),
+            defaultExecutor(systemEnvironment.get(SystemEnvironment.GO_IN_MEMORY_MESSAGING_VIRTUAL_THREADS)));
+    }
+
+    public InMemoryMessagingService(DaemonThreadStatsCollector daemonThreadStatsCollector, int queueCapacity, Executor executor) {
+        this.daemonThreadStatsCollector = daemonThreadStatsCollector;
+        this.queueCapacity = queueCapacity;
+        this.executor = executor;
+    }
+
+    private static ExecutorService defaultExecutor(boolean useVirtualThreads) {
+        ThreadFactory threadFactory = useVirtualThreads
+            ? Thread.ofVirtual().name("MessageListener-", 0).factory()
+            : Thread.ofPlatform().name("MessageListener-", 0).daemon(true).factory();
+        return Executors.newThreadPerTaskExecutor(threadFactory);
+    }
+
+    @Override
+    public MessageSender createSender(String topic) {
+        return new Sender() {
+            @Override
+            public void sendMessage(GoMessage message, long timeToLive) {
+                for (InMemoryQueue subscription : subscriptions.getOrDefault(topic, List.of())) {
+                    subscription.put(message, timeToLive);
+                }
+            }
+        };
+    }
+
+    @Override
+    public MessageListenerHandle addListener(String topic, GoMessageListener<GoMessage> listener) {
+        String threadName = threadName(listener);
+        InMemoryQueue subscription = new InMemoryQueue(topic + " -> " + threadName, queueCapacity);
+        subscriptions.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(subscription);
+        return startListening(subscription, listener, threadName, () -> subscriptions.computeIfPresent(topic, (t, queues) -> {
+            queues.remove(subscription);
+            return queues.isEmpty() ? null : queues;
+        }));
+    }
+
+    @Override
+    public MessageSender createQueueSender(String queueName) {
+        return new Sender() {
+            @Override
+            public void sendMessage(GoMessage message, long timeToLive) {
+                queue(queueName).put(message, timeToLive);
+            }
+        };
+    }
+
+    @Override
+    public MessageListenerHandle addQueueListener(String queueName, GoMessageListener<GoMessage> listener) {
+        return startListening(queue(queueName), listener, threadName(listener), () -> {});
+    }
+
+    @Override
+    public void removeQueue(String queueName) {
+        InMemoryQueue queue = queues.remove(queueName);
+        if (queue != null) {
+            listeners.stream().filter(listener -> listener.queue == queue).forEach(Listener::stop);
+        }
+    }
+
+    @Override
+    public void stop() {
+        listeners.forEach(Listener::stop);
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the state of every queue and of every topic subscription, one entry each; topic subscriptions are named
+     * after the topic and the thread of the listener
+     */
+    public List<QueueStats> queueStats() {
+        List<QueueStats> stats = new ArrayList<>();
+        queues.values().forEach(queue -> stats.add(queue.stats()));
+        subscriptions.values().forEach(topicSubscriptions -> topicSubscriptions.forEach(subscription -> stats.add(subscription.stats())));
+        return stats;
+    }
+
+    private InMemoryQueue queue(String queueName) {
+        return queues.computeIfAbsent(queueName, name -> new InMemoryQueue(name, queueCapacity));
+    }
+
+    private String threadName(GoMessageListener<GoMessage> listener) {
+        return String.format("MessageListener-%s-%d", listener.getClass().getSimpleName(), listenerCount.incrementAndGet());
+    }
+
+    private Listener startListening(InMemoryQueue queue, GoMessageListener<GoMessage> listener, String threadName, Runnable onStop) {
+        Listener handle = new Listener(queue, listener, threadName, onStop);
+        listeners.add(handle);
+        executor.execute(handle);
+        return handle;
+    }
+
+    private abstract static class Sender implements MessageSender {
+        @Override
+        public void sendMessage(GoMessage message) {
+            sendMessage(message, 0);
+        }
+    }
+
+    private class Listener implements Runnable, MessageListenerHandle {
+        private static final int IDLE = 0;
+        private static final int BUSY = 1;
+        private static final int STOPPED = 2;
+
+        private final InMemoryQueue queue;
+        private final GoMessageListener<GoMessage> listener;
+        private final String threadName;
+        private final Runnable onStop;
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        private volatile Thread thread;
+
+        private Listener(InMemoryQueue queue, GoMessageListener<GoMessage> listener, String threadName, Runnable onStop) {
+            this.queue = queue;
+            this.listener = listener;
+            this.threadName = threadName;
+            this.onStop = onStop;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            thread.setName(threadName);
+            try {
+                while (state.get() != STOPPED) {
+                    InMemoryQueue.Envelope envelope;
+                    try {
+                        envelope = queue.take();
+                    } catch (InterruptedException e) {
+                        continue;
+                    }
+                    // Only an idle listener is interrupted when stopped, so a message is never abandoned half-handled
+                    if (!state.compareAndSet(IDLE, BUSY)) {
+                        putBack(envelope);
+                        return;
+                    }
+                    handle(envelope.message());
+                    state.compareAndSet(BUSY, IDLE);
+                }
+            } finally {
+                listeners.remove(this);
+                Thread.interrupted();
+                LOG.debug("Message listener {} was stopped.", threadName);
+            }
+        }
+
+        private void handle(GoMessage message) {
+            if (thread.isVirtual()) {
+                onMessage(message);
+                return;
+            }
+            long threadId = thread.threadId();
+            try {
+                daemonThreadStatsCollector.captureStats(threadId);
+                onMessage(message);
+            } finally {
+                daemonThreadStatsCollector.clearStats(threadId);
+            }
+        }
+
+        private void onMessage(GoMessage message) {
+            try {
+                listener.onMessage(message);
+            } catch (Exception e) {
+                LOG.error("Exception thrown in message handling by listener {}", listener, e);
+            }
+        }
+
+        private void putBack(InMemoryQueue.Envelope envelope) {
+            if (!queue.putBack(envelope)) {
+                LOG.warn("Dropping message {} taken by stopped listener {} as queue {} is full.", envelope.message(), threadName, queue.name());
+            }
+        }
+
+        @Override
+        public void stop() {
+            int previous = state.getAndSet(STOPPED);
+            if (previous == STOPPED) {
+                return;
+            }
+            onStop.run();
+            Thread current = thread;
+            if (previous == IDLE && current != null) {
+                current.interrupt();
+            }
+        }
+
+        @Override
+        public String listenerThreadName() {
+            return threadName;
+        }
+    }
+}
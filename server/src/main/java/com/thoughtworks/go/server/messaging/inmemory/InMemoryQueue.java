@@ -0,0 +1,108 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.GoMessage;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.thoughtworks.go.util.ExceptionUtils.bomb;
+
+/**
+ * A bounded buffer of messages for one queue, or for one subscriber of a topic. Producers block while the buffer is
+ * full, much like the broker's producer flow control. Messages whose time to live elapses while waiting are dropped
+ * when they are dequeued, rather than handed to a listener.
+ */
+class InMemoryQueue {
+    private final String name;
+    private final LinkedBlockingDeque<Envelope> messages;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    InMemoryQueue(String name, int capacity) {
+        this.name = name;
+        this.messages = new LinkedBlockingDeque<>(capacity);
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * @param timeToLive in milliseconds; 0 means the message never expires, as with JMS
+     */
+    void put(GoMessage message, long timeToLive) {
+        long now = System.nanoTime();
+        long expiresAt = timeToLive > 0 ? now + TimeUnit.MILLISECONDS.toNanos(timeToLive) : 0;
+        try {
+            messages.putLast(new Envelope(message, now, expiresAt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw bomb(e);
+        }
+        enqueued.increment();
+    }
+
+    Envelope take() throws InterruptedException {
+        while (true) {
+            Envelope envelope = messages.takeFirst();
+            long now = System.nanoTime();
+            if (envelope.isExpired(now)) {
+                expired.increment();
+                continue;
+            }
+            long latency = now - envelope.enqueuedAt();
+            delivered.increment();
+            totalLatencyNanos.add(latency);
+            maxLatencyNanos.accumulate(latency);
+            return envelope;
+        }
+    }
+
+    /**
+     * Puts a message taken by a listener that was stopped before it could handle it back at the head of the queue, so
+     * that another listener gets to handle it.
+     */
+    boolean putBack(Envelope envelope) {
+        if (messages.offerFirst(envelope)) {
+            delivered.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    QueueStats stats() {
+        long deliveredCount = delivered.sum();
+        double averageLatencyMillis = deliveredCount == 0 ? 0 : nanosToMillis(totalLatencyNanos.sum()) / deliveredCount;
+        return new QueueStats(name, messages.size(), enqueued.sum(), deliveredCount, expired.sum(), averageLatencyMillis, nanosToMillis(maxLatencyNanos.get()));
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    record Envelope(GoMessage message, long enqueuedAt, long expiresAt) {
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt > 0;
+        }
+    }
+}
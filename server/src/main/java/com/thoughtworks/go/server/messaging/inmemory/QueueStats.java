@@ -0,0 +1,29 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+/**
+ * A point in time view of a queue, or of a topic subscription.
+ *
+ * @param depth                number of messages waiting to be handled
+ * @param enqueued             number of messages posted so far
+ * @param delivered            number of messages handed to a listener so far
+ * @param expired              number of messages dropped because their time to live elapsed while waiting
+ * @param averageLatencyMillis average time delivered messages spent waiting in the queue
+ * @param maxLatencyMillis     longest time a delivered message spent waiting in the queue
+ */
+public record QueueStats(String name, int depth, long enqueued, long delivered, long expired, double averageLatencyMillis, double maxLatencyMillis) {
+}
@@ -16,16 +16,20 @@
 package com.thoughtworks.go.server.messaging.scheduling;
 
 import com.thoughtworks.go.server.messaging.GoMessage;
-import com.thoughtworks.go.server.messaging.GoMessageTopic;
+import com.thoughtworks.go.server.messaging.GoMessageQueue;
 import com.thoughtworks.go.server.messaging.MessagingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+/**
+ * Idle agents waiting to be matched to a job. Every message is handled by one of several {@link WorkFinder} listeners,
+ * so that different agents are matched in parallel.
+ */
 @Component
-public class IdleAgentTopic extends GoMessageTopic<IdleAgentMessage> {
+public class IdleAgentQueue extends GoMessageQueue<IdleAgentMessage> {
 
     @Autowired
-    public IdleAgentTopic(MessagingService<GoMessage> messaging) {
+    public IdleAgentQueue(MessagingService<GoMessage> messaging) {
         super(messaging, "idle_agent");
     }
 }
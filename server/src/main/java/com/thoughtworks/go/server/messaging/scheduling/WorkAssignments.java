@@ -15,66 +15,116 @@
  */
 package com.thoughtworks.go.server.messaging.scheduling;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.NoWork;
 import com.thoughtworks.go.remote.work.Work;
 import com.thoughtworks.go.server.messaging.GoMessageChannel;
 import com.thoughtworks.go.server.messaging.GoMessageListener;
 import com.thoughtworks.go.server.service.AgentRuntimeInfo;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class WorkAssignments implements GoMessageListener<WorkAssignedMessage> {
-    private GoMessageChannel<IdleAgentMessage> idleAgentsTopic;
+    private GoMessageChannel<IdleAgentMessage> idleAgentsQueue;
     private ConcurrentMap<AgentIdentifier, Work> assignments;
+    // Only weakly held: a waiting request keeps its agent's monitor alive, and monitors of agents that went away (or
+    // changed their hostname or IP address) are collected instead of piling up.
+    private final Cache<AgentIdentifier, Object> agentMutexes = Caffeine.newBuilder().weakValues().build();
+    private final long maxWaitMillis;
     private static final NoWork NO_WORK = new NoWork();
 
     @Autowired
-    public WorkAssignments(IdleAgentTopic idleAgentsTopic,
-                           WorkAssignedTopic assignedWorkTopic) {
-        this.idleAgentsTopic = idleAgentsTopic;
+    public WorkAssignments(IdleAgentQueue idleAgentsQueue,
+                           WorkAssignedTopic assignedWorkTopic,
+                           SystemEnvironment systemEnvironment) {
+        this(idleAgentsQueue, assignedWorkTopic, systemEnvironment.get(SystemEnvironment.AGENT_GET_WORK_MAX_WAIT_IN_MILLIS));
+    }
+
+    WorkAssignments(IdleAgentQueue idleAgentsQueue, WorkAssignedTopic assignedWorkTopic) {
+        this(idleAgentsQueue, assignedWorkTopic, 0L);
+    }
+
+    WorkAssignments(IdleAgentQueue idleAgentsQueue, WorkAssignedTopic assignedWorkTopic, long maxWaitMillis) {
+        this.idleAgentsQueue = idleAgentsQueue;
         assignedWorkTopic.addListener(this);
         this.assignments = new ConcurrentHashMap<>();
+        this.maxWaitMillis = maxWaitMillis;
     }
 
+    /**
+     * Hands out work assigned to the agent since it last asked. If nothing has been assigned yet and
+     * {@link SystemEnvironment#AGENT_GET_WORK_MAX_WAIT_IN_MILLIS} is set, the request is held open for up to that long
+     * while the work finder looks for a job, so that a matching job reaches the agent in the same request instead of on
+     * its next poll.
+     * <p>
+     * This is off by default: a held request keeps a server request thread busy, and with many idle agents that would
+     * take up the threads needed to serve everybody else. Only turn it on when the request thread pool is comfortably
+     * larger than the number of agents.
+     */
     public Work getWork(AgentRuntimeInfo runtimeInfo) {
         AgentIdentifier agent = runtimeInfo.getIdentifier();
-        synchronized (agentMutex(agent)) {
+        Object mutex = agentMutex(agent);
+        synchronized (mutex) {
             Work work = assignments.get(agent);
             if (work == null) {
                 assignments.put(agent, NO_WORK);
-                idleAgentsTopic.post(new IdleAgentMessage(runtimeInfo));
-                return NO_WORK;
+                idleAgentsQueue.post(new IdleAgentMessage(runtimeInfo));
+            } else if (!(work instanceof NoWork)) {
+                return assignments.remove(agent);
             }
 
-            if (work instanceof NoWork) {
-                return work;
+            return awaitAssignment(agent, mutex);
+        }
+    }
+
+    // must be called while holding the agent mutex
+    private Work awaitAssignment(AgentIdentifier agent, Object mutex) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(mutex, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
 
-            return assignments.remove(agent);
+            Work work = assignments.get(agent);
+            if (work == null) {
+                // the work finder did not find anything for this agent
+                return NO_WORK;
+            }
+            if (!(work instanceof NoWork)) {
+                return assignments.remove(agent);
+            }
         }
+        return NO_WORK;
     }
 
-    private String agentMutex(AgentIdentifier agent) {
-        return agent.getUuid().intern();
+    private Object agentMutex(AgentIdentifier agent) {
+        return agentMutexes.get(agent, identifier -> new Object());
     }
 
     @Override
     public void onMessage(WorkAssignedMessage message) {
         AgentIdentifier agentIdentifier = message.getAgent();
         Work work = message.getWork();
-        if (work instanceof NoWork) {
-            synchronized (agentMutex(agentIdentifier)) {
+        Object mutex = agentMutex(agentIdentifier);
+        synchronized (mutex) {
+            if (work instanceof NoWork) {
                 assignments.remove(agentIdentifier);
-            }
-        } else {
-            synchronized (agentMutex(agentIdentifier)) {
+            } else {
                 assignments.replace(agentIdentifier, NO_WORK, work);
             }
+            mutex.notifyAll();
         }
     }
 
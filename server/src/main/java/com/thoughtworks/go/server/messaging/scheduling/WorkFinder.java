@@ -22,6 +22,7 @@ import com.thoughtworks.go.server.messaging.GoMessageChannel;
 import com.thoughtworks.go.server.messaging.GoMessageListener;
 import com.thoughtworks.go.server.perf.WorkAssignmentPerformanceLogger;
 import com.thoughtworks.go.server.service.BuildAssignmentService;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
@@ -42,13 +43,25 @@ public class WorkFinder implements GoMessageListener<IdleAgentMessage> {
 
     @Autowired
     public WorkFinder(BuildAssignmentService buildAssignmentService,
-                      IdleAgentTopic idleAgentTopic,
+                      IdleAgentQueue idleAgentQueue,
                       WorkAssignedTopic assignedWorkTopic,
-                      WorkAssignmentPerformanceLogger workAssignmentPerformanceLogger) {
+                      WorkAssignmentPerformanceLogger workAssignmentPerformanceLogger,
+                      SystemEnvironment systemEnvironment) {
+        this(buildAssignmentService, idleAgentQueue, assignedWorkTopic, workAssignmentPerformanceLogger, systemEnvironment.get(SystemEnvironment.WORK_FINDER_LISTENERS));
+    }
+
+    WorkFinder(BuildAssignmentService buildAssignmentService,
+               IdleAgentQueue idleAgentQueue,
+               WorkAssignedTopic assignedWorkTopic,
+               WorkAssignmentPerformanceLogger workAssignmentPerformanceLogger,
+               int numberOfListeners) {
         this.buildAssignmentService = buildAssignmentService;
         this.assignedWorkTopic = assignedWorkTopic;
         this.workAssignmentPerformanceLogger = workAssignmentPerformanceLogger;
-        idleAgentTopic.addListener(this);
+        // the finder holds no state of its own, so the same instance listens once per thread that matches idle agents
+        for (int i = 0; i < numberOfListeners; i++) {
+            idleAgentQueue.addListener(this);
+        }
     }
 
     @Override
@@ -127,7 +127,7 @@ public class AgentDao extends HibernateDaoSupport {
     }
 
     String agentCacheKey(String uuid) {
-        return (AgentDao.class.getName() + "_agent_" + uuid).intern();
+        return AgentDao.class.getName() + "_agent_" + uuid;
     }
 
     @SuppressWarnings("unchecked")
@@ -53,9 +53,18 @@ import org.springframework.transaction.support.TransactionSynchronizationAdapter
 
 import java.io.File;
 import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
 import static com.thoughtworks.go.server.persistence.MaterialQueries.loadModificationQuery;
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -71,6 +80,14 @@ public class MaterialRepository extends HibernateDaoSupport {
     private static final Logger LOGGER = LoggerFactory.getLogger(MaterialRepository.class.getName());
     private static final int BATCH_SIZE_NUM_PIPELINES_TO_GET_PIPELINE_MATERIAL_REVISIONS = 500;
     private static final int BATCH_SIZE_NUM_PIPELINE_MATERIAL_REVISION_To_GET_MODIFICATIONS = 100;
+    private static final int BATCH_SIZE_NUM_MODIFICATIONS_TO_INSERT = 500;
+    private static final int BATCH_SIZE_NUM_REVISIONS_TO_CHECK_FOR_DUPLICATES = 1000;
+    private static final String INSERT_MODIFICATION = "INSERT INTO modifications (revision, comment, emailAddress, modifiedTime, userName, pipelineLabel, pipelineId, additionalData, materialId) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int BATCH_SIZE_NUM_REVISION_SEARCH_CANDIDATES_TO_VERIFY = 200;
+    private static final int MAX_REVISION_SEARCH_CANDIDATES_TO_VERIFY = 5 * BATCH_SIZE_NUM_REVISION_SEARCH_CANDIDATES_TO_VERIFY;
+    private static final int MAX_MATCHED_REVISIONS = 5;
+    private static final String INSERT_MODIFIED_FILE = "INSERT INTO modifiedFiles (action, fileName, folderName, modificationId) VALUES (?, ?, ?, ?)";
+    private static final String[] GENERATED_ID_COLUMNS = {"id"};
 
     private final GoCache goCache;
     private final TransactionSynchronizationManager transactionSynchronizationManager;
@@ -79,6 +96,7 @@ public class MaterialRepository extends HibernateDaoSupport {
     private final CacheKeyGenerator cacheKeyGenerator;
     private final int latestModificationsCacheLimit;
     private final MaterialExpansionService materialExpansionService;
+    private final RevisionSearchIndex revisionSearchIndex;
 
     @Autowired
     public MaterialRepository(SessionFactory sessionFactory,
@@ -96,6 +114,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         this.queryExtensions = databaseStrategy.getQueryExtensions();
         setSessionFactory(sessionFactory);
         this.cacheKeyGenerator = new CacheKeyGenerator(getClass());
+        this.revisionSearchIndex = new RevisionSearchIndex(new SystemEnvironment().get(SystemEnvironment.REVISION_SEARCH_INDEX_MAX_MODIFICATIONS));
     }
 
     @SuppressWarnings("unchecked")
@@ -252,7 +271,7 @@ public class MaterialRepository extends HibernateDaoSupport {
 
     public List<PipelineMaterialRevision> findPipelineMaterialRevisions(long pipelineId) {
         String cacheKey = pipelinePmrsKey(pipelineId);
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             List<PipelineMaterialRevision> results = goCache.get(cacheKey);
             if (results != null) {
                 return results;
@@ -352,7 +371,7 @@ public class MaterialRepository extends HibernateDaoSupport {
     }
 
     private String pipelinePmrsKey(long pipelineId) {
-        return (MaterialRepository.class.getName() + "_pipelinePMRs_" + pipelineId).intern();
+        return MaterialRepository.class.getName() + "_pipelinePMRs_" + pipelineId;
     }
 
     @SuppressWarnings("unchecked")
@@ -365,7 +384,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String cacheKey = pmrModificationsKey(pmr);
         List<Modification> modifications = goCache.get(cacheKey);
         if (modifications == null) {
-            synchronized (cacheKey) {
+            synchronized (lockFor(cacheKey)) {
                 modifications = goCache.get(cacheKey);
                 if (modifications == null) {
                     modifications = (List<Modification>) getHibernateTemplate().find(
@@ -379,8 +398,7 @@ public class MaterialRepository extends HibernateDaoSupport {
     }
 
     private String pmrModificationsKey(PipelineMaterialRevision pmr) {
-        // we intern() it because we might synchronize on the returned String
-        return (MaterialRepository.class.getName() + "_pmrModifications_" + pmr.getId()).intern();
+        return MaterialRepository.class.getName() + "_pmrModifications_" + pmr.getId();
     }
 
     private List<String> pmrModificationsKey(Modification modification, List<PipelineMaterialRevision> pmrs) {
@@ -400,18 +418,15 @@ public class MaterialRepository extends HibernateDaoSupport {
     }
 
     String latestMaterialModificationsKey(MaterialInstance materialInstance) {
-        // we intern() it because we might synchronize on the returned String
-        return (MaterialRepository.class.getName() + "_latestMaterialModifications_" + materialInstance.getId()).intern();
+        return MaterialRepository.class.getName() + "_latestMaterialModifications_" + materialInstance.getId();
     }
 
     String materialModificationCountKey(MaterialInstance materialInstance) {
-        // we intern() it because we might synchronize on the returned String
-        return (MaterialRepository.class.getName() + "_materialModificationCount_" + materialInstance.getId()).intern();
+        return MaterialRepository.class.getName() + "_materialModificationCount_" + materialInstance.getId();
     }
 
     String materialModificationsWithPaginationKey(MaterialInstance materialInstance) {
-        // we intern() it because we might synchronize on the returned String
-        return (MaterialRepository.class.getName() + "_materialModificationsWithPagination_" + materialInstance.getId()).intern();
+        return MaterialRepository.class.getName() + "_materialModificationsWithPagination_" + materialInstance.getId();
     }
 
     String materialModificationsWithPaginationSubKey(Pagination pagination) {
@@ -420,7 +435,7 @@ public class MaterialRepository extends HibernateDaoSupport {
 
     public void saveOrUpdate(MaterialInstance materialInstance) {
         String cacheKey = materialKey(materialInstance.getFingerprint());
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             getHibernateTemplate().saveOrUpdate(materialInstance);
             goCache.remove(cacheKey);
             goCache.put(cacheKey, materialInstance);
@@ -455,7 +470,7 @@ public class MaterialRepository extends HibernateDaoSupport {
 
     public MaterialInstance findOrCreateFrom(@NotNull Material material) {
         String cacheKey = materialKey(material);
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             MaterialInstance materialInstance = findMaterialInstance(material);
             if (materialInstance == null) {
                 LOGGER.debug("Material instance for material '{}' not found in the database, creating a new instance now.", material);
@@ -471,15 +486,14 @@ public class MaterialRepository extends HibernateDaoSupport {
     }
 
     private @NotNull String materialKey(String fingerprint) {
-        // we intern() it because we synchronize on the returned String
-        return (MaterialRepository.class.getName() + "_materialInstance_" + fingerprint).intern();
+        return MaterialRepository.class.getName() + "_materialInstance_" + fingerprint;
     }
 
     public MaterialInstance findMaterialInstance(@NotNull Material material) {
         String cacheKey = materialKey(material);
         MaterialInstance materialInstance = goCache.get(cacheKey);
         if (materialInstance == null) {
-            synchronized (cacheKey) {
+            synchronized (lockFor(cacheKey)) {
                 materialInstance = goCache.get(cacheKey);
                 if (materialInstance == null) {
                     DetachedCriteria hibernateCriteria = DetachedCriteria.forClass(material.getInstanceType());
@@ -494,7 +508,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String cacheKey = materialKey(materialConfig.getFingerprint());
         MaterialInstance materialInstance = goCache.get(cacheKey);
         if (materialInstance == null) {
-            synchronized (cacheKey) {
+            synchronized (lockFor(cacheKey)) {
                 materialInstance = goCache.get(cacheKey);
                 if (materialInstance == null) {
                     DetachedCriteria hibernateCriteria = DetachedCriteria.forClass(materialConfigConverter.getInstanceType(materialConfig));
@@ -600,7 +614,7 @@ public class MaterialRepository extends HibernateDaoSupport {
             @Override
             public void afterCommit() {
                 String key = cacheKeyForLatestPmrForPipelineKey(pipelineMaterialRevision.getMaterialId(), pipelineName.toLowerCase());
-                synchronized (key) {
+                synchronized (lockFor(key)) {
                     goCache.remove(key);
                 }
             }
@@ -633,7 +647,7 @@ public class MaterialRepository extends HibernateDaoSupport {
     public List<Modification> findModificationsSince(Material material, MaterialRevision revision) {
         MaterialInstance materialInstance = findOrCreateFrom(material);
         String cacheKey = latestMaterialModificationsKey(materialInstance);
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             long sinceModificationId = revision.getLatestModification().getId();
             Modifications modifications = cachedModifications(materialInstance);
             if (!modificationExists(sinceModificationId, modifications)) {
@@ -669,7 +683,7 @@ public class MaterialRepository extends HibernateDaoSupport {
             @Override
             public void afterCommit() {
                 String cacheKey = latestMaterialModificationsKey(materialInstance);
-                synchronized (cacheKey) {
+                synchronized (lockFor(cacheKey)) {
                     goCache.remove(cacheKey);
                 }
             }
@@ -681,7 +695,7 @@ public class MaterialRepository extends HibernateDaoSupport {
             @Override
             public void afterCommit() {
                 String key = materialModificationCountKey(materialInstance);
-                synchronized (key) {
+                synchronized (lockFor(key)) {
                     goCache.remove(key);
                 }
             }
@@ -693,7 +707,7 @@ public class MaterialRepository extends HibernateDaoSupport {
             @Override
             public void afterCommit() {
                 String key = materialModificationsWithPaginationKey(materialInstance);
-                synchronized (key) {
+                synchronized (lockFor(key)) {
                     goCache.remove(key);
                 }
             }
@@ -728,7 +742,7 @@ public class MaterialRepository extends HibernateDaoSupport {
             return modifications.getFirst();
         }
         String cacheKey = latestMaterialModificationsKey(expandedInstance);
-        synchronized (cacheKey) {
+        synchronized (lockFor(cacheKey)) {
             Modification modification = (Modification) getHibernateTemplate().execute(session -> {
                 Query query = session.createQuery("FROM Modification WHERE materialId = ? ORDER BY id DESC");
                 query.setMaxResults(1);
@@ -751,10 +765,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         }
 
         try {
-            checkAndRemoveDuplicates(materialInstance, newChanges, list);
-            for (Modification modification : list) {
-                getHibernateTemplate().saveOrUpdate(modification);
-            }
+            insertModifications(removeDuplicates(materialInstance, list));
         } catch (Exception e) {
             String message = "Cannot save modification: ";
             LOGGER.error(message, e);
@@ -765,35 +776,121 @@ public class MaterialRepository extends HibernateDaoSupport {
         removeCachedModificationsFor(materialInstance);
     }
 
-    private void checkAndRemoveDuplicates(MaterialInstance materialInstance,
-                                          List<Modification> newChanges,
-                                          List<Modification> list) {
+    private List<Modification> removeDuplicates(MaterialInstance materialInstance, List<Modification> list) {
         if (!new SystemEnvironment().get(SystemEnvironment.CHECK_AND_REMOVE_DUPLICATE_MODIFICATIONS)) {
-            return;
+            return list;
         }
-        DetachedCriteria criteria = DetachedCriteria.forClass(Modification.class);
-        criteria.setProjection(Projections.projectionList().add(Projections.property("revision")));
-        criteria.add(Restrictions.eq("materialInstance.id", materialInstance.getId()));
-        List<String> revisions = new ArrayList<>();
-        for (Modification modification : newChanges) {
-            revisions.add(modification.getRevision());
+        List<String> revisions = list.stream().map(Modification::getRevision).collect(Collectors.toList());
+        Set<String> matchingRevisionsFromDb = new LinkedHashSet<>();
+        for (List<String> batch : ListUtils.partition(revisions, BATCH_SIZE_NUM_REVISIONS_TO_CHECK_FOR_DUPLICATES)) {
+            DetachedCriteria criteria = DetachedCriteria.forClass(Modification.class);
+            criteria.setProjection(Projections.projectionList().add(Projections.property("revision")));
+            criteria.add(Restrictions.eq("materialInstance.id", materialInstance.getId()));
+            criteria.add(Restrictions.in("revision", batch));
+            @SuppressWarnings("unchecked") List<String> matches = (List<String>) getHibernateTemplate().findByCriteria(criteria);
+            matchingRevisionsFromDb.addAll(matches);
         }
-        criteria.add(Restrictions.in("revision", revisions));
-        @SuppressWarnings("unchecked") List<String> matchingRevisionsFromDb = (List<String>) getHibernateTemplate().findByCriteria(criteria);
-        if (!matchingRevisionsFromDb.isEmpty()) {
-            for (final String revision : matchingRevisionsFromDb) {
-                Modification modification = list.stream().filter(item -> item.getRevision().equals(revision)).findFirst().orElse(null);
-                list.remove(modification);
-            }
+        if (matchingRevisionsFromDb.isEmpty()) {
+            return list;
         }
-        if (!newChanges.isEmpty() && list.isEmpty()) {
+
+        List<Modification> withoutDuplicates = list.stream()
+            .filter(modification -> !matchingRevisionsFromDb.contains(modification.getRevision()))
+            .collect(Collectors.toList());
+        if (withoutDuplicates.isEmpty()) {
             LOGGER.debug("All modifications already exist in db [{}]", revisions);
         }
-        if (!matchingRevisionsFromDb.isEmpty()) {
-            LOGGER.info("Saving revisions for material [{}] after removing the following duplicates {}",
-                materialInstance.toOldMaterial(null, null, null).getLongDescription(), matchingRevisionsFromDb);
+        LOGGER.info("Saving revisions for material [{}] after removing the following duplicates {}",
+            materialInstance.toOldMaterial(null, null, null).getLongDescription(), matchingRevisionsFromDb);
+        return withoutDuplicates;
+    }
+
+    /**
+     * Inserts modifications and their files using JDBC batches on the connection of the current session, rather than
+     * saving them one at a time through hibernate, which cannot batch inserts of entities with identity ids. The first
+     * poll of a large repository can bring in tens of thousands of modifications.
+     */
+    private void insertModifications(List<Modification> modifications) {
+        if (modifications.isEmpty()) {
+            return;
+        }
+        getHibernateTemplate().execute(session -> {
+            session.flush();
+            session.doWork(connection -> {
+                for (List<Modification> batch : ListUtils.partition(modifications, BATCH_SIZE_NUM_MODIFICATIONS_TO_INSERT)) {
+                    insertModificationRows(connection, batch);
+                    insertModifiedFileRows(connection, batch);
+                }
+            });
+            return null;
+        });
+    }
+
+    private static void insertModificationRows(Connection connection, List<Modification> modifications) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_MODIFICATION, GENERATED_ID_COLUMNS)) {
+            for (Modification modification : modifications) {
+                Date modifiedTime = modification.getModifiedTime();
+                insert.setString(1, modification.getRevision());
+                insert.setString(2, modification.getComment());
+                insert.setString(3, modification.getEmailAddress());
+                insert.setTimestamp(4, modifiedTime == null ? null : new Timestamp(modifiedTime.getTime()));
+                insert.setString(5, modification.getUserName());
+                insert.setString(6, modification.getPipelineLabel());
+                insert.setObject(7, modification.getPipelineId(), Types.BIGINT);
+                insert.setString(8, modification.getAdditionalData());
+                insert.setLong(9, modification.getMaterialInstance().getId());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+
+            try (ResultSet generatedIds = insert.getGeneratedKeys()) {
+                for (Modification modification : modifications) {
+                    if (!generatedIds.next()) {
+                        throw new SQLException("The database did not return the ids of all inserted modifications");
+                    }
+                    modification.setId(generatedId(generatedIds));
+                }
+            }
+        }
+    }
+
+    private static void insertModifiedFileRows(Connection connection, List<Modification> modifications) throws SQLException {
+        List<ModifiedFile> files = new ArrayList<>();
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_MODIFIED_FILE, GENERATED_ID_COLUMNS)) {
+            for (Modification modification : modifications) {
+                for (ModifiedFile file : modification.getModifiedFiles()) {
+                    file.setModificationId(modification.getId());
+                    insert.setString(1, file.getAction() == null ? null : file.getAction().name());
+                    insert.setString(2, file.getFileName());
+                    insert.setString(3, file.getFolderName());
+                    insert.setLong(4, modification.getId());
+                    insert.addBatch();
+                    files.add(file);
+                }
+            }
+            if (files.isEmpty()) {
+                return;
+            }
+            insert.executeBatch();
+
+            try (ResultSet generatedIds = insert.getGeneratedKeys()) {
+                for (ModifiedFile file : files) {
+                    if (!generatedIds.next()) {
+                        throw new SQLException("The database did not return the ids of all inserted modified files");
+                    }
+                    file.setId(generatedId(generatedIds));
+                }
+            }
         }
+    }
 
+    /**
+     * MySQL labels the generated key {@code GENERATED_KEY} rather than by the column it was asked for, but then it only
+     * ever returns that one column.
+     */
+    private static long generatedId(ResultSet generatedIds) throws SQLException {
+        ResultSetMetaData metaData = generatedIds.getMetaData();
+        return metaData.getColumnCount() == 1 ? generatedIds.getLong(1) : generatedIds.getLong("id");
     }
 
     public Modification findModificationWithRevision(@NotNull Material material, final String revision) {
@@ -813,7 +910,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String key = cacheKeyForModificationWithRevision(materialId, revision);
         modification = goCache.get(key);
         if (modification == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 modification = goCache.get(key);
                 if (modification == null) {
                     Query query = session.createQuery("FROM Modification WHERE materialId = ? and revision = ? ORDER BY id DESC");
@@ -881,8 +978,29 @@ public class MaterialRepository extends HibernateDaoSupport {
         return cacheKeyGenerator.generate("hasPipelineEverRunWithModification", pipelineName, materialId, modificationId);
     }
 
-    @SuppressWarnings("unchecked")
     public List<MatchedRevision> findRevisionsMatching(final MaterialConfig materialConfig, final String searchString) {
+        Material material = materialConfigConverter.toMaterial(materialConfig);
+        List<Modification> modifications = null;
+        if (RevisionSearchIndex.canSearch(searchString) && isRevisionSearchIndexEnabled()) {
+            modifications = findModificationsMatchingUsingIndex(material, searchString);
+        }
+        if (modifications == null) {
+            modifications = findModificationsMatching(material, searchString);
+        }
+
+        final List<MatchedRevision> list = new ArrayList<>();
+        for (Modification mod : modifications) {
+            list.add(material.createMatchedRevision(mod, searchString));
+        }
+        return list;
+    }
+
+    private boolean isRevisionSearchIndexEnabled() {
+        return new SystemEnvironment().get(SystemEnvironment.REVISION_SEARCH_INDEX_MAX_MODIFICATIONS) > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Modification> findModificationsMatching(final Material material, final String searchString) {
         return getHibernateTemplate().execute(session -> {
             String sql = """
                 SELECT m.* \
@@ -895,17 +1013,120 @@ public class MaterialRepository extends HibernateDaoSupport {
                 """;
             SQLQuery query = session.createSQLQuery(sql);
             query.addEntity("m", Modification.class);
-            Material material = materialConfigConverter.toMaterial(materialConfig);
             query.setString("finger_print", material.getFingerprint());
             query.setString("search_string", "%" + searchString + "%");
-            final List<MatchedRevision> list = new ArrayList<>();
-            for (Modification mod : (List<Modification>) query.list()) {
-                list.add(material.createMatchedRevision(mod, searchString));
+            return (List<Modification>) query.list();
+        });
+    }
+
+    /**
+     * Same as {@link #findModificationsMatching(Material, String)}, except that only the modifications picked out by
+     * the {@link RevisionSearchIndex} are checked against the search string, rather than every modification of the
+     * material. The index is brought up to date with whatever was saved since the last search first.
+     * <p>
+     * Short or common terms, like the first few characters typed into a search, can leave a large part of the
+     * modifications as candidates. Checking those batch by batch is slower than a single scan in the database, so the
+     * search is left to the database once {@link #MAX_REVISION_SEARCH_CANDIDATES_TO_VERIFY} candidates were checked
+     * without finding enough matches.
+     *
+     * @return the matching modifications, or null if the material has too many modifications to be indexed, or the
+     * search string too many candidates to check
+     */
+    private List<Modification> findModificationsMatchingUsingIndex(final Material material, final String searchString) {
+        MaterialInstance materialInstance = findMaterialInstance(material);
+        if (materialInstance == null) {
+            return new ArrayList<>();
+        }
+        return getHibernateTemplate().execute(session -> {
+            RevisionSearchIndex.MaterialIndex index = revisionSearchIndex.forMaterial(materialInstance.getId());
+            if (index == null || !catchUp(session, materialInstance.getId(), index)) {
+                return null;
             }
-            return list;
+
+            List<Modification> matches = new ArrayList<>();
+            List<Long> candidates = new ArrayList<>();
+            AtomicInteger verified = new AtomicInteger();
+            index.forEachCandidate(searchString, id -> {
+                candidates.add(id);
+                if (candidates.size() == BATCH_SIZE_NUM_REVISION_SEARCH_CANDIDATES_TO_VERIFY) {
+                    matches.addAll(modificationsMatching(session, candidates, searchString, MAX_MATCHED_REVISIONS - matches.size()));
+                    verified.addAndGet(candidates.size());
+                    candidates.clear();
+                }
+                return matches.size() < MAX_MATCHED_REVISIONS && verified.get() < MAX_REVISION_SEARCH_CANDIDATES_TO_VERIFY;
+            });
+            if (matches.size() < MAX_MATCHED_REVISIONS && verified.get() >= MAX_REVISION_SEARCH_CANDIDATES_TO_VERIFY) {
+                return null;
+            }
+            if (!candidates.isEmpty() && matches.size() < MAX_MATCHED_REVISIONS) {
+                matches.addAll(modificationsMatching(session, candidates, searchString, MAX_MATCHED_REVISIONS - matches.size()));
+            }
+            return matches;
         });
     }
 
+    /**
+     * @return false if the material turned out to have too many modifications to be indexed
+     */
+    private boolean catchUp(Session session, long materialId, RevisionSearchIndex.MaterialIndex index) {
+        synchronized (index) {
+            SQLQuery count = session.createSQLQuery("SELECT COUNT(*) FROM modifications WHERE materialId = :material_id AND id > :after_id");
+            count.setLong("material_id", materialId);
+            count.setLong("after_id", index.lastIndexedId());
+            if (!revisionSearchIndex.canHold(index, ((Number) count.uniqueResult()).longValue())) {
+                revisionSearchIndex.tooLargeToIndex(materialId);
+                return false;
+            }
+
+            SQLQuery query = session.createSQLQuery("SELECT id, revision, username, comment, pipelineLabel FROM modifications WHERE materialId = :material_id AND id > :after_id ORDER BY id");
+            query.addScalar("id", LongType.INSTANCE);
+            query.addScalar("revision", StringType.INSTANCE);
+            query.addScalar("username", StringType.INSTANCE);
+            query.addScalar("comment", StringType.INSTANCE);
+            query.addScalar("pipelineLabel", StringType.INSTANCE);
+            query.setLong("material_id", materialId);
+            query.setLong("after_id", index.lastIndexedId());
+            query.setFetchSize(1000);
+
+            int indexedBefore = index.size();
+            ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (rows.next()) {
+                    if (!revisionSearchIndex.canHold(index, 1)) {
+                        // more modifications were saved since they were counted
+                        revisionSearchIndex.tooLargeToIndex(materialId);
+                        return false;
+                    }
+                    String revisionUserAndComment = rows.getString(1) + ' ' + Objects.toString(rows.getString(2), "") + ' ' + Objects.toString(rows.getString(3), "");
+                    index.add(rows.getLong(0), RevisionSearchIndex.signatureOf(revisionUserAndComment, rows.getString(4)));
+                }
+            } finally {
+                rows.close();
+            }
+            if (index.size() != indexedBefore) {
+                revisionSearchIndex.grown(materialId, index);
+            }
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Modification> modificationsMatching(Session session, List<Long> ids, String searchString, int limit) {
+        String sql = """
+            SELECT m.* \
+            FROM modifications AS m \
+            WHERE m.id IN (:ids) \
+                AND (m.revision || ' ' || COALESCE(m.username, '') || ' ' || COALESCE(m.comment, '') LIKE :search_string OR m.pipelineLabel LIKE :search_string) \
+            ORDER BY m.id DESC \
+            """;
+        SQLQuery query = session.createSQLQuery(sql);
+        query.addEntity("m", Modification.class);
+        query.setParameterList("ids", ids);
+        query.setString("search_string", "%" + searchString + "%");
+        query.setMaxResults(limit);
+        return (List<Modification>) query.list();
+    }
+
     @SuppressWarnings("unchecked")
     public List<Modification> modificationFor(final StageIdentifier stageIdentifier) {
         if (stageIdentifier == null) {
@@ -914,7 +1135,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String key = cacheKeyForModificationsForStageLocator(stageIdentifier);
         List<Modification> modifications = goCache.get(key);
         if (modifications == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 modifications = goCache.get(key);
                 if (modifications == null) {
                     modifications = getHibernateTemplate().execute(session -> {
@@ -935,7 +1156,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String key = materialModificationCountKey(materialInstance);
         Long totalCount = goCache.get(key);
         if (totalCount == null || totalCount == 0) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 totalCount = goCache.get(key);
                 if (totalCount == null || totalCount == 0) {
                     totalCount = getHibernateTemplate().execute(session -> {
@@ -955,7 +1176,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String subKey = materialModificationsWithPaginationSubKey(pagination);
         Modifications modifications = (Modifications) goCache.get(key, subKey);
         if (modifications == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 modifications = (Modifications) goCache.get(key, subKey);
                 if (modifications == null) {
                     @SuppressWarnings("unchecked") List<Modification> modificationsList = getHibernateTemplate().execute(session -> {
@@ -980,7 +1201,7 @@ public class MaterialRepository extends HibernateDaoSupport {
         String key = cacheKeyForLatestPmrForPipelineKey(materialId, pipelineName.toLower());
         Long modificationId = goCache.get(key);
         if (modificationId == null) {
-            synchronized (key) {
+            synchronized (lockFor(key)) {
                 modificationId = goCache.get(key);
                 if (modificationId == null) {
                     modificationId = (Long) getHibernateTemplate().execute(session -> {
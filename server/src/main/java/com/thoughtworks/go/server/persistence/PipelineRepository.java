@@ -35,6 +35,7 @@ import org.springframework.stereotype.Component;
 import java.math.BigInteger;
 import java.util.*;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 /**
@@ -205,7 +206,7 @@ public class PipelineRepository extends HibernateDaoSupport {
             return goCache.get(key);
         }
 
-        synchronized (key) {
+        synchronized (lockFor(key)) {
             if (goCache.isKeyInCache(key)) {
                 return goCache.get(key);
             }
@@ -236,7 +237,7 @@ public class PipelineRepository extends HibernateDaoSupport {
         if (goCache.isKeyInCache(key)) {
             return goCache.get(key);
         }
-        synchronized (key) {
+        synchronized (lockFor(key)) {
             if (goCache.isKeyInCache(key)) {
                 return goCache.get(key);
             }
@@ -250,23 +251,23 @@ public class PipelineRepository extends HibernateDaoSupport {
 
     private void removePipelineSelectionFromCacheForCookie(PipelineSelections pipelineSelections) {
         String pipelineSelectionCookieKey = pipelineSelectionForCookieKey(pipelineSelections.getId());
-        synchronized (pipelineSelectionCookieKey) {
+        synchronized (lockFor(pipelineSelectionCookieKey)) {
             goCache.remove(pipelineSelectionCookieKey);
         }
     }
 
     private void removePipelineSelectionFromCacheForUserId(PipelineSelections pipelineSelections) {
         String pipelineSelectionUserIdKey = pipelineSelectionForUserIdKey(pipelineSelections.userId());
-        synchronized (pipelineSelectionUserIdKey) {
+        synchronized (lockFor(pipelineSelectionUserIdKey)) {
             goCache.remove(pipelineSelectionUserIdKey);
         }
     }
 
     String pipelineSelectionForUserIdKey(Long userId) {
-        return (PipelineRepository.class.getName() + "_userIdPipelineSelection_" + userId).intern();
+        return PipelineRepository.class.getName() + "_userIdPipelineSelection_" + userId;
     }
 
     String pipelineSelectionForCookieKey(long id) {
-        return (PipelineRepository.class.getName() + "_cookiePipelineSelection_" + id).intern();
+        return PipelineRepository.class.getName() + "_cookiePipelineSelection_" + id;
     }
 }
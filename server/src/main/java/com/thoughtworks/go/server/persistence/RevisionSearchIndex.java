@@ -0,0 +1,177 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.persistence;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Narrows down revision searches on materials with a long history. For every modification of a material, it keeps a
+ * 256-bit signature of the trigrams found in its revision, user, comment and pipeline label. A modification can only
+ * match a search term if its signature contains all the bits of the term's trigrams, so only a handful of candidates
+ * need to be checked against the database instead of every modification of the material.
+ * <p>
+ * Materials with more modifications than the whole index may hold are not indexed at all; searches on those are left
+ * to the database.
+ */
+class RevisionSearchIndex {
+    static final int MIN_TERM_LENGTH = 3;
+    private static final int SIGNATURE_WORDS = 4;
+
+    private final Cache<Long, MaterialIndex> indexes;
+    private final Set<Long> tooLargeToIndex = ConcurrentHashMap.newKeySet();
+    private final long maxIndexedModifications;
+
+    RevisionSearchIndex(long maxIndexedModifications) {
+        this.maxIndexedModifications = maxIndexedModifications;
+        this.indexes = Caffeine.newBuilder()
+            .maximumWeight(maxIndexedModifications)
+            .weigher((Long materialId, MaterialIndex index) -> index.size())
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+    }
+
+    static boolean canSearch(String searchString) {
+        // LIKE wildcards in the search string can match characters which are not in the term itself
+        // and backslashes are escape characters in LIKE patterns on some databases
+        return searchString.length() >= MIN_TERM_LENGTH && searchString.indexOf('%') < 0 && searchString.indexOf('_') < 0 && searchString.indexOf('\\') < 0;
+    }
+
+    /**
+     * @return the index of the material, or null if the material has too many modifications to be indexed
+     */
+    MaterialIndex forMaterial(long materialId) {
+        if (tooLargeToIndex.contains(materialId)) {
+            return null;
+        }
+        return indexes.get(materialId, id -> new MaterialIndex());
+    }
+
+    /**
+     * @return whether {@code index} can take {@code moreModifications} more modifications, without outweighing the
+     * whole cache and being evicted straight away
+     */
+    boolean canHold(MaterialIndex index, long moreModifications) {
+        return index.size() + moreModifications <= maxIndexedModifications;
+    }
+
+    /**
+     * Stops indexing a material, and drops whatever was indexed for it so far.
+     */
+    void tooLargeToIndex(long materialId) {
+        tooLargeToIndex.add(materialId);
+        indexes.invalidate(materialId);
+    }
+
+    /**
+     * Lets the cache know that an index has grown, so that it is weighed again.
+     */
+    void grown(long materialId, MaterialIndex index) {
+        indexes.put(materialId, index);
+    }
+
+    static long[] signatureOf(String... texts) {
+        long[] signature = new long[SIGNATURE_WORDS];
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            String lowerCased = text.toLowerCase(Locale.ROOT);
+            for (int i = 0; i + MIN_TERM_LENGTH <= lowerCased.length(); i++) {
+                int bit = trigramBit(lowerCased, i);
+                signature[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+        return signature;
+    }
+
+    private static int trigramBit(String text, int start) {
+        int hash = (text.charAt(start) * 31 + text.charAt(start + 1)) * 31 + text.charAt(start + 2);
+        hash *= 0x9E3779B9;
+        return hash >>> 24;
+    }
+
+    static class MaterialIndex {
+        private long[] ids = new long[0];
+        private long[] signatures = new long[0];
+        private int size;
+        private long lastIndexedId;
+
+        synchronized long lastIndexedId() {
+            return lastIndexedId;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Modifications have to be added in the order of their ids.
+         */
+        synchronized void add(long id, long[] signature) {
+            if (id <= lastIndexedId) {
+                return;
+            }
+            if (size == ids.length) {
+                int capacity = Math.max(16, size + (size >> 1));
+                ids = Arrays.copyOf(ids, capacity);
+                signatures = Arrays.copyOf(signatures, capacity * SIGNATURE_WORDS);
+            }
+            ids[size] = id;
+            System.arraycopy(signature, 0, signatures, size * SIGNATURE_WORDS, SIGNATURE_WORDS);
+            size++;
+            lastIndexedId = id;
+        }
+
+        /**
+         * Hands the ids of the modifications which may contain {@code term} to {@code candidate}, latest first, for as
+         * long as it returns true.
+         */
+        void forEachCandidate(String term, LongPredicate candidate) {
+            long[] mask = signatureOf(term);
+            long[] ids;
+            long[] signatures;
+            int size;
+            synchronized (this) {
+                // the arrays are only ever appended to beyond size, or replaced when growing
+                ids = this.ids;
+                signatures = this.signatures;
+                size = this.size;
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                if (contains(signatures, i * SIGNATURE_WORDS, mask) && !candidate.test(ids[i])) {
+                    return;
+                }
+            }
+        }
+
+        private static boolean contains(long[] signatures, int offset, long[] mask) {
+            for (int word = 0; word < SIGNATURE_WORDS; word++) {
+                if ((signatures[offset + word] & mask[word]) != mask[word]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.StageIdentifier;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps track of the artifact size of each stage, so that the artifacts cleaner can tell how many stages need to be
+ * purged to free a given amount of space without walking their artifact directories every time. Sizes are added up as
+ * artifacts are uploaded, and measured once for stages the cleaner asks about which had no uploads since the server
+ * started. A stage whose uploads started before the server did is undercounted, which only makes the cleaner consider
+ * more stages than it needs to. Once the index is full, further stages are not tracked and are measured on every ask.
+ */
+class ArtifactSizeIndex {
+    static final long UNKNOWN = -1;
+    private static final String PIPELINES_FOLDER = "pipelines";
+
+    private final int maxStages;
+    private final ConcurrentMap<String, LongAdder> bytesByStage = new ConcurrentHashMap<>();
+
+    ArtifactSizeIndex(int maxStages) {
+        this.maxStages = maxStages;
+    }
+
+    /**
+     * @param artifact path of the uploaded artifact, relative to the artifacts directory
+     */
+    void record(Path artifact, long bytes) {
+        String stageLocator = stageLocatorOf(artifact);
+        if (stageLocator == null || bytes <= 0) {
+            return;
+        }
+        LongAdder size = bytesByStage.get(stageLocator);
+        if (size == null) {
+            if (bytesByStage.size() >= maxStages) {
+                return;
+            }
+            size = bytesByStage.computeIfAbsent(stageLocator, locator -> new LongAdder());
+        }
+        size.add(bytes);
+    }
+
+    long sizeOf(StageIdentifier stageIdentifier) {
+        LongAdder size = bytesByStage.get(stageIdentifier.getStageLocator());
+        return size == null ? UNKNOWN : size.sum();
+    }
+
+    /**
+     * @param measure works out the size of a stage which is not known yet, or returns {@link #UNKNOWN} if it cannot
+     */
+    long sizeOf(StageIdentifier stageIdentifier, ToLongFunction<StageIdentifier> measure) {
+        long size = sizeOf(stageIdentifier);
+        if (size != UNKNOWN) {
+            return size;
+        }
+        size = measure.applyAsLong(stageIdentifier);
+        if (size < 0 || bytesByStage.size() >= maxStages) {
+            return size;
+        }
+        LongAdder measured = new LongAdder();
+        measured.add(size);
+        LongAdder recorded = bytesByStage.putIfAbsent(stageIdentifier.getStageLocator(), measured);
+        return recorded == null ? size : recorded.sum();
+    }
+
+    void forget(StageIdentifier stageIdentifier) {
+        bytesByStage.remove(stageIdentifier.getStageLocator());
+    }
+
+    int size() {
+        return bytesByStage.size();
+    }
+
+    /**
+     * Artifacts live under {@code pipelines/<pipeline>/<counter>/<stage>/<counter>/<job>/}.
+     */
+    private static String stageLocatorOf(Path artifact) {
+        if (artifact.getNameCount() < 6 || !artifact.getName(0).toString().equals(PIPELINES_FOLDER)) {
+            return null;
+        }
+        return String.join("/", artifact.getName(1).toString(), artifact.getName(2).toString(), artifact.getName(3).toString(), artifact.getName(4).toString());
+    }
+}
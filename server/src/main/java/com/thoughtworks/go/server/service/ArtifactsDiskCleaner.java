@@ -25,7 +25,10 @@ import com.thoughtworks.go.util.SystemEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArtifactsDiskCleaner extends DiskSpaceChecker {
     private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactsDiskCleaner.class);
@@ -34,6 +37,7 @@ public class ArtifactsDiskCleaner extends DiskSpaceChecker {
     private final ArtifactsService artifactService;
     private final StageService stageService;
     private final ConfigDbStateRepository configDbStateRepository;
+    private final ExecutorService purgers;
 
     public ArtifactsDiskCleaner(SystemEnvironment systemEnvironment, GoConfigService goConfigService, final SystemDiskSpaceChecker diskSpaceChecker, ArtifactsService artifactService,
                                 StageService stageService, ConfigDbStateRepository configDbStateRepository) {
@@ -41,6 +45,8 @@ public class ArtifactsDiskCleaner extends DiskSpaceChecker {
         this.artifactService = artifactService;
         this.stageService = stageService;
         this.configDbStateRepository = configDbStateRepository;
+        this.purgers = Executors.newFixedThreadPool(Math.max(systemEnvironment.get(SystemEnvironment.GO_ARTIFACTS_PURGE_THREADS), 1),
+            Thread.ofPlatform().name("goArtifactsPurger-", 0).daemon(true).factory());
         cleaner = new Thread(() -> {
             try {
                 while (true) {
@@ -58,32 +64,84 @@ public class ArtifactsDiskCleaner extends DiskSpaceChecker {
         cleaner.start();
     }
 
+    /**
+     * Purges the artifacts of the oldest stages until the required space is available. Each page of stages is narrowed
+     * down to the stages needed to free the missing space, going by the artifact sizes recorded at upload time or
+     * measured when a stage is first considered; those are purged in parallel, each purger checking beforehand whether
+     * enough space has been freed in the meantime.
+     */
     void deleteOldArtifacts() {
         ServerConfig serverConfig = goConfigService.serverConfig();
         Double requiredSpaceInGb = serverConfig.getPurgeUpto();
         if (serverConfig.isArtifactPurgingAllowed()) {
             double requiredSpace = requiredSpaceInGb * GoConstants.GIGA_BYTE;
-            LOGGER.info("Clearing old artifacts as the disk space is low. Current space: '{}'. Need to clear till we hit: '{}'.", availableSpace(), requiredSpace);
+            long spaceBefore = availableSpace();
+            long startedAt = System.nanoTime();
+            LOGGER.info("Clearing old artifacts as the disk space is low. Current space: '{}'. Need to clear till we hit: '{}'.", spaceBefore, requiredSpace);
             List<Stage> stages;
-            int numberOfStagesPurged = 0;
+            AtomicInteger numberOfStagesPurged = new AtomicInteger();
             do {
                 configDbStateRepository.flushConfigState();
                 stages = stageService.oldestStagesWithDeletableArtifacts();
-                for (Stage stage : stages) {
-                    if (availableSpace() > requiredSpace) {
-                        break;
-                    }
-                    numberOfStagesPurged++;
-                    artifactService.purgeArtifactsForStage(stage);
-                }
+                List<Stage> stagesToPurge = stagesToFree(stages, requiredSpace - availableSpace());
+                purge(stagesToPurge, requiredSpace, numberOfStagesPurged);
+                logProgress(numberOfStagesPurged.get(), availableSpace() - spaceBefore, startedAt);
             } while (availableSpace() < requiredSpace && !stages.isEmpty());
             if (availableSpace() < requiredSpace) {
                 LOGGER.warn("Ran out of stages to clear artifacts from but the disk space is still low");
             }
-            LOGGER.info("Finished clearing old artifacts. Deleted artifacts for '{}' stages. Current space: '{}'", numberOfStagesPurged, availableSpace());
+            LOGGER.info("Finished clearing old artifacts. Deleted artifacts for '{}' stages. Current space: '{}'", numberOfStagesPurged.get(), availableSpace());
         }
     }
 
+    /**
+     * Stages whose artifact size is not known count as freeing nothing, so they never cut the list short.
+     */
+    private List<Stage> stagesToFree(List<Stage> stages, double spaceToFree) {
+        List<Stage> stagesToPurge = new ArrayList<>();
+        long knownSpaceFreed = 0;
+        for (Stage stage : stages) {
+            if (knownSpaceFreed >= spaceToFree) {
+                break;
+            }
+            stagesToPurge.add(stage);
+            knownSpaceFreed += Math.max(artifactService.artifactsSize(stage), 0);
+        }
+        return stagesToPurge;
+    }
+
+    private void purge(List<Stage> stages, double requiredSpace, AtomicInteger numberOfStagesPurged) {
+        List<Callable<Void>> purges = new ArrayList<>();
+        for (Stage stage : stages) {
+            purges.add(() -> {
+                if (availableSpace() <= requiredSpace) {
+                    artifactService.purgeArtifactsForStage(stage);
+                    numberOfStagesPurged.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> purge : purgers.invokeAll(purges)) {
+                try {
+                    purge.get();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Error occurred while clearing artifacts. Error: '{}'", e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void logProgress(int numberOfStagesPurged, long spaceFreed, long startedAt) {
+        double seconds = Math.max(System.nanoTime() - startedAt, 1) / 1_000_000_000.0;
+        double megabytesFreed = spaceFreed / (double) GoConstants.MEGA_BYTE;
+        LOGGER.info("Clearing old artifacts: deleted artifacts for '{}' stages, freeing '{}' MB in '{}' seconds ('{}' stages/s, '{}' MB/s).",
+            numberOfStagesPurged, String.format("%.1f", megabytesFreed), String.format("%.1f", seconds),
+            String.format("%.1f", numberOfStagesPurged / seconds), String.format("%.1f", megabytesFreed / seconds));
+    }
+
     @Override
     protected void createFailure(OperationResult result, long size, long availableSpace) {
         synchronized (triggerCleanup) {
@@ -30,12 +30,14 @@ import com.thoughtworks.go.util.FileUtil;
 import com.thoughtworks.go.util.IllegalPathException;
 import com.thoughtworks.go.util.ZipUtil;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.zip.ZipInputStream;
 
 import static java.lang.String.format;
@@ -48,6 +50,7 @@ public class ArtifactsService implements ArtifactUrlReader {
     private final JobResolverService jobResolverService;
     private final StageDao stageDao;
     private final ArtifactDirectoryChooser chooser;
+    private final ArtifactSizeIndex artifactSizeIndex = new ArtifactSizeIndex(200_000);
 
     @Autowired
     public ArtifactsService(JobResolverService jobResolverService, StageDao stageDao,
@@ -77,10 +80,12 @@ public class ArtifactsService implements ArtifactUrlReader {
         try {
             LOGGER.trace("Saving file [{}]", destPath);
             if (shouldUnzip) {
-                zipUtil.unzip(new ZipInputStream(new BufferedInputStream(stream)), dest);
+                BoundedInputStream counting = BoundedInputStream.builder().setInputStream(stream).get();
+                zipUtil.unzip(new ZipInputStream(new BufferedInputStream(counting)), dest);
+                recordArtifactSize(dest, counting.getCount());
             } else {
                 try (FileOutputStream out = FileUtils.openOutputStream(dest, true)) {
-                    stream.transferTo(out);
+                    recordArtifactSize(dest, stream.transferTo(out));
                 }
             }
             LOGGER.trace("File [{}] saved.", destPath);
@@ -105,7 +110,7 @@ public class ArtifactsService implements ArtifactUrlReader {
         try {
             LOGGER.trace("Appending file [{}]", destPath);
             try (FileOutputStream out = FileUtils.openOutputStream(dest, true)) {
-                stream.transferTo(out);
+                recordArtifactSize(dest, stream.transferTo(out));
             }
             LOGGER.trace("File [{}] appended.", destPath);
             return true;
@@ -115,6 +120,55 @@ public class ArtifactsService implements ArtifactUrlReader {
         }
     }
 
+    private void recordArtifactSize(File dest, long bytes) {
+        File artifactsDir = artifactsDirHolder.getArtifactsDir();
+        if (artifactsDir == null) {
+            return;
+        }
+        Path artifactsRoot = artifactsDir.toPath().toAbsolutePath().normalize();
+        Path artifact = dest.toPath().toAbsolutePath().normalize();
+        if (artifact.startsWith(artifactsRoot)) {
+            artifactSizeIndex.record(artifactsRoot.relativize(artifact), bytes);
+        }
+    }
+
+    /**
+     * @return the number of bytes purging the artifacts of the stage would free, as recorded on upload or measured the
+     * first time it is asked for, or a negative number if that is not known
+     */
+    public long artifactsSize(Stage stage) {
+        return artifactSizeIndex.sizeOf(stage.getIdentifier(), this::measureArtifactsToPurge);
+    }
+
+    private long measureArtifactsToPurge(StageIdentifier stageIdentifier) {
+        try {
+            File stageRoot = chooser.findArtifact(stageIdentifier, "");
+            if (!stageRoot.exists()) {
+                return 0;
+            }
+            File[] jobs = stageRoot.listFiles();
+            if (jobs == null) {  // null if security restricted
+                return ArtifactSizeIndex.UNKNOWN;
+            }
+            long size = 0;
+            for (File jobRoot : jobs) {
+                File[] artifacts = jobRoot.listFiles();
+                if (artifacts == null) {
+                    continue;
+                }
+                for (File artifact : artifacts) {
+                    if (shouldDeleteArtifact(artifact)) {
+                        size += FileUtils.sizeOf(artifact);
+                    }
+                }
+            }
+            return size;
+        } catch (IllegalArtifactLocationException | IllegalArgumentException | UncheckedIOException e) {
+            LOGGER.warn("Unable to measure the artifacts of stage '{}'. Error: '{}'", stageIdentifier.entityLocator(), e.getMessage());
+            return ArtifactSizeIndex.UNKNOWN;
+        }
+    }
+
     public File findArtifact(JobIdentifier identifier, String path) throws IllegalArtifactLocationException {
         return chooser.findArtifact(identifier, path);
     }
@@ -170,6 +224,7 @@ public class ArtifactsService implements ArtifactUrlReader {
             LOGGER.error("Error occurred while clearing artifacts for '{}'. Error: '{}'", stageIdentifier.entityLocator(), e.getMessage(), e);
         }
         stageDao.markArtifactsDeletedFor(stage);
+        artifactSizeIndex.forget(stageIdentifier);
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Marked stage '{}' as artifacts deleted.", stageIdentifier.entityLocator());
         }
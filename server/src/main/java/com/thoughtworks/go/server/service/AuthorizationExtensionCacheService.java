@@ -15,66 +15,67 @@
  */
 package com.thoughtworks.go.server.service;
 
-import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.Ticker;
 import com.thoughtworks.go.config.PluginRoleConfig;
 import com.thoughtworks.go.config.SecurityAuthConfig;
 import com.thoughtworks.go.plugin.access.authorization.AuthorizationExtension;
-import com.thoughtworks.go.server.cache.CacheKeyGenerator;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Caches the answers of authorization plugins. Only one plugin call is made per user at a time, no matter how many
+ * requests for that user arrive concurrently, and entries in use are refreshed in the background shortly before they
+ * expire, so that requests keep being served from the cache instead of all calling the plugin at the same moment.
+ */
 @Component
 public class AuthorizationExtensionCacheService {
-    private final Cache<String, Boolean> isValidUserCache;
-    private final Cache<String, List<String>> getUserRolesCache;
+    private final LoadingCache<ValidUserKey, Boolean> isValidUserCache;
+    private final LoadingCache<UserRolesKey, List<String>> getUserRolesCache;
     private final AuthorizationExtension authorizationExtension;
-    private final CacheKeyGenerator cacheKeyGenerator;
 
-    public AuthorizationExtensionCacheService(AuthorizationExtension authorizationExtension, Ticker ticker) {
+    public AuthorizationExtensionCacheService(AuthorizationExtension authorizationExtension, Ticker ticker, Executor refreshExecutor) {
         this.authorizationExtension = authorizationExtension;
-        isValidUserCache = Caffeine.newBuilder()
-                .ticker(ticker).expireAfterWrite(SystemEnvironment.getGoServerAuthorizationExtensionCallsCacheTimeoutInSeconds(), TimeUnit.SECONDS).build();
-        getUserRolesCache = Caffeine.newBuilder()
-                .ticker(ticker).expireAfterWrite(SystemEnvironment.getGoServerAuthorizationExtensionCallsCacheTimeoutInSeconds(), TimeUnit.SECONDS).build();
-        this.cacheKeyGenerator = new CacheKeyGenerator(getClass());
+        isValidUserCache = newCache(ticker, refreshExecutor)
+                .build(key -> authorizationExtension.isValidUser(key.pluginId(), key.username(), key.authConfig()));
+        getUserRolesCache = newCache(ticker, refreshExecutor)
+                .build(key -> authorizationExtension.getUserRoles(key.pluginId(), key.username(), key.authConfig(), key.pluginRoleConfigs()));
     }
 
     @Autowired
     public AuthorizationExtensionCacheService(AuthorizationExtension authorizationExtension) {
-        this(authorizationExtension, Ticker.systemTicker());
+        this(authorizationExtension, Ticker.systemTicker(), Executors.newFixedThreadPool(2, Thread.ofPlatform().name("authorization-cache-refresh-", 0).daemon().factory()));
     }
 
-    public boolean isValidUser(String pluginId, String username, SecurityAuthConfig authConfig) {
-        String cacheKey = cacheKeyGenerator.generate("AuthorizationExtension_isValidUser", pluginId, username, authConfig.getId());
-        Boolean fromCache = isValidUserCache.getIfPresent(cacheKey);
+    private static Caffeine<Object, Object> newCache(Ticker ticker, Executor refreshExecutor) {
+        long timeoutInSeconds = SystemEnvironment.getGoServerAuthorizationExtensionCallsCacheTimeoutInSeconds();
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .ticker(ticker)
+                .executor(refreshExecutor)
+                .expireAfterWrite(timeoutInSeconds, TimeUnit.SECONDS);
 
-        if (fromCache == null) {
-            fromCache = authorizationExtension.isValidUser(pluginId, username, authConfig);
-            isValidUserCache.put(cacheKey, fromCache);
+        long refreshAfterSeconds = timeoutInSeconds * 4 / 5;
+        if (refreshAfterSeconds > 0) {
+            builder.refreshAfterWrite(refreshAfterSeconds, TimeUnit.SECONDS);
         }
+        return builder;
+    }
 
-        return fromCache;
+    public boolean isValidUser(String pluginId, String username, SecurityAuthConfig authConfig) {
+        return isValidUserCache.get(new ValidUserKey(pluginId, username, authConfig));
     }
 
     public List<String> getUserRoles(String pluginId, String username, SecurityAuthConfig authConfig, List<PluginRoleConfig> pluginRoleConfigs) {
-        String roleConfigNames = pluginRoleConfigs.stream().map(role -> role.getName().toString()).sorted().collect(Collectors.joining("&&"));
-        String cacheKey = cacheKeyGenerator.generate("AuthorizationExtension_GetUserRoles", pluginId, username, authConfig.getId(), roleConfigNames);
-
-        List<String> rolesFromCache = getUserRolesCache.getIfPresent(cacheKey);
-
-        if (rolesFromCache == null) {
-            rolesFromCache = authorizationExtension.getUserRoles(pluginId, username, authConfig, pluginRoleConfigs);
-            getUserRolesCache.put(cacheKey, rolesFromCache);
-        }
-
-        return rolesFromCache;
+        return getUserRolesCache.get(new UserRolesKey(pluginId, username, authConfig, pluginRoleConfigs));
     }
 
     public void invalidateCache() {
@@ -82,4 +83,42 @@ public class AuthorizationExtensionCacheService {
         getUserRolesCache.invalidateAll();
     }
 
+    /**
+     * Carries the arguments of the plugin call so that the entry can be refreshed, but is identified by the auth config
+     * id rather than the auth config itself.
+     */
+    private record ValidUserKey(String pluginId, String username, SecurityAuthConfig authConfig) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ValidUserKey that
+                    && pluginId.equals(that.pluginId)
+                    && username.equals(that.username)
+                    && Objects.equals(authConfig.getId(), that.authConfig.getId());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pluginId, username, authConfig.getId());
+        }
+    }
+
+    private record UserRolesKey(String pluginId, String username, SecurityAuthConfig authConfig, List<PluginRoleConfig> pluginRoleConfigs, String roleConfigNames) {
+        private UserRolesKey(String pluginId, String username, SecurityAuthConfig authConfig, List<PluginRoleConfig> pluginRoleConfigs) {
+            this(pluginId, username, authConfig, pluginRoleConfigs, pluginRoleConfigs.stream().map(role -> role.getName().toString()).sorted().collect(Collectors.joining("&&")));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof UserRolesKey that
+                    && pluginId.equals(that.pluginId)
+                    && username.equals(that.username)
+                    && Objects.equals(authConfig.getId(), that.authConfig.getId())
+                    && roleConfigNames.equals(that.roleConfigNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pluginId, username, authConfig.getId(), roleConfigNames);
+        }
+    }
 }
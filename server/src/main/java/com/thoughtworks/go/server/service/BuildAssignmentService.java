@@ -15,7 +15,11 @@
  */
 package com.thoughtworks.go.server.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.thoughtworks.go.config.*;
+import com.thoughtworks.go.config.elastic.ClusterProfile;
+import com.thoughtworks.go.config.elastic.ElasticProfile;
 import com.thoughtworks.go.config.exceptions.RecordNotFoundException;
 import com.thoughtworks.go.config.materials.PackageMaterial;
 import com.thoughtworks.go.config.materials.PluggableSCMMaterial;
@@ -25,8 +29,12 @@ import com.thoughtworks.go.domain.materials.Material;
 import com.thoughtworks.go.listener.ConfigChangedListener;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.plugin.access.exceptions.SecretResolutionFailureException;
+import com.thoughtworks.go.plugin.infra.PluginChangeListener;
+import com.thoughtworks.go.plugin.infra.PluginManager;
+import com.thoughtworks.go.plugin.infra.plugininfo.GoPluginDescriptor;
 import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.*;
+import com.thoughtworks.go.server.domain.ElasticAgentMetadata;
 import com.thoughtworks.go.server.exceptions.RulesViolationException;
 import com.thoughtworks.go.server.materials.StaleMaterialsOnBuildCause;
 import com.thoughtworks.go.server.messaging.JobStatusMessage;
@@ -41,14 +49,22 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.thoughtworks.go.util.command.EnvironmentVariableContext.GO_ENVIRONMENT_NAME;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static java.util.stream.StreamSupport.stream;
 
 
@@ -61,6 +77,8 @@ public class BuildAssignmentService implements ConfigChangedListener {
     public static final NoWork NO_WORK = new NoWork();
     public static final String GO_PIPELINE_GROUP_NAME = "GO_PIPELINE_GROUP_NAME";
     public static final String GO_AGENT_RESOURCES = "GO_AGENT_RESOURCES";
+    private static final long IN_FLIGHT = Long.MAX_VALUE;
+    private static final Duration ELASTIC_ASSIGNMENT_DECISION_TTL = Duration.ofMinutes(1);
 
     private final GoConfigService goConfigService;
     private final JobInstanceService jobInstanceService;
@@ -78,8 +96,26 @@ public class BuildAssignmentService implements ConfigChangedListener {
     private final SecretParamResolver secretParamResolver;
     private final JobStatusTopic jobStatusTopic;
     private final ConsoleService consoleService;
-
-    private List<JobPlan> jobPlans = new ArrayList<>();
+    private final PluginManager pluginManager;
+
+    // Agents match against this list without holding the service monitor; a plan is claimed by the agent that manages
+    // to remove it from the list. Claims are remembered until a reload has read the scheduled jobs from the database
+    // after the assignment was committed, so that a job being assigned never re-appears in the list.
+    private volatile List<JobPlan> jobPlans = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Long, Long> claimedJobs = new ConcurrentHashMap<>();
+    private final AtomicLong assignmentClock = new AtomicLong();
+    // Only weakly held, so that the monitors of agents that went away (e.g. elastic agents, which get a new UUID each
+    // time) are collected once no request of theirs is being matched.
+    private final Cache<String, Object> agentMutexes = Caffeine.newBuilder().weakValues().build();
+    private final ReadWriteLock jobPlansLock = new ReentrantReadWriteLock();
+    // Plugin answers to "should this elastic agent run this job?" for the scheduled job plans. Elastic agents ask for
+    // work every few seconds, so an answer is reused for a while instead of asking the plugin on every request. The
+    // agent's metadata, the environment and the profiles are part of the key, so that an answer is not reused once any
+    // of them changed; answers also expire, since the plugin may change its mind, and are dropped when the plugin is
+    // loaded or unloaded.
+    private final Cache<ElasticAssignment, Boolean> elasticAssignmentDecisions = Caffeine.newBuilder()
+        .expireAfterWrite(ELASTIC_ASSIGNMENT_DECISION_TTL)
+        .build();
 
     @Autowired
     public BuildAssignmentService(GoConfigService goConfigService, JobInstanceService jobInstanceService,
@@ -89,7 +125,7 @@ public class BuildAssignmentService implements ConfigChangedListener {
                                   BuilderFactory builderFactory,
                                   MaintenanceModeService maintenanceModeService, ElasticAgentPluginService elasticAgentPluginService,
                                   SystemEnvironment systemEnvironment, SecretParamResolver secretParamResolver, JobStatusTopic jobStatusTopic,
-                                  ConsoleService consoleService) {
+                                  ConsoleService consoleService, PluginManager pluginManager) {
         this.goConfigService = goConfigService;
         this.jobInstanceService = jobInstanceService;
         this.scheduleService = scheduleService;
@@ -105,11 +141,27 @@ public class BuildAssignmentService implements ConfigChangedListener {
         this.secretParamResolver = secretParamResolver;
         this.jobStatusTopic = jobStatusTopic;
         this.consoleService = consoleService;
+        this.pluginManager = pluginManager;
     }
 
     public void initialize() {
         goConfigService.register(this);
         goConfigService.register(pipelineConfigChangedListener());
+        pluginManager.addPluginChangeListener(new PluginChangeListener() {
+            @Override
+            public void pluginLoaded(GoPluginDescriptor pluginDescriptor) {
+                forgetElasticAssignmentDecisionsOf(pluginDescriptor.id());
+            }
+
+            @Override
+            public void pluginUnLoaded(GoPluginDescriptor pluginDescriptor) {
+                forgetElasticAssignmentDecisionsOf(pluginDescriptor.id());
+            }
+        });
+    }
+
+    private void forgetElasticAssignmentDecisionsOf(String pluginId) {
+        elasticAssignmentDecisions.asMap().keySet().removeIf(assignment -> pluginId.equals(assignment.agent().elasticPluginId()));
     }
 
 
@@ -172,7 +224,8 @@ public class BuildAssignmentService implements ConfigChangedListener {
             return new DeniedAgentWork(agent.getUuid());
         }
 
-        synchronized (this) {
+        // only requests from the same agent are serialized; different agents are matched in parallel
+        synchronized (agentMutexes.get(agent.getUuid(), uuid -> new Object())) {
 //          check to ensure agent is not disabled after entering the synchronized block
             if (agent.isDisabled()) {
                 return new DeniedAgentWork(agent.getUuid());
@@ -181,28 +234,60 @@ public class BuildAssignmentService implements ConfigChangedListener {
             scheduleService.rescheduleAbandonedBuildIfNecessary(agent.getAgentIdentifier());
             final JobPlan job = findMatchingJob(agent);
             if (job != null) {
-                Work buildWork = createWork(agent, job);
-                AgentBuildingInfo buildingInfo = new AgentBuildingInfo(job.getIdentifier().buildLocatorForDisplay(), job.getIdentifier().buildLocator());
-                agentService.building(agent.getUuid(), buildingInfo);
-                if (!NO_WORK.equals(buildWork)) {
-                    LOGGER.info("[Agent Assignment] Assigned job [{}] to agent [{}]", job.getIdentifier(), agent.getAgent().getAgentIdentifier());
+                try {
+                    Work buildWork = createWork(agent, job);
+                    AgentBuildingInfo buildingInfo = new AgentBuildingInfo(job.getIdentifier().buildLocatorForDisplay(), job.getIdentifier().buildLocator());
+                    agentService.building(agent.getUuid(), buildingInfo);
+                    if (!NO_WORK.equals(buildWork)) {
+                        LOGGER.info("[Agent Assignment] Assigned job [{}] to agent [{}]", job.getIdentifier(), agent.getAgent().getAgentIdentifier());
+                    }
+                    return buildWork;
+                } finally {
+                    releaseClaim(job);
                 }
-                return buildWork;
             }
         }
         return NO_WORK;
     }
 
+    private boolean tryClaim(JobPlan jobPlan) {
+        jobPlansLock.readLock().lock();
+        try {
+            // removal from the copy-on-write list succeeds for exactly one caller, and fails if the plan was cancelled
+            // or the list was reloaded without it since it was matched
+            if (!jobPlans.remove(jobPlan)) {
+                return false;
+            }
+            claimedJobs.put(jobPlan.getJobId(), IN_FLIGHT);
+            return true;
+        } finally {
+            jobPlansLock.readLock().unlock();
+        }
+    }
+
+    private void releaseClaim(JobPlan jobPlan) {
+        claimedJobs.replace(jobPlan.getJobId(), IN_FLIGHT, assignmentClock.incrementAndGet());
+    }
+
     @VisibleForTesting
     JobPlan findMatchingJob(AgentInstance agent) {
         List<JobPlan> filteredJobPlans = environmentConfigService.filterJobsByAgent(jobPlans, agent.getUuid());
         JobPlan match = null;
         if (!agent.isElastic()) {
-            match = agent.firstMatching(filteredJobPlans);
+            List<JobPlan> candidates = new ArrayList<>(filteredJobPlans);
+            JobPlan candidate;
+            while (match == null && (candidate = agent.firstMatching(candidates)) != null) {
+                if (tryClaim(candidate)) {
+                    match = candidate;
+                } else if (!candidates.remove(candidate)) {
+                    break;
+                }
+                // otherwise another agent claimed it first, try the next matching plan
+            }
         } else {
             for (JobPlan jobPlan : filteredJobPlans) {
                 try {
-                    if (jobPlan.requiresElasticAgent() && elasticAgentPluginService.shouldAssignWork(agent.elasticAgentMetadata(), environmentConfigService.envForPipeline(jobPlan.getPipelineName()), jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier())) {
+                    if (jobPlan.requiresElasticAgent() && shouldAssignWork(agent, jobPlan) && tryClaim(jobPlan)) {
                         match = jobPlan;
                         break;
                     }
@@ -219,12 +304,22 @@ public class BuildAssignmentService implements ConfigChangedListener {
                 }
             }
         }
-        if (match != null) {
-            jobPlans.remove(match);
-        }
         return match;
     }
 
+    private boolean shouldAssignWork(AgentInstance agent, JobPlan jobPlan) {
+        ElasticAssignment assignment = new ElasticAssignment(jobPlan.getJobId(), agent.elasticAgentMetadata(), environmentConfigService.envForPipeline(jobPlan.getPipelineName()), jobPlan.getElasticProfile(), jobPlan.getClusterProfile());
+        Boolean decision = elasticAssignmentDecisions.getIfPresent(assignment);
+        if (decision == null) {
+            decision = elasticAgentPluginService.shouldAssignWork(assignment.agent(), assignment.environment(), assignment.elasticProfile(), assignment.clusterProfile(), jobPlan.getIdentifier());
+            elasticAssignmentDecisions.put(assignment, decision);
+        }
+        return decision;
+    }
+
+    private record ElasticAssignment(long jobId, ElasticAgentMetadata agent, String environment, ElasticProfile elasticProfile, ClusterProfile clusterProfile) {
+    }
+
     @SuppressWarnings("unused") // used by spring scheduler
     public void onTimer() {
         if (maintenanceModeService.isMaintenanceMode()) {
@@ -237,15 +332,28 @@ public class BuildAssignmentService implements ConfigChangedListener {
 
     private void reloadJobPlans() {
         synchronized (this) {
-            if (jobPlans == null) {
-                jobPlans = jobInstanceService.orderedScheduledBuilds();
-                elasticAgentPluginService.createAgentsFor(jobPlans, new ArrayList<>());
-            } else {
-                List<JobPlan> old = jobPlans;
-                List<JobPlan> newPlan = jobInstanceService.orderedScheduledBuilds();
+            long readStartedAt = assignmentClock.incrementAndGet();
+            List<JobPlan> newPlan = new CopyOnWriteArrayList<>(jobInstanceService.orderedScheduledBuilds());
+
+            // assignments released before the read began are reflected in the database, the rest are still claimed
+            claimedJobs.forEach((jobId, releasedAt) -> {
+                if (releasedAt < readStartedAt) {
+                    claimedJobs.remove(jobId, releasedAt);
+                }
+            });
+
+            List<JobPlan> old;
+            jobPlansLock.writeLock().lock();
+            try {
+                newPlan.removeIf(jobPlan -> claimedJobs.containsKey(jobPlan.getJobId()));
+                old = jobPlans;
                 jobPlans = newPlan;
-                elasticAgentPluginService.createAgentsFor(old, newPlan);
+            } finally {
+                jobPlansLock.writeLock().unlock();
             }
+            Set<Long> scheduledJobIds = newPlan.stream().map(JobPlan::getJobId).collect(toSet());
+            elasticAssignmentDecisions.asMap().keySet().removeIf(assignment -> !scheduledJobIds.contains(assignment.jobId()));
+            elasticAgentPluginService.createAgentsFor(old, newPlan);
         }
     }
 
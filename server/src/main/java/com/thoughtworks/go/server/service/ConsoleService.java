@@ -15,11 +15,13 @@
  */
 package com.thoughtworks.go.server.service;
 
+import com.thoughtworks.go.domain.ConsoleByteStreamer;
 import com.thoughtworks.go.domain.ConsoleConsumer;
 import com.thoughtworks.go.domain.ConsoleStreamer;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.LocatableEntity;
 import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
+import com.thoughtworks.go.server.domain.ConsoleUpdateListener;
 import com.thoughtworks.go.server.view.artifacts.ArtifactDirectoryChooser;
 import com.thoughtworks.go.server.view.artifacts.BuildIdArtifactLocator;
 import com.thoughtworks.go.server.view.artifacts.PathBasedArtifactsLocator;
@@ -36,6 +38,8 @@ import org.springframework.stereotype.Component;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Component
 public class ConsoleService {
@@ -43,6 +47,7 @@ public class ConsoleService {
 
     private final ArtifactDirectoryChooser chooser;
     private final ArtifactsDirHolder artifactsDirHolder;
+    private final List<ConsoleUpdateListener> listeners = new CopyOnWriteArrayList<>();
 
     @Autowired
     public ConsoleService(ArtifactsDirHolder artifactsDirHolder) {
@@ -65,6 +70,11 @@ public class ConsoleService {
         return new ConsoleStreamer(path, startingLine);
     }
 
+    public ConsoleByteStreamer getByteStreamer(long startingOffset, JobIdentifier identifier, int chunkSize) throws IllegalArtifactLocationException {
+        Path path = consoleLogFile(identifier).toPath();
+        return new ConsoleByteStreamer(path, startingOffset, chunkSize);
+    }
+
     public boolean doesLogExist(JobIdentifier jobIdentifier) {
         try {
             return consoleLogFile(jobIdentifier).exists();
@@ -91,7 +101,23 @@ public class ConsoleService {
     }
 
     public void appendToConsoleLogIoSafe(JobIdentifier jobIdentifier, String text) throws IllegalArtifactLocationException {
-        appendToConsoleLogIoSafe(consoleLogFile(jobIdentifier), new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        if (appendToConsoleLogIoSafe(consoleLogFile(jobIdentifier), new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+            notifyConsoleUpdated(jobIdentifier);
+        }
+    }
+
+    public void registerConsoleUpdateListener(ConsoleUpdateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void notifyConsoleUpdated(JobIdentifier jobIdentifier) {
+        for (ConsoleUpdateListener listener : listeners) {
+            try {
+                listener.consoleUpdated(jobIdentifier);
+            } catch (Exception e) {
+                LOGGER.error("error notifying listener of console update for job {}", jobIdentifier, e);
+            }
+        }
     }
 
     public boolean appendToConsoleLogIoSafe(File dest, InputStream in) {
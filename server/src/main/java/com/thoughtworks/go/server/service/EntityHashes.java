@@ -21,14 +21,11 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializer;
 import com.thoughtworks.go.config.EnvironmentVariableConfig;
-import com.thoughtworks.go.config.MagicalGoConfigXmlWriter;
-import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
 import com.thoughtworks.go.domain.config.ConfigurationProperty;
 import com.thoughtworks.go.domain.materials.Modification;
 import com.thoughtworks.go.plugin.api.info.PluginDescriptor;
 import com.thoughtworks.go.plugin.domain.common.PluginInfo;
 import com.thoughtworks.go.server.util.DigestMixin;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
@@ -44,12 +41,7 @@ public class EntityHashes implements DigestMixin {
         .registerTypeAdapter(Modification.class, Serializers.MODIFICATION)
         .create();
 
-    private final MagicalGoConfigXmlWriter xmlSerializer;
-
-    @Autowired
-    public EntityHashes(ConfigElementImplementationRegistry registry) {
-        xmlSerializer = new MagicalGoConfigXmlWriter(registry);
-    }
+    private final StructuralConfigDigest configDigest = new StructuralConfigDigest();
 
     /**
      * Computes a cryptographic digest of a collection's contents
@@ -65,18 +57,20 @@ public class EntityHashes implements DigestMixin {
         return digest(entities.stream().map(this::digestDomainConfigEntity).collect(Collectors.joining(SEP_CHAR)));
     }
 
+    /**
+     * Computes a digest of a config entity from its config fields, see {@link StructuralConfigDigest}
+     *
+     * @param entity a config entity, i.e. one that has a {@link com.thoughtworks.go.config.ConfigTag}
+     * @return a cryptographic hex digest ({@link String})
+     */
     public String digestDomainConfigEntity(Object entity) {
-        return digest(serializeDomainEntity(entity));
+        return configDigest.hexDigest(entity);
     }
 
     public String digestDomainNonConfigEntity(Object entity) {
         return digest(GSON.toJson(entity));
     }
 
-    protected String serializeDomainEntity(Object domainObject) {
-        return xmlSerializer.toXmlPartial(domainObject);
-    }
-
     private interface Serializers {
         /**
          * Custom serializer for encrypted data to ensure stable JSON output when crypto salt changes
@@ -82,6 +82,14 @@ public class GoDashboardService {
         return pipelineGroups;
     }
 
+    /**
+     * @return the change counter of the cached dashboard; every pipeline which changes afterwards is stamped with a
+     * greater value, see {@link GoDashboardPipeline#getLastUpdatedTimeStamp()}
+     */
+    public long lastUpdatedTimeStamp() {
+        return cache.allEntries().lastUpdatedTimeStamp();
+    }
+
     public void updateCacheForPipeline(CaseInsensitiveString pipelineName) {
         PipelineConfigs group = goConfigService.findGroupByPipeline(pipelineName);
         if (group == null) {
@@ -31,6 +31,8 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
+
 @Service
 public class MaterialExpansionService {
 
@@ -102,7 +104,7 @@ public class MaterialExpansionService {
         String cacheKey = cacheKeyForSubversionMaterialCommand(materialConfig.getFingerprint());
         Subversion svnLazyLoaded = goCache.get(cacheKey);
         if (svnLazyLoaded == null || !svnLazyLoaded.getUrl().originalArgument().equals(materialConfig.getUrl())) {
-            synchronized (cacheKey) {
+            synchronized (lockFor(cacheKey)) {
                 svnLazyLoaded = goCache.get(cacheKey);
                 if (svnLazyLoaded == null || !svnLazyLoaded.getUrl().originalArgument().equals(materialConfig.getUrl())) {
                     svnLazyLoaded = new SvnCommand(materialConfig.getFingerprint(), materialConfig.getUrl(),
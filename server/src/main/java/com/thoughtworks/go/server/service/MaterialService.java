@@ -41,6 +41,7 @@ import com.thoughtworks.go.server.util.Pagination;
 import com.thoughtworks.go.serverhealth.HealthStateScope;
 import com.thoughtworks.go.serverhealth.HealthStateType;
 import com.thoughtworks.go.util.Pair;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -53,6 +54,7 @@ import java.util.Map;
 import java.util.function.Function;
 
 import static com.thoughtworks.go.server.service.HistoryUtil.validateCursor;
+import static com.thoughtworks.go.util.SystemEnvironment.GO_GIT_IN_PROCESS_POLLING;
 import static java.util.stream.Collectors.toMap;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -89,7 +91,8 @@ public class MaterialService {
     }
 
     private void populatePollerImplementations() {
-        materialPollerMap.put(GitMaterial.class, new GitPoller());
+        SystemEnvironment systemEnvironment = new SystemEnvironment();
+        materialPollerMap.put(GitMaterial.class, systemEnvironment.get(GO_GIT_IN_PROCESS_POLLING) ? new JGitPoller() : new GitPoller());
         materialPollerMap.put(HgMaterial.class, new HgPoller());
         materialPollerMap.put(SvnMaterial.class, new SvnPoller());
         materialPollerMap.put(TfsMaterial.class, new TfsPoller());
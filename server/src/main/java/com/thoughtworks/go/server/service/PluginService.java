@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 
 import static com.thoughtworks.go.CurrentGoCDVersion.apiDocsUrl;
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
 
 @Service
 public class PluginService {
@@ -87,7 +88,7 @@ public class PluginService {
 
     public void createPluginSettings(PluginSettings newPluginSettings, Username currentUser, LocalizedOperationResult result) {
         final String keyToLockOn = keyToLockOn(newPluginSettings.getPluginId());
-        synchronized (keyToLockOn) {
+        synchronized (lockFor(keyToLockOn)) {
             if (hasPermission(currentUser, newPluginSettings.getPluginId(), result)) {
                 final Plugin plugin = pluginDao.findPlugin(newPluginSettings.getPluginId());
                 if (plugin instanceof NullPlugin) {
@@ -104,7 +105,7 @@ public class PluginService {
         final String pluginId = newPluginSettings.getPluginId();
 
         final String keyToLockOn = keyToLockOn(pluginId);
-        synchronized (keyToLockOn) {
+        synchronized (lockFor(keyToLockOn)) {
             if (hasPermission(currentUser, newPluginSettings.getPluginId(), result)) {
                 final PluginSettings pluginSettingsFromDB = getPluginSettings(pluginId);
                 if (pluginSettingsFromDB == null) {
@@ -157,7 +158,7 @@ public class PluginService {
     }
 
     private void updatePluginSettingsAndNotifyPluginSettingsChangeListeners(LocalizedOperationResult result, PluginSettings pluginSettings) {
-        synchronized (keyToLockOn(pluginSettings.getPluginId())) {
+        synchronized (lockFor(keyToLockOn(pluginSettings.getPluginId()))) {
             try {
                 validatePluginSettings(pluginSettings);
                 if (pluginSettings.hasErrors()) {
@@ -196,7 +197,7 @@ public class PluginService {
     }
 
     private String keyToLockOn(String pluginId) {
-        return (getClass().getName() + "_plugin_settings_" + pluginId).intern();
+        return getClass().getName() + "_plugin_settings_" + pluginId;
     }
 
     private GoPluginExtension findExtensionWhichCanHandleSettingsFor(String pluginId) {
@@ -15,6 +15,9 @@
  */
 package com.thoughtworks.go.server.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.thoughtworks.go.config.*;
 import com.thoughtworks.go.config.elastic.ClusterProfile;
 import com.thoughtworks.go.config.elastic.ElasticProfile;
@@ -25,35 +28,69 @@ import com.thoughtworks.go.domain.materials.Material;
 import com.thoughtworks.go.domain.packagerepository.PackageDefinition;
 import com.thoughtworks.go.domain.packagerepository.PackageRepository;
 import com.thoughtworks.go.domain.scm.SCM;
+import com.thoughtworks.go.listener.ConfigChangedListener;
+import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.plugin.access.secrets.SecretsExtension;
 import com.thoughtworks.go.plugin.domain.secrets.Secret;
 import com.thoughtworks.go.remote.work.BuildAssignment;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static com.thoughtworks.go.util.SystemEnvironment.GO_SECRETS_CACHE_MAX_SIZE;
+import static com.thoughtworks.go.util.SystemEnvironment.GO_SECRETS_CACHE_TTL_SECONDS;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toSet;
 
+/**
+ * Resolves secret params through the secrets plugins. When {@link SystemEnvironment#GO_SECRETS_CACHE_TTL_SECONDS} is
+ * set, resolved values are kept in memory (never persisted) for that long, so that the same secrets referenced by many
+ * build assignments, materials and environments are looked up once. Concurrent lookups of the same secret share a single
+ * plugin call, and the keys missing for a secret config are fetched from the plugin in one batch. Entries of a secret
+ * config are dropped as soon as that secret config changes.
+ */
 @Component
 public class SecretParamResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(SecretParamResolver.class);
     private final SecretsExtension secretsExtension;
     private final GoConfigService goConfigService;
     private final RulesService rulesService;
+    private final AsyncCache<SecretKey, String> cache;
+    private final Map<String, SecretConfig> cachedSecretConfigs = new ConcurrentHashMap<>();
 
     @Autowired
-    public SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService) {
+    public SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService, SystemEnvironment systemEnvironment) {
+        this(secretsExtension, goConfigService, rulesService, Duration.ofSeconds(systemEnvironment.get(GO_SECRETS_CACHE_TTL_SECONDS)), systemEnvironment.get(GO_SECRETS_CACHE_MAX_SIZE));
+    }
+
+    @VisibleForTesting
+    SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService, Duration cacheTtl, long cacheMaxSize) {
         this.secretsExtension = secretsExtension;
         this.goConfigService = goConfigService;
         this.rulesService = rulesService;
+        this.cache = cacheTtl.isPositive() && cacheMaxSize > 0 ? Caffeine.newBuilder()
+                .expireAfterWrite(cacheTtl)
+                .maximumSize(cacheMaxSize)
+                .recordStats()
+                .buildAsync() : null;
+
+        if (cache != null) {
+            goConfigService.register(new SecretConfigChangeListener());
+            goConfigService.register(new SecretConfigsChangeListener());
+        }
     }
 
     public void resolve(List<Material> materials) {
@@ -186,7 +223,7 @@ public class SecretParamResolver {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Resolving secret params '{}' using secret config '{}'", secretParamMap.keySet(), secretConfig.getId());
             }
-            List<Secret> resolvedSecrets = secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, secretParamMap.keySet());
+            List<Secret> resolvedSecrets = lookupSecrets(secretConfig, secretParamMap.keySet());
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Resolved secret size '{}'", resolvedSecrets.size());
                 LOGGER.debug("Updating secret params '{}' with values.", secretParamMap.keySet());
@@ -202,4 +239,79 @@ public class SecretParamResolver {
     private Consumer<Secret> assignValue(Map<String, List<SecretParam>> secretParamMap) {
         return secret -> secretParamMap.get(secret.getKey()).forEach(secretParam -> secretParam.setValue(secret.getValue()));
     }
+
+    private List<Secret> lookupSecrets(SecretConfig secretConfig, Set<String> keys) {
+        if (cache == null) {
+            return secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, keys);
+        }
+
+        cachedSecretConfigs.put(secretConfig.getId(), secretConfig);
+        Set<SecretKey> cacheKeys = keys.stream().map(key -> new SecretKey(secretConfig.getId(), key)).collect(toSet());
+        try {
+            return cache.getAll(cacheKeys, (missingKeys, executor) -> CompletableFuture.completedFuture(fetchSecrets(secretConfig, missingKeys)))
+                    .join()
+                    .entrySet().stream()
+                    .map(entry -> new Secret(entry.getKey().key(), entry.getValue()))
+                    .toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Map<SecretKey, String> fetchSecrets(SecretConfig secretConfig, Set<? extends SecretKey> missingKeys) {
+        Set<String> keys = missingKeys.stream().map(SecretKey::key).collect(toSet());
+        Map<SecretKey, String> secrets = new HashMap<>();
+        for (Secret secret : secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, keys)) {
+            if (secret.getValue() != null) {
+                secrets.put(new SecretKey(secretConfig.getId(), secret.getKey()), secret.getValue());
+            }
+        }
+        return secrets;
+    }
+
+    private void invalidate(String secretConfigId) {
+        cachedSecretConfigs.remove(secretConfigId);
+        cache.synchronous().asMap().keySet().removeIf(key -> key.secretConfigId().equals(secretConfigId));
+    }
+
+    /**
+     * @return the statistics of the resolved secrets cache, or {@code null} if caching is disabled
+     */
+    public CacheStats cacheStats() {
+        return cache == null ? null : cache.synchronous().stats();
+    }
+
+    public long cachedSecretsCount() {
+        return cache == null ? 0 : cache.synchronous().estimatedSize();
+    }
+
+    private record SecretKey(String secretConfigId, String key) {
+    }
+
+    private class SecretConfigChangeListener extends EntityConfigChangedListener<SecretConfig> {
+        @Override
+        public void onEntityConfigChange(SecretConfig secretConfig) {
+            invalidate(secretConfig.getId());
+        }
+    }
+
+    /**
+     * Full config saves (e.g. edits of the config XML) do not notify entity listeners, so compare the secret configs
+     * cached against the new config instead.
+     */
+    private class SecretConfigsChangeListener implements ConfigChangedListener {
+        @Override
+        public void onConfigChange(CruiseConfig newCruiseConfig) {
+            SecretConfigs secretConfigs = newCruiseConfig.getSecretConfigs();
+            cachedSecretConfigs.forEach((id, cached) -> {
+                SecretConfig current = secretConfigs.find(id);
+                if (current == null || !Objects.equals(current.getPluginId(), cached.getPluginId()) || !Objects.equals(current.getConfiguration(), cached.getConfiguration())) {
+                    invalidate(id);
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.config.*;
+import com.thoughtworks.go.config.preprocessor.ConcurrentFieldCache;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static com.thoughtworks.go.util.ExceptionUtils.bomb;
+import static com.thoughtworks.go.util.ExceptionUtils.bombIf;
+
+/**
+ * Digests config entities field by field, visiting the same annotated fields that {@link MagicalGoConfigXmlWriter}
+ * would serialize, but feeding them straight into a {@link MessageDigest} instead of building and writing out an XML
+ * document first.
+ * <p>
+ * Every config element is digested on its own and its parent only consumes the resulting digest. Digests are not
+ * kept across calls: config elements are mutable and are digested both as part of the live config and of config repo
+ * partials, so a digest always reflects the current state of the element.
+ */
+class StructuralConfigDigest {
+    private static final byte NULL = 0;
+    private static final byte VALUE = 1;
+    private static final byte ELEMENT = 2;
+
+    private static final ClassValue<List<ConfigField>> CONFIG_FIELDS = new ClassValue<>() {
+        @Override
+        protected List<ConfigField> computeValue(Class<?> type) {
+            return ConcurrentFieldCache.nonStaticOrSyntheticFieldsFor(type).stream()
+                .filter(field -> field.isAnnotationPresent(ConfigAttribute.class) || field.isAnnotationPresent(ConfigValue.class) || field.isAnnotationPresent(ConfigSubtag.class))
+                .map(ConfigField::new)
+                .toList();
+        }
+    };
+
+    private static final ClassValue<Optional<Field>> ATTRIBUTE_VALUE_FIELDS = new ClassValue<>() {
+        @Override
+        protected Optional<Field> computeValue(Class<?> type) {
+            ConfigAttributeValue attributeValue = type.getAnnotation(ConfigAttributeValue.class);
+            if (attributeValue == null) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(ConfigAttributeValue.Resolver.resolveAccessibleField(type, attributeValue));
+            } catch (NoSuchFieldException e) {
+                throw bomb(e);
+            }
+        }
+    };
+
+    String hexDigest(Object entity) {
+        bombIf(!isConfigElement(entity.getClass()), () -> "Object " + entity + " does not have a ConfigTag");
+        return Hex.encodeHexString(digestOf(entity));
+    }
+
+    private byte[] digestOf(Object element) {
+        MessageDigest digest = DigestUtils.getSha512_256Digest();
+        updateWithValue(digest, element.getClass().getName());
+        for (ConfigField field : CONFIG_FIELDS.get(element.getClass())) {
+            digest.update(field.name);
+            Object value = field.valueOf(element);
+            if (field.subtag) {
+                updateWithChild(digest, value);
+            } else {
+                updateWithValue(digest, value == null ? null : valueString(value));
+            }
+        }
+        if (element instanceof Collection<?> items && element.getClass().isAnnotationPresent(ConfigCollection.class)) {
+            for (Object item : items) {
+                updateWithChild(digest, item);
+            }
+        }
+
+        return digest.digest();
+    }
+
+    private void updateWithChild(MessageDigest digest, Object child) {
+        if (child == null || !isConfigElement(child.getClass())) {
+            updateWithValue(digest, child == null ? null : child.toString());
+            return;
+        }
+        digest.update(ELEMENT);
+        digest.update(digestOf(child));
+    }
+
+    /**
+     * Values are length-prefixed so that adjacent values cannot run into each other, e.g. "ab" + "c" vs "a" + "bc".
+     */
+    private static void updateWithValue(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(VALUE);
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
+
+    private static String valueString(Object value) {
+        Optional<Field> attributeValueField = ATTRIBUTE_VALUE_FIELDS.get(value.getClass());
+        if (attributeValueField.isEmpty()) {
+            return value.toString();
+        }
+        try {
+            return String.valueOf(attributeValueField.get().get(value));
+        } catch (IllegalAccessException e) {
+            throw bomb(e);
+        }
+    }
+
+    private static boolean isConfigElement(Class<?> type) {
+        return type.isAnnotationPresent(ConfigTag.class) || type.isAnnotationPresent(AttributeAwareConfigTag.class) || type.isAnnotationPresent(ConfigCollection.class);
+    }
+
+    private static final class ConfigField {
+        private final Field field;
+        private final byte[] name;
+        private final boolean subtag;
+
+        private ConfigField(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            this.name = field.getName().getBytes(StandardCharsets.UTF_8);
+            this.subtag = field.isAnnotationPresent(ConfigSubtag.class);
+        }
+
+        private Object valueOf(Object element) {
+            try {
+                return field.get(element);
+            } catch (IllegalAccessException e) {
+                throw bomb(e);
+            }
+        }
+    }
+}
@@ -40,7 +40,7 @@ public class GitPoller implements MaterialPoller<GitMaterial> {
         toggleShallowCloneFeature(material, execCtx).checkout(baseDir, revision, execCtx);
     }
 
-    private GitMaterial toggleShallowCloneFeature(GitMaterial material, SubprocessExecutionContext execCtx) {
+    protected GitMaterial toggleShallowCloneFeature(GitMaterial material, SubprocessExecutionContext execCtx) {
         return material.withShallowClone(execCtx.isGitShallowClone());
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.materials;
+
+import com.thoughtworks.go.config.materials.SubprocessExecutionContext;
+import com.thoughtworks.go.config.materials.git.GitMaterial;
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.ModifiedAction;
+import com.thoughtworks.go.domain.materials.Revision;
+import com.thoughtworks.go.domain.materials.git.GitCommand;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Polls git materials without forking a {@code git log} and a {@code git diff-tree} per commit: the flyweight clone is
+ * still fetched through the git CLI (so that credentials, proxies and SSH setup behave exactly as before), but refs and
+ * history are then read in-process with JGit. Packs are read through JGit's window cache, which is left as it is,
+ * since it is process-wide and also serves the config repository.
+ * <p>
+ * Should JGit fail to read a clone (e.g. a repository format it does not support), the material is polled through the
+ * git CLI instead.
+ */
+public class JGitPoller extends GitPoller {
+    private static final Logger LOG = LoggerFactory.getLogger(JGitPoller.class);
+
+    @Override
+    public List<Modification> latestModification(GitMaterial material, File baseDir, SubprocessExecutionContext execCtx) {
+        GitCommand git = toggleShallowCloneFeature(material, execCtx).fetchForPolling(baseDir, execCtx, false);
+        try (Repository repository = open(baseDir); RevWalk revWalk = new RevWalk(repository)) {
+            return List.of(toModification(repository, revWalk, revWalk.parseCommit(resolve(repository, git.remoteBranch()))));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not read git repository in [{}] in-process, falling back to the git command line.", baseDir, e);
+            return super.latestModification(material, baseDir, execCtx);
+        }
+    }
+
+    @Override
+    public List<Modification> modificationsSince(GitMaterial material, File baseDir, Revision revision, SubprocessExecutionContext execCtx) {
+        GitCommand git = toggleShallowCloneFeature(material, execCtx).fetchForPolling(baseDir, execCtx, true);
+        try (Repository repository = open(baseDir); RevWalk revWalk = new RevWalk(repository)) {
+            RevCommit head = revWalk.parseCommit(resolve(repository, git.remoteBranch()));
+            RevCommit since = parseCommitIfPresent(repository, revWalk, revision.getRevision());
+            if (since == null || !revWalk.isMergedInto(since, head)) {
+                return List.of(toModification(repository, revWalk, head));
+            }
+
+            revWalk.reset();
+            revWalk.sort(RevSort.COMMIT_TIME_DESC);
+            revWalk.markStart(head);
+            revWalk.markUninteresting(since);
+            List<Modification> modifications = new ArrayList<>();
+            for (RevCommit commit : revWalk) {
+                modifications.add(toModification(repository, revWalk, commit));
+            }
+            return modifications;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not read git repository in [{}] in-process, falling back to the git command line.", baseDir, e);
+            return super.modificationsSince(material, baseDir, revision, execCtx);
+        }
+    }
+
+    private Repository open(File baseDir) throws IOException {
+        return new FileRepositoryBuilder()
+                .setGitDir(new File(baseDir, ".git"))
+                .setMustExist(true)
+                .build();
+    }
+
+    private ObjectId resolve(Repository repository, String ref) throws IOException {
+        ObjectId objectId = repository.resolve(ref);
+        if (objectId == null) {
+            throw new IOException(format("Could not resolve [%s]", ref));
+        }
+        return objectId;
+    }
+
+    private RevCommit parseCommitIfPresent(Repository repository, RevWalk revWalk, String revision) throws IOException {
+        ObjectId objectId = repository.resolve(revision);
+        if (objectId == null) {
+            return null;
+        }
+        try {
+            return revWalk.parseCommit(objectId);
+        } catch (MissingObjectException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds the same modification as parsing {@code git log --pretty=medium} followed by
+     * {@code git diff-tree --name-status --root -r} would; in particular merge commits list no modified files.
+     */
+    private Modification toModification(Repository repository, RevWalk revWalk, RevCommit commit) throws IOException {
+        PersonIdent author = commit.getAuthorIdent();
+        String comment = StringUtils.stripEnd(StringUtils.stripStart(commit.getFullMessage(), "\n"), null);
+        Modification modification = new Modification(format("%s <%s>", author.getName(), author.getEmailAddress()), comment, null, Date.from(author.getWhenAsInstant()), commit.name());
+
+        if (commit.getParentCount() > 1) {
+            return modification;
+        }
+
+        try (DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            diffFormatter.setRepository(repository);
+            diffFormatter.setDetectRenames(false);
+            ObjectId parentTree = commit.getParentCount() == 0 ? null : revWalk.parseCommit(commit.getParent(0)).getTree();
+            for (DiffEntry entry : diffFormatter.scan(parentTree, commit.getTree())) {
+                switch (entry.getChangeType()) {
+                    case ADD -> modification.createModifiedFile(entry.getNewPath(), null, ModifiedAction.added);
+                    case DELETE -> modification.createModifiedFile(entry.getOldPath(), null, ModifiedAction.deleted);
+                    case MODIFY -> modification.createModifiedFile(entry.getNewPath(), null, ModifiedAction.modified);
+                    default -> modification.createModifiedFile(entry.getNewPath(), null, ModifiedAction.unknown);
+                }
+            }
+        }
+        return modification;
+    }
+}
@@ -15,10 +15,13 @@
  */
 package com.thoughtworks.go.server.service.support;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.thoughtworks.go.server.cache.GoCache;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.config.CacheConfiguration;
 import net.sf.ehcache.statistics.StatisticsGateway;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.LinkedHashMap;
@@ -26,6 +29,12 @@ import java.util.Map;
 
 @Component
 public class CacheInformationProvider implements ServerInfoProvider {
+    private final GoCache goCache;
+
+    @Autowired
+    public CacheInformationProvider(GoCache goCache) {
+        this.goCache = goCache;
+    }
 
     @Override
     public double priority() {
@@ -35,6 +44,7 @@ public class CacheInformationProvider implements ServerInfoProvider {
     @Override
     public Map<String, Object> asJsonCompatibleMap() {
         LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("GoCache", getGoCacheRegionInformationAsJson());
 
         for (CacheManager cacheManager : CacheManager.ALL_CACHE_MANAGERS) {
             LinkedHashMap<String, Object> jsonForManager = new LinkedHashMap<>();
@@ -58,6 +68,24 @@ public class CacheInformationProvider implements ServerInfoProvider {
         return "Cache Information";
     }
 
+    public Map<String, Object> getGoCacheRegionInformationAsJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (GoCache.RegionStatistics region : goCache.regionStatistics()) {
+            CacheStats stats = region.stats();
+            Map<String, Object> regionJson = new LinkedHashMap<>();
+            regionJson.put("Entries", region.entries());
+            regionJson.put("Weight", region.weight());
+            regionJson.put("Weight Limit", region.weightLimit());
+            regionJson.put("Hits", stats.hitCount());
+            regionJson.put("Misses", stats.missCount());
+            regionJson.put("Hit Ratio", stats.hitRate());
+            regionJson.put("Evicted", stats.evictionCount());
+            regionJson.put("Evicted Weight", stats.evictionWeight());
+            json.put(region.region(), regionJson);
+        }
+        return json;
+    }
+
     public Map<String, Object> getCacheRuntimeInformationAsJson(Cache cache) {
         Map<String, Object> json = new LinkedHashMap<>();
         StatisticsGateway statistics = cache.getStatistics();
@@ -0,0 +1,67 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.support;
+
+import com.thoughtworks.go.server.messaging.GoMessage;
+import com.thoughtworks.go.server.messaging.MessagingService;
+import com.thoughtworks.go.server.messaging.inmemory.InMemoryMessagingService;
+import com.thoughtworks.go.server.messaging.inmemory.QueueStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class MessagingInformationProvider implements ServerInfoProvider {
+    private final MessagingService<GoMessage> messagingService;
+
+    @Autowired
+    public MessagingInformationProvider(MessagingService<GoMessage> messagingService) {
+        this.messagingService = messagingService;
+    }
+
+    @Override
+    public double priority() {
+        return 11.75;
+    }
+
+    @Override
+    public Map<String, Object> asJsonCompatibleMap() {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("Implementation", messagingService.getClass().getSimpleName());
+        if (messagingService instanceof InMemoryMessagingService inMemoryMessagingService) {
+            LinkedHashMap<String, Object> queues = new LinkedHashMap<>();
+            for (QueueStats stats : inMemoryMessagingService.queueStats()) {
+                LinkedHashMap<String, Object> queueJson = new LinkedHashMap<>();
+                queueJson.put("Depth", stats.depth());
+                queueJson.put("Enqueued", stats.enqueued());
+                queueJson.put("Delivered", stats.delivered());
+                queueJson.put("Expired", stats.expired());
+                queueJson.put("Average Latency (ms)", stats.averageLatencyMillis());
+                queueJson.put("Max Latency (ms)", stats.maxLatencyMillis());
+                queues.put(stats.name(), queueJson);
+            }
+            json.put("Queues", queues);
+        }
+        return json;
+    }
+
+    @Override
+    public String name() {
+        return "Messaging Information";
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.support;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.thoughtworks.go.server.service.SecretParamResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class SecretsCacheInformationProvider implements ServerInfoProvider {
+    private final SecretParamResolver secretParamResolver;
+
+    @Autowired
+    public SecretsCacheInformationProvider(SecretParamResolver secretParamResolver) {
+        this.secretParamResolver = secretParamResolver;
+    }
+
+    @Override
+    public double priority() {
+        return 11.6;
+    }
+
+    @Override
+    public Map<String, Object> asJsonCompatibleMap() {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        CacheStats stats = secretParamResolver.cacheStats();
+        json.put("Enabled", stats != null);
+        if (stats != null) {
+            json.put("Size", secretParamResolver.cachedSecretsCount());
+            json.put("Hits", stats.hitCount());
+            json.put("Misses", stats.missCount());
+            json.put("Hit Rate", stats.hitRate());
+            json.put("Plugin Lookups", stats.loadCount());
+            json.put("Failed Plugin Lookups", stats.loadFailureCount());
+            json.put("Average Lookup Time (ms)", stats.averageLoadPenalty() / 1_000_000.0);
+            json.put("Evicted", stats.evictionCount());
+        }
+        return json;
+    }
+
+    @Override
+    public String name() {
+        return "Secrets Cache Information";
+    }
+}
@@ -27,9 +27,15 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.Deflater;
 
 import static org.apache.commons.lang3.StringUtils.isEmpty;
@@ -38,6 +44,7 @@ import static org.apache.commons.lang3.StringUtils.isEmpty;
 public class FileView implements View, ServletContextAware {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FileView.class);
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^bytes=(\\d{1,18})-(\\d{0,18})$");
 
     private ServletContext servletContext;
     public static final String NEED_TO_ZIP = "need_to_zip";
@@ -56,21 +63,75 @@ public class FileView implements View, ServletContextAware {
         return "application/octet-stream";
     }
 
-    private void handleFile(File file, boolean needToZip, HttpServletResponse response) throws IOException {
+    private void handleFile(File file, boolean needToZip, HttpServletRequest request, HttpServletResponse response) throws IOException {
         String filename = file.getName();
         seContentType(needToZip, response, filename);
         setHeaders(response, filename);
-        setContentLength(needToZip, file, response);
-        setOutput(needToZip, file, response);
+        if (needToZip) {
+            setOutput(file, response);
+            return;
+        }
+
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setDateHeader("Last-Modified", file.lastModified());
+        long length = file.length();
+        Matcher range = SINGLE_BYTE_RANGE.matcher(Objects.requireNonNullElse(request.getHeader("Range"), ""));
+        if (!range.matches() || !ifRangeMatches(file, request)) {
+            setContentLength(false, file, response);
+            transfer(file, 0, length, response);
+            return;
+        }
+
+        long start = Long.parseLong(range.group(1));
+        long end = isEmpty(range.group(2)) ? length - 1 : Math.min(Long.parseLong(range.group(2)), length - 1);
+        if (start >= length || start > end) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        response.addHeader("Content-Length", Long.toString(end - start + 1));
+        transfer(file, start, end - start + 1, response);
     }
 
-    private void setOutput(boolean needToZip, File file, HttpServletResponse response) throws IOException {
+    /**
+     * A range is only served if the file has not changed since the client got the rest of it, as told by an
+     * {@code If-Range} header, so that a resumed download is not spliced together from two versions of the file. Only
+     * dates are understood, since no entity tags are handed out for files.
+     */
+    private static boolean ifRangeMatches(File file, HttpServletRequest request) {
+        if (request.getHeader("If-Range") == null) {
+            return true;
+        }
+        try {
+            return request.getDateHeader("If-Range") / 1000 == file.lastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void setOutput(File file, HttpServletResponse response) throws IOException {
         ServletOutputStream out = response.getOutputStream();
-        if (needToZip) {
-            new ZipUtil().zip(file, out, Deflater.NO_COMPRESSION);
-        } else {
-            try (FileInputStream input = new FileInputStream(file)) {
-                input.transferTo(out);
+        new ZipUtil().zip(file, out, Deflater.NO_COMPRESSION);
+        out.flush();
+    }
+
+    /**
+     * Copies a range of the file straight from a {@link FileChannel} positioned at its start, so that agents resuming
+     * a download don't make the server read through the part they already have.
+     */
+    private void transfer(File file, long position, long count, HttpServletResponse response) throws IOException {
+        ServletOutputStream out = response.getOutputStream();
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(out);
+            long transferred = 0;
+            while (transferred < count) {
+                long sent = input.transferTo(position + transferred, count - transferred, output);
+                if (sent <= 0) {
+                    break;
+                }
+                transferred += sent;
             }
         }
         out.flush();
@@ -108,14 +169,14 @@ public class FileView implements View, ServletContextAware {
     public void render(Map<String, ?> map, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
         File file = (File) map.get("targetFile");
         boolean needToZip = map.containsKey(NEED_TO_ZIP);
-        handleFileWithLogging(httpServletResponse, file, needToZip);
+        handleFileWithLogging(httpServletRequest, httpServletResponse, file, needToZip);
     }
 
-    private void handleFileWithLogging(HttpServletResponse httpServletResponse, File file, boolean needToZip) throws IOException {
+    private void handleFileWithLogging(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, File file, boolean needToZip) throws IOException {
         LOGGER.info("[Artifact Download] About to download: {}. ShouldZip? = {}", file.getAbsolutePath(), needToZip);
         long before = System.currentTimeMillis();
 
-        handleFile(file, needToZip, httpServletResponse);
+        handleFile(file, needToZip, httpServletRequest, httpServletResponse);
 
         long timeTaken = System.currentTimeMillis() - before;
         LOGGER.info("[Artifact Download] Finished downloading: {}. ShouldZip? = {}. The time taken is: {} ms", file.getAbsolutePath(), needToZip, timeTaken);
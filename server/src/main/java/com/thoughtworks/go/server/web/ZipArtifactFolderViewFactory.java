@@ -18,6 +18,7 @@ package com.thoughtworks.go.server.web;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.cache.ZipArtifactCache;
 import com.thoughtworks.go.server.view.artifacts.PreparingArtifactFile;
+import com.thoughtworks.go.server.view.artifacts.StreamingArtifactZip;
 import org.springframework.web.servlet.ModelAndView;
 
 import java.io.IOException;
@@ -33,6 +34,9 @@ public class ZipArtifactFolderViewFactory implements ArtifactFolderViewFactory {
 
     @Override
     public ModelAndView createView(JobIdentifier identifier, ArtifactFolder artifactFolder) throws IOException {
+        if (zipArtifactCache.shouldStream(artifactFolder)) {
+            return new ModelAndView(new StreamingArtifactZip(zipArtifactCache, artifactFolder));
+        }
         if (zipArtifactCache.cacheCreated(artifactFolder)) {
             Map<String, Object> data = new HashMap<>();
             data.put("targetFile", zipArtifactCache.cachedFile(artifactFolder));
@@ -15,10 +15,12 @@
  */
 package com.thoughtworks.go.server.websocket;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thoughtworks.go.domain.ConsoleByteStreamer;
 import com.thoughtworks.go.domain.ConsoleConsumer;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
-import com.thoughtworks.go.server.dao.JobInstanceDao;
 import com.thoughtworks.go.server.service.ConsoleService;
 import com.thoughtworks.go.server.util.Retryable;
 import com.thoughtworks.go.util.SystemEnvironment;
@@ -29,10 +31,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPOutputStream;
 
 @Component
@@ -42,82 +47,150 @@ public class ConsoleLogSender {
     private static final int LOG_DOES_NOT_EXIST = 4004;
     private static final int LOG_FILE_DOES_NOT_EXIST = 4410;
     private static final int BUF_SIZE = 1024 * 1024; // 1MB
-    private static final int FILL_INTERVAL_MILLIS = 500;
+    private static final long COMPLETED_LOG_CACHE_BYTES = 64L * 1024 * 1024;
 
     private final Charset charset;
     private final ConsoleService consoleService;
-    private final JobInstanceDao jobInstanceDao;
+    private final ConsoleLogTailService tailService;
+    private final Cache<ChunkKey, CompressedChunk> completedLogChunks = Caffeine.newBuilder()
+        .maximumWeight(COMPLETED_LOG_CACHE_BYTES)
+        .weigher((ChunkKey key, CompressedChunk chunk) -> chunk.bytes().length)
+        .build();
 
     @Autowired
-    ConsoleLogSender(ConsoleService consoleService, JobInstanceDao jobInstanceDao, SystemEnvironment systemEnvironment) {
+    ConsoleLogSender(ConsoleService consoleService, ConsoleLogTailService tailService, SystemEnvironment systemEnvironment) {
         this.consoleService = consoleService;
-        this.jobInstanceDao = jobInstanceDao;
+        this.tailService = tailService;
         this.charset = systemEnvironment.consoleLogCharset();
     }
 
+    /**
+     * Sends the console log of a job from line {@code start} onwards. The log of a completed job is sent line by line
+     * right away; a running job is followed from the byte offset of that line on, see
+     * {@link #processFromOffset(SocketEndpoint, JobIdentifier, long)}.
+     */
     public void process(final SocketEndpoint webSocket, JobIdentifier jobIdentifier, long start) throws IllegalArtifactLocationException, IOException {
         if (start < 0L) {
             start = 0L;
         }
 
-        // check if we're tailing a running build, or viewing a prior build's logs
-        boolean detectCompleted = detectCompleted(jobIdentifier);
-        if (detectCompleted && !doesLogExists(jobIdentifier)) {
-            String notFound = String.format("Console log for %s is unavailable as it may have been purged by Go or deleted externally.", jobIdentifier.toFullString());
-            webSocket.close(LOG_FILE_DOES_NOT_EXIST, notFound);
-            return;
+        try (ConsoleLogTailService.Tail tail = tailService.follow(jobIdentifier)) {
+            boolean completed = tail.isCompleted();
+            if (!isLogAvailable(webSocket, jobIdentifier, completed)) {
+                return;
+            }
+            if (completed) {
+                sendCompletedLogLines(webSocket, jobIdentifier, start);
+            } else {
+                tail.subscribe(offsetOfLine(jobIdentifier, start), new SocketSubscriber(webSocket, jobIdentifier));
+            }
         }
+    }
 
-        boolean isRunningBuild = !detectCompleted;
-
-        // Sometimes the log file may not have been created yet; leave it up to the client to handle reconnect logic.
-        try {
-            waitForLogToExist(webSocket, jobIdentifier);
-        } catch (Retryable.TooManyRetriesException e) {
-            webSocket.close(LOG_DOES_NOT_EXIST, e.getMessage());
-            return;
+    /**
+     * Same as {@link #process(SocketEndpoint, JobIdentifier, long)}, but tracks the position in the log by byte offset
+     * and sends raw byte ranges of the console log instead of decoding and re-encoding it line by line. Once a build has
+     * completed, its log no longer changes, so the compressed chunks are shared between everyone viewing it. While it is
+     * running, the viewer is subscribed to the {@link ConsoleLogTailService.Tail} of the build, which reads the log once
+     * for all of its viewers; this method then returns without waiting for the build to complete.
+     */
+    public void processFromOffset(final SocketEndpoint webSocket, JobIdentifier jobIdentifier, long startOffset) throws IllegalArtifactLocationException, IOException {
+        if (startOffset < 0L) {
+            startOffset = 0L;
         }
 
-        try (ConsoleConsumer streamer = consoleService.getStreamer(start, jobIdentifier)) {
-            do {
-                start += sendLogs(webSocket, streamer, jobIdentifier);
-
-                // allow buffers to fill to avoid sending 1 line at a time for running builds
-                if (isRunningBuild) {
-                    try {
-                        //noinspection BusyWait
-                        Thread.sleep(FILL_INTERVAL_MILLIS);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+        try (ConsoleLogTailService.Tail tail = tailService.follow(jobIdentifier)) {
+            boolean completed = tail.isCompleted();
+            if (!isLogAvailable(webSocket, jobIdentifier, completed)) {
+                return;
+            }
+            if (!completed) {
+                tail.subscribe(startOffset, new SocketSubscriber(webSocket, jobIdentifier));
+                return;
+            }
+            try {
+                long offset = sendCompletedLog(webSocket, jobIdentifier, startOffset);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Sent {} bytes of console log for {}", offset, jobIdentifier);
                 }
-            } while (webSocket.isOpen() && !detectCompleted(jobIdentifier) && !Thread.currentThread().isInterrupted());
+            } finally {
+                webSocket.close();
+            }
+        }
+    }
 
+    private void sendCompletedLogLines(SocketEndpoint webSocket, JobIdentifier jobIdentifier, long start) throws IllegalArtifactLocationException, IOException {
+        try (ConsoleConsumer streamer = consoleService.getStreamer(start, jobIdentifier)) {
+            start += sendLogs(webSocket, streamer, jobIdentifier);
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Sent {} log lines for {} from {}", streamer.totalLinesConsumed(), jobIdentifier, consoleService.consoleLogFile(jobIdentifier).toPath());
-            }
-            // empty the tail end of the file because the build could have been marked completed, and exited the
-            // loop before we've seen the last content update
-            if (isRunningBuild) {
-                sendLogs(webSocket, streamer, jobIdentifier);
+                LOGGER.debug("Sent {} log lines for {} from {}", start, jobIdentifier, consoleService.consoleLogFile(jobIdentifier).toPath());
             }
+        } finally {
+            webSocket.close();
+        }
+    }
 
-            //send the remaining logs if any
-            if (detectCompleted(jobIdentifier)) {
-                try (ConsoleConsumer consoleFileStreamer = consoleService.getStreamer(start, jobIdentifier)) {
-                    start += sendLogs(webSocket, consoleFileStreamer, jobIdentifier);
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("Sent {} log lines for {} from {}", streamer.totalLinesConsumed(), jobIdentifier, consoleService.consoleLogFile(jobIdentifier).toPath());
+    private long offsetOfLine(JobIdentifier jobIdentifier, long line) throws IllegalArtifactLocationException, IOException {
+        AtomicLong linesToSkip = new AtomicLong(line);
+        AtomicLong offset = new AtomicLong();
+        try (ConsoleByteStreamer streamer = consoleService.getByteStreamer(0L, jobIdentifier, BUF_SIZE)) {
+            while (linesToSkip.get() > 0 && streamer.streamChunk((chunkOffset, chunk) -> {
+                for (int i = chunk.position(); i < chunk.limit() && linesToSkip.get() > 0; i++) {
+                    if (chunk.get(i) == '\n') {
+                        linesToSkip.decrementAndGet();
+                        offset.set(chunkOffset + i - chunk.position() + 1);
                     }
                 }
+            }, false) > 0) {
+                // keep counting lines
             }
+        }
+        return offset.get();
+    }
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Sent {} log lines for {} from all sources", start, jobIdentifier);
+    private long sendCompletedLog(SocketEndpoint webSocket, JobIdentifier jobIdentifier, long offset) throws IllegalArtifactLocationException, IOException {
+        File consoleLogFile = consoleService.consoleLogFile(jobIdentifier);
+        long lastModified = consoleLogFile.lastModified();
+        try (ConsoleByteStreamer streamer = consoleService.getByteStreamer(offset, jobIdentifier, BUF_SIZE)) {
+            while (webSocket.isOpen()) {
+                ChunkKey key = new ChunkKey(consoleLogFile.getPath(), lastModified, offset);
+                CompressedChunk chunk = completedLogChunks.getIfPresent(key);
+                if (chunk == null) {
+                    chunk = readCompressedChunk(streamer, offset);
+                    if (chunk.length() == 0) {
+                        break;
+                    }
+                    completedLogChunks.put(key, chunk);
+                }
+                webSocket.send(ByteBuffer.wrap(chunk.bytes()));
+                offset += chunk.length();
             }
-        } finally {
-            webSocket.close();
         }
+        return offset;
+    }
+
+    private CompressedChunk readCompressedChunk(ConsoleByteStreamer streamer, long offset) throws IOException {
+        final CompressedChunk[] result = {new CompressedChunk(new byte[0], 0)};
+        streamer.seek(offset);
+        streamer.streamChunk((chunkOffset, chunk) -> result[0] = new CompressedChunk(maybeGzipIfLargeEnough(chunk.array(), chunk.position(), chunk.remaining()), chunk.remaining()), true);
+        return result[0];
+    }
+
+    private boolean isLogAvailable(SocketEndpoint webSocket, JobIdentifier jobIdentifier, boolean completed) {
+        if (completed && !doesLogExists(jobIdentifier)) {
+            String notFound = String.format("Console log for %s is unavailable as it may have been purged by Go or deleted externally.", jobIdentifier.toFullString());
+            webSocket.close(LOG_FILE_DOES_NOT_EXIST, notFound);
+            return false;
+        }
+
+        // Sometimes the log file may not have been created yet; leave it up to the client to handle reconnect logic.
+        try {
+            waitForLogToExist(webSocket, jobIdentifier);
+        } catch (Retryable.TooManyRetriesException e) {
+            webSocket.close(LOG_DOES_NOT_EXIST, e.getMessage());
+            return false;
+        }
+        return true;
     }
 
     private boolean doesLogExists(JobIdentifier jobIdentifier) {
@@ -128,10 +201,6 @@ public class ConsoleLogSender {
         Retryable.retry(integer -> !websocket.isOpen() || doesLogExists(jobIdentifier), String.format("waiting for console log to exist for %s", jobIdentifier), 20);
     }
 
-    private boolean detectCompleted(JobIdentifier jobIdentifier) {
-        return jobInstanceDao.isJobCompleted(jobIdentifier);
-    }
-
     private long sendLogs(final SocketEndpoint webSocket, final ConsoleConsumer console, final JobIdentifier jobIdentifier) throws IOException {
         final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUF_SIZE);
         final OutputStream proxyOutputStream = new AutoFlushingStream(buffer, webSocket, BUF_SIZE);
@@ -160,19 +229,66 @@ public class ConsoleLogSender {
     }
 
     byte[] maybeGzipIfLargeEnough(byte[] input) {
-        if (input.length < 512) {
-            return input;
+        return maybeGzipIfLargeEnough(input, 0, input.length);
+    }
+
+    byte[] maybeGzipIfLargeEnough(byte[] input, int offset, int length) {
+        if (length < 512) {
+            return offset == 0 && length == input.length ? input : Arrays.copyOfRange(input, offset, offset + length);
         }
         // To avoid having to re-allocate the internal byte array, allocate an initial buffer assuming a safe 10:1 compression ratio
-        final ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream(input.length / 10);
+        final ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream(length / 10);
         try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(gzipBytes, 1024 * 8)) {
-            gzipOutputStream.write(input);
+            gzipOutputStream.write(input, offset, length);
         } catch (IOException e) {
-            LOGGER.error("Could not gzip {}", input);
+            LOGGER.error("Could not gzip {} bytes", length);
         }
         return gzipBytes.toByteArray();
     }
 
+    private class SocketSubscriber implements ConsoleLogTailService.Subscriber {
+        private final SocketEndpoint webSocket;
+        private final JobIdentifier jobIdentifier;
+
+        private SocketSubscriber(SocketEndpoint webSocket, JobIdentifier jobIdentifier) {
+            this.webSocket = webSocket;
+            this.jobIdentifier = jobIdentifier;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return webSocket.isOpen();
+        }
+
+        @Override
+        public void send(ConsoleLogTailService.Chunk chunk) throws IOException {
+            webSocket.send(ByteBuffer.wrap(chunk.encoded(ConsoleLogSender.this::maybeGzipIfLargeEnough)));
+        }
+
+        @Override
+        public void finished(long offset, boolean jobCompleted) {
+            try {
+                // the log is moved to its final location when the build completes, so the remainder is read from there
+                if (jobCompleted && webSocket.isOpen()) {
+                    offset = sendCompletedLog(webSocket, jobIdentifier, offset);
+                }
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Sent {} bytes of console log for {}", offset, jobIdentifier);
+                }
+            } catch (IllegalArtifactLocationException | IOException e) {
+                LOGGER.debug("Failed to send the rest of the console log for {}", jobIdentifier, e);
+            } finally {
+                webSocket.close();
+            }
+        }
+    }
+
+    private record ChunkKey(String path, long lastModified, long offset) {
+    }
+
+    private record CompressedChunk(byte[] bytes, int length) {
+    }
+
     // Flushes stream just before it becomes larger than `bufSize`
     private class AutoFlushingStream extends ProxyOutputStream {
         private final ByteArrayOutputStream buffer;
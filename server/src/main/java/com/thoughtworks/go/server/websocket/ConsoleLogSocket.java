@@ -34,6 +34,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.Optional;
 
 @WebSocket
 public class ConsoleLogSocket implements SocketEndpoint {
@@ -67,13 +68,18 @@ public class ConsoleLogSocket implements SocketEndpoint {
 
         session.getRemote().sendString(consoleLogCharsetJSONMessage);
 
-        long start = parseStartLine(session.getUpgradeRequest());
+        Long startByte = parseLongParam(session.getUpgradeRequest(), "startByte");
+        long start = startByte != null ? startByte : Optional.ofNullable(parseLongParam(session.getUpgradeRequest(), "startLine")).orElse(0L);
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("{} sending logs for {} starting at line {}.", sessionName(), jobIdentifier, start);
+            LOGGER.debug("{} sending logs for {} starting at {} {}.", sessionName(), jobIdentifier, startByte != null ? "byte" : "line", start);
         }
 
         try {
-            handler.process(this, jobIdentifier, start);
+            if (startByte != null) {
+                handler.processFromOffset(this, jobIdentifier, start);
+            } else {
+                handler.process(this, jobIdentifier, start);
+            }
         } catch (IOException e) {
             if ("Connection output is closed".equals(e.getMessage())) {
                 if (LOGGER.isDebugEnabled()) {
@@ -141,13 +147,13 @@ public class ConsoleLogSocket implements SocketEndpoint {
         return sessionId;
     }
 
-    private long parseStartLine(UpgradeRequest request) {
+    private Long parseLongParam(UpgradeRequest request, String name) {
         return URLEncodedUtils.parse(request.getRequestURI(), StandardCharsets.UTF_8)
             .stream()
-            .filter(pair -> "startLine".equals(pair.getName()))
+            .filter(pair -> name.equals(pair.getName()))
             .findFirst()
-            .map(startLine -> Long.valueOf(startLine.getValue()))
-            .orElse(0L);
+            .map(param -> Long.valueOf(param.getValue()))
+            .orElse(null);
     }
 
 }
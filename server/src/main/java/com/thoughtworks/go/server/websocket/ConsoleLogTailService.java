@@ -0,0 +1,389 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.websocket;
+
+import com.thoughtworks.go.domain.ConsoleByteStreamer;
+import com.thoughtworks.go.domain.JobIdentifier;
+import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
+import com.thoughtworks.go.server.dao.JobInstanceDao;
+import com.thoughtworks.go.server.domain.ConsoleUpdateListener;
+import com.thoughtworks.go.server.domain.JobStatusListener;
+import com.thoughtworks.go.server.service.ConsoleService;
+import com.thoughtworks.go.server.service.JobInstanceService;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps track of the console logs being tailed over websockets. Subscribers to the same job share one {@link Tail},
+ * which reads whatever was appended to the console log once and pushes it to all of them. Tails are pumped on a small
+ * pool of threads whenever bytes are appended to the console log and when the job completes, and otherwise every few
+ * seconds to drop subscribers that went away; no thread is held while a subscriber waits for more of the log.
+ */
+@Component
+public class ConsoleLogTailService implements ConsoleUpdateListener, JobStatusListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsoleLogTailService.class);
+    private static final long MAX_IDLE_MILLIS = 5000;
+    private static final long COMPLETION_RECHECK_MILLIS = 30000;
+    private static final int TAILER_THREADS = 4;
+    private static final int CHUNK_SIZE = 1024 * 1024; // 1MB
+
+    private final ConsoleService consoleService;
+    private final JobInstanceService jobInstanceService;
+    private final JobInstanceDao jobInstanceDao;
+    private final long maxIdleMillis;
+    private final long completionRecheckMillis;
+    private final Executor tailers;
+    private final ConcurrentMap<Long, Tail> tails = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ConsoleLogTailService(ConsoleService consoleService, JobInstanceService jobInstanceService, JobInstanceDao jobInstanceDao) {
+        this(consoleService, jobInstanceService, jobInstanceDao, MAX_IDLE_MILLIS, COMPLETION_RECHECK_MILLIS,
+            Executors.newFixedThreadPool(TAILER_THREADS, Thread.ofPlatform().name("console-log-tailer-", 0).daemon(true).factory()));
+    }
+
+    @VisibleForTesting
+    ConsoleLogTailService(ConsoleService consoleService, JobInstanceService jobInstanceService, JobInstanceDao jobInstanceDao, long maxIdleMillis, long completionRecheckMillis, Executor tailers) {
+        this.consoleService = consoleService;
+        this.jobInstanceService = jobInstanceService;
+        this.jobInstanceDao = jobInstanceDao;
+        this.maxIdleMillis = maxIdleMillis;
+        this.completionRecheckMillis = completionRecheckMillis;
+        this.tailers = tailers;
+    }
+
+    @PostConstruct
+    public void init() {
+        consoleService.registerConsoleUpdateListener(this);
+        jobInstanceService.registerJobStateChangeListener(this);
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("console-log-tail-checker").daemon(true).factory())
+            .scheduleWithFixedDelay(() -> tails.values().forEach(Tail::requestPump), maxIdleMillis, maxIdleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts following the console log of a job. The returned {@link Tail} must be closed once the caller is done with
+     * it; subscriptions made through it keep following the log on their own.
+     */
+    public Tail follow(JobIdentifier jobIdentifier) {
+        return tails.compute(jobIdentifier.getBuildId(), (buildId, tail) -> {
+            Tail result = tail == null ? new Tail(jobIdentifier) : tail;
+            result.references++;
+            return result;
+        });
+    }
+
+    @Override
+    public void consoleUpdated(JobIdentifier jobIdentifier) {
+        Tail tail = tails.get(jobIdentifier.getBuildId());
+        if (tail != null) {
+            tail.requestPump();
+        }
+    }
+
+    @Override
+    public void jobStatusChanged(JobInstance job) {
+        if (!job.isCompleted()) {
+            return;
+        }
+        Tail tail = tails.get(job.getId());
+        if (tail != null) {
+            tail.markCompleted();
+        }
+    }
+
+    int followedJobCount() {
+        return tails.size();
+    }
+
+    private void retain(Tail tail) {
+        tails.computeIfPresent(tail.jobIdentifier.getBuildId(), (buildId, existing) -> {
+            if (existing == tail) {
+                existing.references++;
+            }
+            return existing;
+        });
+    }
+
+    private void release(Tail tail) {
+        tails.computeIfPresent(tail.jobIdentifier.getBuildId(), (buildId, existing) -> {
+            if (existing != tail) {
+                return existing;
+            }
+            return --existing.references == 0 ? null : existing;
+        });
+    }
+
+    /**
+     * Receives the console log of a running job from a {@link Tail}.
+     */
+    public interface Subscriber {
+        boolean isOpen();
+
+        /**
+         * @param chunk the next bytes of the console log; the same chunk is handed to every subscriber it applies to
+         */
+        void send(Chunk chunk) throws IOException;
+
+        /**
+         * Called once the tail stops sending the console log to this subscriber, because the job completed, the
+         * subscriber is no longer open or sending to it failed.
+         *
+         * @param offset       the offset up to which the console log was sent
+         * @param jobCompleted whether the job completed; the rest of the log is then to be read from its final location
+         */
+        void finished(long offset, boolean jobCompleted);
+    }
+
+    public static class Chunk {
+        private final long offset;
+        private final byte[] bytes;
+        private byte[] encoded;
+
+        Chunk(long offset, byte[] bytes) {
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+
+        public long offset() {
+            return offset;
+        }
+
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        long end() {
+            return offset + bytes.length;
+        }
+
+        /**
+         * @return the chunk as encoded by {@code encoder}, which is only applied once however many subscribers the
+         * chunk is sent to
+         */
+        public synchronized byte[] encoded(UnaryOperator<byte[]> encoder) {
+            if (encoded == null) {
+                encoded = encoder.apply(bytes);
+            }
+            return encoded;
+        }
+
+        private Chunk from(long offset) {
+            return new Chunk(offset, Arrays.copyOfRange(bytes, (int) (offset - this.offset), bytes.length));
+        }
+
+        private static Chunk of(long offset, ByteBuffer buffer, long maxLength) {
+            byte[] bytes = new byte[(int) Math.min(buffer.remaining(), maxLength)];
+            buffer.get(bytes);
+            return new Chunk(offset, bytes);
+        }
+    }
+
+    public class Tail implements AutoCloseable {
+        private final JobIdentifier jobIdentifier;
+        private int references; // guarded by the compute operations on the tails map
+        private final List<Subscription> joining = new ArrayList<>(); // guarded by this
+        private boolean completed; // guarded by this
+        private long completionCheckedAt; // guarded by this
+        private final AtomicInteger pumpRequests = new AtomicInteger();
+        // only used while pumping, which never happens on more than one thread at a time
+        private final List<Subscription> subscriptions = new ArrayList<>();
+        private ConsoleByteStreamer streamer;
+
+        private Tail(JobIdentifier jobIdentifier) {
+            this.jobIdentifier = jobIdentifier;
+        }
+
+        /**
+         * Sends the console log from {@code offset} onwards to {@code subscriber}, until the job completes or the
+         * subscriber goes away.
+         */
+        public void subscribe(long offset, Subscriber subscriber) {
+            retain(this);
+            synchronized (this) {
+                joining.add(new Subscription(subscriber, offset));
+            }
+            requestPump();
+        }
+
+        /**
+         * Job completion is pushed through job state change notifications; the database is consulted only when no
+         * notification has been seen for a while, in case one was missed (e.g. the job completed on another node
+         * before this tail was registered).
+         */
+        public boolean isCompleted() {
+            synchronized (this) {
+                if (completed) {
+                    return true;
+                }
+                long now = System.currentTimeMillis();
+                if (completionCheckedAt != 0 && now - completionCheckedAt < completionRecheckMillis) {
+                    return false;
+                }
+                completionCheckedAt = now;
+            }
+            boolean completedInDb = jobInstanceDao.isJobCompleted(jobIdentifier);
+            if (completedInDb) {
+                markCompleted();
+            }
+            return completedInDb;
+        }
+
+        private void markCompleted() {
+            synchronized (this) {
+                completed = true;
+            }
+            requestPump();
+        }
+
+        private void requestPump() {
+            if (pumpRequests.getAndIncrement() == 0) {
+                tailers.execute(this::pump);
+            }
+        }
+
+        private void pump() {
+            int requests;
+            do {
+                requests = pumpRequests.get();
+                try {
+                    pumpOnce();
+                } catch (Exception e) {
+                    LOGGER.error("Error occurred while tailing the console log of {}", jobIdentifier, e);
+                }
+            } while (pumpRequests.addAndGet(-requests) != 0);
+        }
+
+        private void pumpOnce() {
+            synchronized (this) {
+                subscriptions.addAll(joining);
+                joining.clear();
+            }
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+
+            // check for completion before reading, so that whatever was appended before the job completed is read
+            boolean jobCompleted = isCompleted();
+            try {
+                readAppendedLog();
+            } catch (IllegalArtifactLocationException | IOException e) {
+                // the running log is moved once the job completes, the rest is then read from its final location
+                if (!jobCompleted) {
+                    LOGGER.warn("Unable to read the console log of {}, unsubscribing all viewers.", jobIdentifier, e);
+                    subscriptions.forEach(subscription -> subscription.failed = true);
+                }
+            }
+
+            subscriptions.removeIf(subscription -> {
+                if (jobCompleted || subscription.failed || !subscription.subscriber.isOpen()) {
+                    subscription.finish(jobCompleted);
+                    return true;
+                }
+                return false;
+            });
+            if (subscriptions.isEmpty() && streamer != null) {
+                streamer.close();
+                streamer = null;
+            }
+        }
+
+        private void readAppendedLog() throws IllegalArtifactLocationException, IOException {
+            if (streamer == null) {
+                streamer = consoleService.getByteStreamer(subscriptions.stream().mapToLong(Subscription::offset).min().orElse(0L), jobIdentifier, CHUNK_SIZE);
+            }
+            for (Subscription subscription : subscriptions) {
+                catchUp(subscription);
+            }
+            streamer.stream((offset, chunk) -> {
+                Chunk shared = Chunk.of(offset, chunk, Long.MAX_VALUE);
+                subscriptions.forEach(subscription -> subscription.send(shared));
+            }, false);
+        }
+
+        /**
+         * Subscribers that joined with an offset behind what was already read get the part of the log in between read
+         * for them separately.
+         */
+        private void catchUp(Subscription subscription) throws IllegalArtifactLocationException, IOException {
+            long readUpTo = streamer.offset();
+            if (subscription.offset >= readUpTo) {
+                return;
+            }
+            try (ConsoleByteStreamer history = consoleService.getByteStreamer(subscription.offset, jobIdentifier, CHUNK_SIZE)) {
+                while (!subscription.failed && subscription.offset < readUpTo) {
+                    int read = history.streamChunk((offset, chunk) -> subscription.send(Chunk.of(offset, chunk, readUpTo - offset)), true);
+                    if (read == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private class Subscription {
+            private final Subscriber subscriber;
+            private long offset;
+            private boolean failed;
+
+            private Subscription(Subscriber subscriber, long offset) {
+                this.subscriber = subscriber;
+                this.offset = offset;
+            }
+
+            private long offset() {
+                return offset;
+            }
+
+            private void send(Chunk chunk) {
+                if (failed || chunk.end() <= offset) {
+                    return;
+                }
+                try {
+                    subscriber.send(chunk.offset() < offset ? chunk.from(offset) : chunk);
+                    offset = chunk.end();
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to send the console log of {}, unsubscribing.", jobIdentifier, e);
+                    failed = true;
+                }
+            }
+
+            private void finish(boolean jobCompleted) {
+                try {
+                    subscriber.finished(offset, jobCompleted);
+                } finally {
+                    release(Tail.this);
+                }
+            }
+        }
+    }
+}
@@ -20,7 +20,7 @@
   function ConsoleLogSocket(fallbackObserver, transformer, options) {
     var CONSOLE_LOG_DOES_NOT_EXISTS = 4410;
     var CONSOLE_LOG_NOT_AVAILABLE   = 4004;
-    var startLine                   = 0, socket;
+    var startByte                   = 0, socket;
     var encoder;
 
     var details              = $(".job_details_content");
@@ -28,7 +28,7 @@
 
     if (!details.length) {return;}
 
-    function endpointUrl(startLine) {
+    function endpointUrl(startByte) {
       var l        = document.location;
       var protocol = l.protocol.replace("http", "ws"), host = l.host, path = [
           "console-websocket",
@@ -39,12 +39,12 @@
           details.data("build")
         ].join("/");
 
-      return `${protocol}//${host}${context_path(path)}?startLine=${startLine}`;
+      return `${protocol}//${host}${context_path(path)}?startByte=${startByte}`;
     }
 
     function start() {
       socket = new WebSocketWrapper({
-        url:                          endpointUrl(startLine),
+        url:                          endpointUrl(startByte),
         indefiniteRetry:              true,
         failIfInitialConnectionFails: true
       });
@@ -54,7 +54,7 @@
       socket.on("initialConnectFailed", retryConnectionOrFallbackToPollingOnError);
       socket.on("close", maybeResumeOnClose);
       socket.on("beforeInitialize", function (options) {
-        options.url = endpointUrl(startLine);
+        options.url = endpointUrl(startByte);
       });
     }
 
@@ -105,15 +105,10 @@
     }
 
     function maybeGunzip(gzippedBuf) {
-      encoder.toString();
       var inflator = new pako.Inflate();
       inflator.push(gzippedBuf, true);
 
-      if (inflator.err) {
-        return encoder.decode(gzippedBuf);
-      } else {
-        return encoder.decode(inflator.result);
-      }
+      return inflator.err ? gzippedBuf : inflator.result;
     }
 
     function renderLines(e) {
@@ -128,11 +123,12 @@
       reader.addEventListener("loadend", function () {
         var arrayBuffer   = reader.result;
         var gzippedBuf    = new Uint8Array(arrayBuffer);
-        var consoleOutput = maybeGunzip(gzippedBuf);
+        var rawOutput     = maybeGunzip(gzippedBuf);
+        var consoleOutput = encoder.decode(rawOutput);
 
         lines = consoleOutput.split(/\r?\n/);
 
-        startLine += lines.length;
+        startByte += rawOutput.length;
 
         while (lines.length) {
           slice = lines.splice(0, 1000);
@@ -147,22 +147,30 @@ describe ApplicationController do
       it "should cache the url" do
         Services.go_cache.clear
         expect(controller.url_for(controller: 'non_api', action: 'not_found_action')).to eq("http://test.host/rails/non_api_404")
-        key = Services.go_cache.getKeys.grep(/#{Regexp.quote(com.thoughtworks.go.listener.BaseUrlChangeListener::URLS_CACHE_KEY)}#{Regexp.quote(GoCache::SUB_KEY_DELIMITER)}/).last
-        expect(key).to be_present
-        Services.go_cache.put(key, "some-random-url")
+        sub_key = cached_url_key("http://test.host/rails/non_api_404")
+        expect(sub_key).to be_present
+        Services.go_cache.put(urls_cache_key, sub_key, "some-random-url")
         expect(controller.url_for(controller: 'non_api', action: 'not_found_action')).to eq("some-random-url")
-        expect(Services.go_cache.get(key)).to eq('some-random-url')
+        expect(Services.go_cache.get(urls_cache_key, sub_key)).to eq('some-random-url')
       end
 
       it "should cache the url irrespective of option key type" do
         Services.go_cache.clear
         url_options = {controller: 'non_api', action: 'not_found_action', foo: 'bar', boo: 'baz'}
         expect(controller.url_for(url_options)).to eq("http://test.host/rails/non_api_404?boo=baz&foo=bar")
-        key = Services.go_cache.getKeys.grep(/#{Regexp.quote(com.thoughtworks.go.listener.BaseUrlChangeListener::URLS_CACHE_KEY)}#{Regexp.quote(GoCache::SUB_KEY_DELIMITER)}/).last
-        expect(key).to be_present
-        Services.go_cache.put(key, "some-random-url")
+        sub_key = cached_url_key("http://test.host/rails/non_api_404?boo=baz&foo=bar")
+        expect(sub_key).to be_present
+        Services.go_cache.put(urls_cache_key, sub_key, "some-random-url")
         expect(controller.url_for(Hash[url_options.stringify_keys.to_a.shuffle])).to eq("some-random-url")
-        expect(Services.go_cache.get(key)).to eq('some-random-url')
+        expect(Services.go_cache.get(urls_cache_key, sub_key)).to eq('some-random-url')
+      end
+
+      def urls_cache_key
+        com.thoughtworks.go.listener.BaseUrlChangeListener::URLS_CACHE_KEY
+      end
+
+      def cached_url_key(url)
+        Services.go_cache.getSubKeys(urls_cache_key).find { |sub_key| Services.go_cache.get(urls_cache_key, sub_key) == url }
       end
 
       it "should contain flash message in the session upon redirect and forwards the params" do
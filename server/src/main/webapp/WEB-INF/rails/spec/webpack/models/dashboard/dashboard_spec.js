@@ -90,6 +90,74 @@ describe("Dashboard", () => {
       expect(request.requestHeaders['Accept']).toContain('application/vnd.go.cd.v4+json');
     });
 
+    it('should ask for the pipelines which changed since the given timestamp', async () => {
+      jasmine.Ajax.stubRequest('/go/api/dashboard?allowEmpty=false&since=1510299695473', undefined, 'GET').andReturn({
+        responseText:    JSON.stringify(dashboardData),
+        responseHeaders: {
+          ETag:           'etag',
+          'Content-Type': 'application/vnd.go.cd.v4+json'
+        },
+        status:          200
+      });
+
+      await Dashboard.get(undefined, undefined, false, 1510299695473);
+
+      expect(jasmine.Ajax.requests.mostRecent().url).toBe('/go/api/dashboard?allowEmpty=false&since=1510299695473');
+    });
+
+    it('should remember the last updated timestamp of the dashboard', () => {
+      dashboard.initialize(_.assign({}, dashboardData, {last_updated_timestamp: 42})); // eslint-disable-line camelcase
+      expect(dashboard.lastUpdatedTimestamp()).toBe(42);
+
+      dashboard.forgetLastUpdatedTimestamp();
+      expect(dashboard.lastUpdatedTimestamp()).toBeUndefined();
+    });
+
+    it('should keep the pipelines which did not change since the last poll', () => {
+      const changedSince = {
+        "last_updated_timestamp": 43,
+        "_embedded":              {
+          "pipeline_groups": dashboardData._embedded.pipeline_groups,
+          "pipelines":       []
+        }
+      };
+
+      dashboard.initialize(changedSince, false, 42);
+
+      expect(dashboard.findPipeline("up42").name).toBe("up42");
+      expect(dashboard.lastUpdatedTimestamp()).toBe(43);
+    });
+
+    it('should drop the pipelines which are no longer listed when only changed pipelines are sent', () => {
+      const changedSince = {
+        "last_updated_timestamp": 43,
+        "_embedded":              {
+          "pipeline_groups": [_.assign({}, dashboardData._embedded.pipeline_groups[0], {pipelines: []})],
+          "pipelines":       []
+        }
+      };
+
+      dashboard.initialize(changedSince, false, 42);
+
+      expect(dashboard.findPipeline("up42")).toBeUndefined();
+    });
+
+    it('should ask for all pipelines again when a pipeline which did not change comes into view', () => {
+      dashboard.initialize(_.assign({}, dashboardData, {last_updated_timestamp: 42})); // eslint-disable-line camelcase
+      const changedSince = {
+        "last_updated_timestamp": 43,
+        "_embedded":              {
+          "pipeline_groups": [_.assign({}, dashboardData._embedded.pipeline_groups[0], {pipelines: ["up42", "down42"]})],
+          "pipelines":       []
+        }
+      };
+
+      dashboard.initialize(changedSince, false, 42);
+
+      expect(dashboard.lastUpdatedTimestamp()).toBeUndefined();
+      expect(dashboard.allPipelineNames()).toEqual(["up42"]);
+    });
+
     const dashboardData = {
       "_embedded": {
         "pipeline_groups": [
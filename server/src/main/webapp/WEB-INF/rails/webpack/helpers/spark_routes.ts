@@ -119,7 +119,7 @@ export class SparkRoutes {
     }
   }
 
-  static showDashboardPath(viewName?: string, allowEmpty?: boolean): string {
+  static showDashboardPath(viewName?: string, allowEmpty?: boolean, since?: number): string {
     const params: any = {};
 
     if (viewName) {
@@ -130,6 +130,10 @@ export class SparkRoutes {
       Object.assign(params, {allowEmpty});
     }
 
+    if (since) {
+      Object.assign(params, {since});
+    }
+
     return Object.keys(params).length ?
       `/go/api/dashboard?${m.buildQueryString(params)}` :
       "/go/api/dashboard";
@@ -25,6 +25,7 @@ export function Dashboard() {
   let pipelineGroups = DashboardGroups.fromPipelineGroupsJSON([]);
   let environments   = DashboardGroups.fromEnvironmentsJSON([]);
   let pipelines      = Pipelines.fromJSON([]);
+  let lastUpdatedTimestamp;
 
   this.message           = Stream();
   this.getPipelineGroups = () => pipelineGroups;
@@ -34,10 +35,31 @@ export function Dashboard() {
   this.allPipelineNames = () => Object.keys(pipelines.pipelines);
   this.findPipeline     = (pipelineName) => pipelines.find(pipelineName);
 
-  this.initialize = (json, showEmptyGroups) => {
+  // the `since` to poll with, so that only the pipelines which changed after the current ones are sent
+  this.lastUpdatedTimestamp       = () => lastUpdatedTimestamp;
+  this.forgetLastUpdatedTimestamp = () => {
+    lastUpdatedTimestamp = undefined;
+  };
+
+  /**
+   * `changedSince` is the `since` the json was asked for with, if any: it then only lists the pipelines which changed
+   * after it, and the others listed by its groups are kept as they are.
+   */
+  this.initialize = (json, showEmptyGroups, changedSince) => {
     const newPipelineGroups = DashboardGroups.fromPipelineGroupsJSON(_.get(json, '_embedded.pipeline_groups', []), showEmptyGroups);
     const newEnvironments   = DashboardGroups.fromEnvironmentsJSON(_.get(json, '_embedded.environments', []));
-    const newPipelines      = Pipelines.fromJSON(_.get(json, '_embedded.pipelines', []));
+    let newPipelines        = Pipelines.fromJSON(_.get(json, '_embedded.pipelines', []));
+
+    if (changedSince) {
+      const listed    = _.uniq(_.flatMap(newPipelineGroups.groups.concat(newEnvironments.groups), (group) => group.pipelines));
+      const unchanged = _.pick(pipelines.pipelines, _.difference(listed, Object.keys(newPipelines.pipelines)));
+      if (_.some(listed, (name) => !unchanged[name] && !newPipelines.find(name))) {
+        // a pipeline which did not change came into view (e.g. it was shared with the user), so ask for all of them
+        lastUpdatedTimestamp = undefined;
+        return;
+      }
+      newPipelines = new Pipelines(_.assign(unchanged, newPipelines.pipelines));
+    }
 
     const pipelinesNoEnv = _.difference(Object.keys(newPipelines.pipelines), _.reduce(newEnvironments.groups, (memo, group) => memo.concat(group.pipelines), []));
     newEnvironments.groups.push(new DashboardGroups.Environment({
@@ -47,19 +69,19 @@ export function Dashboard() {
     }));
 
     //set it on the current object only on a successful deserialization of both pipeline groups and pipelines
-    pipelineGroups = newPipelineGroups;
-    environments   = newEnvironments;
-    pipelines      = newPipelines;
+    pipelineGroups       = newPipelineGroups;
+    environments         = newEnvironments;
+    pipelines            = newPipelines;
+    lastUpdatedTimestamp = _.get(json, 'last_updated_timestamp');
   };
 }
 
 Dashboard.API_VERSION = "v4";
 
-Dashboard.get = (viewName, etag, allowEmpty) => {
+Dashboard.get = (viewName, etag, allowEmpty, since) => {
   return AjaxHelper.GET({
-    url:        SparkRoutes.showDashboardPath(viewName, !!allowEmpty),
+    url:        SparkRoutes.showDashboardPath(viewName, !!allowEmpty, since),
     apiVersion: Dashboard.API_VERSION,
     etag
   });
 };
-
@@ -96,6 +96,7 @@ $(() => {
     // Explicit set always refreshes; even if the viewName didn't change,
     // we should refresh because the filter definition may have changed as
     // currentView() is called after every personalization save operation.
+    dashboard.forgetLastUpdatedTimestamp();
     repeater().restart();
   }
 
@@ -118,14 +119,14 @@ $(() => {
     personalizeVM.activate(currentView());
   });
 
-  function onResponse(dashboardData, message = undefined) {
+  function onResponse(dashboardData, message = undefined, changedSince = undefined) {
     personalizeVM.etag(dashboardData['_personalization']);
-    dashboard.initialize(dashboardData, showEmptyPipelineGroups);
+    dashboard.initialize(dashboardData, showEmptyPipelineGroups, changedSince);
     dashboard.message(message);
   }
 
   function createRepeater() {
-    const onsuccess = (data, _textStatus, jqXHR) => {
+    const onsuccess = (data, _textStatus, jqXHR, since) => {
       const etag = parseNormalizedEtagFrom(jqXHR);
 
       if (jqXHR.status === 304) {
@@ -145,7 +146,7 @@ $(() => {
         dashboardVM.etag(etag);
       }
 
-      onResponse(data);
+      onResponse(data, undefined, since);
     };
 
     const onerror = (jqXHR, textStatus, errorThrown) => {
@@ -182,12 +183,15 @@ $(() => {
       onResponse({}, message);
     };
 
-    return new AjaxPoller(() => Dashboard.get(currentView(), dashboardVM.etag(), true)
-      .then(onsuccess, onerror)
-      .always(() => {
-        personalizeVM.loadingView(false);
-        showSpinner(false);
-      }));
+    return new AjaxPoller(() => {
+      const since = dashboard.lastUpdatedTimestamp();
+      return Dashboard.get(currentView(), dashboardVM.etag(), true, since)
+        .then((data, textStatus, jqXHR) => onsuccess(data, textStatus, jqXHR, since), onerror)
+        .always(() => {
+          personalizeVM.loadingView(false);
+          showSpinner(false);
+        });
+    });
   }
 
   const repeater    = Stream(createRepeater());
@@ -39,8 +39,6 @@ import com.thoughtworks.go.util.Clock;
 import com.thoughtworks.go.util.GoConfigFileHelper;
 import com.thoughtworks.go.util.TestingClock;
 import com.thoughtworks.go.util.TimeProvider;
-import net.sf.ehcache.Element;
-import net.sf.ehcache.event.CacheEventListener;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -1443,7 +1441,7 @@ public class StageSqlMapDaoIntegrationTest {
         Stage stage = stageDao.mostRecentStage(new StageConfigIdentifier(pipelineName, stageName));
         stageDao.findStageHistoryPage(stage, 10); // PRIME CACHE
 
-        CacheEventListener listener = mock(CacheEventListener.class);
+        GoCache.Listener listener = mock(GoCache.Listener.class);
         goCache.addListener(listener);
 
         scheduleUtil.runAndPass(p1, "h1"); // NEW RUN OF STAGE, CACHE SHOULD BE INVALIDATED
@@ -1451,21 +1449,13 @@ public class StageSqlMapDaoIntegrationTest {
         stage = stageDao.mostRecentStage(new StageConfigIdentifier(pipelineName, stageName));
         stageDao.findStageHistoryPage(stage, 10); // SHOULD QUERY AGAIN
 
-        ArgumentCaptor<Element> elementRemovedCaptor = ArgumentCaptor.forClass(Element.class);
-        ArgumentCaptor<Element> elementAddedCaptor = ArgumentCaptor.forClass(Element.class);
-        verify(listener, atLeastOnce()).notifyElementRemoved(any(), elementRemovedCaptor.capture());
-        verify(listener, atLeastOnce()).notifyElementPut(any(), elementAddedCaptor.capture());
+        ArgumentCaptor<String> keysRemovedCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> keysAddedCaptor = ArgumentCaptor.forClass(String.class);
+        verify(listener, atLeastOnce()).entryRemoved(keysRemovedCaptor.capture());
+        verify(listener, atLeastOnce()).entryPut(keysAddedCaptor.capture());
 
-        List<Object> keysThatWereRemoved = new ArrayList<>();
-        List<Object> keysThatWereAdded = new ArrayList<>();
-
-        for (Element element : elementRemovedCaptor.getAllValues()) {
-            keysThatWereRemoved.add(element.getObjectKey());
-        }
-
-        for (Element element : elementAddedCaptor.getAllValues()) {
-            keysThatWereAdded.add(element.getObjectKey());
-        }
+        List<String> keysThatWereRemoved = keysRemovedCaptor.getAllValues();
+        List<String> keysThatWereAdded = keysAddedCaptor.getAllValues();
 
         assertThat(keysThatWereRemoved).contains(
             stageDao.cacheKeyForStageHistories(pipelineName, stageName),
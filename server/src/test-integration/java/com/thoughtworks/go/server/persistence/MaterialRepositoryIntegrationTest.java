@@ -63,6 +63,7 @@ import com.thoughtworks.go.server.transaction.TransactionTemplate;
 import com.thoughtworks.go.server.util.Pagination;
 import com.thoughtworks.go.util.Dates;
 import com.thoughtworks.go.util.SerializationTester;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.TestUtils;
 import com.thoughtworks.go.util.TimeProvider;
 import com.thoughtworks.go.util.json.JsonHelper;
@@ -79,6 +80,9 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import uk.org.webcompere.systemstubs.jupiter.SystemStub;
+import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
+import uk.org.webcompere.systemstubs.properties.SystemProperties;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -89,12 +93,14 @@ import java.util.UUID;
 import static com.thoughtworks.go.domain.buildcause.BuildCause.APPROVER_AUTOMATICALLY_TRIGGERED;
 import static com.thoughtworks.go.helper.ModificationsMother.EMAIL_ADDRESS;
 import static com.thoughtworks.go.helper.ModificationsMother.MOD_USER;
+import static com.thoughtworks.go.server.cache.CacheKeyLocks.lockFor;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
+@ExtendWith(SystemStubsExtension.class)
 @ContextConfiguration(locations = {
         "classpath:/applicationContext-global.xml",
         "classpath:/applicationContext-dataLocalAccess.xml",
@@ -126,6 +132,9 @@ public class MaterialRepositoryIntegrationTest {
     @Autowired
     private Database databaseStrategy;
 
+    @SystemStub
+    private SystemProperties systemProperties;
+
     private HibernateTemplate originalTemplate;
     private final String md5 = "md5-test";
 
@@ -408,9 +417,9 @@ public class MaterialRepositoryIntegrationTest {
     }
 
     @Test
-    public void shouldMaterialCacheKeyShouldReturnTheSameInstance() {
+    public void shouldMaterialCacheKeyShouldMapToTheSameLock() {
         Material svn = MaterialsMother.svnMaterial("url", null, "username", "password", false, null);
-        assertSame(repo.materialKey(svn), repo.materialKey(svn));
+        assertSame(lockFor(repo.materialKey(svn)), lockFor(repo.materialKey(svn)));
     }
 
     @Test
@@ -869,6 +878,42 @@ public class MaterialRepositoryIntegrationTest {
         assertMatchedRevision(revisions.getFirst(), materialRevision.getLatestShortRevision(), materialRevision.getLatestRevisionString(), "pavan", materialRevision.getDateOfLatestModification(), "comment");
     }
 
+    @Test
+    public void shouldMatchRevisionsSavedSinceThePreviousSearch() {
+        ScmMaterial material = material();
+        repo.saveOrUpdate(material.createMaterialInstance());
+        saveOneScmModification("40c95a3c41f54b5fb3107982cf2acd08783f102a", material, "pavan", "meet_you_in_hell.txt", "comment");
+
+        assertThat(repo.findRevisionsMatching(material.config(), "turn_her")).isEmpty();
+        assertThat(repo.findRevisionsMatching(material.config(), "turn")).isEmpty();
+
+        MaterialRevision later = saveOneScmModification("c30c471137f31a4bf735f653f888e799f6deec04", material, "turn_her", "of_course_he_will_be_there_first.txt", "comment");
+
+        List<MatchedRevision> revisions = repo.findRevisionsMatching(material.config(), "turn");
+        assertThat(revisions.size()).isEqualTo(1);
+        assertMatchedRevision(revisions.getFirst(), later.getLatestShortRevision(), later.getLatestRevisionString(), "turn_her", later.getDateOfLatestModification(), "comment");
+    }
+
+    @Test
+    public void shouldSearchMaterialsWithMoreModificationsThanTheIndexCanHoldInTheDatabase() {
+        systemProperties.set(SystemEnvironment.REVISION_SEARCH_INDEX_MAX_MODIFICATIONS.propertyName(), "1");
+        repo = new MaterialRepository(sessionFactory, goCache, 2, transactionSynchronizationManager, materialConfigConverter, materialExpansionService, databaseStrategy);
+        ScmMaterial material = material();
+        repo.saveOrUpdate(material.createMaterialInstance());
+        saveOneScmModification("40c95a3c41f54b5fb3107982cf2acd08783f102a", material, "pavan", "meet_you_in_hell.txt", "comment");
+        MaterialRevision later = saveOneScmModification("c30c471137f31a4bf735f653f888e799f6deec04", material, "turn_her", "of_course_he_will_be_there_first.txt", "comment");
+
+        List<MatchedRevision> revisions = repo.findRevisionsMatching(material.config(), "turn");
+        assertThat(revisions.size()).isEqualTo(1);
+        assertMatchedRevision(revisions.getFirst(), later.getLatestShortRevision(), later.getLatestRevisionString(), "turn_her", later.getDateOfLatestModification(), "comment");
+
+        MaterialRevision latest = saveOneScmModification("2a3b4c5d6e7f8091a2b3c4d5e6f708192a3b4c5d", material, "turn_again", "and_again.txt", "comment");
+
+        revisions = repo.findRevisionsMatching(material.config(), "turn");
+        assertThat(revisions.size()).isEqualTo(2);
+        assertMatchedRevision(revisions.getFirst(), latest.getLatestShortRevision(), latest.getLatestRevisionString(), "turn_again", latest.getDateOfLatestModification(), "comment");
+    }
+
     @Test
     public void shouldMatchPipelineLabelForDependencyModifications() {
         DependencyMaterial material = new DependencyMaterial(new CaseInsensitiveString("pipeline-name"), new CaseInsensitiveString("stage-name"));
@@ -1236,6 +1281,31 @@ public class MaterialRepositoryIntegrationTest {
         assertThat(goCache.get(key, subKey)).isNotNull();
     }
 
+    @Test
+    public void shouldInsertModificationsAlongWithTheirModifiedFilesInBatches() {
+        final GitMaterial material = new GitMaterial(UUID.randomUUID().toString(), "branch");
+        final MaterialInstance materialInstance = repo.findOrCreateFrom(material);
+        final List<Modification> modifications = getModifications(1234);
+        for (Modification modification : modifications) {
+            modification.createModifiedFile("file-" + modification.getRevision(), "folder", ModifiedAction.modified);
+        }
+        transactionTemplate.execute(status -> {
+            repo.saveModifications(materialInstance, modifications);
+            return null;
+        });
+
+        assertThat(repo.getTotalModificationsFor(materialInstance)).isEqualTo(1234L);
+        assertThat(modifications).allMatch(Modification::hasId);
+        assertThat(modifications.getFirst().getId()).isGreaterThan(modifications.getLast().getId());
+
+        Modification fromDb = repo.findModificationWithRevision(material, "r1000");
+        assertThat(fromDb.getId()).isEqualTo(modifications.get(1000).getId());
+        assertThat(fromDb.getComment()).isEqualTo("comment");
+        assertThat(fromDb.getModifiedFiles()).hasSize(1);
+        assertThat(fromDb.getModifiedFiles().getFirst().getFileName()).isEqualTo("file-r1000");
+        assertThat(fromDb.getModifiedFiles().getFirst().getAction()).isEqualTo(ModifiedAction.modified);
+    }
+
     //Slow test - takes ~1 min to run. Will remove if it causes issues. - Jyoti
     @Test
     public void shouldBeAbleToHandleLargeNumberOfModifications() {
@@ -35,6 +35,7 @@ import com.thoughtworks.go.fixture.PipelineWithTwoStages;
 import com.thoughtworks.go.helper.AgentMother;
 import com.thoughtworks.go.helper.SvnTestRepo;
 import com.thoughtworks.go.helper.TestRepo;
+import com.thoughtworks.go.plugin.infra.PluginManager;
 import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.BuildWork;
 import com.thoughtworks.go.remote.work.DeniedAgentWork;
@@ -145,6 +146,8 @@ public class BuildAssignmentServiceIntegrationTest {
     private JobStatusTopic jobStatusTopic;
     @Autowired
     private EntityHashingService entityHashingService;
+    @Autowired
+    private PluginManager pluginManager;
 
     private PipelineConfig evolveConfig;
     private static final String STAGE_NAME = "dev";
@@ -406,7 +409,7 @@ public class BuildAssignmentServiceIntegrationTest {
 
         final BuildAssignmentService buildAssignmentServiceUnderTest = new BuildAssignmentService(goConfigService, mockJobInstanceService, scheduleService,
                 agentService, environmentConfigService, transactionTemplate, scheduledPipelineLoader, pipelineService, builderFactory,
-                maintenanceModeService, elasticAgentPluginService, systemEnvironment, secretParamResolver, jobStatusTopic, consoleService);
+                maintenanceModeService, elasticAgentPluginService, systemEnvironment, secretParamResolver, jobStatusTopic, consoleService, pluginManager);
 
         final Throwable[] fromThread = new Throwable[1];
         buildAssignmentServiceUnderTest.onTimer();
@@ -445,7 +448,7 @@ public class BuildAssignmentServiceIntegrationTest {
 
         buildAssignmentService = new BuildAssignmentService(mockGoConfigService, jobInstanceService, scheduleService, agentService, environmentConfigService,
                 transactionTemplate, scheduledPipelineLoader, pipelineService, builderFactory, maintenanceModeService, elasticAgentPluginService,
-                systemEnvironment, secretParamResolver, jobStatusTopic, consoleService);
+                systemEnvironment, secretParamResolver, jobStatusTopic, consoleService, pluginManager);
         buildAssignmentService.onTimer();
 
         Agent agent = AgentMother.localAgent();
@@ -22,7 +22,6 @@ import com.thoughtworks.go.config.remote.RepoConfigOrigin;
 import com.thoughtworks.go.domain.config.Arguments;
 import com.thoughtworks.go.helper.PartialConfigMother;
 import com.thoughtworks.go.server.service.EntityHashes;
-import com.thoughtworks.go.util.ConfigElementImplementationRegistryMother;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -41,7 +40,7 @@ class PartialConfigHelperTest {
 
     @BeforeEach
     void setup() {
-        hashes = new EntityHashes(ConfigElementImplementationRegistryMother.withNoPlugins());
+        hashes = new EntityHashes();
         helper = new PartialConfigHelper(hashes);
     }
 
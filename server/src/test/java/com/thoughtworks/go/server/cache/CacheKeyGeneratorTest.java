@@ -65,22 +65,16 @@ class CacheKeyGeneratorTest {
     }
 
     @Test
-    void shouldAlwaysReturnInternedString() {
+    void shouldGenerateEqualKeysForEqualArguments() {
         assertThat(cacheKeyGenerator.generate("foo", "bar", new CaseInsensitiveString("1"), 1L))
-            .describedAs("Using '==' to check returned key is interned String")
-            .isSameAs("com.thoughtworks.go.domain.Pipeline.$foo.$bar.$1.$1");
+            .isEqualTo(cacheKeyGenerator.generate("foo", "bar", "1", "1"))
+            .isEqualTo("com.thoughtworks.go.domain.Pipeline.$foo.$bar.$1.$1");
 
-        assertThat(cacheKeyGenerator.generate("foo", 1))
-            .describedAs("Using '==' to check returned key is interned String")
-            .isSameAs("com.thoughtworks.go.domain.Pipeline.$foo.$1");
+        assertThat(cacheKeyGenerator.generate("foo", 1)).isEqualTo("com.thoughtworks.go.domain.Pipeline.$foo.$1");
 
-        assertThat(cacheKeyGenerator.generate("foo", "bar"))
-            .describedAs("Using '==' to check returned key is interned String")
-            .isSameAs("com.thoughtworks.go.domain.Pipeline.$foo.$bar");
+        assertThat(cacheKeyGenerator.generate("foo", "bar")).isEqualTo("com.thoughtworks.go.domain.Pipeline.$foo.$bar");
 
-        assertThat(cacheKeyGenerator.generate("foo", "bar", "baz"))
-            .describedAs("Using '==' to check returned key is interned String")
-            .isSameAs("com.thoughtworks.go.domain.Pipeline.$foo.$bar.$baz");
+        assertThat(cacheKeyGenerator.generate("foo", "bar", "baz")).isEqualTo("com.thoughtworks.go.domain.Pipeline.$foo.$bar.$baz");
     }
 
     @Test
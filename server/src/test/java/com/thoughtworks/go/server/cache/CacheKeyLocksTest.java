@@ -0,0 +1,61 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class CacheKeyLocksTest {
+    @Test
+    void shouldHandOutTheSameLockForEqualKeys() {
+        String key = "com.thoughtworks.go.domain.Pipeline.$foo.$bar";
+        String equalKey = new String(key);
+
+        assertThat(CacheKeyLocks.lockFor(equalKey)).isSameAs(CacheKeyLocks.lockFor(key));
+    }
+
+    @Test
+    void shouldHandOutDifferentLocksForDifferentKeys() {
+        assertThat(CacheKeyLocks.lockFor("com.thoughtworks.go.domain.Pipeline.$foo.$bar"))
+            .isNotSameAs(CacheKeyLocks.lockFor("com.thoughtworks.go.domain.Pipeline.$foo.$baz"));
+    }
+
+    @Test
+    void shouldLetLocksBeCollectedOnceNothingHoldsThem() {
+        String key = "com.thoughtworks.go.domain.Pipeline.$unused";
+        WeakReference<Object> lock = new WeakReference<>(CacheKeyLocks.lockFor(key));
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> {
+            System.gc();
+            return lock.get() == null;
+        });
+    }
+
+    @Test
+    void shouldKeepHandingOutTheSameLockWhileItIsHeld() {
+        String key = "com.thoughtworks.go.domain.Pipeline.$held";
+        Object lock = CacheKeyLocks.lockFor(key);
+
+        System.gc();
+
+        assertThat(CacheKeyLocks.lockFor(new String(key))).isSameAs(lock);
+    }
+}
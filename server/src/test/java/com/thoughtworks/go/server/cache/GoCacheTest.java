@@ -18,18 +18,16 @@ package com.thoughtworks.go.server.cache;
 import com.thoughtworks.go.config.materials.mercurial.HgMaterial;
 import com.thoughtworks.go.domain.MaterialInstance;
 import com.thoughtworks.go.domain.NullUser;
+import com.thoughtworks.go.domain.Pipeline;
 import com.thoughtworks.go.helper.MaterialsMother;
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
 import com.thoughtworks.go.util.LogFixture;
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.config.CacheConfiguration;
-import net.sf.ehcache.config.Configuration;
-import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import org.junit.jupiter.api.*;
 import org.slf4j.event.Level;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static com.thoughtworks.go.util.LogFixture.logFixtureFor;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -38,19 +36,11 @@ import static org.mockito.Mockito.mock;
 
 public class GoCacheTest {
 
-    private static CacheManager cacheManager;
     private GoCache goCache;
 
-    @BeforeAll
-    public static void beforeClass() {
-        cacheManager = CacheManager.newInstance(new Configuration().name(GoCacheTest.class.getName()));
-    }
-
     @BeforeEach
     public void setUp() {
-        Cache cache = new Cache(new CacheConfiguration(getClass().getName(), 100).memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU));
-        cacheManager.addCache(cache);
-        this.goCache = new GoCache(cache, mock(TransactionSynchronizationManager.class));
+        this.goCache = new GoCache(100, Runnable::run, mock(TransactionSynchronizationManager.class));
     }
 
     @AfterEach
@@ -58,11 +48,6 @@ public class GoCacheTest {
         goCache.destroy();
     }
 
-    @AfterAll
-    public static void afterClass() {
-        cacheManager.shutdown();
-    }
-
     @Test
     public void shouldAllowAddingUnpersistedNullObjects() {
         NullUser user = new NullUser();
@@ -171,13 +156,10 @@ public class GoCacheTest {
     }
 
     @Test
-    public void put_shouldNotAllowAdditionOfBaseAndSubKeyPairThatUserInternalDemarkator() {
-        try {
-            goCache.put("foo!_#$", "#_!bar", "baz");
-            fail("should not have allowed use of internal key seperator");
-        } catch (Exception e) {
-            assertThat(e.getMessage()).isEqualTo("Base and sub key concatenation(key = foo!_#$, subkey = #_!bar) must not have pattern !_#$#_!");
-        }
+    public void put_shouldAllowBaseAndSubKeysWithAnyCharacters() {
+        goCache.put("foo!_#$", "#_!bar", "baz");
+        assertThat(goCache.get("foo!_#$", "#_!bar")).isEqualTo("baz");
+        assertThat(goCache.<Object>get("foo!_#$#_!bar")).isNull();
     }
 
 
@@ -193,74 +175,130 @@ public class GoCacheTest {
     }
 
     @Test
-    public void shouldEvictSubkeyFromParentCacheWhenTheSubkeyEntryGetsEvicted() throws InterruptedException {
-        goCache.configuration().setMaxEntriesLocalHeap(2);
-        String parentKey = "parent";
-        goCache.put(parentKey, "child1", "value");
-        assertThat(goCache.<Object>get(parentKey)).isNotNull();
-        assertThat(goCache.<Object>get(parentKey + GoCache.SUB_KEY_DELIMITER + "child1")).isNotNull();
-        Thread.sleep(1);//so that the timestamps on the cache entries are different
-        goCache.put(parentKey, "child2", "value");
-
-        assertThat(goCache.<Object>get(parentKey)).isNotNull();
-        assertThat(goCache.<Object>get(parentKey + GoCache.SUB_KEY_DELIMITER + "child1")).isNull();
-        assertThat(goCache.<Object>get(parentKey + GoCache.SUB_KEY_DELIMITER + "child2")).isNotNull();
-        GoCache.KeyList list = goCache.get(parentKey);
-        assertThat(list.size()).isEqualTo(1);
-        assertThat(list.contains("child2")).isTrue();
+    public void shouldEvictTheLeastRecentlyUsedSubKeysOnceAFamilyOutgrowsHalfOfItsRegion() {
+        goCache.put("parent", "child1", "value");
+        goCache.put("parent", "child2", Collections.nCopies(29, "value"));
+        goCache.get("parent", "child1");
+        goCache.put("parent", "child3", Collections.nCopies(19, "value"));
+        goCache.cleanUp();
+
+        assertThat(goCache.get("parent", "child1")).isEqualTo("value");
+        assertThat(goCache.get("parent", "child2")).isNull();
+        assertThat(goCache.get("parent", "child3")).isEqualTo(Collections.nCopies(19, "value"));
+        assertThat(goCache.getKeys()).containsExactly("parent");
+        assertThat(GoCache.weigh(goCache.get("parent"))).isLessThanOrEqualTo(50);
     }
 
     @Test
-    public void shouldEvictSubkeyFromParentCacheWhenTheSubkeyEntryGetsExpired() throws InterruptedException {
-        goCache.configuration().setEternal(false);
-        goCache.configuration().setTimeToLiveSeconds(1);
-        String parentKey = "parent";
-        goCache.put(parentKey, "child1", "value");
-        assertThat(goCache.<Object>get(parentKey)).isNotNull();
-        assertThat(goCache.<Object>get(parentKey + GoCache.SUB_KEY_DELIMITER + "child1")).isNotNull();
-        waitForCacheElementsToExpire();
-
-        goCache.put(parentKey, "child2", "value");
-        assertThat(goCache.<Object>get(parentKey)).isNotNull();
-        assertThat(goCache.<Object>get(parentKey + GoCache.SUB_KEY_DELIMITER + "child1")).isNull();
-        assertThat(goCache.<Object>get(parentKey + GoCache.SUB_KEY_DELIMITER + "child2")).isNotNull();
-        GoCache.KeyList list = goCache.get(parentKey);
-        assertThat(list.size()).isEqualTo(1);
-        assertThat(list.contains("child2")).isTrue();
+    public void shouldKeepTheLatestSubKeysOfALargeFamily() {
+        goCache = new GoCache(10_000, Runnable::run, mock(TransactionSynchronizationManager.class));
+        goCache.put("other", "value");
+        for (int i = 0; i < 100_000; i++) {
+            goCache.put("urls_cache", "url-" + i, "/go/pipelines/" + i);
+        }
+        goCache.cleanUp();
+
+        assertThat(goCache.get("urls_cache", "url-99999")).isEqualTo("/go/pipelines/99999");
+        assertThat(goCache.get("urls_cache", "url-0")).isNull();
+        assertThat(goCache.<Object>get("other")).isEqualTo("value");
+        assertThat(GoCache.weigh(goCache.get("urls_cache"))).isLessThanOrEqualTo(5_000);
+        assertThat(statisticsFor(GoCache.DEFAULT_REGION).stats().evictionCount()).isZero();
     }
 
     @Test
-    public void shouldEvictAllSubkeyCacheEntriesWhenTheParentEntryGetsEvicted() throws InterruptedException {
-        goCache.configuration().setMaxEntriesLocalHeap(2);
-        String parentKey = "parent";
-        goCache.put(parentKey, new GoCache.KeyList());
-        assertThat(goCache.<Object>get(parentKey)).isNotNull();
-        goCache.put(parentKey, "child1", "value");
-        Thread.sleep(1); //so that the timestamps on the cache entries are different
-        goCache.get(parentKey, "child1");  //so that the parent is least recently used
-        Thread.sleep(1); //so that the timestamps on the cache entries are different
-        goCache.put("unrelatedkey", "value");
-        waitForCacheElementsToExpire();
-        assertThat(goCache.getKeys().size()).isEqualTo(1);
-        assertThat(goCache.<Object>get("unrelatedkey")).isEqualTo("value");
+    public void shouldRemoveSubKeyFromItsFamily() {
+        goCache.put("parent", "child1", "value");
+        goCache.put("parent", "child2", "value");
+        goCache.remove("parent", "child1");
+
+        assertThat(goCache.getSubKeys("parent")).containsExactly("child2");
+        assertThat(goCache.getSubKeys("missing")).isEmpty();
     }
 
     @Test
-    public void shouldHandleNonSerializableValuesDuringEviction() throws InterruptedException {
-        goCache.configuration().setMaxEntriesLocalHeap(1);
-        NonSerializableClass value = new NonSerializableClass();
-        String key = "key";
-        goCache.put(key, value);
-        Thread.sleep(1);//so that the timestamps on the cache entries are different
-        goCache.put("another_entry", "value");
-        assertThat(goCache.<Object>get(key)).isNull();
+    public void shouldBoundEachRegionByItsOwnWeight() {
+        goCache = new GoCache(10, Runnable::run, mock(TransactionSynchronizationManager.class));
+        goCache.put("com.example.SmallDao_key", "value");
+        for (int i = 0; i < 5; i++) {
+            goCache.put("com.example.BigDao_key_" + i, List.of("a", "b"));
+        }
+        goCache.cleanUp();
+
+        assertThat(goCache.<Object>get("com.example.SmallDao_key")).isEqualTo("value");
+        assertThat(statisticsFor("BigDao").weight()).isLessThanOrEqualTo(10);
+        assertThat(statisticsFor("BigDao").stats().evictionCount()).isPositive();
+        assertThat(statisticsFor("SmallDao").stats().evictionCount()).isZero();
     }
 
+    @Test
+    public void shouldShareTheWeightLimitOfTheCacheBetweenItsRegions() {
+        for (int region = 0; region < 10; region++) {
+            for (int i = 0; i < 50; i++) {
+                goCache.put("com.example.Region" + region + "Dao_key_" + i, "value");
+            }
+        }
+        goCache.cleanUp();
 
-    private static class NonSerializableClass {
+        List<GoCache.RegionStatistics> regions = goCache.regionStatistics();
+        assertThat(regions).hasSize(10);
+        assertThat(regions.stream().mapToLong(GoCache.RegionStatistics::weightLimit).sum()).isEqualTo(100);
+        assertThat(regions.stream().mapToLong(GoCache.RegionStatistics::weight).sum()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void shouldGiveTheWeightOtherRegionsLeaveUnusedToTheRegionsThatAreFull() {
+        goCache.put("com.example.SmallDao_key", "value");
+        for (int i = 0; i < 200; i++) {
+            goCache.put("com.example.BigDao_key_" + i, "value");
+        }
+        goCache.cleanUp();
+
+        goCache.rebalance();
+        for (int i = 200; i < 400; i++) {
+            goCache.put("com.example.BigDao_key_" + i, "value");
+        }
+        goCache.cleanUp();
+
+        assertThat(statisticsFor("BigDao").weightLimit()).isGreaterThan(50);
+        assertThat(statisticsFor("BigDao").weight()).isGreaterThan(50);
+        assertThat(goCache.<Object>get("com.example.SmallDao_key")).isEqualTo("value");
+    }
+
+    @Test
+    public void shouldReportHitsAndMissesPerRegion() {
+        goCache.put("com.example.FooDao_key", "value");
+        goCache.get("com.example.FooDao_key");
+        goCache.get("com.example.FooDao_missing");
+        goCache.get("com.example.BarDao_missing");
+
+        GoCache.RegionStatistics foo = statisticsFor("FooDao");
+        assertThat(foo.entries()).isEqualTo(1);
+        assertThat(foo.weight()).isEqualTo(1);
+        assertThat(foo.weightLimit() + statisticsFor("BarDao").weightLimit()).isEqualTo(100);
+        assertThat(foo.stats().hitCount()).isEqualTo(1);
+        assertThat(foo.stats().missCount()).isEqualTo(1);
+        assertThat(statisticsFor("BarDao").stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldAssignKeysToTheRegionOfTheClassThatOwnsThem() {
+        assertThat(GoCache.regionOf(new CacheKeyGenerator(Pipeline.class).generate("foo", "bar"))).isEqualTo("Pipeline");
+        assertThat(GoCache.regionOf("com.thoughtworks.go.server.persistence.MaterialRepository_pmrModifications_1")).isEqualTo("MaterialRepository");
+        assertThat(GoCache.regionOf("foo")).isEqualTo(GoCache.DEFAULT_REGION);
+        assertThat(GoCache.regionOf("views/foo.bar")).isEqualTo(GoCache.DEFAULT_REGION);
+        assertThat(GoCache.regionOf("")).isEqualTo(GoCache.DEFAULT_REGION);
+    }
+
+    @Test
+    public void shouldWeighEntriesByTheNumberOfElementsTheyHold() {
+        assertThat(GoCache.weigh("value")).isEqualTo(1);
+        assertThat(GoCache.weigh(null)).isEqualTo(1);
+        assertThat(GoCache.weigh(List.of(1, 2, 3))).isEqualTo(4);
+        assertThat(GoCache.weigh(Map.of("a", 1))).isEqualTo(2);
+        assertThat(GoCache.weigh(new String[]{"a", "b"})).isEqualTo(3);
     }
 
-    private void waitForCacheElementsToExpire() throws InterruptedException {
-        Thread.sleep(2000);
+    private GoCache.RegionStatistics statisticsFor(String region) {
+        return goCache.regionStatistics().stream().filter(statistics -> statistics.region().equals(region)).findFirst().orElseThrow();
     }
 }
@@ -18,15 +18,22 @@ package com.thoughtworks.go.server.cache;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.service.ArtifactsDirHolder;
 import com.thoughtworks.go.server.web.ArtifactFolder;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.TestFileUtil;
 import com.thoughtworks.go.util.ZipUtil;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
@@ -45,6 +52,8 @@ public class ZipArtifactCacheTest {
     @TempDir
     File folder;
     private ArtifactFolder artifactFolder;
+    private ArtifactsDirHolder artifactsDirHolder;
+    private final SystemEnvironment systemEnvironment = new SystemEnvironment();
 
     @BeforeEach
     public void setUp() throws Exception {
@@ -53,12 +62,18 @@ public class ZipArtifactCacheTest {
         TestFileUtil.createTestFolder(artifact, "dir");
         TestFileUtil.createTestFile(artifact, "dir/file1");
 
-        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        artifactsDirHolder = mock(ArtifactsDirHolder.class);
         when(artifactsDirHolder.getArtifactsDir()).thenReturn(folder);
-        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, new ZipUtil());
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, new ZipUtil(), systemEnvironment);
         artifactFolder = new ArtifactFolder(JOB_IDENTIFIER, new File(artifact, "dir"), "dir");
     }
 
+    @AfterEach
+    public void tearDown() {
+        systemEnvironment.reset(SystemEnvironment.GO_ARTIFACT_ZIP_CACHE_MAX_SIZE_MB);
+        systemEnvironment.reset(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED);
+    }
+
     @Test
     public void shouldKnowWhenCacheAlreadyCreated() throws Exception {
         zipArtifactCache.createCachedFile(artifactFolder);
@@ -111,6 +126,79 @@ public class ZipArtifactCacheTest {
         assertThat(new File(cacheDir, "dir/file1")).exists();
     }
 
+    @Test
+    public void shouldStreamZipWhileCachingIt() throws Exception {
+        systemEnvironment.set(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED, true);
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, new ZipUtil(), systemEnvironment);
+        assertThat(zipArtifactCache.shouldStream(artifactFolder)).isTrue();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        zipArtifactCache.streamTo(artifactFolder, streamed);
+
+        File cachedZip = zipArtifactCache.cachedFile(artifactFolder);
+        assertThat(cachedZip).hasBinaryContent(streamed.toByteArray());
+        assertThat(new File(cachedZip.getParentFile(), "dir.zip.tmp")).doesNotExist();
+        assertThat(zipArtifactCache.shouldStream(artifactFolder)).isFalse();
+        assertThat(zipArtifactCache.cacheCreated(artifactFolder)).isTrue();
+    }
+
+    @Test
+    public void shouldNotStreamZipWhichIsAlreadyBeingCreated() {
+        systemEnvironment.set(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED, true);
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, new ZipUtil(), systemEnvironment);
+        zipArtifactCache.pendingCacheFiles.add(artifactFolder);
+
+        assertThat(zipArtifactCache.shouldStream(artifactFolder)).isFalse();
+    }
+
+    @Test
+    public void shouldStreamZipOnACacheCreatorThread() throws Exception {
+        systemEnvironment.set(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED, true);
+        List<String> zippingThreads = new ArrayList<>();
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, new ZipUtil() {
+            @Override
+            public void zip(File file, OutputStream output, int level) throws IOException {
+                zippingThreads.add(Thread.currentThread().getName());
+                super.zip(file, output, level);
+            }
+        }, systemEnvironment);
+
+        zipArtifactCache.streamTo(artifactFolder, new ByteArrayOutputStream());
+        zipArtifactCache.pendingCacheFiles.add(artifactFolder);
+        zipArtifactCache.streamTo(artifactFolder, new ByteArrayOutputStream());
+
+        assertThat(zippingThreads).hasSize(2).allMatch(name -> name.startsWith("cache-creator-thread-"));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedZipsOnceTheCacheIsFull() throws Exception {
+        systemEnvironment.set(SystemEnvironment.GO_ARTIFACT_ZIP_CACHE_MAX_SIZE_MB, 1L);
+        zipArtifactCache = new ZipArtifactCache(artifactsDirHolder, new ZipUtil(), systemEnvironment);
+        ArtifactFolder leastRecentlyUsed = artifactFolderWithRandomContent("least-recently-used");
+        ArtifactFolder recentlyUsed = artifactFolderWithRandomContent("recently-used");
+        ArtifactFolder created = artifactFolderWithRandomContent("created");
+
+        zipArtifactCache.createCachedFile(leastRecentlyUsed);
+        zipArtifactCache.cachedFile(leastRecentlyUsed).setLastModified(System.currentTimeMillis() - 60_000);
+        zipArtifactCache.createCachedFile(recentlyUsed);
+        zipArtifactCache.cachedFile(recentlyUsed).setLastModified(System.currentTimeMillis() - 120_000);
+        assertThat(zipArtifactCache.cacheCreated(recentlyUsed)).isTrue();
+
+        zipArtifactCache.createCachedFile(created);
+
+        assertThat(zipArtifactCache.cachedFile(leastRecentlyUsed)).doesNotExist();
+        assertThat(zipArtifactCache.cachedFile(recentlyUsed)).exists();
+        assertThat(zipArtifactCache.cachedFile(created)).exists();
+    }
+
+    private ArtifactFolder artifactFolderWithRandomContent(String name) throws IOException {
+        File dir = new File(folder, JOB_FOLDERS + "/" + name);
+        byte[] content = new byte[400 * 1024];
+        new Random().nextBytes(content);
+        FileUtils.writeByteArrayToFile(new File(dir, "file"), content);
+        return new ArtifactFolder(JOB_IDENTIFIER, dir, name);
+    }
+
     private void waitForCacheCreated() throws Exception {
         long waitUntil = System.currentTimeMillis() + SECONDS.toMillis(2);
         while (System.currentTimeMillis() <= waitUntil && !zipArtifactCache.cacheCreated(artifactFolder)) {
@@ -27,18 +27,24 @@ import com.thoughtworks.go.server.web.ResponseCodeView;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.mock.web.MockMultipartHttpServletRequest;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
 import org.springframework.web.servlet.ModelAndView;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.util.zip.GZIPOutputStream;
 
 import static com.thoughtworks.go.remote.StandardHeaders.REQUEST_CONFIRM_MODIFICATION;
+import static com.thoughtworks.go.remote.StandardHeaders.REQUEST_CONSOLE_ENCODING;
 import static com.thoughtworks.go.util.GoConstants.*;
 import static java.net.HttpURLConnection.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -82,6 +88,26 @@ public class ArtifactsControllerTest {
         verify(consoleActivityMonitor).consoleUpdatedFor(jobIdentifier);
     }
 
+    @Test
+    public void shouldInflateGzippedConsoleLogPut() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("first line\nsecond line\n".getBytes(UTF_8));
+        }
+        request.setContent(compressed.toByteArray());
+        request.addHeader(REQUEST_CONSOLE_ENCODING, "gzip");
+        JobIdentifier jobIdentifier = new JobIdentifier("pipeline", 10, "label-10", "stage", "2", "build", 103L);
+        when(restfulService.findJob("pipeline", "10", "stage", "2", "build", 103L)).thenReturn(jobIdentifier);
+        File artifactFile = new File("junk");
+        when(consoleService.consoleLogFile(jobIdentifier)).thenReturn(artifactFile);
+        ArgumentCaptor<InputStream> appended = ArgumentCaptor.forClass(InputStream.class);
+        when(consoleService.appendToConsoleLogIoSafe(eq(artifactFile), appended.capture())).thenReturn(true);
+
+        artifactsController.putArtifact("pipeline", "10", "stage", "2", "build", 103L, "cruise-output/console.log", "agent-id", request);
+
+        assertThat(new String(appended.getValue().readAllBytes(), UTF_8)).isEqualTo("first line\nsecond line\n");
+    }
+
     @Test
     public void testConsoleOutShouldReturnErrorWhenJobHasBeenCompletedAndLogsNotFound() {
         JobIdentifier jobIdentifier = new JobIdentifier("pipeline", 10, "label-10", "stage", "2", "build", 103L);
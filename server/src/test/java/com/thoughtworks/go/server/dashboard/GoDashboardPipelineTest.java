@@ -29,6 +29,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.thoughtworks.go.domain.PipelinePauseInfo.notPaused;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -109,4 +110,15 @@ public class GoDashboardPipelineTest {
 
         assertThat(pipeline.getLastUpdatedTimeStamp()).isEqualTo(1000L);
     }
+
+    @Test
+    public void shouldSerializeEachVariantOnlyOnce() {
+        GoDashboardPipeline pipeline = new GoDashboardPipeline(new PipelineModel("pipeline1", false, false, notPaused()), null, "group1", mock(TimeStampBasedCounter.class), PipelineConfigMother.pipelineConfig("pipeline1"));
+        AtomicInteger serializations = new AtomicInteger();
+
+        assertThat(pipeline.jsonFragment("operator", () -> "{\"n\":" + serializations.incrementAndGet() + "}")).isEqualTo("{\"n\":1}");
+        assertThat(pipeline.jsonFragment("operator", () -> "{\"n\":" + serializations.incrementAndGet() + "}")).isEqualTo("{\"n\":1}");
+        assertThat(pipeline.jsonFragment("viewer", () -> "{\"n\":" + serializations.incrementAndGet() + "}")).isEqualTo("{\"n\":2}");
+        assertThat(serializations.get()).isEqualTo(2);
+    }
 }
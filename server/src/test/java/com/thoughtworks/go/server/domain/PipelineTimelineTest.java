@@ -28,8 +28,13 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionSynchronization;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -221,6 +226,75 @@ public class PipelineTimelineTest {
         assertThat(timeline.instanceFor(new CaseInsensitiveString("pipeline"), 1)).isEqualTo(second);
     }
 
+    @Test
+    public void shouldNotPublishNewInstancesBeforeTheTransactionCommits() {
+        stubTransactionSynchronization();
+        final PipelineTimeline timeline = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager);
+        stubPipelineRepository(timeline, true, first, second);
+        when(transactionTemplate.execute(any())).thenAnswer(invocationOnMock -> {
+            ((TransactionCallback<?>) invocationOnMock.getArguments()[0]).doInTransaction(null);
+            assertThat(timeline.instanceCount(new CaseInsensitiveString("pipeline"))).isZero();
+            assertThat(timeline.maximumId()).isEqualTo(-1L);
+            transactionSynchronization.afterCommit();
+            return null;
+        });
+
+        timeline.update();
+
+        assertThat(timeline.instanceCount(new CaseInsensitiveString("pipeline"))).isEqualTo(2);
+        assertThat(timeline.maximumId()).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldKeepTheInstancesOfAnUpdateWhichCommittedWhileAnotherWasWaitingToCommit() {
+        stubTransactionSynchronization();
+        final PipelineTimeline timeline = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager);
+        timeline.add(first);
+        List<TransactionSynchronization> waitingToCommit = new ArrayList<>();
+        when(transactionTemplate.execute(any())).thenAnswer(invocationOnMock -> {
+            ((TransactionCallback<?>) invocationOnMock.getArguments()[0]).doInTransaction(null);
+            waitingToCommit.add(transactionSynchronization);
+            return null;
+        });
+
+        stubPipelineRepository(timeline, true, third);
+        timeline.update();
+        stubPipelineRepository(timeline, false, second);
+        timeline.update();
+
+        waitingToCommit.get(1).afterCommit();
+        waitingToCommit.get(0).afterCommit();
+
+        assertThat(timeline.getEntriesFor("pipeline")).containsExactlyInAnyOrder(first, second, third);
+        assertThat(timeline.instanceCount(new CaseInsensitiveString("pipeline"))).isEqualTo(3);
+        assertThat(timeline.maximumId()).isEqualTo(3L);
+    }
+
+    @Test
+    public void shouldNotBlockReadersWhileAnUpdateIsInProgress() throws Exception {
+        stubTransactionSynchronization();
+        setupTransactionTemplateStub(TransactionSynchronization.STATUS_COMMITTED, true);
+        final PipelineTimeline timeline = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager);
+        timeline.add(first);
+
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            doAnswer(invocationOnMock -> {
+                timeline.add(second);
+                Future<Integer> instanceCount = reader.submit(() -> timeline.instanceCount(new CaseInsensitiveString("pipeline")));
+                assertThat(instanceCount.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+                return null;
+            }).when(pipelineRepository).updatePipelineTimeline(eq(timeline), anyList());
+
+            timeline.update();
+        } finally {
+            reader.shutdownNow();
+        }
+
+        assertThat(timeline.instanceCount(new CaseInsensitiveString("pipeline"))).isEqualTo(2);
+        assertThat(timeline.getEntryFor(new CaseInsensitiveString("pipeline"), 2)).isEqualTo(second);
+    }
+
     @SuppressWarnings("unchecked")
     private void stubPipelineRepository(final PipelineTimeline timeline, boolean restub, final PipelineTimelineEntry... entries) {
         repositoryEntries = entries;
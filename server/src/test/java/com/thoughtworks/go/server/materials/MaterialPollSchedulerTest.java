@@ -0,0 +1,135 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.materials;
+
+import com.thoughtworks.go.domain.MaterialInstance;
+import com.thoughtworks.go.domain.materials.Material;
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.Modifications;
+import com.thoughtworks.go.helper.MaterialsMother;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.TimeProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static com.thoughtworks.go.util.SystemEnvironment.GO_MATERIAL_POLL_ADAPTIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MaterialPollSchedulerTest {
+    private static final long IDLE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final Material material = MaterialsMother.gitMaterial("https://example.com/repo.git");
+    private final MaterialInstance materialInstance = mock(MaterialInstance.class);
+    private final SystemEnvironment systemEnvironment = new SystemEnvironment();
+    private MaterialRepository materialRepository;
+    private TimeProvider timeProvider;
+    private MaterialPollScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        materialRepository = mock(MaterialRepository.class);
+        timeProvider = mock(TimeProvider.class);
+        when(timeProvider.currentTimeMillis()).thenReturn(NOW);
+        systemEnvironment.set(GO_MATERIAL_POLL_ADAPTIVE, true);
+        scheduler = new MaterialPollScheduler(materialRepository, systemEnvironment, timeProvider);
+    }
+
+    @AfterEach
+    void tearDown() {
+        systemEnvironment.reset(GO_MATERIAL_POLL_ADAPTIVE);
+    }
+
+    @Test
+    void shouldPollEveryMaterialOnTheIdleIntervalUnlessAdaptivePollingIsEnabled() {
+        systemEnvironment.reset(GO_MATERIAL_POLL_ADAPTIVE);
+        scheduler = new MaterialPollScheduler(materialRepository, systemEnvironment, timeProvider);
+
+        assertThat(scheduler.pollIntervalFor(material)).isEqualTo(IDLE_INTERVAL);
+        verifyNoInteractions(materialRepository);
+    }
+
+    @Test
+    void shouldPollMaterialsWithoutAnyHistoryOnTheIdleInterval() {
+        assertThat(scheduler.pollIntervalFor(material)).isEqualTo(IDLE_INTERVAL);
+    }
+
+    @Test
+    void shouldPollMaterialsWhichChangeOftenOnTheIdleInterval() {
+        givenHistory(modification("c", NOW - minutes(1)), modification("b", NOW - minutes(3)), modification("a", NOW - minutes(5)));
+
+        assertThat(scheduler.pollIntervalFor(material)).isEqualTo(IDLE_INTERVAL);
+    }
+
+    @Test
+    void shouldBackOffMaterialsWhichRarelyChange() {
+        givenHistory(modification("c", NOW - minutes(60)), modification("b", NOW - minutes(24 * 60)), modification("a", NOW - minutes(72 * 60)));
+
+        assertThat(scheduler.pollIntervalFor(material)).isEqualTo(MAX_INTERVAL);
+    }
+
+    @Test
+    void shouldPollMoreOftenOnceAQuietMaterialStartsChanging() {
+        givenHistory(modification("b", NOW - minutes(100)), modification("a", NOW - minutes(200)));
+        assertThat(scheduler.pollIntervalFor(material)).isEqualTo(minutes(10));
+
+        when(timeProvider.currentTimeMillis()).thenReturn(NOW + minutes(20));
+        givenLatest(modification("c", NOW + minutes(20)));
+        scheduler.materialUpdated(material);
+        when(timeProvider.currentTimeMillis()).thenReturn(NOW + minutes(30));
+        givenLatest(modification("d", NOW + minutes(30)));
+        scheduler.materialUpdated(material);
+
+        assertThat(scheduler.pollIntervalFor(material)).isLessThan(minutes(10));
+    }
+
+    @Test
+    void shouldOnlyPollMaterialsRecentlyNotifiedThroughAWebhookOnTheMaximumInterval() {
+        givenHistory(modification("c", NOW - minutes(1)), modification("b", NOW - minutes(3)));
+
+        scheduler.materialNotified(material);
+        assertThat(scheduler.pollIntervalFor(material)).isEqualTo(MAX_INTERVAL);
+
+        when(timeProvider.currentTimeMillis()).thenReturn(NOW + MAX_INTERVAL);
+        assertThat(scheduler.pollIntervalFor(material)).isLessThan(MAX_INTERVAL);
+    }
+
+    private void givenHistory(Modification... latestFirst) {
+        when(materialRepository.findMaterialInstance(material)).thenReturn(materialInstance);
+        when(materialRepository.getModificationsFor(eq(materialInstance), any())).thenReturn(new Modifications(latestFirst));
+    }
+
+    private void givenLatest(Modification latest) {
+        when(materialRepository.getModificationsFor(eq(materialInstance), any())).thenReturn(new Modifications(latest));
+    }
+
+    private static Modification modification(String revision, long modifiedAt) {
+        return new Modification("user", "comment", "user@example.com", new Date(modifiedAt), revision);
+    }
+
+    private static long minutes(long minutes) {
+        return TimeUnit.MINUTES.toMillis(minutes);
+    }
+}
@@ -59,6 +59,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import static com.thoughtworks.go.helper.MaterialUpdateMessageMatcher.matchMaterialUpdateMessage;
@@ -534,5 +535,22 @@ public class MaterialUpdateServiceTest {
             verifyNoMoreInteractions(mduPerformanceLogger);
             verifyNoMoreInteractions(queue);
         }
+
+        @Test
+        void shouldUpdatePolledMaterialsWhichMaterialSourcesWereNotifiedOf() {
+            GitMaterial polledMaterial = MaterialsMother.gitMaterial("http://polled.repo");
+            when(goConfigService.currentCruiseConfig()).thenReturn(mock(CruiseConfig.class));
+            when(materialConfigConverter.toMaterials(anySet())).thenReturn(Set.of());
+            when(scmMaterialSource.materialsNotified(any())).thenAnswer(invocation -> {
+                UnaryOperator<Set<Material>> notified = invocation.getArgument(0);
+                return notified.apply(Set.of(polledMaterial, svnMaterial));
+            });
+
+            boolean materialUpdated = service.updateGitMaterial("master", List.of("http://polled.repo"), emptyList());
+
+            assertThat(materialUpdated).isTrue();
+            verify(queue).post(matchMaterialUpdateMessage(polledMaterial));
+            verifyNoMoreInteractions(queue);
+        }
     }
 }
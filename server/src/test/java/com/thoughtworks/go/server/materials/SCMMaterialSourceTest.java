@@ -15,8 +15,11 @@
  */
 package com.thoughtworks.go.server.materials;
 
+import com.thoughtworks.go.config.BasicCruiseConfig;
 import com.thoughtworks.go.config.CruiseConfig;
 import com.thoughtworks.go.config.PipelineConfig;
+import com.thoughtworks.go.config.materials.MaterialConfigs;
+import com.thoughtworks.go.config.materials.git.GitMaterial;
 import com.thoughtworks.go.config.materials.git.GitMaterialConfig;
 import com.thoughtworks.go.config.remote.ConfigRepoConfig;
 import com.thoughtworks.go.domain.materials.Material;
@@ -24,8 +27,11 @@ import com.thoughtworks.go.domain.materials.MaterialConfig;
 import com.thoughtworks.go.domain.packagerepository.PackageDefinition;
 import com.thoughtworks.go.domain.packagerepository.PackageRepository;
 import com.thoughtworks.go.domain.scm.SCM;
+import com.thoughtworks.go.helper.GoConfigMother;
+import com.thoughtworks.go.helper.MaterialConfigsMother;
 import com.thoughtworks.go.helper.MaterialsMother;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.GoConfigService;
 import com.thoughtworks.go.server.service.MaterialConfigConverter;
 import com.thoughtworks.go.serverhealth.ServerHealthService;
@@ -39,6 +45,7 @@ import org.mockito.ArgumentCaptor;
 
 import java.time.Instant;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptySet;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -55,6 +62,7 @@ public class SCMMaterialSourceTest {
     private MaterialConfigConverter materialConfigConverter;
     private MaterialUpdateService materialUpdateService;
     private TimeProvider timeProvider;
+    private MaterialPollScheduler pollScheduler;
 
     @BeforeEach
     public void setUp() {
@@ -64,13 +72,15 @@ public class SCMMaterialSourceTest {
         materialConfigConverter = mock(MaterialConfigConverter.class);
         materialUpdateService = mock(MaterialUpdateService.class);
         timeProvider = mock(TimeProvider.class);
+        pollScheduler = new MaterialPollScheduler(mock(MaterialRepository.class), systemEnvironment, timeProvider);
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, materialConfigConverter, materialUpdateService, timeProvider);
+        source = new SCMMaterialSource(goConfigService, materialConfigConverter, materialUpdateService, pollScheduler, timeProvider);
     }
 
     @AfterEach
     public void tearDown() {
         systemEnvironment.reset(SystemEnvironment.MATERIAL_UPDATE_INACTIVE_TIMEOUT_IN_MINUTES);
+        systemEnvironment.reset(SystemEnvironment.GO_MATERIAL_POLL_ADAPTIVE);
     }
 
     @Test
@@ -107,6 +117,69 @@ public class SCMMaterialSourceTest {
         assertTrue(materials.contains(gitMaterial));
     }
 
+    @Test
+    public void shouldListTheMostOverdueMaterialsFirst() {
+        Material hgMaterial = MaterialsMother.hgMaterial();
+        Set<MaterialConfig> schedulableMaterialConfigs = Set.of(svnMaterial.config(), gitMaterial.config(), hgMaterial.config());
+        when(goConfigService.getSchedulableSCMMaterials()).thenReturn(schedulableMaterialConfigs);
+        when(materialConfigConverter.toMaterials(schedulableMaterialConfigs)).thenReturn(Set.of(svnMaterial, gitMaterial, hgMaterial));
+
+        long now = Instant.now().toEpochMilli();
+        when(timeProvider.currentTimeMillis()).thenReturn(now - 120_000);
+        source.onMaterialUpdate(svnMaterial);
+        when(timeProvider.currentTimeMillis()).thenReturn(now - 300_000);
+        source.onMaterialUpdate(gitMaterial);
+
+        when(timeProvider.currentTimeMillis()).thenReturn(now);
+        Set<Material> materials = source.materialsForUpdate();
+
+        assertThat(materials).containsExactly(hgMaterial, gitMaterial, svnMaterial);
+    }
+
+    @Test
+    public void shouldPollAutoUpdateMaterialsNotifiedThroughAWebhookLessOften() {
+        systemEnvironment.set(SystemEnvironment.GO_MATERIAL_POLL_ADAPTIVE, true);
+        MaterialRepository materialRepository = mock(MaterialRepository.class);
+        pollScheduler = new MaterialPollScheduler(materialRepository, systemEnvironment, timeProvider);
+        MaterialConfigConverter converter = new MaterialConfigConverter();
+        source = new SCMMaterialSource(goConfigService, converter, materialUpdateService, pollScheduler, timeProvider);
+
+        GitMaterialConfig polledConfig = MaterialConfigsMother.gitMaterialConfig("http://polled.repo");
+        GitMaterialConfig notPolledConfig = MaterialConfigsMother.gitMaterialConfig("http://not-polled.repo");
+        notPolledConfig.setAutoUpdate(false);
+        BasicCruiseConfig config = new BasicCruiseConfig();
+        new GoConfigMother().addPipeline(config, "polled", "stage", new MaterialConfigs(polledConfig), "job");
+        new GoConfigMother().addPipeline(config, "not-polled", "stage", new MaterialConfigs(notPolledConfig), "job");
+        when(goConfigService.getCurrentConfig()).thenReturn(config);
+        when(goConfigService.getSchedulableMaterials()).thenCallRealMethod();
+        when(goConfigService.getSchedulableSCMMaterials()).thenCallRealMethod();
+        Material polled = converter.toMaterial(polledConfig);
+        Material notPolled = converter.toMaterial(notPolledConfig);
+
+        long now = Instant.now().toEpochMilli();
+        when(timeProvider.currentTimeMillis()).thenReturn(now);
+        source.onMaterialUpdate(polled);
+
+        Set<Material> notified = source.materialsNotified(materials -> materials.stream()
+                .filter(material -> material instanceof GitMaterial)
+                .collect(Collectors.toSet()));
+
+        assertThat(notified).containsExactly(polled);
+        verify(materialRepository, never()).findMaterialInstance(notPolled);
+
+        when(timeProvider.currentTimeMillis()).thenReturn(now + systemEnvironment.getMaterialUpdateIdleInterval());
+        assertThat(source.materialsForUpdate()).isEmpty();
+    }
+
+    @Test
+    public void shouldNotLookAtNotificationsWhenPollingIsNotAdaptive() {
+        Set<MaterialConfig> schedulableMaterialConfigs = Set.of(gitMaterial.config());
+        when(goConfigService.getSchedulableSCMMaterials()).thenReturn(schedulableMaterialConfigs);
+        when(materialConfigConverter.toMaterials(schedulableMaterialConfigs)).thenReturn(Set.of(gitMaterial));
+
+        assertThat(source.materialsNotified(materials -> materials)).isEmpty();
+    }
+
     @Test
     public void shouldListenToConfigChange() {
         source = spy(source);
@@ -127,7 +200,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(emptySet())
                 .thenReturn(Set.of(gitMaterial));
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService, timeProvider);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollScheduler, timeProvider);
         source.initialize();
 
         EntityConfigChangedListener<PipelineConfig> entityConfigChangedListener = captor.getAllValues().get(1);
@@ -154,7 +227,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(Set.of(gitMaterial));
 
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService, timeProvider);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollScheduler, timeProvider);
         source.initialize();
 
         EntityConfigChangedListener<PackageDefinition> entityConfigChangedListener = captor.getAllValues().get(1);
@@ -180,7 +253,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(emptySet())
                 .thenReturn(Set.of(gitMaterial));
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService, timeProvider);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollScheduler, timeProvider);
         source.initialize();
 
         EntityConfigChangedListener<PackageRepository> entityConfigChangedListener = captor.getAllValues().get(1);
@@ -206,7 +279,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(emptySet())
                 .thenReturn(Set.of(gitMaterial));
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService, timeProvider);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollScheduler, timeProvider);
         source.initialize();
 
         EntityConfigChangedListener<SCM> entityConfigChangedListener = captor.getAllValues().get(1);
@@ -0,0 +1,191 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.*;
+import com.thoughtworks.go.server.service.support.DaemonThreadStatsCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.*;
+
+public class InMemoryMessagingServiceTest {
+    private InMemoryMessagingService messaging;
+
+    @BeforeEach
+    public void setUp() {
+        messaging = new InMemoryMessagingService(new DaemonThreadStatsCollector(), 100, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        messaging.stop();
+    }
+
+    @Test
+    public void shouldDeliverTopicMessagesToEveryListener() {
+        GoMessageTopic<GoTextMessage> topic = new GoMessageTopic<>(messaging, "topic");
+        Queue<String> first = new ConcurrentLinkedQueue<>();
+        Queue<String> second = new ConcurrentLinkedQueue<>();
+        topic.addListener(message -> first.add(message.getText()));
+        topic.addListener(message -> second.add(message.getText()));
+
+        topic.post(new GoTextMessage("Hello"));
+        topic.post(new GoTextMessage("World"));
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(first).containsExactly("Hello", "World");
+            assertThat(second).containsExactly("Hello", "World");
+        });
+    }
+
+    @Test
+    public void shouldNotDeliverTopicMessagesToListenersAfterTheyAreStopped() throws Exception {
+        GoMessageTopic<GoTextMessage> topic = new GoMessageTopic<>(messaging, "topic");
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        MessageListenerHandle handle = topic.addListener(message -> received.add(message.getText()));
+
+        handle.stop();
+        topic.post(new GoTextMessage("Hello"));
+
+        assertThat(messaging.queueStats()).isEmpty();
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    public void shouldSupportCompetingConsumersOnQueues() {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue");
+        CountDownLatch hanging = new CountDownLatch(1);
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        queue.addListener(message -> {
+            received.add(message.getText());
+            awaitQuietly(hanging);
+        });
+        queue.addListener(message -> received.add(message.getText()));
+
+        for (int i = 0; i < 5; i++) {
+            queue.post(new GoTextMessage("Message-" + i));
+        }
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() ->
+            assertThat(received).containsExactlyInAnyOrder("Message-0", "Message-1", "Message-2", "Message-3", "Message-4"));
+        hanging.countDown();
+    }
+
+    @Test
+    public void shouldDropQueuedMessagesWhoseTimeToLiveHasElapsed() throws Exception {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue");
+        queue.post(new GoTextMessage("expired"), 1);
+        queue.post(new GoTextMessage("alive"), TimeUnit.MINUTES.toMillis(1));
+        Thread.sleep(10);
+
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        queue.addListener(message -> received.add(message.getText()));
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(received).containsExactly("alive"));
+        assertThat(messaging.queueStats()).singleElement().satisfies(stats -> {
+            assertThat(stats.name()).isEqualTo("queue");
+            assertThat(stats.depth()).isZero();
+            assertThat(stats.enqueued()).isEqualTo(2);
+            assertThat(stats.delivered()).isEqualTo(1);
+            assertThat(stats.expired()).isEqualTo(1);
+            assertThat(stats.maxLatencyMillis()).isGreaterThan(0);
+        });
+    }
+
+    @Test
+    public void shouldLeaveMessagesOnTheQueueOnceListenersAreStopped() throws Exception {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue");
+        MessageListenerHandle handle = queue.addListener(message -> {});
+        handle.stop();
+        queue.post(new GoTextMessage("Hello"));
+
+        await().during(100, TimeUnit.MILLISECONDS).atMost(2, TimeUnit.SECONDS).untilAsserted(() ->
+            assertThat(messaging.queueStats()).extracting(QueueStats::depth).containsExactly(1));
+    }
+
+    @Test
+    public void shouldStopListenersOfRemovedQueues() {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue");
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        queue.addListener(message -> received.add(message.getText()));
+
+        queue.stop();
+
+        assertThat(messaging.queueStats()).isEmpty();
+        queue.post(new GoTextMessage("Hello"));
+        List<QueueStats> stats = messaging.queueStats();
+        assertThat(stats).extracting(QueueStats::depth).containsExactly(1);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    public void shouldCaptureStatsOfListenersRunningOnPlatformThreads() {
+        DaemonThreadStatsCollector statsCollector = mock(DaemonThreadStatsCollector.class);
+        InMemoryMessagingService platformThreadMessaging = new InMemoryMessagingService(statsCollector, 100, Executors.newCachedThreadPool());
+        try {
+            GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(platformThreadMessaging, "queue");
+            Queue<Long> listenerThreadIds = new ConcurrentLinkedQueue<>();
+            queue.addListener(message -> listenerThreadIds.add(Thread.currentThread().threadId()));
+
+            queue.post(new GoTextMessage("Hello"));
+
+            await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> {
+                assertThat(listenerThreadIds).hasSize(1);
+                verify(statsCollector).captureStats(listenerThreadIds.peek());
+                verify(statsCollector).clearStats(listenerThreadIds.peek());
+            });
+        } finally {
+            platformThreadMessaging.stop();
+        }
+    }
+
+    @Test
+    public void shouldNotCaptureStatsOfListenersRunningOnVirtualThreads() {
+        DaemonThreadStatsCollector statsCollector = mock(DaemonThreadStatsCollector.class);
+        InMemoryMessagingService virtualThreadMessaging = new InMemoryMessagingService(statsCollector, 100, Executors.newVirtualThreadPerTaskExecutor());
+        try {
+            GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(virtualThreadMessaging, "queue");
+            Queue<String> received = new ConcurrentLinkedQueue<>();
+            queue.addListener(message -> received.add(message.getText()));
+
+            queue.post(new GoTextMessage("Hello"));
+
+            await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(received).containsExactly("Hello"));
+            verifyNoInteractions(statsCollector);
+        } finally {
+            virtualThreadMessaging.stop();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
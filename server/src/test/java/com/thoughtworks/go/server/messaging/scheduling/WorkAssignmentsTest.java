@@ -36,15 +36,15 @@ public class WorkAssignmentsTest {
 
     private WorkAssignments assignments;
     private AgentRuntimeInfo agent;
-    private IdleAgentTopic idleAgentsTopic;
+    private IdleAgentQueue idleAgentsQueue;
     private AgentIdentifier agentIdentifier;
     private WorkAssignedTopic assignedWorkTopic;
 
     @BeforeEach
     public void setup() {
-        idleAgentsTopic = mock(IdleAgentTopic.class, "idle_topic");
+        idleAgentsQueue = mock(IdleAgentQueue.class, "idle_queue");
         assignedWorkTopic = mock(WorkAssignedTopic.class, "assigned_work_topic");
-        assignments = new WorkAssignments(idleAgentsTopic, assignedWorkTopic);
+        assignments = new WorkAssignments(idleAgentsQueue, assignedWorkTopic);
         agentIdentifier = new AgentIdentifier("localhost", "127.0.0.1", "uuid");
         agent = new AgentRuntimeInfo(agentIdentifier, AgentRuntimeStatus.Idle, currentWorkingDirectory(), "cookie");
     }
@@ -57,14 +57,14 @@ public class WorkAssignmentsTest {
     @Test
     public void shouldDispatchIdleMessageWhenNoWork() {
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
-        verify(idleAgentsTopic).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue).post(new IdleAgentMessage(agent));
     }
 
     @Test
     public void shouldOnlySendIdleMessageOnce() {
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
-        verify(idleAgentsTopic).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue).post(new IdleAgentMessage(agent));
     }
 
     @Test
@@ -72,7 +72,7 @@ public class WorkAssignmentsTest {
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
 
         assignments.onMessage(new WorkAssignedMessage(agentIdentifier, REAL_WORK));
-        verify(idleAgentsTopic).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue).post(new IdleAgentMessage(agent));
 
         assertThat(assignments.getWork(agent)).isEqualTo(REAL_WORK);
     }
@@ -83,21 +83,46 @@ public class WorkAssignmentsTest {
 
         assignments.onMessage(new WorkAssignedMessage(agentIdentifier, REAL_WORK));
         assignments.getWork(agent);
-        verify(idleAgentsTopic).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue).post(new IdleAgentMessage(agent));
 
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
-        verify(idleAgentsTopic, times(2)).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue, times(2)).post(new IdleAgentMessage(agent));
     }
 
     @Test
     public void shouldReSendIdleMessageIfNoWorkAllocated() {
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
-        verify(idleAgentsTopic).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue).post(new IdleAgentMessage(agent));
 
         assignments.onMessage(new WorkAssignedMessage(agentIdentifier, NO_WORK));
 
         assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
-        verify(idleAgentsTopic, times(2)).post(new IdleAgentMessage(agent));
+        verify(idleAgentsQueue, times(2)).post(new IdleAgentMessage(agent));
+    }
+
+    @Test
+    public void shouldHoldRequestOpenUntilWorkIsAssigned() throws Exception {
+        assignments = new WorkAssignments(idleAgentsQueue, mock(WorkAssignedTopic.class), 10000L);
+        doAnswer(invocation -> {
+            new Thread(() -> assignments.onMessage(new WorkAssignedMessage(agentIdentifier, REAL_WORK))).start();
+            return null;
+        }).when(idleAgentsQueue).post(new IdleAgentMessage(agent));
+
+        assertThat(assignments.getWork(agent)).isEqualTo(REAL_WORK);
+        verify(idleAgentsQueue).post(new IdleAgentMessage(agent));
+    }
+
+    @Test
+    public void shouldReturnNoWorkAsSoonAsWorkFinderFindsNothing() {
+        assignments = new WorkAssignments(idleAgentsQueue, mock(WorkAssignedTopic.class), 10000L);
+        doAnswer(invocation -> {
+            new Thread(() -> assignments.onMessage(new WorkAssignedMessage(agentIdentifier, NO_WORK))).start();
+            return null;
+        }).when(idleAgentsQueue).post(new IdleAgentMessage(agent));
+
+        long start = System.currentTimeMillis();
+        assertThat(assignments.getWork(agent)).isEqualTo(NO_WORK);
+        assertThat(System.currentTimeMillis() - start).isLessThan(10000L);
     }
 }
@@ -38,22 +38,30 @@ public class WorkFinderTest {
     private BuildAssignmentService workAssigner;
     private WorkAssignedTopic assignedWorkTopic;
     private WorkFinder finder;
-    private IdleAgentTopic idleAgentTopic;
+    private IdleAgentQueue idleAgentQueue;
     private WorkAssignmentPerformanceLogger workAssignmentPerformanceLogger;
 
     @BeforeEach
     public void before() {
         workAssigner = mock(BuildAssignmentService.class);
         assignedWorkTopic = mock(WorkAssignedTopic.class, "assignedWork");
-        idleAgentTopic = mock(IdleAgentTopic.class, "idleAgent");
+        idleAgentQueue = mock(IdleAgentQueue.class, "idleAgent");
         workAssignmentPerformanceLogger = mock(WorkAssignmentPerformanceLogger.class);
 
-        finder = new WorkFinder(workAssigner, idleAgentTopic, assignedWorkTopic, workAssignmentPerformanceLogger);
+        finder = new WorkFinder(workAssigner, idleAgentQueue, assignedWorkTopic, workAssignmentPerformanceLogger, 1);
     }
 
     @AfterEach
     public void tearDown() {
-        verify(idleAgentTopic).addListener(any());
+        verify(idleAgentQueue).addListener(any());
+    }
+
+    @Test
+    public void shouldListenToIdleAgentsOncePerThread() {
+        IdleAgentQueue idleQueue = mock(IdleAgentQueue.class);
+        WorkFinder finder = new WorkFinder(workAssigner, idleQueue, assignedWorkTopic, workAssignmentPerformanceLogger, 3);
+
+        verify(idleQueue, times(3)).addListener(finder);
     }
 
     @Test
@@ -83,9 +91,9 @@ public class WorkFinderTest {
     @Test
     public void shouldReturnNoWorkInCaseOfAnErrorIsThrown() {
         BuildAssignmentService assigner = mock(BuildAssignmentService.class);
-        IdleAgentTopic idleTopic = mock(IdleAgentTopic.class);
+        IdleAgentQueue idleQueue = mock(IdleAgentQueue.class);
         WorkAssignedTopic assignedTopic = mock(WorkAssignedTopic.class);
-        WorkFinder finder = new WorkFinder(assigner, idleTopic, assignedTopic, workAssignmentPerformanceLogger);
+        WorkFinder finder = new WorkFinder(assigner, idleQueue, assignedTopic, workAssignmentPerformanceLogger, 1);
         AgentRuntimeInfo runtimeInfo = AgentRuntimeInfo.initialState(AgentMother.approvedAgent());
         when(assigner.assignWorkToAgent(runtimeInfo.getIdentifier())).thenThrow(new OutOfMemoryError("test error for martians"));
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevisionSearchIndexTest {
+    @Test
+    void shouldOfferModificationsWhichMayContainTheTermAsCandidatesLatestFirst() {
+        RevisionSearchIndex.MaterialIndex index = new RevisionSearchIndex(100).forMaterial(1L);
+        index.add(10L, RevisionSearchIndex.signatureOf("abc123 bob Fix the build", null));
+        index.add(11L, RevisionSearchIndex.signatureOf("def456 alice Add a feature", null));
+        index.add(12L, RevisionSearchIndex.signatureOf("fed789 bob fix the tests", "label-1"));
+
+        assertThat(candidates(index, "fix")).containsExactly(12L, 10L);
+        assertThat(candidates(index, "BOB FIX")).containsExactly(12L, 10L);
+        assertThat(candidates(index, "label")).containsExactly(12L);
+        assertThat(candidates(index, "feature")).containsExactly(11L);
+    }
+
+    @Test
+    void shouldStopOfferingCandidatesWhenAskedTo() {
+        RevisionSearchIndex.MaterialIndex index = new RevisionSearchIndex(100).forMaterial(1L);
+        for (long id = 1; id <= 10; id++) {
+            index.add(id, RevisionSearchIndex.signatureOf("revision-" + id, null));
+        }
+
+        List<Long> candidates = new ArrayList<>();
+        index.forEachCandidate("revision", id -> candidates.add(id) && candidates.size() < 3);
+
+        assertThat(candidates).containsExactly(10L, 9L, 8L);
+    }
+
+    @Test
+    void shouldIgnoreModificationsWhichAreAlreadyIndexed() {
+        RevisionSearchIndex.MaterialIndex index = new RevisionSearchIndex(100).forMaterial(1L);
+        index.add(5L, RevisionSearchIndex.signatureOf("first", null));
+        index.add(5L, RevisionSearchIndex.signatureOf("first", null));
+        index.add(3L, RevisionSearchIndex.signatureOf("first", null));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.lastIndexedId()).isEqualTo(5L);
+    }
+
+    @Test
+    void shouldOnlySearchTermsWhichTheIndexCanNarrowDown() {
+        assertThat(RevisionSearchIndex.canSearch("abc")).isTrue();
+        assertThat(RevisionSearchIndex.canSearch("ab")).isFalse();
+        assertThat(RevisionSearchIndex.canSearch("of_curs")).isFalse();
+        assertThat(RevisionSearchIndex.canSearch("100%")).isFalse();
+        assertThat(RevisionSearchIndex.canSearch("C:\\temp")).isFalse();
+    }
+
+    @Test
+    void shouldStopIndexingMaterialsWithMoreModificationsThanTheIndexCanHold() {
+        RevisionSearchIndex searchIndex = new RevisionSearchIndex(2);
+        RevisionSearchIndex.MaterialIndex index = searchIndex.forMaterial(1);
+        index.add(10, RevisionSearchIndex.signatureOf("first"));
+
+        assertThat(searchIndex.canHold(index, 1)).isTrue();
+        assertThat(searchIndex.canHold(index, 2)).isFalse();
+
+        searchIndex.tooLargeToIndex(1);
+
+        assertThat(searchIndex.forMaterial(1)).isNull();
+        assertThat(searchIndex.forMaterial(2)).isNotNull();
+    }
+
+    @Test
+    void shouldRarelyOfferModificationsWithoutTheTermOnRealisticCommitText() {
+        Random random = new Random(42);
+        RevisionSearchIndex.MaterialIndex index = new RevisionSearchIndex(10_000).forMaterial(1L);
+        for (long id = 1; id <= 10_000; id++) {
+            index.add(id, RevisionSearchIndex.signatureOf(commit(random), "label-" + id));
+        }
+
+        for (String absentTerm : List.of("kubernetes", "websocket", "segfault", "deadlock", "quartz")) {
+            assertThat(candidates(index, absentTerm)).as(absentTerm).hasSizeLessThan(200);
+        }
+    }
+
+    private static final String[] AUTHORS = {"Alice Smith <alice@example.com>", "bob <bob.jones@example.org>", "Chandra Rao <crao@example.net>", "dependabot[bot] <support@github.com>", "Mei Chen <mei.chen@example.com>"};
+    private static final String[] VERBS = {"Fix", "Add", "Remove", "Update", "Refactor", "Bump", "Revert", "Improve", "Handle", "Support"};
+    private static final String[] THINGS = {"the build", "flaky test", "null pointer in parser", "config validation", "pipeline dashboard", "agent registration", "artifact upload", "material polling", "stage history", "login page", "README", "dependencies", "error message", "database migration", "plugin settings"};
+
+    private static String commit(Random random) {
+        StringBuilder revision = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            revision.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        String comment = switch (random.nextInt(3)) {
+            case 0 -> "Merge pull request #" + (1000 + random.nextInt(9000)) + " from " + AUTHORS[random.nextInt(AUTHORS.length)].split(" ")[0].toLowerCase() + "/branch-" + random.nextInt(100);
+            case 1 -> VERBS[random.nextInt(VERBS.length)] + " " + THINGS[random.nextInt(THINGS.length)];
+            default -> VERBS[random.nextInt(VERBS.length)] + " " + THINGS[random.nextInt(THINGS.length)] + " and " + THINGS[random.nextInt(THINGS.length)].toLowerCase() + " (#" + random.nextInt(5000) + ")";
+        };
+        return revision + " " + AUTHORS[random.nextInt(AUTHORS.length)] + " " + comment;
+    }
+
+    private static List<Long> candidates(RevisionSearchIndex.MaterialIndex index, String term) {
+        List<Long> candidates = new ArrayList<>();
+        index.forEachCandidate(term, candidates::add);
+        return candidates;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.StageIdentifier;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArtifactSizeIndexTest {
+    private final StageIdentifier stage = new StageIdentifier("pipeline", 1, "stage", "2");
+
+    @Test
+    public void shouldAddUpTheSizeOfArtifactsUploadedForAStage() {
+        ArtifactSizeIndex index = new ArtifactSizeIndex(10);
+
+        index.record(Path.of("pipelines/pipeline/1/stage/2/job/dist/app.jar"), 100);
+        index.record(Path.of("pipelines/pipeline/1/stage/2/another-job/cruise-output/console.log"), 20);
+        index.record(Path.of("pipelines/pipeline/1/stage/3/job/dist/app.jar"), 100);
+
+        assertThat(index.sizeOf(stage)).isEqualTo(120);
+    }
+
+    @Test
+    public void shouldNotKnowTheSizeOfStagesWithoutRecordedUploads() {
+        ArtifactSizeIndex index = new ArtifactSizeIndex(10);
+
+        index.record(Path.of("cache/artifacts/pipelines/pipeline/1/stage/2/job/dir.zip"), 100);
+        index.record(Path.of("pipelines/pipeline/1/stage/2"), 100);
+
+        assertThat(index.sizeOf(stage)).isEqualTo(ArtifactSizeIndex.UNKNOWN);
+    }
+
+    @Test
+    public void shouldMeasureAndRememberTheSizeOfStagesWithoutRecordedUploads() {
+        ArtifactSizeIndex index = new ArtifactSizeIndex(10);
+        List<StageIdentifier> measured = new ArrayList<>();
+
+        assertThat(index.sizeOf(stage, identifier -> {
+            measured.add(identifier);
+            return 100;
+        })).isEqualTo(100);
+        index.record(Path.of("pipelines/pipeline/1/stage/2/job/dist/app.jar"), 20);
+
+        assertThat(index.sizeOf(stage, identifier -> {
+            measured.add(identifier);
+            return 100;
+        })).isEqualTo(120);
+        assertThat(measured).containsExactly(stage);
+    }
+
+    @Test
+    public void shouldNotRememberSizesWhichCouldNotBeMeasured() {
+        ArtifactSizeIndex index = new ArtifactSizeIndex(10);
+
+        assertThat(index.sizeOf(stage, identifier -> ArtifactSizeIndex.UNKNOWN)).isEqualTo(ArtifactSizeIndex.UNKNOWN);
+
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    public void shouldForgetPurgedStages() {
+        ArtifactSizeIndex index = new ArtifactSizeIndex(10);
+        index.record(Path.of("pipelines/pipeline/1/stage/2/job/dist/app.jar"), 100);
+
+        index.forget(stage);
+
+        assertThat(index.sizeOf(stage)).isEqualTo(ArtifactSizeIndex.UNKNOWN);
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    public void shouldStopTrackingNewStagesOnceFull() {
+        ArtifactSizeIndex index = new ArtifactSizeIndex(1);
+        index.record(Path.of("pipelines/pipeline/1/stage/1/job/dist/app.jar"), 100);
+
+        index.record(Path.of("pipelines/pipeline/1/stage/2/job/dist/app.jar"), 100);
+        index.record(Path.of("pipelines/pipeline/1/stage/1/job/dist/app.jar"), 100);
+
+        assertThat(index.sizeOf(stage)).isEqualTo(ArtifactSizeIndex.UNKNOWN);
+        assertThat(index.sizeOf(new StageIdentifier("pipeline", 1, "stage", "1"))).isEqualTo(200);
+    }
+}
@@ -34,6 +34,7 @@ import org.mockito.stubbing.Answer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -52,6 +53,7 @@ public class ArtifactsDiskCleanerTest {
     @BeforeEach
     public void setUp() {
         sysEnv = mock(SystemEnvironment.class);
+        when(sysEnv.get(SystemEnvironment.GO_ARTIFACTS_PURGE_THREADS)).thenReturn(1);
 
         serverConfig = new ServerConfig();
         goConfigService = mock(GoConfigService.class);
@@ -128,6 +130,7 @@ public class ArtifactsDiskCleanerTest {
 
         verify(artifactService).purgeArtifactsForStage(stageOne);
         verify(artifactService).purgeArtifactsForStage(stageTwo);
+        verify(artifactService, times(3)).artifactsSize(any());
         verify(configDbStateRepository).flushConfigState();
         verifyNoMoreInteractions(artifactService);
     }
@@ -166,6 +169,7 @@ public class ArtifactsDiskCleanerTest {
         verify(artifactService).purgeArtifactsForStage(stageThree);
         verify(artifactService).purgeArtifactsForStage(stageFour);
         verify(artifactService).purgeArtifactsForStage(stageFive);
+        verify(artifactService, times(5)).artifactsSize(any());
 
         verify(stageService, times(4)).oldestStagesWithDeletableArtifacts();
         verify(configDbStateRepository, times(4)).flushConfigState();
@@ -173,6 +177,29 @@ public class ArtifactsDiskCleanerTest {
         verifyNoMoreInteractions(stageService);
     }
 
+    @Test
+    public void shouldPurgeOnlyTheStagesNeededToFreeTheRequiredSpaceInParallel() {
+        when(sysEnv.get(SystemEnvironment.GO_ARTIFACTS_PURGE_THREADS)).thenReturn(2);
+        artifactsDiskCleaner = new ArtifactsDiskCleaner(sysEnv, goConfigService, diskSpaceChecker, artifactService, stageService, configDbStateRepository);
+        serverConfig.setPurgeLimits(5.0, 9.0);
+        Stage stageOne = StageMother.passedStageInstance("stage", "build", "pipeline");
+        Stage stageTwo = StageMother.passedStageInstance("another", "job", "with-pipeline");
+        Stage stageThree = StageMother.passedStageInstance("yet-another", "job1", "foo-pipeline");
+
+        AtomicLong usableSpace = new AtomicLong(4 * GoConstants.GIGA_BYTE);
+        when(stageService.oldestStagesWithDeletableArtifacts()).thenReturn(List.of(stageOne, stageTwo, stageThree));
+        when(diskSpaceChecker.getUsableSpace(goConfigService.artifactsDir())).thenAnswer(invocation -> usableSpace.get());
+        when(artifactService.artifactsSize(any())).thenReturn(3 * GoConstants.GIGA_BYTE);
+        doAnswer((Answer<Object>) invocation -> usableSpace.addAndGet(3 * GoConstants.GIGA_BYTE)).when(artifactService).purgeArtifactsForStage(any());
+
+        artifactsDiskCleaner.deleteOldArtifacts();
+
+        verify(artifactService).purgeArtifactsForStage(stageOne);
+        verify(artifactService).purgeArtifactsForStage(stageTwo);
+        verify(artifactService, never()).purgeArtifactsForStage(stageThree);
+        assertThat(usableSpace.get()).isEqualTo(10 * GoConstants.GIGA_BYTE);
+    }
+
     @Test
     public void shouldUseA_NonServerHealthAware_result() {
         serverHealthService = mock(ServerHealthService.class);
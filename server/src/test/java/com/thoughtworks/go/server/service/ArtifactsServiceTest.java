@@ -319,6 +319,27 @@ public class ArtifactsServiceTest {
         verify(stageService).markArtifactsDeletedFor(stage);
     }
 
+    @Test
+    void shouldMeasureTheArtifactsWhichPurgingAStageWouldDeleteOnce() throws IOException {
+        File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
+        assumeArtifactsRoot(artifactsRoot);
+        File jobDir = new File(artifactsRoot, "pipelines/pipeline/10/stage/20/job");
+        new File(jobDir, "bar").mkdirs();
+        new File(jobDir, "cruise-output").mkdirs();
+        Files.writeString(new File(jobDir, "foo").toPath(), "hello world", UTF_8);
+        Files.writeString(new File(jobDir, "bar/baz").toPath(), "quux", UTF_8);
+        Files.writeString(new File(jobDir, "cruise-output/console.log").toPath(), "Build Logs", UTF_8);
+
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        artifactsService.initialize();
+        Stage stage = StageMother.createPassedStage("pipeline", 10, "stage", 20, "job", Instant.now());
+
+        assertThat(artifactsService.artifactsSize(stage)).isEqualTo(15);
+        Files.writeString(new File(jobDir, "bar/quux").toPath(), "not measured again", UTF_8);
+        assertThat(artifactsService.artifactsSize(stage)).isEqualTo(15);
+        assertThat(artifactsService.artifactsSize(StageMother.createPassedStage("pipeline", 10, "stage", 21, "job", Instant.now()))).isZero();
+    }
+
     @Test
     void shouldPurgeCachedArtifactsForGivenStageWhilePurgingArtifactsForAStage() throws IOException {
         File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
@@ -25,9 +25,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -47,7 +48,7 @@ class AuthorizationExtensionCacheServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new AuthorizationExtensionCacheService(authorizationExtension, ticker);
+        service = new AuthorizationExtensionCacheService(authorizationExtension, ticker, Runnable::run);
     }
 
     @Test
@@ -167,6 +168,52 @@ class AuthorizationExtensionCacheServiceTest {
         verify(authorizationExtension, times(2)).isValidUser(pluginId, username, authConfig);
     }
 
+    @Test
+    void shouldMakeOnlyOnePluginCallForConcurrentRequestsOfTheSameUser() throws Exception {
+        CountDownLatch pluginCalled = new CountDownLatch(1);
+        CountDownLatch releasePlugin = new CountDownLatch(1);
+        when(authorizationExtension.isValidUser(pluginId, username, authConfig)).thenAnswer(invocation -> {
+            pluginCalled.countDown();
+            releasePlugin.await();
+            return true;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            results.add(executor.submit(() -> service.isValidUser(pluginId, username, authConfig)));
+            assertThat(pluginCalled.await(10, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> service.isValidUser(pluginId, username, new SecurityAuthConfig("ldap", "cd.go.ldap"))));
+            }
+            releasePlugin.countDown();
+
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(authorizationExtension, times(1)).isValidUser(eq(pluginId), eq(username), any());
+    }
+
+    @Test
+    void shouldRefreshEntriesInUseBeforeTheyExpire() {
+        List<PluginRoleConfig> pluginRoleConfigs = Collections.emptyList();
+        when(authorizationExtension.getUserRoles(pluginId, username, authConfig, pluginRoleConfigs))
+                .thenReturn(List.of("old-role"))
+                .thenReturn(List.of("new-role"));
+
+        assertThat(service.getUserRoles(pluginId, username, authConfig, pluginRoleConfigs)).containsExactly("old-role");
+
+        ticker.advance(50, TimeUnit.SECONDS);
+        assertThat(service.getUserRoles(pluginId, username, authConfig, pluginRoleConfigs)).containsExactly("old-role");
+        assertThat(service.getUserRoles(pluginId, username, authConfig, pluginRoleConfigs)).containsExactly("new-role");
+
+        verify(authorizationExtension, times(2)).getUserRoles(pluginId, username, authConfig, pluginRoleConfigs);
+    }
+
     static class FakeTicker implements Ticker {
         private final AtomicLong nanos = new AtomicLong();
 
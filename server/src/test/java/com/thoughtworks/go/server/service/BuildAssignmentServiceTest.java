@@ -29,6 +29,9 @@ import com.thoughtworks.go.domain.materials.Material;
 import com.thoughtworks.go.domain.materials.Modification;
 import com.thoughtworks.go.helper.*;
 import com.thoughtworks.go.plugin.access.exceptions.SecretResolutionFailureException;
+import com.thoughtworks.go.plugin.infra.PluginChangeListener;
+import com.thoughtworks.go.plugin.infra.PluginManager;
+import com.thoughtworks.go.plugin.infra.plugininfo.GoPluginDescriptor;
 import com.thoughtworks.go.remote.work.BuildAssignment;
 import com.thoughtworks.go.remote.work.BuildWork;
 import com.thoughtworks.go.server.domain.ElasticAgentMetadata;
@@ -43,6 +46,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InOrder;
 import org.mockito.Mock;
@@ -91,6 +95,8 @@ class BuildAssignmentServiceTest {
     private JobStatusTopic jobStatusTopic;
     @Mock
     private ConsoleService consoleService;
+    @Mock
+    private PluginManager pluginManager;
 
     private BuildAssignmentService buildAssignmentService;
     private SchedulingContext schedulingContext;
@@ -106,7 +112,7 @@ class BuildAssignmentServiceTest {
         buildAssignmentService = new BuildAssignmentService(goConfigService, jobInstanceService, scheduleService, agentService,
                 environmentConfigService, transactionTemplate, scheduledPipelineLoader, pipelineService, builderFactory,
                 maintenanceModeService, elasticAgentPluginService, systemEnvironment, secretParamResolver,
-                jobStatusTopic, consoleService);
+                jobStatusTopic, consoleService, pluginManager);
         elasticProfileId1 = "elastic.profile.id.1";
         elasticProfileId2 = "elastic.profile.id.2";
         Agent elasticAgent = AgentMother.elasticAgent();
@@ -138,6 +144,55 @@ class BuildAssignmentServiceTest {
         assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(0);
     }
 
+    @Test
+    void shouldAskThePluginOnlyOnceWhetherAnElasticAgentShouldRunAScheduledJob() {
+        PipelineConfig pipelineWithElasticJob = PipelineConfigMother.pipelineWithElasticJob(elasticProfileId1);
+        JobPlan jobPlan = new InstanceFactory().createJobPlan(pipelineWithElasticJob.getFirst().getJobs().getFirst(), schedulingContext);
+        jobPlans.add(jobPlan);
+        when(elasticAgentPluginService.shouldAssignWork(elasticAgentInstance.elasticAgentMetadata(), null, jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier())).thenReturn(false);
+        buildAssignmentService.onTimer();
+
+        assertThat(buildAssignmentService.findMatchingJob(elasticAgentInstance)).isNull();
+        buildAssignmentService.onTimer();
+        assertThat(buildAssignmentService.findMatchingJob(elasticAgentInstance)).isNull();
+
+        verify(elasticAgentPluginService, times(1)).shouldAssignWork(elasticAgentInstance.elasticAgentMetadata(), null, jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier());
+    }
+
+    @Test
+    void shouldAskThePluginAgainWhetherAnElasticAgentShouldRunAScheduledJobOnceTheAgentChanged() {
+        PipelineConfig pipelineWithElasticJob = PipelineConfigMother.pipelineWithElasticJob(elasticProfileId1);
+        JobPlan jobPlan = new InstanceFactory().createJobPlan(pipelineWithElasticJob.getFirst().getJobs().getFirst(), schedulingContext);
+        jobPlans.add(jobPlan);
+        buildAssignmentService.onTimer();
+        assertThat(buildAssignmentService.findMatchingJob(elasticAgentInstance)).isNull();
+
+        Agent changedAgent = AgentMother.elasticAgent();
+        changedAgent.setUuid(elasticAgentInstance.getUuid());
+        changedAgent.setElasticPluginId(elasticAgentInstance.elasticAgentMetadata().elasticPluginId());
+        AgentInstance changedAgentInstance = AgentInstance.createFromAgent(changedAgent, new SystemEnvironment(), null);
+        when(elasticAgentPluginService.shouldAssignWork(changedAgentInstance.elasticAgentMetadata(), null, jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier())).thenReturn(true);
+
+        assertThat(buildAssignmentService.findMatchingJob(changedAgentInstance)).isEqualTo(jobPlan);
+    }
+
+    @Test
+    void shouldAskThePluginAgainWhetherAnElasticAgentShouldRunAScheduledJobOnceThePluginWasReloaded() {
+        PipelineConfig pipelineWithElasticJob = PipelineConfigMother.pipelineWithElasticJob(elasticProfileId1);
+        JobPlan jobPlan = new InstanceFactory().createJobPlan(pipelineWithElasticJob.getFirst().getJobs().getFirst(), schedulingContext);
+        jobPlans.add(jobPlan);
+        buildAssignmentService.initialize();
+        buildAssignmentService.onTimer();
+        assertThat(buildAssignmentService.findMatchingJob(elasticAgentInstance)).isNull();
+
+        ArgumentCaptor<PluginChangeListener> listener = ArgumentCaptor.forClass(PluginChangeListener.class);
+        verify(pluginManager).addPluginChangeListener(listener.capture());
+        listener.getValue().pluginLoaded(GoPluginDescriptor.builder().id(elasticAgentInstance.elasticAgentMetadata().elasticPluginId()).build());
+        when(elasticAgentPluginService.shouldAssignWork(elasticAgentInstance.elasticAgentMetadata(), null, jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier())).thenReturn(true);
+
+        assertThat(buildAssignmentService.findMatchingJob(elasticAgentInstance)).isEqualTo(jobPlan);
+    }
+
     @Test
     void shouldNotMatchAnElasticJobToAnElasticAgentOnlyIfThePluginIdMatches() {
         PipelineConfig pipelineWithElasticJob = PipelineConfigMother.pipelineWithElasticJob(elasticProfileId1);
@@ -184,6 +239,24 @@ class BuildAssignmentServiceTest {
         verify(elasticAgentPluginService, never()).shouldAssignWork(any(ElasticAgentMetadata.class), any(String.class), any(ElasticProfile.class), any(ClusterProfile.class), any(JobIdentifier.class));
     }
 
+    @Test
+    void shouldNotOfferAJobPlanClaimedByAnotherAgentEvenAfterReload() {
+        PipelineConfig pipeline = PipelineConfigMother.pipelineConfig(UUID.randomUUID().toString());
+        pipeline.getFirst().getJobs().add(JobConfigMother.jobWithNoResourceRequirement());
+        JobPlan regularJobPlan = new InstanceFactory().createJobPlan(pipeline.getFirst().getJobs().getFirst(), schedulingContext);
+        jobPlans.add(regularJobPlan);
+        buildAssignmentService.onTimer();
+
+        assertThat(buildAssignmentService.findMatchingJob(regularAgentInstance)).isEqualTo(regularJobPlan);
+
+        // the assignment has not been committed yet, so the job is still reported as scheduled
+        buildAssignmentService.onTimer();
+
+        AgentInstance anotherAgent = AgentInstance.createFromAgent(AgentMother.approvedAgent(), new SystemEnvironment(), null);
+        assertThat(buildAssignmentService.jobPlans()).isEmpty();
+        assertThat(buildAssignmentService.findMatchingJob(anotherAgent)).isNull();
+    }
+
     @Test
     void shouldNotMatchJobsDuringMaintenanceMode() {
         when(maintenanceModeService.isMaintenanceMode()).thenReturn(true);
@@ -283,6 +356,7 @@ class BuildAssignmentServiceTest {
             when(agent.getResourcesNormalized()).thenReturn("resource-1");
 
             final AgentInstance agentInstance = mock(AgentInstance.class);
+            when(agentInstance.getUuid()).thenReturn("agent_uuid");
             final Pipeline pipeline = mock(Pipeline.class);
             final JobPlan jobPlan1 = getJobPlan(pipelineConfig.getName(), pipelineConfig.getFirst().name(), pipelineConfig.getFirst().getJobs().getLast());
 
@@ -291,6 +365,7 @@ class BuildAssignmentServiceTest {
             when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createNeverRun());
             when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
+            buildAssignmentService.jobPlans().add(jobPlan1);
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             lenient().when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -322,6 +397,7 @@ class BuildAssignmentServiceTest {
             pipelineConfig.getFirst().getJobs().add(JobConfigMother.jobWithNoResourceRequirement());
 
             final AgentInstance agentInstance = mock(AgentInstance.class);
+            when(agentInstance.getUuid()).thenReturn("agent_uuid");
 
             final Pipeline pipeline = mock(Pipeline.class);
             final JobPlan jobPlan1 = getJobPlan(pipelineConfig.getName(), pipelineConfig.getFirst().name(), pipelineConfig.getFirst().getJobs().getLast());
@@ -331,6 +407,7 @@ class BuildAssignmentServiceTest {
             when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createWithModifications(materialRevisions, "bob"));
             when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
+            buildAssignmentService.jobPlans().add(jobPlan1);
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             lenient().when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -372,6 +449,7 @@ class BuildAssignmentServiceTest {
             when(jobInstance.getState()).thenReturn(JobState.Completed);
             lenient().doThrow(new SecretResolutionFailureException("Failed resolving params for keys: 'key1'"))
                     .when(secretParamResolver).resolve(any(BuildAssignment.class));
+            buildAssignmentService.jobPlans().add(jobPlan1);
 
             assertThatCode(() -> buildAssignmentService.assignWorkToAgent(agentInstance))
                     .isInstanceOf(SecretResolutionFailureException.class);
@@ -396,6 +474,7 @@ class BuildAssignmentServiceTest {
             when(agentInstance.getUuid()).thenReturn("agent_uuid");
             when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
             when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
+            buildAssignmentService.jobPlans().add(jobPlan1);
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(environmentConfigService.environmentForPipeline(anyString())).thenReturn(new BasicEnvironmentConfig());
@@ -430,6 +509,7 @@ class BuildAssignmentServiceTest {
             pipelineConfig.getFirst().getJobs().add(JobConfigMother.jobWithNoResourceRequirement());
 
             final AgentInstance agentInstance = mock(AgentInstance.class);
+            when(agentInstance.getUuid()).thenReturn("agent_uuid");
 
             final Pipeline pipeline = mock(Pipeline.class);
             final JobPlan jobPlan1 = getJobPlan(pipelineConfig.getName(), pipelineConfig.getFirst().name(), pipelineConfig.getFirst().getJobs().getLast());
@@ -439,6 +519,7 @@ class BuildAssignmentServiceTest {
             when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createWithModifications(materialRevisions, "bob"));
             when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
+            buildAssignmentService.jobPlans().add(jobPlan1);
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             lenient().when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -17,30 +17,26 @@
 package com.thoughtworks.go.server.service;
 
 import com.thoughtworks.go.config.AdminUser;
-import com.thoughtworks.go.config.MagicalGoConfigXmlWriter;
-import com.thoughtworks.go.config.registry.ConfigElementImplementationRegistry;
-import com.thoughtworks.go.util.ConfigElementImplementationRegistryMother;
+import com.thoughtworks.go.config.EnvironmentVariableConfig;
+import com.thoughtworks.go.config.PipelineConfig;
+import com.thoughtworks.go.helper.PipelineConfigMother;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
-import org.mockito.stubbing.Answer;
 
 import java.util.List;
 import java.util.Map;
 
 import static com.thoughtworks.go.util.CachedDigestUtils.sha512_256Hex;
 import static java.lang.String.format;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.*;
 
 class EntityHashesTest {
     private EntityHashes hashes;
 
     @BeforeEach
     void setup() {
-        hashes = new EntityHashes(ConfigElementImplementationRegistryMother.withNoPlugins());
+        hashes = new EntityHashes();
     }
 
     @Test
@@ -55,29 +51,11 @@ class EntityHashesTest {
 
     @Nested
     class ConfigEntities {
-        @BeforeEach
-        void setup() {
-            final MagicalGoConfigXmlWriter writer = mock(MagicalGoConfigXmlWriter.class);
-
-            hashes = new EntityHashes(mock(ConfigElementImplementationRegistry.class)) {
-                @Override
-                protected String serializeDomainEntity(Object domainObject) {
-                    return writer.toXmlPartial(domainObject);
-                }
-            };
-
-            // mocking this as we aren't testing the XML serialization; that's supposed to be an abstraction!
-            when(writer.toXmlPartial(any())).thenAnswer((Answer<String>) invocation -> {
-                final AdminUser user = invocation.getArgument(0);
-                return user.getName().toString();
-            });
-        }
-
         @Test
         void digest_Entities() {
             final String expected = sha512_256Hex(format("%s/%s",
-                    sha512_256Hex("bilbo"),
-                    sha512_256Hex("baggins")
+                    hashes.digestDomainConfigEntity(new AdminUser("bilbo")),
+                    hashes.digestDomainConfigEntity(new AdminUser("baggins"))
             ));
 
             assertEquals(expected, hashes.digest(
@@ -90,7 +68,43 @@ class EntityHashesTest {
 
         @Test
         void digestDomainConfigEntity() {
-            assertEquals(sha512_256Hex("bilbo"), hashes.digestDomainConfigEntity(new AdminUser("bilbo")));
+            assertEquals(hashes.digestDomainConfigEntity(new AdminUser("bilbo")), hashes.digestDomainConfigEntity(new AdminUser("bilbo")));
+            assertNotEquals(hashes.digestDomainConfigEntity(new AdminUser("bilbo")), hashes.digestDomainConfigEntity(new AdminUser("baggins")));
+        }
+
+        @Test
+        void digestDomainConfigEntity_considersNestedElements() {
+            PipelineConfig pipeline = PipelineConfigMother.pipelineConfig("up42");
+            final String original = hashes.digestDomainConfigEntity(pipeline);
+
+            PipelineConfig changed = PipelineConfigMother.pipelineConfig("up42");
+            changed.getStages().getFirst().getJobs().getFirst().addResourceConfig("linux");
+
+            assertEquals(original, hashes.digestDomainConfigEntity(PipelineConfigMother.pipelineConfig("up42")));
+            assertNotEquals(original, hashes.digestDomainConfigEntity(changed));
+        }
+
+        @Test
+        void digestDomainConfigEntity_doesNotConfuseAdjacentValues() {
+            assertNotEquals(
+                    hashes.digestDomainConfigEntity(new EnvironmentVariableConfig("ab", "c")),
+                    hashes.digestDomainConfigEntity(new EnvironmentVariableConfig("a", "bc"))
+            );
+        }
+
+        @Test
+        void digestDomainConfigEntity_reflectsChangesMadeInPlace() {
+            PipelineConfig pipeline = PipelineConfigMother.pipelineConfig("up42");
+            final String original = hashes.digestDomainConfigEntity(pipeline);
+
+            pipeline.getStages().getFirst().getJobs().getFirst().addResourceConfig("linux");
+
+            assertNotEquals(original, hashes.digestDomainConfigEntity(pipeline));
+        }
+
+        @Test
+        void digestDomainConfigEntity_rejectsObjectsThatAreNotConfigEntities() {
+            assertThrows(RuntimeException.class, () -> hashes.digestDomainConfigEntity("not a config entity"));
         }
     }
-}
\ No newline at end of file
+}
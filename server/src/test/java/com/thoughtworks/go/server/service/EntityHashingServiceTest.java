@@ -31,7 +31,6 @@ import com.thoughtworks.go.security.ProductionIVProvider;
 import com.thoughtworks.go.security.TestIVProvider;
 import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.domain.PluginSettings;
-import com.thoughtworks.go.util.ConfigElementImplementationRegistryMother;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -55,7 +54,7 @@ public class EntityHashingServiceTest {
     void setUp() {
         this.goConfigService = mock(GoConfigService.class);
         this.goCache = mock(GoCache.class);
-        digests = new EntityHashes(ConfigElementImplementationRegistryMother.withNoPlugins());
+        digests = new EntityHashes();
         this.service = new EntityHashingService(this.goConfigService, this.goCache, mock(PartialConfigHelper.class), digests);
     }
 
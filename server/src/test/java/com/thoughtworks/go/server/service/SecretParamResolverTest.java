@@ -43,14 +43,19 @@ import com.thoughtworks.go.plugin.access.secrets.SecretsExtension;
 import com.thoughtworks.go.plugin.domain.secrets.Secret;
 import com.thoughtworks.go.remote.work.BuildAssignment;
 import com.thoughtworks.go.server.domain.Username;
+import com.thoughtworks.go.listener.ConfigChangedListener;
+import com.thoughtworks.go.listener.EntityConfigChangedListener;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.command.EnvironmentVariableContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -73,7 +78,7 @@ class SecretParamResolverTest {
     @BeforeEach
     void setUp() {
 
-        secretParamResolver = new SecretParamResolver(secretsExtension, goConfigService, rulesService);
+        secretParamResolver = new SecretParamResolver(secretsExtension, goConfigService, rulesService, new SystemEnvironment());
     }
 
     @Nested
@@ -568,4 +573,70 @@ class SecretParamResolverTest {
         return new DefaultJobPlan(new Resources(), new ArrayList<>(), -1, identifier, null,
                 variables, triggerVariables, null, null);
     }
+
+    @Nested
+    class CacheResolvedSecrets {
+        private final SecretConfig secretConfig = new SecretConfig("secret_config_id", "cd.go.file");
+        private final ArgumentCaptor<ConfigChangedListener> listeners = ArgumentCaptor.forClass(ConfigChangedListener.class);
+
+        @BeforeEach
+        void setUp() {
+            secretParamResolver = new SecretParamResolver(secretsExtension, goConfigService, rulesService, Duration.ofMinutes(5), 100);
+            verify(goConfigService, times(2)).register(listeners.capture());
+            when(goConfigService.cruiseConfig()).thenReturn(GoConfigMother.configWithSecretConfig(secretConfig));
+        }
+
+        @Test
+        void shouldLookUpOnlyTheSecretsWhichAreNotCachedYet() {
+            when(secretsExtension.lookupSecrets("cd.go.file", secretConfig, Set.of("username", "password")))
+                    .thenReturn(List.of(new Secret("username", "some-user"), new Secret("password", "some-password")));
+            when(secretsExtension.lookupSecrets("cd.go.file", secretConfig, Set.of("token")))
+                    .thenReturn(List.of(new Secret("token", "some-token")));
+
+            SecretParams first = SecretParams.parse("{{SECRET:[secret_config_id][username]}} {{SECRET:[secret_config_id][password]}}");
+            secretParamResolver.resolve(first);
+            SecretParams second = SecretParams.parse("{{SECRET:[secret_config_id][password]}} {{SECRET:[secret_config_id][token]}}");
+            secretParamResolver.resolve(second);
+
+            assertThat(first).extracting(SecretParam::getValue).containsExactlyInAnyOrder("some-user", "some-password");
+            assertThat(second).extracting(SecretParam::getValue).containsExactlyInAnyOrder("some-password", "some-token");
+            verify(secretsExtension).lookupSecrets("cd.go.file", secretConfig, Set.of("username", "password"));
+            verify(secretsExtension).lookupSecrets("cd.go.file", secretConfig, Set.of("token"));
+            assertThat(secretParamResolver.cacheStats().hitCount()).isEqualTo(1);
+            assertThat(secretParamResolver.cachedSecretsCount()).isEqualTo(3);
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldLookUpTheSecretsAgainOnceTheSecretConfigChanges() {
+            when(secretsExtension.lookupSecrets("cd.go.file", secretConfig, Set.of("password")))
+                    .thenReturn(List.of(new Secret("password", "some-password")));
+
+            secretParamResolver.resolve(SecretParams.parse("{{SECRET:[secret_config_id][password]}}"));
+            listeners.getAllValues().stream()
+                    .filter(listener -> listener instanceof EntityConfigChangedListener<?>)
+                    .map(listener -> (EntityConfigChangedListener<SecretConfig>) listener)
+                    .forEach(listener -> listener.onEntityConfigChange(secretConfig));
+            secretParamResolver.resolve(SecretParams.parse("{{SECRET:[secret_config_id][password]}}"));
+
+            verify(secretsExtension, times(2)).lookupSecrets("cd.go.file", secretConfig, Set.of("password"));
+        }
+
+        @Test
+        void shouldNotCacheFailedLookups() {
+            when(secretsExtension.lookupSecrets("cd.go.file", secretConfig, Set.of("password")))
+                    .thenThrow(new RuntimeException("plugin unavailable"))
+                    .thenReturn(List.of(new Secret("password", "some-password")));
+
+            assertThatCode(() -> secretParamResolver.resolve(SecretParams.parse("{{SECRET:[secret_config_id][password]}}")))
+                    .isInstanceOf(RuntimeException.class)
+                    .hasMessage("plugin unavailable");
+
+            SecretParams secretParams = SecretParams.parse("{{SECRET:[secret_config_id][password]}}");
+            secretParamResolver.resolve(secretParams);
+
+            assertThat(secretParams.get(0).getValue()).isEqualTo("some-password");
+            assertThat(secretParamResolver.cachedSecretsCount()).isEqualTo(1);
+        }
+    }
 }
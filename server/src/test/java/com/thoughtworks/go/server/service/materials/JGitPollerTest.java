@@ -0,0 +1,102 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.materials;
+
+import com.thoughtworks.go.config.materials.git.GitMaterial;
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.ModifiedFile;
+import com.thoughtworks.go.domain.materials.TestSubprocessExecutionContext;
+import com.thoughtworks.go.domain.materials.git.GitTestRepo;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.thoughtworks.go.domain.materials.git.GitTestRepo.NON_EXISTENT_REVISION;
+import static com.thoughtworks.go.domain.materials.git.GitTestRepo.REVISION_0;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class JGitPollerTest {
+    @TempDir
+    Path tempDir;
+
+    private GitTestRepo gitRepo;
+    private GitMaterial material;
+    private final JGitPoller jGitPoller = new JGitPoller();
+    private final GitPoller gitPoller = new GitPoller();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        gitRepo = new GitTestRepo(tempDir);
+        material = gitRepo.createMaterial();
+    }
+
+    @Test
+    void shouldReadTheLatestModificationLikeTheGitCommandLine() throws IOException {
+        gitRepo.addFileAndPush("new-file.txt", "Add a file\n\nwith a longer description");
+
+        List<Modification> inProcess = jGitPoller.latestModification(material, workingDir("jgit"), serverContext());
+        List<Modification> forked = gitPoller.latestModification(material, workingDir("cli"), serverContext());
+
+        assertSameModifications(inProcess, forked);
+        assertThat(inProcess.get(0).getModifiedFiles()).extracting(ModifiedFile::getFileName).containsExactly("new-file.txt");
+    }
+
+    @Test
+    void shouldReadTheModificationsSinceARevisionLikeTheGitCommandLine() throws IOException {
+        gitRepo.addFileAndPush("new-file.txt", "Add a file");
+
+        List<Modification> inProcess = jGitPoller.modificationsSince(material, workingDir("jgit"), REVISION_0, serverContext());
+        List<Modification> forked = gitPoller.modificationsSince(material, workingDir("cli"), REVISION_0, serverContext());
+
+        assertThat(inProcess).hasSizeGreaterThan(1);
+        assertSameModifications(inProcess, forked);
+    }
+
+    @Test
+    void shouldReturnTheLatestModificationWhenTheRevisionIsNotOnTheBranch() {
+        List<Modification> inProcess = jGitPoller.modificationsSince(material, workingDir("jgit"), NON_EXISTENT_REVISION, serverContext());
+
+        assertThat(inProcess).extracting(Modification::getRevision)
+                .containsExactly(gitPoller.latestModification(material, workingDir("cli"), serverContext()).get(0).getRevision());
+    }
+
+    private TestSubprocessExecutionContext serverContext() {
+        return new TestSubprocessExecutionContext(new SystemEnvironment(), true);
+    }
+
+    private File workingDir(String name) {
+        return tempDir.resolve("flyweight").resolve(name).toFile();
+    }
+
+    private void assertSameModifications(List<Modification> actual, List<Modification> expected) {
+        assertThat(actual).extracting(Modification::getRevision).containsExactlyElementsOf(expected.stream().map(Modification::getRevision).toList());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getUserName()).isEqualTo(expected.get(i).getUserName());
+            assertThat(actual.get(i).getComment()).isEqualTo(expected.get(i).getComment());
+            assertThat(actual.get(i).getModifiedTime()).isEqualTo(expected.get(i).getModifiedTime());
+            assertThat(actual.get(i).getModifiedFiles())
+                    .extracting(ModifiedFile::getFileName, ModifiedFile::getAction)
+                    .containsExactlyInAnyOrderElementsOf(expected.get(i).getModifiedFiles().stream().map(file -> tuple(file.getFileName(), file.getAction())).toList());
+        }
+    }
+}
@@ -29,6 +29,9 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.ZipInputStream;
@@ -114,6 +117,84 @@ public class FileViewTest {
         assertEquals("hello", mockResponse.getContentAsString());
     }
 
+    @Test
+    public void shouldServeOnlyTheRequestedRangeOfAFile() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=2-");
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, mockResponse.getStatus());
+        assertEquals("bytes 2-4/5", mockResponse.getHeader("Content-Range"));
+        assertEquals(3, getContentLength(mockResponse));
+        assertEquals("llo", mockResponse.getContentAsString());
+    }
+
+    @Test
+    public void shouldRejectARangeBeyondTheEndOfTheFile() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=5-");
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, mockResponse.getStatus());
+        assertEquals("bytes */5", mockResponse.getHeader("Content-Range"));
+        assertEquals("", mockResponse.getContentAsString());
+    }
+
+    @Test
+    public void shouldServeTheWholeFileForRangesItDoesNotSupport() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=0-1,3-4");
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_OK, mockResponse.getStatus());
+        assertEquals("hello", mockResponse.getContentAsString());
+    }
+
+    @Test
+    public void shouldServeTheRequestedRangeIfTheFileHasNotChangedSinceTheDateInIfRange() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=2-");
+        mockRequest.addHeader("If-Range", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(file.lastModified()).atZone(ZoneOffset.UTC)));
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, mockResponse.getStatus());
+        assertEquals("llo", mockResponse.getContentAsString());
+    }
+
+    @Test
+    public void shouldServeTheWholeFileIfItHasChangedSinceTheDateInIfRange() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=2-");
+        mockRequest.addHeader("If-Range", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(file.lastModified()).minusSeconds(60).atZone(ZoneOffset.UTC)));
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_OK, mockResponse.getStatus());
+        assertEquals("hello", mockResponse.getContentAsString());
+    }
+
+    @Test
+    public void shouldServeTheWholeFileForAnEntityTagInIfRange() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=2-");
+        mockRequest.addHeader("If-Range", "\"some-etag\"");
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_OK, mockResponse.getStatus());
+        assertEquals("hello", mockResponse.getContentAsString());
+    }
+
     @Test
     public void testDefaultContentTypeShouldBeTextPlain() {
         assertEquals("application/octet-stream", view.getContentType());
@@ -18,6 +18,9 @@ package com.thoughtworks.go.server.web;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.cache.ZipArtifactCache;
 import com.thoughtworks.go.server.view.artifacts.PreparingArtifactFile;
+import com.thoughtworks.go.server.view.artifacts.StreamingArtifactZip;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -35,6 +38,7 @@ public class ZipArtifactFolderViewFactoryTest {
     Path folder;
     private ZipArtifactFolderViewFactory folderViewFactory;
     private File cacheZipFile;
+    private final SystemEnvironment systemEnvironment = new SystemEnvironment();
 
     @BeforeEach
     public void setUp(@TempDir Path cache) throws Exception {
@@ -42,6 +46,11 @@ public class ZipArtifactFolderViewFactoryTest {
         cacheZipFile = Files.createFile(cache.resolve("dir.zip")).toFile();
     }
 
+    @AfterEach
+    public void tearDown() {
+        systemEnvironment.reset(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED);
+    }
+
     @Test
     public void shouldCreateArtifactCacheIfDoesNotExist() throws Exception {
         folderViewFactory = new ZipArtifactFolderViewFactory(cacheNotCreated());
@@ -60,8 +69,18 @@ public class ZipArtifactFolderViewFactoryTest {
         assertThat(targetFile).isEqualTo(cacheZipFile);
     }
 
+    @Test
+    public void shouldStreamZipArtifactIfNotCachedAndStreamingIsEnabled() throws Exception {
+        systemEnvironment.set(SystemEnvironment.GO_ARTIFACT_ZIP_STREAM_UNCACHED, true);
+        cacheZipFile.delete();
+        folderViewFactory = new ZipArtifactFolderViewFactory(cacheAlreadyCreated());
+
+        ModelAndView modelAndView = folderViewFactory.createView(JOB_IDENTIFIER, new ArtifactFolder(JOB_IDENTIFIER, folder.toFile(), "dir"));
+        assertThat(modelAndView.getView()).isInstanceOf(StreamingArtifactZip.class);
+    }
+
     private ZipArtifactCache cacheAlreadyCreated() {
-        return new ZipArtifactCache(null, null) {
+        return new ZipArtifactCache(null, null, systemEnvironment) {
             @Override
             public boolean cacheCreated(ArtifactFolder artifactFolder) {
                 return true;
@@ -75,7 +94,7 @@ public class ZipArtifactFolderViewFactoryTest {
     }
 
     private ZipArtifactCache cacheNotCreated() {
-        return new ZipArtifactCache(null, null) {
+        return new ZipArtifactCache(null, null, systemEnvironment) {
             @Override
             public boolean cacheCreated(ArtifactFolder artifactFolder) {
                 return false;
@@ -15,16 +15,18 @@
  */
 package com.thoughtworks.go.server.websocket;
 
-import com.thoughtworks.go.domain.ConsoleConsumer;
+import com.thoughtworks.go.domain.ConsoleByteStreamer;
 import com.thoughtworks.go.domain.ConsoleStreamer;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
 import com.thoughtworks.go.server.dao.JobInstanceDao;
 import com.thoughtworks.go.server.service.ConsoleService;
+import com.thoughtworks.go.server.service.JobInstanceService;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -32,7 +34,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
-import java.util.function.Consumer;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.GZIPInputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -41,6 +44,7 @@ import static org.mockito.Mockito.*;
 
 public class ConsoleLogSenderTest {
     private ConsoleLogSender consoleLogSender;
+    private ConsoleLogTailService tailService;
     private ConsoleService consoleService;
     private SocketEndpoint socket;
     private JobIdentifier jobIdentifier;
@@ -56,7 +60,8 @@ public class ConsoleLogSenderTest {
         when(socket.isOpen()).thenReturn(true);
         systemEnvironment = mock(SystemEnvironment.class);
         when(systemEnvironment.consoleLogCharset()).thenReturn(UTF_8);
-        consoleLogSender = new ConsoleLogSender(consoleService, jobInstanceDao, systemEnvironment);
+        tailService = new ConsoleLogTailService(consoleService, mock(JobInstanceService.class), jobInstanceDao, 10, 0, Runnable::run);
+        consoleLogSender = new ConsoleLogSender(consoleService, tailService, systemEnvironment);
         jobIdentifier = mock(JobIdentifier.class);
     }
 
@@ -95,54 +100,122 @@ public class ConsoleLogSenderTest {
 
     @Test
     public void shouldSendConsoleLogInMultipleMessagesIfBuildInProgress() throws Exception {
-        File fakeFile = mock(File.class);
-        when(consoleService.consoleLogFile(jobIdentifier)).thenReturn(fakeFile);
-
-        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false).thenReturn(true);
+        File console = makeConsoleFile("First Output\n");
+        streamBytesOf(console);
+        AtomicBoolean completed = new AtomicBoolean();
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenAnswer(invocation -> completed.get());
         when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
 
-        when(consoleService.getStreamer(anyLong(), eq(jobIdentifier)))
-            .thenReturn(new FakeConsoleStreamer("First Output", "Second Output"));
-
         consoleLogSender.process(socket, jobIdentifier, 0L);
+        Files.writeString(console.toPath(), "Second Output\n", StandardOpenOption.APPEND);
+        tailService.consoleUpdated(jobIdentifier);
+        completed.set(true);
+        tailService.consoleUpdated(jobIdentifier);
+
+        verify(socket, times(1)).send(ByteBuffer.wrap("First Output\n".getBytes(UTF_8)));
+        verify(socket, times(1)).send(ByteBuffer.wrap("Second Output\n".getBytes(UTF_8)));
+        verify(socket).close();
+    }
+
+    @Test
+    public void shouldFollowARunningBuildFromTheLineItWasAskedFor() throws Exception {
+        File console = makeConsoleFile("First Output\nSecond Output\nThird Output\n");
+        streamBytesOf(console);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+
+        consoleLogSender.process(socket, jobIdentifier, 2L);
 
-        verify(socket, times(1)).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("First Output\n".getBytes(UTF_8))));
-        verify(socket, times(1)).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("Second Output\n".getBytes(UTF_8))));
+        verify(socket, times(1)).send(ByteBuffer.wrap("Third Output\n".getBytes(UTF_8)));
+        verify(socket, never()).close();
     }
 
     @Test
     public void shouldSendConsoleLogEvenAfterBuildCompletion() throws Exception {
-        File fakeFile = mock(File.class);
-        when(consoleService.consoleLogFile(jobIdentifier)).thenReturn(fakeFile);
+        File console = makeConsoleFile("First Output\n");
+        streamBytesOf(console);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
 
-        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false).thenReturn(true);
+        consoleLogSender.processFromOffset(socket, jobIdentifier, 0L);
+        File completedConsole = makeConsoleFile("First Output\nMore Output\nlast");
+        streamBytesOf(completedConsole);
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(true);
+        tailService.consoleUpdated(jobIdentifier);
+
+        verify(socket, times(1)).send(ByteBuffer.wrap("First Output\n".getBytes(UTF_8)));
+        verify(socket, times(1)).send(ByteBuffer.wrap("More Output\nlast".getBytes(UTF_8)));
+        verify(socket).close();
+    }
+
+    @Test
+    public void shouldNotSendMessagesWhenOutputHasNotAdvanced() throws Exception {
+        File console = makeConsoleFile("First Output\n");
+        streamBytesOf(console);
         when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
 
-        when(consoleService.getStreamer(0L, jobIdentifier))
-            .thenReturn(new FakeConsoleStreamer("First Output", "Second Output"));
-        when(consoleService.getStreamer(1L, jobIdentifier))
-            .thenReturn(new FakeConsoleStreamer("More Output"));
+        consoleLogSender.processFromOffset(socket, jobIdentifier, 0L);
+        tailService.consoleUpdated(jobIdentifier);
+        tailService.consoleUpdated(jobIdentifier);
 
-        consoleLogSender.process(socket, jobIdentifier, 0L);
+        verify(socket, times(1)).send(any());
+    }
 
-        verify(socket, times(1)).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("First Output\n".getBytes(UTF_8))));
-        verify(socket, times(1)).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("Second Output\n".getBytes(UTF_8))));
-        verify(socket, times(1)).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("More Output\n".getBytes(UTF_8))));
+    @Test
+    public void shouldReadTheLogOfARunningBuildOnceForAllItsViewers() throws Exception {
+        File console = makeConsoleFile("");
+        streamBytesOf(console);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        SocketEndpoint anotherSocket = mock(SocketEndpoint.class);
+        when(anotherSocket.isOpen()).thenReturn(true);
+
+        consoleLogSender.processFromOffset(socket, jobIdentifier, 0L);
+        consoleLogSender.processFromOffset(anotherSocket, jobIdentifier, 0L);
+        Files.writeString(console.toPath(), RandomStringUtils.insecure().nextAlphanumeric(2048) + "\n");
+        tailService.consoleUpdated(jobIdentifier);
+
+        ArgumentCaptor<ByteBuffer> first = ArgumentCaptor.forClass(ByteBuffer.class);
+        ArgumentCaptor<ByteBuffer> second = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(socket).send(first.capture());
+        verify(anotherSocket).send(second.capture());
+        assertThat(second.getValue().array()).isSameAs(first.getValue().array());
+        verify(consoleService, times(1)).getByteStreamer(anyLong(), eq(jobIdentifier), anyInt());
     }
 
     @Test
-    public void shouldNotSendMessagesWhenOutputHasNotAdvanced() throws Exception {
-        File console = makeConsoleFile("First Output");
-        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false).thenReturn(true);
+    public void shouldSendRawByteRangesOfCompletedLogFromOffset() throws Exception {
+        File console = makeConsoleFile("First Output\nSecond Output\nlast");
+
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(true);
         when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        when(consoleService.getByteStreamer(13L, jobIdentifier, 1024 * 1024)).thenReturn(new ConsoleByteStreamer(console.toPath(), 13L, 1024 * 1024));
 
-        when(consoleService.getStreamer(anyLong(), eq(jobIdentifier)))
-            .thenReturn(new ConsoleStreamer(console.toPath(), 0L));
+        consoleLogSender.processFromOffset(socket, jobIdentifier, 13L);
 
-        consoleLogSender.process(socket, jobIdentifier, 0L);
+        verify(socket).send(ByteBuffer.wrap("Second Output\nlast".getBytes(UTF_8)));
+        verify(socket).close();
+    }
 
-        verify(jobInstanceDao, times(3)).isJobCompleted(jobIdentifier);
-        verify(socket, times(1)).send(any());
+    @Test
+    public void shouldShareCompressedChunksOfCompletedLogsBetweenViewers() throws Exception {
+        String content = RandomStringUtils.insecure().nextAlphanumeric(2048) + "\n";
+        File console = makeConsoleFile(content);
+
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(true);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        when(consoleService.getByteStreamer(0L, jobIdentifier, 1024 * 1024))
+            .thenReturn(new ConsoleByteStreamer(console.toPath(), 0L, 1024 * 1024))
+            .thenReturn(new ConsoleByteStreamer(console.toPath(), 0L, 1024 * 1024));
+
+        SocketEndpoint anotherSocket = mock(SocketEndpoint.class);
+        when(anotherSocket.isOpen()).thenReturn(true);
+
+        consoleLogSender.processFromOffset(socket, jobIdentifier, 0L);
+        consoleLogSender.processFromOffset(anotherSocket, jobIdentifier, 0L);
+
+        ArgumentCaptor<ByteBuffer> first = ArgumentCaptor.forClass(ByteBuffer.class);
+        ArgumentCaptor<ByteBuffer> second = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(socket).send(first.capture());
+        verify(anotherSocket).send(second.capture());
+        assertThat(second.getValue().array()).isSameAs(first.getValue().array());
     }
 
     @Test
@@ -180,6 +253,11 @@ public class ConsoleLogSenderTest {
         assertThat(bytes).isEqualTo(byteArrayOutputStream.toByteArray());
     }
 
+    private void streamBytesOf(File console) throws IllegalArtifactLocationException {
+        when(consoleService.getByteStreamer(anyLong(), eq(jobIdentifier), anyInt()))
+            .thenAnswer(invocation -> new ConsoleByteStreamer(console.toPath(), invocation.getArgument(0), invocation.getArgument(2)));
+    }
+
     private File makeConsoleFile(String message) throws IOException, IllegalArtifactLocationException {
         File console = File.createTempFile("console", ".log");
         console.deleteOnExit();
@@ -188,36 +266,4 @@ public class ConsoleLogSenderTest {
         Files.write(console.toPath(), message.getBytes());
         return console;
     }
-
-    /**
-     * allows us to simulate log appending by doing reads with multiple invocations to stream()
-     */
-    private static class FakeConsoleStreamer implements ConsoleConsumer {
-
-        private final String[] mockedLines;
-        private int count = 0;
-
-        FakeConsoleStreamer(String... mockedLines) {
-            this.mockedLines = mockedLines;
-        }
-
-        @Override
-        public long stream(Consumer<String> action) {
-            // this is necessary for showing no logs has been missed out even after job completion
-            if (mockedLines.length <= count) {
-                return mockedLines.length;
-            }
-            action.accept(mockedLines[count]);
-            return ++count;
-        }
-
-        @Override
-        public long totalLinesConsumed() {
-            return count;
-        }
-
-        @Override
-        public void close() {
-        }
-    }
 }
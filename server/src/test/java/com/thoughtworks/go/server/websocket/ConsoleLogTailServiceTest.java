@@ -0,0 +1,161 @@
+/*
+ * Copyright Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.websocket;
+
+import com.thoughtworks.go.domain.ConsoleByteStreamer;
+import com.thoughtworks.go.domain.JobIdentifier;
+import com.thoughtworks.go.domain.JobInstance;
+import com.thoughtworks.go.server.dao.JobInstanceDao;
+import com.thoughtworks.go.server.service.ConsoleService;
+import com.thoughtworks.go.server.service.JobInstanceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ConsoleLogTailServiceTest {
+    private final JobIdentifier jobIdentifier = new JobIdentifier("pipeline", 10, "label-10", "stage", "3", "job", 25L);
+    private JobInstanceDao jobInstanceDao;
+    private ConsoleService consoleService;
+    private ConsoleLogTailService tailService;
+
+    @BeforeEach
+    public void setUp() {
+        jobInstanceDao = mock(JobInstanceDao.class);
+        consoleService = mock(ConsoleService.class);
+        tailService = new ConsoleLogTailService(consoleService, mock(JobInstanceService.class), jobInstanceDao, 60000, 60000, Runnable::run);
+    }
+
+    @Test
+    public void shouldShareOneTailBetweenViewersOfTheSameJob() {
+        ConsoleLogTailService.Tail first = tailService.follow(jobIdentifier);
+        ConsoleLogTailService.Tail second = tailService.follow(jobIdentifier);
+
+        assertThat(first).isSameAs(second);
+        assertThat(tailService.followedJobCount()).isEqualTo(1);
+
+        first.close();
+        assertThat(tailService.followedJobCount()).isEqualTo(1);
+        second.close();
+        assertThat(tailService.followedJobCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldPushWhatWasAppendedToTheConsoleLogToAllSubscribers(@TempDir Path tempDir) throws Exception {
+        Path console = Files.writeString(tempDir.resolve("console.log"), "first\n");
+        when(consoleService.getByteStreamer(anyLong(), eq(jobIdentifier), anyInt()))
+            .thenAnswer(invocation -> new ConsoleByteStreamer(console, invocation.getArgument(0), invocation.getArgument(2)));
+        RecordingSubscriber fromStart = new RecordingSubscriber();
+        RecordingSubscriber fromSecondLine = new RecordingSubscriber();
+
+        try (ConsoleLogTailService.Tail tail = tailService.follow(jobIdentifier)) {
+            tail.subscribe(0, fromStart);
+            tail.subscribe(6, fromSecondLine);
+        }
+        Files.writeString(console, "second\n", StandardOpenOption.APPEND);
+        tailService.consoleUpdated(jobIdentifier);
+
+        assertThat(fromStart.received).containsExactly("first\n", "second\n");
+        assertThat(fromSecondLine.received).containsExactly("second\n");
+        assertThat(tailService.followedJobCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCatchUpSubscribersWhichJoinBehindWhatWasAlreadyRead(@TempDir Path tempDir) throws Exception {
+        Path console = Files.writeString(tempDir.resolve("console.log"), "first\nsecond\n");
+        when(consoleService.getByteStreamer(anyLong(), eq(jobIdentifier), anyInt()))
+            .thenAnswer(invocation -> new ConsoleByteStreamer(console, invocation.getArgument(0), invocation.getArgument(2)));
+        RecordingSubscriber fromSecondLine = new RecordingSubscriber();
+        RecordingSubscriber fromStart = new RecordingSubscriber();
+
+        try (ConsoleLogTailService.Tail tail = tailService.follow(jobIdentifier)) {
+            tail.subscribe(6, fromSecondLine);
+            tail.subscribe(0, fromStart);
+        }
+
+        assertThat(fromSecondLine.received).containsExactly("second\n");
+        assertThat(String.join("", fromStart.received)).isEqualTo("first\nsecond\n");
+    }
+
+    @Test
+    public void shouldHandSubscribersOverOnceTheJobCompletes(@TempDir Path tempDir) throws Exception {
+        Path console = Files.writeString(tempDir.resolve("console.log"), "first\n");
+        when(consoleService.getByteStreamer(anyLong(), eq(jobIdentifier), anyInt()))
+            .thenAnswer(invocation -> new ConsoleByteStreamer(console, invocation.getArgument(0), invocation.getArgument(2)));
+        JobInstance job = mock(JobInstance.class);
+        when(job.isCompleted()).thenReturn(true);
+        when(job.getId()).thenReturn(25L);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        try (ConsoleLogTailService.Tail tail = tailService.follow(jobIdentifier)) {
+            tail.subscribe(0, subscriber);
+        }
+        tailService.jobStatusChanged(job);
+
+        assertThat(subscriber.received).containsExactly("first\n");
+        assertThat(subscriber.finishedAt).isEqualTo(6L);
+        assertThat(subscriber.jobCompleted).isTrue();
+        assertThat(tailService.followedJobCount()).isZero();
+    }
+
+    @Test
+    public void shouldLearnAboutCompletionFromJobStatusChangesWithoutQueryingTheDatabase() {
+        JobInstance job = mock(JobInstance.class);
+        when(job.isCompleted()).thenReturn(true);
+        when(job.getId()).thenReturn(25L);
+
+        try (ConsoleLogTailService.Tail tail = tailService.follow(jobIdentifier)) {
+            assertThat(tail.isCompleted()).isFalse();
+            assertThat(tail.isCompleted()).isFalse();
+
+            tailService.jobStatusChanged(job);
+
+            assertThat(tail.isCompleted()).isTrue();
+        }
+        verify(jobInstanceDao, times(1)).isJobCompleted(jobIdentifier);
+    }
+
+    private static class RecordingSubscriber implements ConsoleLogTailService.Subscriber {
+        private final List<String> received = new ArrayList<>();
+        private Long finishedAt;
+        private boolean jobCompleted;
+
+        @Override
+        public boolean isOpen() {
+            return finishedAt == null;
+        }
+
+        @Override
+        public void send(ConsoleLogTailService.Chunk chunk) {
+            received.add(new String(chunk.bytes(), UTF_8));
+        }
+
+        @Override
+        public void finished(long offset, boolean jobCompleted) {
+            this.finishedAt = offset;
+            this.jobCompleted = jobCompleted;
+        }
+    }
+}
@@ -21,4 +21,9 @@ public interface OutputListWriter {
     OutputListWriter value(String value);
 
     OutputListWriter addChild(Consumer<OutputWriter> consumer);
+
+    /**
+     * Adds an element which has already been serialized, e.g. a cached fragment; it is written out as is.
+     */
+    OutputListWriter addRaw(String json);
 }